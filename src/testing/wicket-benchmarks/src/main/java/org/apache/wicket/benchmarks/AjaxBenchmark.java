@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.wicket.Component;
+import org.apache.wicket.ajax.AjaxEventBehavior;
+import org.apache.wicket.behavior.Behavior;
+import org.apache.wicket.behavior.IBehaviorListener;
+import org.apache.wicket.request.Url;
+import org.apache.wicket.request.cycle.RequestCycle;
+import org.apache.wicket.request.handler.ListenerInterfaceRequestHandler;
+import org.apache.wicket.request.handler.PageAndComponentProvider;
+import org.apache.wicket.util.tester.BaseWicketTester;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * An Ajax round trip: the callback url of an Ajax link is resolved to its behavior, whose
+ * {@link org.apache.wicket.ajax.AjaxRequestTarget} repaints a label and responds with the Ajax
+ * response xml.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AjaxBenchmark
+{
+	private BaseWicketTester tester;
+
+	private RequestProcessor processor;
+
+	private Url url;
+
+	/**
+	 * Starts the application and renders the page once.
+	 */
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		tester = new BaseWicketTester(new BenchmarkApplication());
+		AjaxPage page = tester.startPage(AjaxPage.class);
+		Component link = page.get("increment");
+		Behavior behavior = link.getBehaviors(AjaxEventBehavior.class).get(0);
+		url = RequestCycle.get().mapUrlFor(
+			new ListenerInterfaceRequestHandler(new PageAndComponentProvider(page, link),
+				IBehaviorListener.INTERFACE, link.getBehaviorId(behavior)));
+		processor = new RequestProcessor(tester);
+	}
+
+	/**
+	 * Destroys the application.
+	 */
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		tester.destroy();
+	}
+
+	/**
+	 * @return the Ajax response
+	 */
+	@Benchmark
+	public String click()
+	{
+		return processor.process(url, true);
+	}
+}
@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.benchmarks;
+
+import org.apache.wicket.ajax.AjaxRequestTarget;
+import org.apache.wicket.ajax.markup.html.AjaxLink;
+import org.apache.wicket.markup.html.WebPage;
+import org.apache.wicket.markup.html.basic.Label;
+import org.apache.wicket.model.PropertyModel;
+
+/**
+ * A page with an Ajax link which repaints a label.
+ */
+public class AjaxPage extends WebPage
+{
+	private static final long serialVersionUID = 1L;
+
+	private int counter;
+
+	/**
+	 * Construct.
+	 */
+	public AjaxPage()
+	{
+		final Label label = new Label("counter", new PropertyModel<Integer>(this, "counter"));
+		label.setOutputMarkupId(true);
+		add(label);
+		add(new AjaxLink<Void>("increment")
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public void onClick(AjaxRequestTarget target)
+			{
+				counter++;
+				target.add(label);
+			}
+		});
+	}
+
+	/**
+	 * @return the number of clicks on the link
+	 */
+	public int getCounter()
+	{
+		return counter;
+	}
+}
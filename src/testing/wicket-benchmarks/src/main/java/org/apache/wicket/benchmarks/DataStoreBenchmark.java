@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.wicket.pageStore.DiskDataStore;
+import org.apache.wicket.pageStore.IDataStore;
+import org.apache.wicket.pageStore.SegmentedDataStore;
+import org.apache.wicket.util.file.Files;
+import org.apache.wicket.util.lang.Bytes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Stores and loads pages of {@value #PAGE_SIZE} bytes in the file based data stores.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DataStoreBenchmark
+{
+	private static final int PAGE_SIZE = 16 * 1024;
+
+	private static final int PAGE_COUNT = 100;
+
+	private static final String SESSION_ID = "session";
+
+	/** the data store to measure */
+	@Param({ "disk", "segmented" })
+	public String dataStoreName;
+
+	private File folder;
+
+	private IDataStore dataStore;
+
+	private final byte[] data = new byte[PAGE_SIZE];
+
+	private int pageId;
+
+	/**
+	 * Creates the data store and fills it with pages.
+	 *
+	 * @throws IOException
+	 */
+	@Setup(Level.Trial)
+	public void setUp() throws IOException
+	{
+		folder = File.createTempFile("wicket-benchmarks", null);
+		Files.remove(folder);
+		folder.mkdirs();
+
+		Bytes maxSizePerSession = Bytes.bytes(2L * PAGE_COUNT * PAGE_SIZE);
+		if ("disk".equals(dataStoreName))
+		{
+			dataStore = new DiskDataStore("benchmark", folder, maxSizePerSession);
+		}
+		else if ("segmented".equals(dataStoreName))
+		{
+			dataStore = new SegmentedDataStore("benchmark", folder, maxSizePerSession,
+				Bytes.megabytes(4), 16);
+		}
+		else
+		{
+			throw new IllegalArgumentException("Unknown data store: " + dataStoreName);
+		}
+
+		new Random(1).nextBytes(data);
+		for (int i = 0; i < PAGE_COUNT; i++)
+		{
+			dataStore.storeData(SESSION_ID, i, data);
+		}
+	}
+
+	/**
+	 * Destroys the data store and removes its files.
+	 */
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		dataStore.destroy();
+		Files.removeFolder(folder);
+	}
+
+	/**
+	 * Replaces the pages round robin.
+	 */
+	@Benchmark
+	public void store()
+	{
+		dataStore.storeData(SESSION_ID, nextPageId(), data);
+	}
+
+	/**
+	 * @return the data of the pages, round robin
+	 */
+	@Benchmark
+	public byte[] load()
+	{
+		return dataStore.getData(SESSION_ID, nextPageId());
+	}
+
+	private int nextPageId()
+	{
+		pageId = (pageId + 1) % PAGE_COUNT;
+		return pageId;
+	}
+}
@@ -0,0 +1,241 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.benchmarks;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.ServletOutputStream;
+
+import org.apache.wicket.protocol.http.mock.MockHttpServletRequest;
+import org.apache.wicket.protocol.http.mock.MockHttpServletResponse;
+import org.apache.wicket.protocol.http.servlet.ServletWebRequest;
+import org.apache.wicket.protocol.http.servlet.ServletWebResponse;
+import org.apache.wicket.util.io.Streams;
+import org.apache.wicket.util.tester.BaseWicketTester;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Writes files to a servlet response the way resources do: copied through streams as before, from
+ * the channel of the file through a pooled buffer, and transferred from the channel of the file
+ * to a container whose output stream is a channel. The output of the container goes to
+ * <code>/dev/null</code>, standing in for the socket.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FileServingBenchmark
+{
+	/** the size of the file in megabytes */
+	@Param({ "10", "100", "1024" })
+	public int megabytes;
+
+	private BaseWicketTester tester;
+
+	private File file;
+
+	private FileOutputStream sink;
+
+	private ServletWebResponse streamResponse;
+
+	private ServletWebResponse channelResponse;
+
+	/**
+	 * Creates the file and the responses.
+	 *
+	 * @throws IOException
+	 */
+	@Setup(Level.Trial)
+	public void setUp() throws IOException
+	{
+		file = File.createTempFile("wicket-benchmarks", ".bin");
+		RandomAccessFile out = new RandomAccessFile(file, "rw");
+		try
+		{
+			byte[] block = new byte[1024 * 1024];
+			for (int i = 0; i < block.length; i++)
+			{
+				block[i] = (byte)i;
+			}
+			for (int i = 0; i < megabytes; i++)
+			{
+				out.write(block);
+			}
+		}
+		finally
+		{
+			out.close();
+		}
+
+		sink = new FileOutputStream("/dev/null");
+		tester = new BaseWicketTester(new BenchmarkApplication());
+		streamResponse = newResponse(new StreamOutput(sink));
+		channelResponse = newResponse(new ChannelOutput(sink));
+	}
+
+	private ServletWebResponse newResponse(final ServletOutputStream output)
+	{
+		MockHttpServletRequest servletRequest = new MockHttpServletRequest(
+			tester.getApplication(), tester.getHttpSession(), tester.getServletContext());
+		MockHttpServletResponse servletResponse = new MockHttpServletResponse(servletRequest)
+		{
+			@Override
+			public ServletOutputStream getOutputStream()
+			{
+				return output;
+			}
+		};
+		return new ServletWebResponse(new ServletWebRequest(servletRequest,
+			servletRequest.getFilterPrefix()), servletResponse);
+	}
+
+	/**
+	 * Removes the file.
+	 *
+	 * @throws IOException
+	 */
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException
+	{
+		tester.destroy();
+		sink.close();
+		file.delete();
+	}
+
+	/**
+	 * @return the number of copied bytes
+	 * @throws IOException
+	 */
+	@Benchmark
+	public int copyStream() throws IOException
+	{
+		FileInputStream in = new FileInputStream(file);
+		try
+		{
+			return Streams.copy(in, streamResponse.getOutputStream());
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+
+	/**
+	 * @throws IOException
+	 */
+	@Benchmark
+	public void writeChannelBuffered() throws IOException
+	{
+		write(streamResponse);
+	}
+
+	/**
+	 * @throws IOException
+	 */
+	@Benchmark
+	public void writeChannelTransferred() throws IOException
+	{
+		write(channelResponse);
+	}
+
+	private void write(ServletWebResponse response) throws IOException
+	{
+		FileInputStream in = new FileInputStream(file);
+		try
+		{
+			FileChannel channel = in.getChannel();
+			response.write(channel, 0, channel.size());
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+
+	/**
+	 * The output stream of a container
+	 */
+	private static class StreamOutput extends ServletOutputStream
+	{
+		private final FileOutputStream out;
+
+		private StreamOutput(FileOutputStream out)
+		{
+			this.out = out;
+		}
+
+		@Override
+		public void write(int b) throws IOException
+		{
+			out.write(b);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException
+		{
+			out.write(b, off, len);
+		}
+	}
+
+	/**
+	 * The output stream of a container which is a channel too
+	 */
+	private static class ChannelOutput extends StreamOutput implements WritableByteChannel
+	{
+		private final FileChannel channel;
+
+		private ChannelOutput(FileOutputStream out)
+		{
+			super(out);
+			channel = out.getChannel();
+		}
+
+		@Override
+		public int write(ByteBuffer src) throws IOException
+		{
+			return channel.write(src);
+		}
+
+		@Override
+		public boolean isOpen()
+		{
+			return channel.isOpen();
+		}
+	}
+}
@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.wicket.Page;
+import org.apache.wicket.util.lang.ReflectionObjectSizeOfStrategy;
+import org.apache.wicket.util.lang.WicketObjects;
+import org.apache.wicket.util.lang.WicketObjects.IObjectSizeOfStrategy;
+import org.apache.wicket.util.lang.WicketObjects.SerializingObjectSizeOfStrategy;
+import org.apache.wicket.util.tester.BaseWicketTester;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the size of a rendered {@link RenderPage}, as the memory based page stores do for
+ * every stored page. The strategy <em>default</em> is the one configured in
+ * {@link WicketObjects}, e.g. the one of the instrumentation agent when the benchmarks are run
+ * with <code>-jvmArgs -javaagent:wicket-objectsizeof-agent.jar</code>.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ObjectSizeOfBenchmark
+{
+	/** the strategy to measure */
+	@Param({ "serializing", "reflection", "default" })
+	public String strategyName;
+
+	private BaseWicketTester tester;
+
+	private IObjectSizeOfStrategy strategy;
+
+	private Page page;
+
+	/**
+	 * Starts the application and renders the page.
+	 */
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		tester = new BaseWicketTester(new BenchmarkApplication());
+		page = tester.startPage(RenderPage.class);
+
+		if ("serializing".equals(strategyName))
+		{
+			strategy = new SerializingObjectSizeOfStrategy();
+		}
+		else if ("reflection".equals(strategyName))
+		{
+			strategy = new ReflectionObjectSizeOfStrategy();
+		}
+		else if (!"default".equals(strategyName))
+		{
+			throw new IllegalArgumentException("Unknown strategy: " + strategyName);
+		}
+	}
+
+	/**
+	 * Destroys the application.
+	 */
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		tester.destroy();
+	}
+
+	/**
+	 * @return the size of the page
+	 */
+	@Benchmark
+	public long sizeOf()
+	{
+		return strategy != null ? strategy.sizeOf(page) : WicketObjects.sizeof(page);
+	}
+}
@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.wicket.pageStore.ConcurrentPageWindowManager;
+import org.apache.wicket.pageStore.IPageWindowManager;
+import org.apache.wicket.pageStore.PageWindowManager;
+import org.apache.wicket.pageStore.PageWindowManager.PageWindow;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Looks up and creates page windows from several threads, as concurrent requests of a session do
+ * with the page window manager of the session's file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class PageWindowManagerBenchmark
+{
+	private static final int PAGE_COUNT = 1000;
+
+	private static final int PAGE_SIZE = 16 * 1024;
+
+	/** the page window manager to measure */
+	@Param({ "synchronized", "concurrent" })
+	public String managerName;
+
+	private IPageWindowManager manager;
+
+	/**
+	 * Creates the page window manager and fills it with pages.
+	 */
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		long maxSize = 2L * PAGE_COUNT * PAGE_SIZE;
+		if ("synchronized".equals(managerName))
+		{
+			manager = new PageWindowManager(maxSize);
+		}
+		else if ("concurrent".equals(managerName))
+		{
+			manager = new ConcurrentPageWindowManager(maxSize);
+		}
+		else
+		{
+			throw new IllegalArgumentException("Unknown page window manager: " + managerName);
+		}
+
+		for (int i = 0; i < PAGE_COUNT; i++)
+		{
+			manager.createPageWindow(i, PAGE_SIZE);
+		}
+	}
+
+	/**
+	 * The random page ids of a thread
+	 */
+	@State(Scope.Thread)
+	public static class PageIds
+	{
+		private final Random random = new Random();
+
+		/**
+		 * @return a random page id
+		 */
+		public int next()
+		{
+			return random.nextInt(PAGE_COUNT);
+		}
+	}
+
+	/**
+	 * @param pageIds
+	 * @return the window of a page
+	 */
+	@Benchmark
+	public PageWindow get(PageIds pageIds)
+	{
+		return manager.getPageWindow(pageIds.next());
+	}
+
+	/**
+	 * @param pageIds
+	 * @return the new window of a page
+	 */
+	@Benchmark
+	public PageWindow create(PageIds pageIds)
+	{
+		return manager.createPageWindow(pageIds.next(), PAGE_SIZE);
+	}
+}
@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.wicket.util.lang.PropertyResolver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Resolves property expressions like the property models do while rendering.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PropertyResolverBenchmark
+{
+	private final Person person = new Person("John", new Address("Main Street"));
+
+	/**
+	 * Construct.
+	 */
+	public PropertyResolverBenchmark()
+	{
+		person.getFriends().add(new Person("Jane", new Address("Side Street")));
+		person.getProperties().put("nickname", "Johnny");
+	}
+
+	/**
+	 * @return the value of a getter
+	 */
+	@Benchmark
+	public Object simple()
+	{
+		return PropertyResolver.getValue("name", person);
+	}
+
+	/**
+	 * @return the value of a getter of the value of a getter
+	 */
+	@Benchmark
+	public Object nested()
+	{
+		return PropertyResolver.getValue("address.street", person);
+	}
+
+	/**
+	 * @return the value of a map entry
+	 */
+	@Benchmark
+	public Object map()
+	{
+		return PropertyResolver.getValue("properties.nickname", person);
+	}
+
+	/**
+	 * @return the value of a getter of a list element
+	 */
+	@Benchmark
+	public Object list()
+	{
+		return PropertyResolver.getValue("friends[0].address.street", person);
+	}
+
+	/**
+	 * A person
+	 */
+	public static class Person
+	{
+		private final String name;
+
+		private final Address address;
+
+		private final List<Person> friends = new ArrayList<Person>();
+
+		private final Map<String, String> properties = new HashMap<String, String>();
+
+		/**
+		 * Construct.
+		 *
+		 * @param name
+		 * @param address
+		 */
+		public Person(String name, Address address)
+		{
+			this.name = name;
+			this.address = address;
+		}
+
+		/**
+		 * @return the name
+		 */
+		public String getName()
+		{
+			return name;
+		}
+
+		/**
+		 * @return the address
+		 */
+		public Address getAddress()
+		{
+			return address;
+		}
+
+		/**
+		 * @return the friends
+		 */
+		public List<Person> getFriends()
+		{
+			return friends;
+		}
+
+		/**
+		 * @return the properties
+		 */
+		public Map<String, String> getProperties()
+		{
+			return properties;
+		}
+	}
+
+	/**
+	 * An address
+	 */
+	public static class Address
+	{
+		private final String street;
+
+		/**
+		 * Construct.
+		 *
+		 * @param street
+		 */
+		public Address(String street)
+		{
+			this.street = street;
+		}
+
+		/**
+		 * @return the street
+		 */
+		public String getStreet()
+		{
+			return street;
+		}
+	}
+}
@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.benchmarks;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.wicket.markup.html.WebPage;
+import org.apache.wicket.markup.html.basic.Label;
+import org.apache.wicket.markup.html.link.BookmarkablePageLink;
+import org.apache.wicket.markup.html.link.Link;
+import org.apache.wicket.markup.html.list.ListItem;
+import org.apache.wicket.markup.html.list.ListView;
+import org.apache.wicket.model.PropertyModel;
+
+/**
+ * A page with a table of rows of labels and links, which is a typical shape of the pages of an
+ * application.
+ */
+public class RenderPage extends WebPage
+{
+	private static final long serialVersionUID = 1L;
+
+	/** the number of rows of the table */
+	public static final int ROWS = 50;
+
+	private final List<Row> rows = new ArrayList<Row>();
+
+	private int clicks;
+
+	/**
+	 * Construct.
+	 */
+	public RenderPage()
+	{
+		for (int i = 0; i < ROWS; i++)
+		{
+			rows.add(new Row(i, "Row " + i, "Description of the row " + i));
+		}
+
+		add(new Label("title", "Benchmark"));
+		add(new Label("clicks", new PropertyModel<Integer>(this, "clicks")));
+		add(new ListView<Row>("rows", rows)
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected void populateItem(ListItem<Row> item)
+			{
+				item.add(new Label("id", new PropertyModel<Integer>(item.getModel(), "id")));
+				item.add(new Label("name", new PropertyModel<String>(item.getModel(), "name")));
+				item.add(new Label("description", new PropertyModel<String>(item.getModel(),
+					"description")));
+				item.add(new Link<Void>("click")
+				{
+					private static final long serialVersionUID = 1L;
+
+					@Override
+					public void onClick()
+					{
+						clicks++;
+					}
+				});
+				item.add(new BookmarkablePageLink<Void>("home", RenderPage.class));
+			}
+		});
+	}
+
+	/**
+	 * @return the number of clicks on the links of the rows
+	 */
+	public int getClicks()
+	{
+		return clicks;
+	}
+
+	/**
+	 * A row of the table
+	 */
+	public static class Row implements Serializable
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final int id;
+
+		private final String name;
+
+		private final String description;
+
+		/**
+		 * Construct.
+		 *
+		 * @param id
+		 * @param name
+		 * @param description
+		 */
+		public Row(int id, String name, String description)
+		{
+			this.id = id;
+			this.name = name;
+			this.description = description;
+		}
+
+		/**
+		 * @return the id
+		 */
+		public int getId()
+		{
+			return id;
+		}
+
+		/**
+		 * @return the name
+		 */
+		public String getName()
+		{
+			return name;
+		}
+
+		/**
+		 * @return the description
+		 */
+		public String getDescription()
+		{
+			return description;
+		}
+	}
+}
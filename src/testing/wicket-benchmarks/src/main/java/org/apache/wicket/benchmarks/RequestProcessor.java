@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.benchmarks;
+
+import org.apache.wicket.protocol.http.WebApplication;
+import org.apache.wicket.protocol.http.mock.MockHttpServletRequest;
+import org.apache.wicket.protocol.http.mock.MockHttpServletResponse;
+import org.apache.wicket.protocol.http.servlet.ServletWebRequest;
+import org.apache.wicket.protocol.http.servlet.ServletWebResponse;
+import org.apache.wicket.request.Url;
+import org.apache.wicket.request.cycle.RequestCycle;
+import org.apache.wicket.util.tester.BaseWicketTester;
+
+/**
+ * Processes requests with mock servlet objects the way the filter does. Unlike
+ * {@link BaseWicketTester} it does not keep the processed requests and responses, so any number
+ * of requests can be processed without filling the heap.
+ */
+public class RequestProcessor
+{
+	private final BaseWicketTester tester;
+
+	/**
+	 * Construct.
+	 *
+	 * @param tester
+	 *            the tester providing the application, the http session and the servlet context
+	 */
+	public RequestProcessor(BaseWicketTester tester)
+	{
+		this.tester = tester;
+	}
+
+	/**
+	 * Processes a request.
+	 *
+	 * @param url
+	 *            the url of the request, relative to the filter path
+	 * @param ajax
+	 *            whether it is an Ajax request
+	 * @return the document written to the response
+	 */
+	public String process(Url url, boolean ajax)
+	{
+		WebApplication application = tester.getApplication();
+		MockHttpServletRequest servletRequest = new MockHttpServletRequest(application,
+			tester.getHttpSession(), tester.getServletContext());
+		servletRequest.setUrl(url);
+		if (ajax)
+		{
+			servletRequest.setHeader("Wicket-Ajax", "true");
+			servletRequest.setHeader("Wicket-Ajax-BaseURL", url.toString());
+		}
+		MockHttpServletResponse servletResponse = new MockHttpServletResponse(servletRequest);
+
+		ServletWebRequest webRequest = new ServletWebRequest(servletRequest,
+			servletRequest.getFilterPrefix());
+		RequestCycle requestCycle = application.createRequestCycle(webRequest,
+			new ServletWebResponse(webRequest, servletResponse));
+		requestCycle.processRequestAndDetach();
+
+		return servletResponse.getDocument();
+	}
+}
@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.wicket.Page;
+import org.apache.wicket.serialize.ISerializer;
+import org.apache.wicket.serialize.compact.CompactSerializer;
+import org.apache.wicket.serialize.java.JavaSerializer;
+import org.apache.wicket.util.tester.BaseWicketTester;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Serializes and deserializes a rendered {@link RenderPage} like the page store does for every
+ * stateful request.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializerBenchmark
+{
+	/** the serializer to measure */
+	@Param({ "java", "compact" })
+	public String serializerName;
+
+	private BaseWicketTester tester;
+
+	private ISerializer serializer;
+
+	private Page page;
+
+	private byte[] data;
+
+	/**
+	 * Starts the application and renders the page.
+	 */
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		tester = new BaseWicketTester(new BenchmarkApplication());
+		page = tester.startPage(RenderPage.class);
+
+		String applicationKey = tester.getApplication().getApplicationKey();
+		if ("java".equals(serializerName))
+		{
+			serializer = new JavaSerializer(applicationKey);
+		}
+		else if ("compact".equals(serializerName))
+		{
+			serializer = new CompactSerializer(applicationKey);
+		}
+		else
+		{
+			throw new IllegalArgumentException("Unknown serializer: " + serializerName);
+		}
+		data = serializer.serialize(page);
+	}
+
+	/**
+	 * Destroys the application.
+	 */
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		tester.destroy();
+	}
+
+	/**
+	 * @return the serialized page
+	 */
+	@Benchmark
+	public byte[] serialize()
+	{
+		return serializer.serialize(page);
+	}
+
+	/**
+	 * @return the deserialized page
+	 */
+	@Benchmark
+	public Object deserialize()
+	{
+		return serializer.deserialize(data);
+	}
+}
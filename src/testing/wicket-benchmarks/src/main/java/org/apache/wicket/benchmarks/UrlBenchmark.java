@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.wicket.mock.MockWebRequest;
+import org.apache.wicket.request.Url;
+import org.apache.wicket.request.Url.StringMode;
+import org.apache.wicket.request.UrlRenderer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parses and renders urls like the request mappers and the components do for every request and
+ * every link.
+ * <p>
+ * Run with <code>-prof gc</code> to see the allocated bytes per operation, e.g. of
+ * {@link #appendBookmarkableUrl()} which renders into a reused buffer compared to
+ * {@link #toStringBookmarkableUrl()}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UrlBenchmark
+{
+	private static final String PAGE_URL = "wicket/page?12-3.ILinkListener-table-rows-7-click";
+
+	private static final String BOOKMARKABLE_URL = "wicket/bookmarkable/org.apache.wicket.benchmarks.RenderPage?5&name=John%20Doe&city=New+York";
+
+	private final Url pageUrl = Url.parse(PAGE_URL);
+
+	private final Url bookmarkableUrl = Url.parse(BOOKMARKABLE_URL);
+
+	private final StringBuilder buffer = new StringBuilder(256);
+
+	private final UrlRenderer renderer = new UrlRenderer(new MockWebRequest(
+		Url.parse("wicket/page?12")));
+
+	/**
+	 * @return the parsed url
+	 */
+	@Benchmark
+	public Url parsePageUrl()
+	{
+		return Url.parse(PAGE_URL);
+	}
+
+	/**
+	 * @return the parsed url
+	 */
+	@Benchmark
+	public Url parseBookmarkableUrl()
+	{
+		return Url.parse(BOOKMARKABLE_URL);
+	}
+
+	/**
+	 * @return the url as string
+	 */
+	@Benchmark
+	public String toStringBookmarkableUrl()
+	{
+		return bookmarkableUrl.toString();
+	}
+
+	/**
+	 * @return the buffer with the url
+	 */
+	@Benchmark
+	public StringBuilder appendBookmarkableUrl()
+	{
+		buffer.setLength(0);
+		return bookmarkableUrl.appendTo(buffer, StringMode.LOCAL, bookmarkableUrl.getCharset());
+	}
+
+	/**
+	 * @return the url relative to the url of the request
+	 */
+	@Benchmark
+	public String renderPageUrl()
+	{
+		return renderer.renderRelativeUrl(pageUrl);
+	}
+
+	/**
+	 * @return the url relative to the url of the request
+	 */
+	@Benchmark
+	public String renderBookmarkableUrl()
+	{
+		return renderer.renderRelativeUrl(bookmarkableUrl);
+	}
+}
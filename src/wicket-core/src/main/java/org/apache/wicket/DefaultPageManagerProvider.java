@@ -26,6 +26,7 @@ import org.apache.wicket.pageStore.DefaultPageStore;
 import org.apache.wicket.pageStore.DiskDataStore;
 import org.apache.wicket.pageStore.IDataStore;
 import org.apache.wicket.pageStore.IPageStore;
+import org.apache.wicket.pageStore.SegmentedDataStore;
 import org.apache.wicket.serialize.ISerializer;
 import org.apache.wicket.settings.IStoreSettings;
 import org.apache.wicket.util.lang.Bytes;
@@ -56,10 +57,12 @@ public class DefaultPageManagerProvider implements IPageManagerProvider
 
 		// TODO Wicket.next: add IDataStore#canWorkAsynchronous() and replace the instanceof check
 		// below
-		if (storeSettings.isAsynchronous() && dataStore instanceof DiskDataStore)
+		if (storeSettings.isAsynchronous() &&
+			(dataStore instanceof DiskDataStore || dataStore instanceof SegmentedDataStore))
 		{
 			int capacity = storeSettings.getAsynchronousQueueCapacity();
-			dataStore = new AsynchronousDataStore(dataStore, capacity);
+			int batchSize = Math.min(storeSettings.getAsynchronousBatchSize(), capacity);
+			dataStore = new AsynchronousDataStore(dataStore, capacity, batchSize);
 		}
 
 		IPageStore pageStore = newPageStore(dataStore);
@@ -70,8 +73,11 @@ public class DefaultPageManagerProvider implements IPageManagerProvider
 	protected IPageStore newPageStore(IDataStore dataStore)
 	{
 		int inmemoryCacheSize = getStoreSettings().getInmemoryCacheSize();
+		Bytes inmemoryCacheMaxSize = getStoreSettings().getInmemoryCacheMaxSize();
+		int maxDeltaChainLength = getStoreSettings().getMaxDeltaChainLength();
 		ISerializer pageSerializer = application.getFrameworkSettings().getSerializer();
-		return new DefaultPageStore(pageSerializer, dataStore, inmemoryCacheSize);
+		return new DefaultPageStore(pageSerializer, dataStore, inmemoryCacheSize,
+			inmemoryCacheMaxSize, maxDeltaChainLength);
 	}
 
 	protected IDataStore newDataStore()
@@ -80,6 +86,13 @@ public class DefaultPageManagerProvider implements IPageManagerProvider
 		Bytes maxSizePerSession = storeSettings.getMaxSizePerSession();
 		File fileStoreFolder = storeSettings.getFileStoreFolder();
 
+		if (storeSettings.isSegmentedDataStore())
+		{
+			return new SegmentedDataStore(application.getName(), fileStoreFolder,
+				maxSizePerSession, storeSettings.getSegmentSize(),
+				storeSettings.getMaxSegmentCount());
+		}
+
 		return new DiskDataStore(application.getName(), fileStoreFolder, maxSizePerSession);
 	}
 
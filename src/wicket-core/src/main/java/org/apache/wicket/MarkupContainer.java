@@ -32,6 +32,8 @@ import org.apache.wicket.markup.MarkupFactory;
 import org.apache.wicket.markup.MarkupNotFoundException;
 import org.apache.wicket.markup.MarkupStream;
 import org.apache.wicket.markup.MarkupType;
+import org.apache.wicket.markup.RawMarkup;
+import org.apache.wicket.markup.RenderPlan;
 import org.apache.wicket.markup.WicketTag;
 import org.apache.wicket.markup.html.border.Border;
 import org.apache.wicket.markup.html.internal.InlineEnclosure;
@@ -1480,7 +1482,14 @@ public abstract class MarkupContainer extends Component implements Iterable<Comp
 		else
 		{
 			// Render as raw markup
-			getResponse().write(element.toCharSequence());
+			if (element instanceof RawMarkup)
+			{
+				((RawMarkup)element).writeOutput(getResponse());
+			}
+			else
+			{
+				getResponse().write(element.toCharSequence());
+			}
 			return true;
 		}
 
@@ -1580,6 +1589,15 @@ public abstract class MarkupContainer extends Component implements Iterable<Comp
 	 */
 	protected final void renderAll(final MarkupStream markupStream, final ComponentTag openTag)
 	{
+		if (getApplication().getMarkupSettings().getCacheRenderPlans())
+		{
+			RenderPlan plan = markupStream.getRenderPlan();
+			if ((plan != null) && renderPlan(markupStream, openTag, plan))
+			{
+				return;
+			}
+		}
+
 		while (markupStream.hasMore())
 		{
 			// In case of Page we need to render the whole file. For all other components just what
@@ -1615,6 +1633,61 @@ public abstract class MarkupContainer extends Component implements Iterable<Comp
 		}
 	}
 
+	/**
+	 * Renders the elements of the render plan the same way as {@link #renderAll(MarkupStream,
+	 * ComponentTag)} does, but without walking the markup stream to skip the bodies of the
+	 * children.
+	 * 
+	 * @param markupStream
+	 * @param openTag
+	 * @param plan
+	 *            the plan for the elements from the current position
+	 * @return true if the close tag has been reached, false if the markup stream is positioned at
+	 *         the elements which must be rendered one by one
+	 */
+	private boolean renderPlan(final MarkupStream markupStream, final ComponentTag openTag,
+		final RenderPlan plan)
+	{
+		final int start = markupStream.getCurrentIndex();
+		for (int i = 0; i < plan.size(); i++)
+		{
+			final int index = start + plan.getOffset(i);
+			markupStream.setCurrentIndex(index);
+			final MarkupElement element = markupStream.get();
+			if ((openTag != null) && element.closes(openTag))
+			{
+				return true;
+			}
+
+			if (plan.isComponent(i))
+			{
+				if (renderNext(markupStream))
+				{
+					// The tag has been rendered as raw markup, its body is not skipped
+					markupStream.setCurrentIndex(index);
+					markupStream.next();
+					return false;
+				}
+			}
+			else if (element instanceof RawMarkup)
+			{
+				((RawMarkup)element).writeOutput(getResponse());
+			}
+			else
+			{
+				getResponse().write(element.toCharSequence());
+			}
+		}
+
+		if (plan.getEnd() > 0)
+		{
+			// move to the element after the plan, which might be after the end of the stream
+			markupStream.setCurrentIndex(start + plan.getEnd() - 1);
+			markupStream.next();
+		}
+		return false;
+	}
+
 	/**
 	 * 
 	 */
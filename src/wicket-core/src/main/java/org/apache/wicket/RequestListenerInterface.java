@@ -78,6 +78,12 @@ public class RequestListenerInterface
 	 */
 	private boolean renderPageAfterInvocation = true;
 
+	/**
+	 * Whether the page is locked in shared mode while this listener interface is invoked, so other
+	 * requests invoking such listeners on the same page do not have to wait.
+	 */
+	private boolean sharedPageLock = false;
+
 	final Class<? extends IRequestListener> listenerInterfaceClass;
 
 	/**
@@ -158,9 +164,16 @@ public class RequestListenerInterface
 	/**
 	 * @param renderPageAfterInvocation
 	 * @return self
+	 * @throws IllegalStateException
+	 *             if set to {@code true} while the page is locked in shared mode
 	 */
 	public RequestListenerInterface setRenderPageAfterInvocation(boolean renderPageAfterInvocation)
 	{
+		if (renderPageAfterInvocation && sharedPageLock)
+		{
+			throw new IllegalStateException("The page of listener interface " + name +
+				" can not be rendered after invocation, as it is locked in shared mode");
+		}
 		this.renderPageAfterInvocation = renderPageAfterInvocation;
 		return this;
 	}
@@ -174,6 +187,40 @@ public class RequestListenerInterface
 		return renderPageAfterInvocation;
 	}
 
+	/**
+	 * Sets whether the page is locked in shared instead of exclusive mode while this listener
+	 * interface is invoked on it. Requests holding a shared lock on a page do not wait for each
+	 * other, so this must only be set for listener interfaces whose implementations neither modify
+	 * nor render the page, e.g. listeners that just stream a resource. Requests asking for the
+	 * exclusive lock while holding the shared one fail, and the page is detached and stored only
+	 * after the lock has been upgraded when the request is committed.
+	 * 
+	 * @param sharedPageLock
+	 * @return self
+	 * @throws IllegalStateException
+	 *             if set to {@code true} while the page is rendered after invocation, see
+	 *             {@link #setRenderPageAfterInvocation(boolean)}
+	 * @see org.apache.wicket.page.PageAccessSynchronizer
+	 */
+	public RequestListenerInterface setSharedPageLock(boolean sharedPageLock)
+	{
+		if (sharedPageLock && renderPageAfterInvocation)
+		{
+			throw new IllegalStateException("Listener interface " + name +
+				" renders the page after invocation and can not lock it in shared mode");
+		}
+		this.sharedPageLock = sharedPageLock;
+		return this;
+	}
+
+	/**
+	 * @return whether the page is locked in shared mode while this listener interface is invoked
+	 */
+	public boolean isSharedPageLock()
+	{
+		return sharedPageLock;
+	}
+
 	/**
 	 * @return The method for this request listener interface
 	 */
@@ -16,12 +16,18 @@
  */
 package org.apache.wicket;
 
+import org.apache.wicket.request.IRequestHandler;
+import org.apache.wicket.request.IRequestHandlerDelegate;
 import org.apache.wicket.request.component.IRequestablePage;
+import org.apache.wicket.request.handler.IPageClassRequestHandler;
+import org.apache.wicket.request.handler.resource.ResourceReferenceRequestHandler;
 import org.apache.wicket.request.mapper.BookmarkableMapper;
 import org.apache.wicket.request.mapper.BufferedResponseMapper;
 import org.apache.wicket.request.mapper.CompoundRequestMapper;
 import org.apache.wicket.request.mapper.HomePageMapper;
+import org.apache.wicket.request.mapper.MountedMapper;
 import org.apache.wicket.request.mapper.PageInstanceMapper;
+import org.apache.wicket.request.mapper.ResourceMapper;
 import org.apache.wicket.request.mapper.ResourceReferenceMapper;
 import org.apache.wicket.request.mapper.parameter.PageParametersEncoder;
 import org.apache.wicket.request.resource.caching.IResourceCachingStrategy;
@@ -55,6 +61,34 @@ public class SystemMapper extends CompoundRequestMapper
 		add(new BufferedResponseMapper());
 	}
 
+	/**
+	 * The key of the handlers for pages is the name of the page class, the key of the handlers for
+	 * resource references is the resource reference, as with {@link MountedMapper} and
+	 * {@link ResourceMapper}.
+	 * 
+	 * @see org.apache.wicket.request.mapper.CompoundRequestMapper#getHandlerKey(org.apache.wicket.request.IRequestHandler)
+	 */
+	@Override
+	protected Object getHandlerKey(IRequestHandler handler)
+	{
+		while (handler instanceof IRequestHandlerDelegate)
+		{
+			handler = ((IRequestHandlerDelegate)handler).getDelegateHandler();
+		}
+
+		if (handler instanceof IPageClassRequestHandler)
+		{
+			Class<? extends IRequestablePage> pageClass = ((IPageClassRequestHandler)handler)
+				.getPageClass();
+			return pageClass != null ? pageClass.getName() : null;
+		}
+		else if (handler instanceof ResourceReferenceRequestHandler)
+		{
+			return ((ResourceReferenceRequestHandler)handler).getResourceReference();
+		}
+		return null;
+	}
+
 	private IProvider<IResourceCachingStrategy> getResourceCachingStrategy()
 	{
 		return new IProvider<IResourceCachingStrategy>()
@@ -0,0 +1,351 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup;
+
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.wicket.behavior.Behavior;
+import org.apache.wicket.markup.parser.XmlTag;
+import org.apache.wicket.markup.parser.XmlTag.TagType;
+import org.apache.wicket.util.lang.Args;
+
+/**
+ * Writes and reads parsed {@link Markup}, i.e. the list of {@link MarkupElement}s after all markup
+ * filters have been applied, in a compact binary format. Reading it is much cheaper than parsing
+ * the markup again.
+ * <p>
+ * Only markup consisting of {@link RawMarkup}, {@link ComponentTag} and {@link WicketTag} elements
+ * can be written; the behaviors and user data which markup filters attached to the tags are written
+ * with java serialization. Custom markup elements added by application specific markup filters are
+ * not supported, see {@link #isCompilable(Markup)}.
+ * 
+ * @see org.apache.wicket.markup.loader.CompiledMarkupLoader
+ */
+public final class CompiledMarkup
+{
+	private static final byte RAW_MARKUP = 0;
+
+	private static final byte COMPONENT_TAG = 1;
+
+	private static final byte WICKET_TAG = 2;
+
+	private static final TagType[] TAG_TYPES = TagType.values();
+
+	/**
+	 * Construct.
+	 */
+	private CompiledMarkup()
+	{
+	}
+
+	/**
+	 * @param markup
+	 * @return <code>true</code> if the markup can be written by {@link #write(Markup, ObjectOutput)}
+	 */
+	public static boolean isCompilable(final Markup markup)
+	{
+		Args.notNull(markup, "markup");
+
+		if (markup.getClass() != Markup.class)
+		{
+			return false;
+		}
+		for (int i = 0; i < markup.size(); i++)
+		{
+			Class<?> type = markup.get(i).getClass();
+			if ((type != RawMarkup.class) && (type != ComponentTag.class) &&
+				(type != WicketTag.class))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Writes the markup elements and the properties of the markup resource stream which have been
+	 * set while parsing.
+	 * 
+	 * @param markup
+	 * @param out
+	 * @throws IOException
+	 * @throws NotSerializableException
+	 *             if the markup is not compilable or a behavior or user data of a tag is not
+	 *             serializable
+	 */
+	public static void write(final Markup markup, final ObjectOutput out) throws IOException
+	{
+		Args.notNull(out, "out");
+
+		if (isCompilable(markup) == false)
+		{
+			throw new NotSerializableException("Markup contains custom elements: " +
+				markup.locationAsString());
+		}
+
+		MarkupResourceStream resource = markup.getMarkupResourceStream();
+		writeString(out, resource.getEncoding());
+		writeString(out, resource.getDoctype());
+		writeString(out, resource.getWicketNamespace());
+
+		Map<MarkupElement, Integer> indexes = new IdentityHashMap<MarkupElement, Integer>();
+		out.writeInt(markup.size());
+		for (int i = 0; i < markup.size(); i++)
+		{
+			MarkupElement element = markup.get(i);
+			indexes.put(element, i);
+			if (element instanceof RawMarkup)
+			{
+				out.writeByte(RAW_MARKUP);
+				writeString(out, element.toCharSequence());
+			}
+			else
+			{
+				ComponentTag tag = (ComponentTag)element;
+				out.writeByte(tag instanceof WicketTag ? WICKET_TAG : COMPONENT_TAG);
+				writeTag(out, tag, indexes);
+			}
+		}
+	}
+
+	/**
+	 * Reads markup written by {@link #write(Markup, ObjectOutput)}. The markup is immutable like
+	 * the one returned by the {@link MarkupParser}.
+	 * 
+	 * @param markupResourceStream
+	 *            the resource stream of the markup, it gets the properties which were written
+	 * @param in
+	 * @return the markup
+	 * @throws IOException
+	 * @throws ClassNotFoundException
+	 *             if the class of a behavior or user data can not be found
+	 */
+	public static Markup read(final MarkupResourceStream markupResourceStream,
+		final ObjectInput in) throws IOException, ClassNotFoundException
+	{
+		Args.notNull(markupResourceStream, "markupResourceStream");
+		Args.notNull(in, "in");
+
+		markupResourceStream.setEncoding(readString(in));
+		String doctype = readString(in);
+		if (doctype != null)
+		{
+			markupResourceStream.setDoctype("!DOCTYPE " + doctype);
+		}
+		String wicketNamespace = readString(in);
+		if (wicketNamespace != null)
+		{
+			markupResourceStream.setWicketNamespace(wicketNamespace);
+		}
+
+		Markup markup = new Markup(markupResourceStream);
+		int size = in.readInt();
+		List<ComponentTag> tags = new ArrayList<ComponentTag>(size);
+		for (int i = 0; i < size; i++)
+		{
+			byte type = in.readByte();
+			if (type == RAW_MARKUP)
+			{
+				markup.addMarkupElement(new RawMarkup(readString(in)));
+				tags.add(null);
+			}
+			else
+			{
+				ComponentTag tag = readTag(in, type == WICKET_TAG, tags);
+				markup.addMarkupElement(tag);
+				tags.add(tag);
+			}
+		}
+		markup.makeImmutable();
+		return markup;
+	}
+
+	private static void writeTag(final ObjectOutput out, final ComponentTag tag,
+		final Map<MarkupElement, Integer> indexes) throws IOException
+	{
+		XmlTag xmlTag = tag.getXmlTag();
+		writeString(out, xmlTag.getName());
+		writeString(out, xmlTag.getNamespace());
+		out.writeByte(xmlTag.getType().ordinal());
+
+		// immutable tags keep their text only if they don't have attributes
+		if (xmlTag.getLength() > 0)
+		{
+			out.writeBoolean(true);
+			writeString(out, xmlTag.toCharSequence());
+			out.writeInt(xmlTag.getPos());
+			out.writeInt(xmlTag.getLineNumber());
+			out.writeInt(xmlTag.getColumnNumber());
+		}
+		else
+		{
+			out.writeBoolean(false);
+		}
+
+		if (xmlTag.hasAttributes())
+		{
+			Map<String, Object> attributes = xmlTag.getAttributes();
+			out.writeInt(attributes.size());
+			for (Map.Entry<String, Object> attribute : attributes.entrySet())
+			{
+				writeString(out, attribute.getKey());
+				Object value = attribute.getValue();
+				out.writeObject(value instanceof CharSequence ? value.toString() : value);
+			}
+		}
+		else
+		{
+			out.writeInt(0);
+		}
+
+		Integer openTag = tag.getOpenTag() != null ? indexes.get(tag.getOpenTag()) : null;
+		out.writeInt(openTag != null ? openTag : -1);
+		writeString(out, tag.getId());
+		out.writeInt(tag.getFlags());
+
+		List<Behavior> behaviors = new ArrayList<Behavior>();
+		Iterator<? extends Behavior> iterator = tag.getBehaviors();
+		while (iterator.hasNext())
+		{
+			behaviors.add(iterator.next());
+		}
+		out.writeInt(behaviors.size());
+		for (Behavior behavior : behaviors)
+		{
+			out.writeObject(behavior);
+		}
+
+		Map<String, Object> userData = tag.getUserData();
+		if (userData != null)
+		{
+			out.writeInt(userData.size());
+			for (Map.Entry<String, Object> entry : userData.entrySet())
+			{
+				if ((entry.getValue() != null) && !(entry.getValue() instanceof Serializable))
+				{
+					throw new NotSerializableException(entry.getValue().getClass().getName());
+				}
+				writeString(out, entry.getKey());
+				out.writeObject(entry.getValue());
+			}
+		}
+		else
+		{
+			out.writeInt(0);
+		}
+	}
+
+	private static ComponentTag readTag(final ObjectInput in, final boolean wicketTag,
+		final List<ComponentTag> tags) throws IOException, ClassNotFoundException
+	{
+		String name = readString(in);
+		String namespace = readString(in);
+		TagType type = TAG_TYPES[in.readByte()];
+
+		final XmlTag xmlTag;
+		if (in.readBoolean())
+		{
+			xmlTag = new XmlTag(readString(in), in.readInt(), in.readInt(), in.readInt(), type);
+		}
+		else
+		{
+			xmlTag = new XmlTag();
+			xmlTag.setType(type);
+		}
+		xmlTag.setName(name);
+		xmlTag.setNamespace(namespace);
+
+		int attributes = in.readInt();
+		for (int i = 0; i < attributes; i++)
+		{
+			xmlTag.getAttributes().put(readString(in), in.readObject());
+		}
+
+		ComponentTag tag = wicketTag ? new WicketTag(xmlTag) : new ComponentTag(xmlTag);
+
+		// the open tag of tags without close tag is the tag itself
+		int openTag = in.readInt();
+		if (openTag == tags.size())
+		{
+			tag.setOpenTag(tag);
+		}
+		else if (openTag != -1)
+		{
+			tag.setOpenTag(tags.get(openTag));
+		}
+		tag.setId(readString(in));
+		tag.setFlags(in.readInt());
+
+		int behaviors = in.readInt();
+		for (int i = 0; i < behaviors; i++)
+		{
+			tag.addBehavior((Behavior)in.readObject());
+		}
+
+		int userData = in.readInt();
+		for (int i = 0; i < userData; i++)
+		{
+			tag.setUserData(readString(in), in.readObject());
+		}
+		return tag;
+	}
+
+	/**
+	 * Writes the string as UTF-8 with its length, unlike {@link ObjectOutput#writeUTF(String)} it
+	 * is not limited to 64k.
+	 * 
+	 * @param out
+	 * @param string
+	 *            may be <code>null</code>
+	 * @throws IOException
+	 */
+	private static void writeString(final ObjectOutput out, final CharSequence string)
+		throws IOException
+	{
+		if (string == null)
+		{
+			out.writeInt(-1);
+		}
+		else
+		{
+			byte[] bytes = string.toString().getBytes("UTF-8");
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+	}
+
+	private static String readString(final ObjectInput in) throws IOException
+	{
+		int length = in.readInt();
+		if (length == -1)
+		{
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, "UTF-8");
+	}
+}
@@ -171,6 +171,25 @@ public class ComponentTag extends MarkupElement
 		return (flags & flag) != 0;
 	}
 
+	/**
+	 * @return all flags, e.g. to write them to compiled markup
+	 * @see CompiledMarkup
+	 */
+	final int getFlags()
+	{
+		return flags;
+	}
+
+	/**
+	 * @param flags
+	 *            all flags, e.g. read from compiled markup
+	 * @see CompiledMarkup
+	 */
+	final void setFlags(final int flags)
+	{
+		this.flags = flags;
+	}
+
 	/**
 	 * Adds a behavior to this component tag.
 	 * 
@@ -260,7 +279,9 @@ public class ComponentTag extends MarkupElement
 	 */
 	public final String getAttribute(String name)
 	{
-		return xmlTag.getAttributes().getString(name);
+		// does not copy the attributes of a mutable copy of an immutable tag
+		CharSequence value = xmlTag.getAttribute(name);
+		return (value != null) ? value.toString() : null;
 	}
 
 	/**
@@ -933,6 +954,15 @@ public class ComponentTag extends MarkupElement
 		userData.put(key, value);
 	}
 
+	/**
+	 * @return the user data or <code>null</code> if none has been set
+	 * @see CompiledMarkup
+	 */
+	final Map<String, Object> getUserData()
+	{
+		return userData;
+	}
+
 	/**
 	 * For subclasses to override. Gets called just before a Component gets rendered. It is
 	 * guaranteed that the markupStream is set on the Component and determineVisibility is not yet
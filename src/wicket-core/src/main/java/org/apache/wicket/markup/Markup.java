@@ -22,9 +22,11 @@ import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 
+import org.apache.wicket.Application;
 import org.apache.wicket.util.lang.Args;
 import org.apache.wicket.util.resource.ResourceStreamNotFoundException;
 import org.apache.wicket.util.string.AppendingStringBuffer;
+import org.apache.wicket.util.string.PreEncodedText;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -52,6 +54,12 @@ public class Markup implements IMarkupFragment
 	/** The associated markup file */
 	private final MarkupResourceStream markupResourceStream;
 
+	/** Whether the elements can no longer be changed */
+	private volatile boolean immutable;
+
+	/** The render plans by the index of their first element, created once they are needed */
+	private volatile RenderPlan[] renderPlans;
+
 	/**
 	 * Take the markup string, parse it and return the Markup (list of MarkupElements).
 	 * <p>
@@ -168,10 +176,18 @@ public class Markup implements IMarkupFragment
 	}
 
 	/**
-	 * Make all tags immutable and the list of elements unmodifiable.
+	 * Make all tags immutable and the list of elements unmodifiable. If enabled in the markup
+	 * settings, adjacent raw markup is merged into pre-encoded raw markup.
+	 * 
+	 * @see org.apache.wicket.settings.IMarkupSettings#setPreEncodeRawMarkup(boolean)
 	 */
 	final public void makeImmutable()
 	{
+		if (Application.exists() && Application.get().getMarkupSettings().getPreEncodeRawMarkup())
+		{
+			coalesceRawMarkup();
+		}
+
 		for (MarkupElement markupElement : markupElements)
 		{
 			if (markupElement instanceof ComponentTag)
@@ -182,6 +198,74 @@ public class Markup implements IMarkupFragment
 		}
 
 		markupElements = Collections.unmodifiableList(markupElements);
+		immutable = true;
+	}
+
+	/**
+	 * Gets the render plan for the elements from the index up to the close tag of the preceding
+	 * open tag. The plans are computed once and kept with the markup.
+	 * 
+	 * @param index
+	 *            the index of the first element
+	 * @return the render plan, or null if the markup is not immutable yet
+	 */
+	public final RenderPlan getRenderPlan(final int index)
+	{
+		if (immutable == false)
+		{
+			return null;
+		}
+
+		RenderPlan[] plans = renderPlans;
+		if (plans == null)
+		{
+			// a concurrent request might create the plans twice, which does not matter
+			plans = new RenderPlan[markupElements.size() + 1];
+			renderPlans = plans;
+		}
+
+		RenderPlan plan = plans[index];
+		if (plan == null)
+		{
+			plan = RenderPlan.of(this, index);
+			plans[index] = plan;
+		}
+		return plan;
+	}
+
+	/**
+	 * Replaces each run of adjacent raw markup elements by a single raw markup element keeping its
+	 * encoded form.
+	 */
+	private void coalesceRawMarkup()
+	{
+		List<MarkupElement> elements = new ArrayList<MarkupElement>(markupElements.size());
+		int index = 0;
+		while (index < markupElements.size())
+		{
+			MarkupElement element = markupElements.get(index++);
+			if (element instanceof RawMarkup)
+			{
+				CharSequence text = element.toCharSequence();
+				if ((index < markupElements.size()) &&
+					(markupElements.get(index) instanceof RawMarkup))
+				{
+					StringBuilder builder = new StringBuilder(text);
+					while ((index < markupElements.size()) &&
+						(markupElements.get(index) instanceof RawMarkup))
+					{
+						builder.append(markupElements.get(index++).toCharSequence());
+					}
+					text = builder;
+				}
+				if (text instanceof PreEncodedText == false)
+				{
+					element = new RawMarkup(new PreEncodedText(text));
+				}
+			}
+			elements.add(element);
+		}
+		markupElements = elements;
 	}
 
 	public final IMarkupFragment find(final String id)
@@ -16,16 +16,26 @@
  */
 package org.apache.wicket.markup;
 
+import java.util.AbstractCollection;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.wicket.Application;
 import org.apache.wicket.MarkupContainer;
 import org.apache.wicket.WicketRuntimeException;
 import org.apache.wicket.settings.IMarkupSettings;
 import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.lang.Bytes;
 import org.apache.wicket.util.listener.IChangeListener;
+import org.apache.wicket.util.time.Duration;
 import org.apache.wicket.util.watch.IModifiable;
 import org.apache.wicket.util.watch.IModificationWatcher;
 import org.apache.wicket.util.watch.ModificationWatcher;
@@ -64,6 +74,20 @@ public class MarkupCache implements IMarkupCache
 	 */
 	private final ICache<String, String> markupKeyCache;
 
+	/**
+	 * The markup currently being loaded: cacheKey => load. Concurrent requests for the same markup
+	 * wait for the same load instead of loading the markup again.
+	 */
+	private final ConcurrentMap<String, MarkupLoad> markupLoads = new ConcurrentHashMap<String, MarkupLoad>();
+
+	private final AtomicLong hits = new AtomicLong();
+
+	private final AtomicLong misses = new AtomicLong();
+
+	private final AtomicLong loads = new AtomicLong();
+
+	private final AtomicLong loadNanos = new AtomicLong();
+
 	/** The markup cache key provider used by MarkupCache */
 	private IMarkupCacheKeyProvider markupCacheKeyProvider;
 
@@ -249,6 +273,57 @@ public class MarkupCache implements IMarkupCache
 		return markupCache.size();
 	}
 
+	/**
+	 * @return the number of lookups which found the markup in the cache
+	 */
+	public final long getHitCount()
+	{
+		return hits.get();
+	}
+
+	/**
+	 * @return the number of lookups which did not find the markup in the cache
+	 */
+	public final long getMissCount()
+	{
+		return misses.get();
+	}
+
+	/**
+	 * @return the number of entries which have been evicted to stay within the maximum size of the
+	 *         cache
+	 * @see IMarkupSettings#setMarkupCacheMaxSize(Bytes)
+	 */
+	public final long getEvictionCount()
+	{
+		long count = 0;
+		if (markupCache instanceof BoundedCacheImplementation)
+		{
+			count += ((BoundedCacheImplementation<?, ?>)markupCache).getEvictionCount();
+		}
+		if (markupKeyCache instanceof BoundedCacheImplementation)
+		{
+			count += ((BoundedCacheImplementation<?, ?>)markupKeyCache).getEvictionCount();
+		}
+		return count;
+	}
+
+	/**
+	 * @return the number of markup files which have been loaded
+	 */
+	public final long getLoadCount()
+	{
+		return loads.get();
+	}
+
+	/**
+	 * @return the total time spent loading markup files, including inherited markup
+	 */
+	public final Duration getLoadTime()
+	{
+		return Duration.milliseconds(loadNanos.get() / 1000000);
+	}
+
 	/**
 	 * Get a unmodifiable map which contains the cached data. The map key is of type String and the
 	 * value is of type Markup.
@@ -277,31 +352,26 @@ public class MarkupCache implements IMarkupCache
 		if ((enforceReload == false) && (cacheKey != null))
 		{
 			markup = getMarkupFromCache(cacheKey, container);
+			if (markup != null)
+			{
+				hits.incrementAndGet();
+			}
+			else
+			{
+				misses.incrementAndGet();
+			}
 		}
 
 		// If markup not found in cache or cache disabled, than ...
 		if (markup == null)
 		{
-			if (log.isDebugEnabled())
-			{
-				log.debug("Load markup: cacheKey=" + cacheKey);
-			}
-
-			// Get the markup resource stream for the container
-			final MarkupResourceStream resourceStream = MarkupFactory.get()
-				.getMarkupResourceStream(container, containerClass);
-
-			// Found markup?
-			if (resourceStream != null)
+			if ((enforceReload == false) && (cacheKey != null))
 			{
-				resourceStream.setCacheKey(cacheKey);
-
-				// load the markup and watch for changes
-				markup = loadMarkupAndWatchForChanges(container, resourceStream, enforceReload);
+				markup = loadMarkupOnce(container, containerClass, cacheKey);
 			}
 			else
 			{
-				markup = onMarkupNotFound(cacheKey, container, Markup.NO_MARKUP);
+				markup = locateAndLoadMarkup(container, containerClass, cacheKey, enforceReload);
 			}
 		}
 
@@ -314,6 +384,107 @@ public class MarkupCache implements IMarkupCache
 		return markup;
 	}
 
+	/**
+	 * Loads the markup unless another thread is loading the markup with the same cache key
+	 * already, in which case that load is waited for and its markup is returned.
+	 * 
+	 * @param container
+	 * @param containerClass
+	 * @param cacheKey
+	 * @return The markup. Markup.NO_MARKUP, if not found.
+	 */
+	private Markup loadMarkupOnce(final MarkupContainer container, final Class<?> containerClass,
+		final String cacheKey)
+	{
+		MarkupLoad load = new MarkupLoad(new Callable<Markup>()
+		{
+			public Markup call() throws Exception
+			{
+				return locateAndLoadMarkup(container, containerClass, cacheKey, false);
+			}
+		});
+
+		MarkupLoad running = markupLoads.putIfAbsent(cacheKey, load);
+		if (running == null)
+		{
+			try
+			{
+				load.run();
+			}
+			finally
+			{
+				markupLoads.remove(cacheKey, load);
+			}
+			running = load;
+		}
+		else if (running.thread == Thread.currentThread())
+		{
+			// the markup is requested while loading it, waiting would never end
+			return locateAndLoadMarkup(container, containerClass, cacheKey, false);
+		}
+		else if (log.isDebugEnabled())
+		{
+			log.debug("Wait for markup being loaded by another thread: cacheKey=" + cacheKey);
+		}
+
+		try
+		{
+			return running.get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new WicketRuntimeException("Interrupted while waiting for markup: " + cacheKey,
+				e);
+		}
+		catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException)
+			{
+				throw (RuntimeException)cause;
+			}
+			else if (cause instanceof Error)
+			{
+				throw (Error)cause;
+			}
+			throw new WicketRuntimeException(cause);
+		}
+	}
+
+	/**
+	 * Locates the markup resource stream and loads the markup.
+	 * 
+	 * @param container
+	 * @param containerClass
+	 * @param cacheKey
+	 *            If null, than the cache will be ignored
+	 * @param enforceReload
+	 * @return The markup. Markup.NO_MARKUP, if not found.
+	 */
+	private Markup locateAndLoadMarkup(final MarkupContainer container,
+		final Class<?> containerClass, final String cacheKey, final boolean enforceReload)
+	{
+		if (log.isDebugEnabled())
+		{
+			log.debug("Load markup: cacheKey=" + cacheKey);
+		}
+
+		// Get the markup resource stream for the container
+		final MarkupResourceStream resourceStream = MarkupFactory.get().getMarkupResourceStream(
+			container, containerClass);
+
+		// Found markup?
+		if (resourceStream != null)
+		{
+			resourceStream.setCacheKey(cacheKey);
+
+			// load the markup and watch for changes
+			return loadMarkupAndWatchForChanges(container, resourceStream, enforceReload);
+		}
+		return onMarkupNotFound(cacheKey, container, Markup.NO_MARKUP);
+	}
+
 	/**
 	 * Will be called if the markup was not in the cache yet and could not be found either.
 	 * <p>
@@ -379,13 +550,12 @@ public class MarkupCache implements IMarkupCache
 			}
 			else
 			{
-				// We don't lock the cache while loading a markup. Thus it may
-				// happen that the very same markup gets loaded twice (the first
-				// markup being loaded, but not yet in the cache, and another
-				// request requesting the very same markup). Since markup
-				// loading in avg takes less than 100ms, it is not really an
-				// issue. For consistency reasons however, we should always use
-				// the markup loaded first which is why it gets returned.
+				// We don't lock the cache while loading a markup. Concurrent
+				// requests with the same cache key share a single load, but
+				// different cache keys may resolve to the very same markup
+				// file (e.g. a locale without a localized file), which thus may
+				// get loaded twice. For consistency reasons we should always
+				// use the markup loaded first which is why it gets returned.
 				markup = markupCache.get(locationString);
 			}
 		}
@@ -439,8 +609,11 @@ public class MarkupCache implements IMarkupCache
 			locationString = cacheKey;
 		}
 
+		long start = System.nanoTime();
 		Markup markup = MarkupFactory.get().loadMarkup(container, markupResourceStream,
 			enforceReload);
+		loads.incrementAndGet();
+		loadNanos.addAndGet(System.nanoTime() - start);
 		if (markup != null)
 		{
 			if (cacheKey != null)
@@ -555,9 +728,24 @@ public class MarkupCache implements IMarkupCache
 		return markupCacheKeyProvider;
 	}
 
+	/**
+	 * A load of markup which other threads can wait for
+	 */
+	private static final class MarkupLoad extends FutureTask<Markup>
+	{
+		/** the thread loading the markup */
+		private final Thread thread = Thread.currentThread();
+
+		private MarkupLoad(final Callable<Markup> callable)
+		{
+			super(callable);
+		}
+	}
+
 	/**
 	 * Allows you to change the map implementation which will hold the cache data. By default it is
-	 * a ConcurrentHashMap() in order to allow multiple thread to access the data in a secure way.
+	 * a ConcurrentHashMap() in order to allow multiple thread to access the data in a secure way,
+	 * or a {@link BoundedCacheImplementation} if a maximum size is set in the markup settings.
 	 * 
 	 * @param <K>
 	 * @param <V>
@@ -565,6 +753,11 @@ public class MarkupCache implements IMarkupCache
 	 */
 	protected <K, V> ICache<K, V> newCacheImplementation()
 	{
+		Bytes maxSize = application.getMarkupSettings().getMarkupCacheMaxSize();
+		if (maxSize.bytes() < Bytes.MAX.bytes())
+		{
+			return new BoundedCacheImplementation<K, V>(maxSize);
+		}
 		return new DefaultCacheImplementation<K, V>();
 	}
 
@@ -719,4 +912,355 @@ public class MarkupCache implements IMarkupCache
 			clear();
 		}
 	}
+
+	/**
+	 * A cache bounded by the estimated size of its entries.
+	 * <p>
+	 * Lookups do not lock, they just count how often an entry has been used. When the cache is too
+	 * big, the entries are examined in the order they have been put into the cache: entries which
+	 * have been used are moved to the end with their count decremented, the first entry which has
+	 * not been used since is evicted. Thus frequently used markup survives markup which is used only
+	 * once, e.g. for rare combinations of locale, style and variation.
+	 * 
+	 * @param <K>
+	 * @param <V>
+	 */
+	public static class BoundedCacheImplementation<K, V> implements ICache<K, V>
+	{
+		/** the highest use count, so an entry which is not used anymore is evicted eventually */
+		private static final int MAX_FREQUENCY = 7;
+
+		private final long maxWeight;
+
+		private final ConcurrentHashMap<K, Entry<K, V>> cache = new ConcurrentHashMap<K, Entry<K, V>>();
+
+		/** guards the queue of entries and the weight */
+		private final ReentrantLock lock = new ReentrantLock();
+
+		/** the head of the queue, the entry put first is next to it */
+		private final Entry<K, V> head = new Entry<K, V>(null, null, 0);
+
+		private volatile long weight;
+
+		private final AtomicLong evictions = new AtomicLong();
+
+		/**
+		 * Construct.
+		 * 
+		 * @param maxSize
+		 *            the maximum estimated size of the cached keys and values
+		 */
+		public BoundedCacheImplementation(final Bytes maxSize)
+		{
+			Args.notNull(maxSize, "maxSize");
+
+			maxWeight = maxSize.bytes();
+			head.previous = head;
+			head.next = head;
+		}
+
+		public void clear()
+		{
+			lock.lock();
+			try
+			{
+				cache.clear();
+				head.previous = head;
+				head.next = head;
+				weight = 0;
+			}
+			finally
+			{
+				lock.unlock();
+			}
+		}
+
+		public boolean containsKey(final Object key)
+		{
+			if (key == null)
+			{
+				return false;
+			}
+			return cache.containsKey(key);
+		}
+
+		public V get(final Object key)
+		{
+			if (key == null)
+			{
+				return null;
+			}
+			Entry<K, V> entry = cache.get(key);
+			if (entry == null)
+			{
+				return null;
+			}
+			if (entry.frequency < MAX_FREQUENCY)
+			{
+				entry.frequency++;
+			}
+			return entry.value;
+		}
+
+		public Collection<K> getKeys()
+		{
+			return Collections.unmodifiableSet(cache.keySet());
+		}
+
+		public Collection<V> getValues()
+		{
+			return new AbstractCollection<V>()
+			{
+				@Override
+				public Iterator<V> iterator()
+				{
+					final Iterator<Entry<K, V>> entries = cache.values().iterator();
+					return new Iterator<V>()
+					{
+						private Entry<K, V> current;
+
+						public boolean hasNext()
+						{
+							return entries.hasNext();
+						}
+
+						public V next()
+						{
+							current = entries.next();
+							return current.value;
+						}
+
+						public void remove()
+						{
+							if (current == null)
+							{
+								throw new IllegalStateException();
+							}
+							removeEntry(current);
+							current = null;
+						}
+					};
+				}
+
+				@Override
+				public int size()
+				{
+					return cache.size();
+				}
+			};
+		}
+
+		public void put(final K key, final V value)
+		{
+			Entry<K, V> entry = new Entry<K, V>(key, value, weigh(key, value));
+
+			lock.lock();
+			try
+			{
+				Entry<K, V> previous = cache.put(key, entry);
+				if (previous != null)
+				{
+					unlink(previous);
+				}
+				entry.linkBefore(head);
+				weight += entry.weight;
+
+				evict();
+			}
+			finally
+			{
+				lock.unlock();
+			}
+		}
+
+		public boolean remove(final K key)
+		{
+			if (key == null)
+			{
+				return false;
+			}
+
+			lock.lock();
+			try
+			{
+				Entry<K, V> entry = cache.remove(key);
+				if (entry != null)
+				{
+					unlink(entry);
+					return true;
+				}
+				return false;
+			}
+			finally
+			{
+				lock.unlock();
+			}
+		}
+
+		public int size()
+		{
+			return cache.size();
+		}
+
+		public void shutdown()
+		{
+			clear();
+		}
+
+		/**
+		 * @return the estimated size of the cached keys and values
+		 */
+		public Bytes getSize()
+		{
+			return Bytes.bytes(weight);
+		}
+
+		/**
+		 * @return the number of entries which have been evicted to stay within the maximum size
+		 */
+		public long getEvictionCount()
+		{
+			return evictions.get();
+		}
+
+		/**
+		 * Estimates the memory held by an entry. Markup is estimated by the length of its elements,
+		 * character sequences by their length.
+		 * 
+		 * @param key
+		 * @param value
+		 * @return the estimated size in bytes
+		 */
+		protected long weigh(final K key, final V value)
+		{
+			return 32 + estimateSize(key) + estimateSize(value);
+		}
+
+		private static long estimateSize(final Object object)
+		{
+			if (object instanceof Markup)
+			{
+				Markup markup = (Markup)object;
+				long size = 64;
+				for (int i = 0; i < markup.size(); i++)
+				{
+					size += 48 + 2 * markup.get(i).toCharSequence().length();
+				}
+				return size;
+			}
+			else if (object instanceof CharSequence)
+			{
+				return 40 + 2 * ((CharSequence)object).length();
+			}
+			return 16;
+		}
+
+		private void removeEntry(final Entry<K, V> entry)
+		{
+			lock.lock();
+			try
+			{
+				if (cache.remove(entry.key, entry))
+				{
+					unlink(entry);
+				}
+			}
+			finally
+			{
+				lock.unlock();
+			}
+		}
+
+		/**
+		 * Evicts entries until the cache is within its maximum size. Must be called while holding
+		 * the lock.
+		 */
+		private void evict()
+		{
+			while ((weight > maxWeight) && (head.next != head))
+			{
+				Entry<K, V> entry = head.next;
+				if (entry.frequency > 0)
+				{
+					entry.frequency--;
+					entry.unlinkFromQueue();
+					entry.linkBefore(head);
+				}
+				else
+				{
+					cache.remove(entry.key, entry);
+					unlink(entry);
+					evictions.incrementAndGet();
+					onEvicted(entry.key, entry.value);
+				}
+			}
+		}
+
+		/**
+		 * Called after an entry has been evicted to stay within the maximum size, while holding the
+		 * lock of the cache. Thus it must not access the cache.
+		 * 
+		 * @param key
+		 * @param value
+		 */
+		protected void onEvicted(final K key, final V value)
+		{
+		}
+
+		/**
+		 * Must be called while holding the lock.
+		 * 
+		 * @param entry
+		 */
+		private void unlink(final Entry<K, V> entry)
+		{
+			entry.unlinkFromQueue();
+			weight -= entry.weight;
+		}
+
+		/**
+		 * A cached value and its position in the queue
+		 * 
+		 * @param <K>
+		 * @param <V>
+		 */
+		private static final class Entry<K, V>
+		{
+			private final K key;
+
+			private final V value;
+
+			private final long weight;
+
+			/** incremented by lookups without locking, lost updates do not matter */
+			private volatile int frequency;
+
+			private Entry<K, V> previous;
+
+			private Entry<K, V> next;
+
+			private Entry(final K key, final V value, final long weight)
+			{
+				this.key = key;
+				this.value = value;
+				this.weight = weight;
+			}
+
+			private void linkBefore(final Entry<K, V> head)
+			{
+				previous = head.previous;
+				next = head;
+				head.previous.next = this;
+				head.previous = this;
+			}
+
+			private void unlinkFromQueue()
+			{
+				previous.next = next;
+				next.previous = previous;
+				previous = null;
+				next = null;
+			}
+		}
+	}
 }
@@ -119,7 +119,9 @@ public class MarkupFactory
 	}
 
 	/**
-	 * Subclasses can override this to use custom parsers.
+	 * Subclasses can override this to use custom parsers, e.g.
+	 * {@link org.apache.wicket.markup.parser.CharArrayXmlPullParser} which allocates less for large
+	 * markup files.
 	 * 
 	 * @return parser instance used by {@link MarkupParser} to parse markup.
 	 */
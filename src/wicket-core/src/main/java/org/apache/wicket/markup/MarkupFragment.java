@@ -205,6 +205,24 @@ public class MarkupFragment implements IMarkupFragment
 		return (Markup)markup;
 	}
 
+	/**
+	 * @param index
+	 *            the index of an element of this fragment
+	 * @return the index of the element in the {@link #getRootMarkup() root markup}, -1 if this
+	 *         fragment is not part of a markup file
+	 */
+	final int getRootIndex(final int index)
+	{
+		int rootIndex = startIndex + index;
+		IMarkupFragment parent = markup;
+		while (parent instanceof MarkupFragment)
+		{
+			rootIndex += ((MarkupFragment)parent).startIndex;
+			parent = ((MarkupFragment)parent).markup;
+		}
+		return (parent instanceof Markup) ? rootIndex : -1;
+	}
+
 	@Override
 	public String toString()
 	{
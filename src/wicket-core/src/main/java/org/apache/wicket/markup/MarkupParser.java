@@ -18,6 +18,7 @@ package org.apache.wicket.markup;
 
 import java.util.ArrayList;
 
+import org.apache.wicket.Application;
 import org.apache.wicket.Page;
 import org.apache.wicket.markup.html.form.AutoLabelTagHandler;
 import org.apache.wicket.markup.parser.IMarkupFilter;
@@ -28,6 +29,7 @@ import org.apache.wicket.markup.parser.filter.HeadForceTagIdHandler;
 import org.apache.wicket.markup.parser.filter.HtmlHandler;
 import org.apache.wicket.markup.parser.filter.HtmlHeaderSectionHandler;
 import org.apache.wicket.markup.parser.filter.InlineEnclosureHandler;
+import org.apache.wicket.markup.parser.filter.MarkupMinifier;
 import org.apache.wicket.markup.parser.filter.OpenCloseTagExpander;
 import org.apache.wicket.markup.parser.filter.RelativePathPrefixHandler;
 import org.apache.wicket.markup.parser.filter.StyleAndScriptIdentifier;
@@ -36,6 +38,7 @@ import org.apache.wicket.markup.parser.filter.WicketMessageTagHandler;
 import org.apache.wicket.markup.parser.filter.WicketNamespaceHandler;
 import org.apache.wicket.markup.parser.filter.WicketRemoveTagHandler;
 import org.apache.wicket.markup.parser.filter.WicketTagIdentifier;
+import org.apache.wicket.settings.IResourceSettings;
 import org.apache.wicket.util.lang.Objects;
 
 /**
@@ -177,6 +180,14 @@ public class MarkupParser extends AbstractMarkupParser
 		filters.add(new StyleAndScriptIdentifier(markup), StyleAndScriptIdentifier.class);
 		filters.add(new ConditionalCommentFilter());
 
+		// Append it, so it minifies the bodies of scripts and styles before they are wrapped
+		if (Application.get().getMarkupSettings().getMinifyMarkup())
+		{
+			IResourceSettings resourceSettings = Application.get().getResourceSettings();
+			filters.add(new MarkupMinifier(resourceSettings.getJavaScriptCompressor(),
+				resourceSettings.getCssCompressor()), null);
+		}
+
 		return filters;
 	}
 
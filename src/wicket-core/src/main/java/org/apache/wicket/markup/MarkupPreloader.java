@@ -0,0 +1,348 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.wicket.Application;
+import org.apache.wicket.MarkupContainer;
+import org.apache.wicket.Page;
+import org.apache.wicket.Session;
+import org.apache.wicket.ThreadContext;
+import org.apache.wicket.WicketRuntimeException;
+import org.apache.wicket.markup.html.border.Border;
+import org.apache.wicket.markup.html.panel.Panel;
+import org.apache.wicket.mock.MockWebRequest;
+import org.apache.wicket.mock.MockWebResponse;
+import org.apache.wicket.request.IRequestMapper;
+import org.apache.wicket.request.Url;
+import org.apache.wicket.request.component.IRequestablePage;
+import org.apache.wicket.request.cycle.RequestCycle;
+import org.apache.wicket.request.mapper.ICompoundRequestMapper;
+import org.apache.wicket.request.mapper.MountedMapper;
+import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.time.Duration;
+import org.apache.wicket.util.time.Time;
+import org.apache.wicket.util.visit.IVisit;
+import org.apache.wicket.util.visit.IVisitor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Loads the markup of pages into the markup cache before they are requested the first time, so
+ * the first users after a deployment do not have to wait for the markup to be parsed and merged.
+ * <p>
+ * The pages are instantiated to load their markup, along with the markup of the panels and borders
+ * they contain, once for every combination of the locales and styles. This is done in several
+ * threads which are bound to the application and to a session with the locale and style, but to a
+ * request cycle with mock request and response only. Thus the pages' constructors must not depend
+ * on the request, pages which fail to be instantiated are skipped.
+ * 
+ * <pre>
+ * protected void init()
+ * {
+ * 	super.init();
+ * 	mountPage(&quot;/products&quot;, ProductsPage.class);
+ * 
+ * 	new MarkupPreloader(this).addMountedPages().setLocales(Locale.ENGLISH, Locale.GERMAN).preload();
+ * }
+ * </pre>
+ * 
+ * @see MarkupCache
+ */
+public class MarkupPreloader
+{
+	private static final Logger log = LoggerFactory.getLogger(MarkupPreloader.class);
+
+	private final Application application;
+
+	private final Set<Class<? extends Page>> pageClasses = new LinkedHashSet<Class<? extends Page>>();
+
+	private List<Locale> locales = Arrays.asList(Locale.getDefault());
+
+	private List<String> styles = Arrays.asList((String)null);
+
+	private int threads = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * Construct.
+	 * 
+	 * @param application
+	 */
+	public MarkupPreloader(final Application application)
+	{
+		Args.notNull(application, "application");
+
+		this.application = application;
+	}
+
+	/**
+	 * Adds a page whose markup is loaded.
+	 * 
+	 * @param pageClass
+	 * @return this
+	 */
+	public MarkupPreloader addPage(final Class<? extends Page> pageClass)
+	{
+		Args.notNull(pageClass, "pageClass");
+
+		pageClasses.add(pageClass);
+		return this;
+	}
+
+	/**
+	 * Adds the home page and all pages mounted with {@link MountedMapper}s to the root request
+	 * mapper of the application.
+	 * 
+	 * @return this
+	 */
+	public MarkupPreloader addMountedPages()
+	{
+		Class<? extends Page> homePage = application.getHomePage();
+		if (homePage != null)
+		{
+			addPage(homePage);
+		}
+		addMountedPages(application.getRootRequestMapper());
+		return this;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void addMountedPages(final IRequestMapper mapper)
+	{
+		if (mapper instanceof MountedMapper)
+		{
+			Class<? extends IRequestablePage> pageClass = ((MountedMapper)mapper).getPageClass();
+			if ((pageClass != null) && Page.class.isAssignableFrom(pageClass))
+			{
+				addPage((Class<? extends Page>)pageClass);
+			}
+		}
+		else if (mapper instanceof ICompoundRequestMapper)
+		{
+			for (IRequestMapper child : (ICompoundRequestMapper)mapper)
+			{
+				addMountedPages(child);
+			}
+		}
+	}
+
+	/**
+	 * Sets the locales the markup is loaded for, the default locale of the JVM by default.
+	 * 
+	 * @param locales
+	 * @return this
+	 */
+	public MarkupPreloader setLocales(final Locale... locales)
+	{
+		Args.notNull(locales, "locales");
+		if (locales.length == 0)
+		{
+			throw new IllegalArgumentException("At least one locale is required");
+		}
+
+		this.locales = Arrays.asList(locales);
+		return this;
+	}
+
+	/**
+	 * Sets the styles the markup is loaded for, no style by default.
+	 * 
+	 * @param styles
+	 *            the styles, <code>null</code> for no style
+	 * @return this
+	 */
+	public MarkupPreloader setStyles(final String... styles)
+	{
+		Args.notNull(styles, "styles");
+		if (styles.length == 0)
+		{
+			throw new IllegalArgumentException("At least one style is required");
+		}
+
+		this.styles = Arrays.asList(styles);
+		return this;
+	}
+
+	/**
+	 * Sets the number of threads loading the markup, the number of available processors by
+	 * default.
+	 * 
+	 * @param threads
+	 * @return this
+	 */
+	public MarkupPreloader setThreads(final int threads)
+	{
+		if (threads < 1)
+		{
+			throw new IllegalArgumentException("At least one thread is required");
+		}
+
+		this.threads = threads;
+		return this;
+	}
+
+	/**
+	 * Loads the markup of the pages for every combination of locale and style and waits until it
+	 * has been loaded.
+	 * 
+	 * @return the number of pages whose markup has been loaded, for each locale and style
+	 */
+	public int preload()
+	{
+		List<Callable<Boolean>> tasks = new ArrayList<Callable<Boolean>>();
+		for (final Class<? extends Page> pageClass : pageClasses)
+		{
+			for (final Locale locale : locales)
+			{
+				for (final String style : styles)
+				{
+					tasks.add(new Callable<Boolean>()
+					{
+						public Boolean call()
+						{
+							return preloadPage(pageClass, locale, style);
+						}
+					});
+				}
+			}
+		}
+
+		Time start = Time.now();
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, Math.max(1,
+			tasks.size())), new PreloaderThreadFactory(application.getName()));
+		try
+		{
+			int count = 0;
+			for (Future<Boolean> future : executor.invokeAll(tasks))
+			{
+				if (future.get())
+				{
+					count++;
+				}
+			}
+
+			if (log.isInfoEnabled())
+			{
+				log.info("Preloaded the markup of " + count + " out of " + tasks.size() +
+					" pages in " + Duration.elapsed(start));
+			}
+			return count;
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new WicketRuntimeException("Interrupted while preloading markup", e);
+		}
+		catch (ExecutionException e)
+		{
+			throw new WicketRuntimeException(e.getCause());
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Loads the markup of a page and of the panels and borders it contains, in the current thread.
+	 * 
+	 * @param pageClass
+	 * @param locale
+	 * @param style
+	 * @return true if the page's markup has been found
+	 */
+	protected boolean preloadPage(final Class<? extends Page> pageClass, final Locale locale,
+		final String style)
+	{
+		ThreadContext.setApplication(application);
+		try
+		{
+			MockWebRequest request = new MockWebRequest(Url.parse(""));
+			MockWebResponse response = new MockWebResponse();
+			RequestCycle requestCycle = application.createRequestCycle(request, response);
+			ThreadContext.setRequestCycle(requestCycle);
+
+			Session session = application.newSession(request, response);
+			session.setLocale(locale);
+			session.setStyle(style);
+			ThreadContext.setSession(session);
+
+			Page page = (Page)application.getPageFactory().newPage(pageClass);
+			if (page.getAssociatedMarkup() == null)
+			{
+				return false;
+			}
+
+			page.visitChildren(MarkupContainer.class, new IVisitor<MarkupContainer, Void>()
+			{
+				public void component(final MarkupContainer container, final IVisit<Void> visit)
+				{
+					if ((container instanceof Panel) || (container instanceof Border))
+					{
+						container.getAssociatedMarkup();
+					}
+				}
+			});
+			return true;
+		}
+		catch (RuntimeException e)
+		{
+			log.warn("Failed to preload the markup of " + pageClass.getName() + " for locale " +
+				locale + " and style " + style, e);
+			return false;
+		}
+		finally
+		{
+			ThreadContext.detach();
+		}
+	}
+
+	/**
+	 * Creates daemon threads, so the preloading does not keep the JVM from exiting
+	 */
+	private static class PreloaderThreadFactory implements ThreadFactory
+	{
+		private final String name;
+
+		private final AtomicInteger count = new AtomicInteger();
+
+		private PreloaderThreadFactory(final String applicationName)
+		{
+			name = "Wicket-MarkupPreloader-" + applicationName + "-";
+		}
+
+		public Thread newThread(final Runnable runnable)
+		{
+			Thread thread = new Thread(runnable, name + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
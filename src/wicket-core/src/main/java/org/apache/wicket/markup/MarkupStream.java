@@ -477,6 +477,38 @@ public class MarkupStream
 		throwMarkupException("Expected close tag for " + openTag);
 	}
 
+	/**
+	 * Gets the render plan for the elements from the current position up to the close tag of the
+	 * preceding open tag.
+	 * 
+	 * @return the render plan, or null if there is none for this markup
+	 * @see RenderPlan
+	 */
+	public final RenderPlan getRenderPlan()
+	{
+		RenderPlan plan = null;
+		if (markup instanceof Markup)
+		{
+			plan = ((Markup)markup).getRenderPlan(currentIndex);
+		}
+		else if (markup instanceof MarkupFragment)
+		{
+			MarkupFragment fragment = (MarkupFragment)markup;
+			int rootIndex = fragment.getRootIndex(currentIndex);
+			if (rootIndex != -1)
+			{
+				plan = fragment.getRootMarkup().getRenderPlan(rootIndex);
+			}
+		}
+
+		// the plan must not exceed this markup fragment
+		if ((plan != null) && (currentIndex + plan.getEnd() > markup.size()))
+		{
+			plan = null;
+		}
+		return plan;
+	}
+
 	/**
 	 * @return A markup fragment starting at the current position
 	 */
@@ -84,6 +84,8 @@ public class MergedMarkup extends Markup
 		// Merge derived and base markup
 		merge(markup, baseMarkup, extendIndex);
 
+		makeImmutable();
+
 		if (log.isDebugEnabled())
 		{
 			log.debug("Merge markup: " + toString());
@@ -16,6 +16,9 @@
  */
 package org.apache.wicket.markup;
 
+import org.apache.wicket.request.Response;
+import org.apache.wicket.util.string.PreEncodedText;
+
 /**
  * This class is for framework purposes only, which is why the class is (default) protected.
  * <p>
@@ -33,7 +36,7 @@ public final class RawMarkup extends MarkupElement
 	 * Create a RawMarkup element referencing an uninterpreted markup string.
 	 * 
 	 * @param string
-	 *            The raw markup
+	 *            The raw markup, possibly a {@link PreEncodedText}
 	 */
 	public RawMarkup(final CharSequence string)
 	{
@@ -96,6 +99,24 @@ public final class RawMarkup extends MarkupElement
 		return string;
 	}
 
+	/**
+	 * Writes the raw markup to the response, along with its encoded form if it is pre-encoded.
+	 * 
+	 * @param response
+	 * @see org.apache.wicket.settings.IMarkupSettings#setPreEncodeRawMarkup(boolean)
+	 */
+	public void writeOutput(final Response response)
+	{
+		if (string instanceof PreEncodedText)
+		{
+			response.writePreEncoded((PreEncodedText)string);
+		}
+		else
+		{
+			response.write(string);
+		}
+	}
+
 	/**
 	 * @return This raw markup string
 	 */
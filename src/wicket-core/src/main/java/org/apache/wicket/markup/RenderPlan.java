@@ -0,0 +1,192 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup;
+
+/**
+ * The elements of a markup which a container renders one after another: the raw markup in
+ * between its children and the open tags of its children, whose bodies are skipped because the
+ * children render them. It is computed once per position in an immutable {@link Markup}, so
+ * rendering does not have to walk the markup stream to skip the bodies of the children.
+ * <p>
+ * The plan does not contain the components. They are still looked up or resolved for each
+ * render, so changes of the component hierarchy do not invalidate the plan. Changed markup is
+ * loaded into a new {@link Markup} with new plans.
+ * 
+ * @see org.apache.wicket.settings.IMarkupSettings#setCacheRenderPlans(boolean)
+ * @see MarkupStream#getRenderPlan()
+ */
+public final class RenderPlan
+{
+	/** The offsets of the elements relative to the start of the plan */
+	private final int[] offsets;
+
+	/** Whether the elements are open tags of components, or raw markup */
+	private final boolean[] components;
+
+	/** The offset of the element after the plan, e.g. the close tag of the container */
+	private final int end;
+
+	/**
+	 * Construct.
+	 * 
+	 * @param offsets
+	 * @param components
+	 * @param count
+	 *            the number of elements
+	 * @param end
+	 */
+	private RenderPlan(final int[] offsets, final boolean[] components, final int count,
+		final int end)
+	{
+		this.offsets = new int[count];
+		System.arraycopy(offsets, 0, this.offsets, 0, count);
+		this.components = new boolean[count];
+		System.arraycopy(components, 0, this.components, 0, count);
+		this.end = end;
+	}
+
+	/**
+	 * Computes the plan for the elements from the start up to the close tag of the open tag
+	 * preceding the start, or up to the end of the markup if there is no such open tag.
+	 * Malformed markup ends the plan early, so the remaining elements are rendered and reported
+	 * one by one.
+	 * 
+	 * @param markup
+	 * @param start
+	 *            the index of the first element
+	 * @return the plan
+	 */
+	static RenderPlan of(final IMarkupFragment markup, final int start)
+	{
+		final int size = markup.size();
+
+		ComponentTag openTag = null;
+		if (start > 0)
+		{
+			MarkupElement previous = markup.get(start - 1);
+			if ((previous instanceof ComponentTag) && ((ComponentTag)previous).isOpen())
+			{
+				openTag = (ComponentTag)previous;
+			}
+		}
+
+		int[] offsets = new int[16];
+		boolean[] components = new boolean[16];
+		int count = 0;
+
+		int index = start;
+		while (index < size)
+		{
+			final MarkupElement element = markup.get(index);
+			if ((openTag != null) && element.closes(openTag))
+			{
+				break;
+			}
+
+			int next = index + 1;
+			final boolean component = (element instanceof ComponentTag) &&
+				!((ComponentTag)element).isClose();
+			if (component)
+			{
+				next = skipComponent(markup, index, (ComponentTag)element);
+				if (next == -1)
+				{
+					break;
+				}
+			}
+
+			if (count == offsets.length)
+			{
+				int[] newOffsets = new int[count * 2];
+				System.arraycopy(offsets, 0, newOffsets, 0, count);
+				offsets = newOffsets;
+				boolean[] newComponents = new boolean[count * 2];
+				System.arraycopy(components, 0, newComponents, 0, count);
+				components = newComponents;
+			}
+			offsets[count] = index - start;
+			components[count] = component;
+			count++;
+
+			index = next;
+		}
+
+		return new RenderPlan(offsets, components, count, index - start);
+	}
+
+	/**
+	 * Same as {@link MarkupStream#skipComponent()}
+	 * 
+	 * @param markup
+	 * @param index
+	 * @param tag
+	 * @return the index of the element after the component, -1 if the close tag is missing
+	 */
+	private static int skipComponent(final IMarkupFragment markup, final int index,
+		final ComponentTag tag)
+	{
+		if (tag.isOpen() && (tag.hasNoCloseTag() == false))
+		{
+			final int size = markup.size();
+			for (int i = index + 1; i < size; i++)
+			{
+				if (markup.get(i).closes(tag))
+				{
+					return i + 1;
+				}
+			}
+			return -1;
+		}
+		return index + 1;
+	}
+
+	/**
+	 * @return the number of elements
+	 */
+	public int size()
+	{
+		return offsets.length;
+	}
+
+	/**
+	 * @param element
+	 *            the number of the element in the plan
+	 * @return the offset of the element relative to the start of the plan
+	 */
+	public int getOffset(final int element)
+	{
+		return offsets[element];
+	}
+
+	/**
+	 * @param element
+	 *            the number of the element in the plan
+	 * @return true if the element is the open tag of a component, false for raw markup
+	 */
+	public boolean isComponent(final int element)
+	{
+		return components[element];
+	}
+
+	/**
+	 * @return the offset of the element after the plan relative to the start of the plan
+	 */
+	public int getEnd()
+	{
+		return end;
+	}
+}
@@ -0,0 +1,285 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup.loader;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.zip.CRC32;
+
+import org.apache.wicket.Application;
+import org.apache.wicket.MarkupContainer;
+import org.apache.wicket.markup.CompiledMarkup;
+import org.apache.wicket.markup.ContainerInfo;
+import org.apache.wicket.markup.Markup;
+import org.apache.wicket.markup.MarkupFactory;
+import org.apache.wicket.markup.MarkupParser;
+import org.apache.wicket.markup.MarkupResourceStream;
+import org.apache.wicket.markup.parser.IMarkupFilter;
+import org.apache.wicket.settings.IMarkupSettings;
+import org.apache.wicket.util.io.IOUtils;
+import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.resource.ResourceStreamNotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Loads the markup from the resource stream like {@link SimpleMarkupLoader}, but keeps the parsed
+ * markup as {@link CompiledMarkup} in a folder. As long as neither the markup file nor the markup
+ * filters and settings which were used to parse it have changed, later loads - e.g. after a
+ * restart - read the compiled markup instead of parsing the markup again.
+ * <p>
+ * The compiled markup is written whenever a markup file is parsed, so the folder is filled on the
+ * first run. It can also be filled at build time by rendering the pages once with the same
+ * settings, and shipped with the application.
+ * <p>
+ * To use it, return it from your {@link MarkupFactory}:
+ * 
+ * <pre>
+ * public IMarkupLoader getMarkupLoader()
+ * {
+ * 	return new DefaultMarkupLoader(new CompiledMarkupLoader(folder));
+ * }
+ * </pre>
+ * 
+ * @see CompiledMarkup
+ */
+public class CompiledMarkupLoader implements IMarkupLoader
+{
+	private static final Logger log = LoggerFactory.getLogger(CompiledMarkupLoader.class);
+
+	/** identifies the files and the version of their format */
+	private static final int MAGIC = 0x574D4B01;
+
+	/** the maximum length of the readable part of the file names */
+	private static final int MAX_NAME_LENGTH = 100;
+
+	private final File folder;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param folder
+	 *            the folder to keep the compiled markup in, will be created if necessary
+	 */
+	public CompiledMarkupLoader(final File folder)
+	{
+		Args.notNull(folder, "folder");
+
+		this.folder = folder;
+	}
+
+	/**
+	 * Reads the compiled markup if it is up to date, otherwise parses the markup with
+	 * {@link MarkupFactory#newMarkupParser(MarkupResourceStream)} and writes the compiled markup.
+	 */
+	public final Markup loadMarkup(final MarkupContainer container,
+		final MarkupResourceStream markupResourceStream, final IMarkupLoader baseLoader,
+		final boolean enforceReload) throws IOException, ResourceStreamNotFoundException
+	{
+		MarkupParser parser = MarkupFactory.get().newMarkupParser(markupResourceStream);
+
+		String key = markupResourceStream.getCacheKey();
+		if (key == null)
+		{
+			key = markupResourceStream.locationAsString();
+		}
+		if (key == null)
+		{
+			return parser.parse();
+		}
+
+		final long checksum = checksum(markupResourceStream);
+		final String fingerprint = fingerprint(parser, markupResourceStream);
+		final File file = getFile(key);
+
+		if ((enforceReload == false) && file.isFile())
+		{
+			Markup markup = read(file, key, checksum, fingerprint, markupResourceStream);
+			if (markup != null)
+			{
+				return markup;
+			}
+		}
+
+		Markup markup = parser.parse();
+		if (CompiledMarkup.isCompilable(markup))
+		{
+			write(file, key, checksum, fingerprint, markup);
+		}
+		return markup;
+	}
+
+	/**
+	 * Gets the file for the compiled markup.
+	 * 
+	 * @param key
+	 *            the cache key or location of the markup
+	 * @return the file
+	 */
+	protected File getFile(final String key)
+	{
+		StringBuilder name = new StringBuilder(MAX_NAME_LENGTH + 16);
+		for (int i = 0; (i < key.length()) && (name.length() < MAX_NAME_LENGTH); i++)
+		{
+			char c = key.charAt(i);
+			name.append(Character.isLetterOrDigit(c) || (c == '.') || (c == '-') ? c : '_');
+		}
+		name.append('-').append(Integer.toHexString(key.hashCode())).append(".markup");
+		return new File(folder, name.toString());
+	}
+
+	/**
+	 * Describes everything besides the markup file which influences the parsed markup: the markup
+	 * filters, the markup settings and the container class.
+	 * 
+	 * @param parser
+	 * @param markupResourceStream
+	 * @return the fingerprint
+	 */
+	protected String fingerprint(final MarkupParser parser,
+		final MarkupResourceStream markupResourceStream)
+	{
+		StringBuilder fingerprint = new StringBuilder(512);
+		fingerprint.append(parser.getClass().getName());
+		for (IMarkupFilter filter : parser.getMarkupFilters())
+		{
+			fingerprint.append(',').append(filter.getClass().getName());
+		}
+
+		IMarkupSettings settings = Application.get().getMarkupSettings();
+		fingerprint.append(';')
+			.append(settings.getAutomaticLinking())
+			.append(settings.getCompressWhitespace())
+			.append(settings.getStripComments())
+			.append(settings.getStripWicketTags())
+			.append(settings.getThrowExceptionOnMissingXmlDeclaration())
+			.append(settings.getDefaultMarkupEncoding());
+
+		ContainerInfo containerInfo = markupResourceStream.getContainerInfo();
+		if (containerInfo != null)
+		{
+			fingerprint.append(';').append(containerInfo.getContainerClass().getName());
+		}
+		return fingerprint.toString();
+	}
+
+	/**
+	 * @param markupResourceStream
+	 * @return the checksum of the markup file
+	 * @throws IOException
+	 * @throws ResourceStreamNotFoundException
+	 */
+	private long checksum(final MarkupResourceStream markupResourceStream) throws IOException,
+		ResourceStreamNotFoundException
+	{
+		CRC32 checksum = new CRC32();
+		try
+		{
+			InputStream in = markupResourceStream.getResource().getInputStream();
+			byte[] buffer = new byte[4096];
+			int read;
+			while ((read = in.read(buffer)) != -1)
+			{
+				checksum.update(buffer, 0, read);
+			}
+		}
+		finally
+		{
+			// the parser will open it again
+			markupResourceStream.close();
+		}
+		return checksum.getValue();
+	}
+
+	/**
+	 * @return the compiled markup or <code>null</code> if it is outdated or can't be read
+	 */
+	private Markup read(final File file, final String key, final long checksum,
+		final String fingerprint, final MarkupResourceStream markupResourceStream)
+	{
+		ObjectInputStream in = null;
+		try
+		{
+			in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)));
+			if ((in.readInt() != MAGIC) || (key.equals(in.readUTF()) == false) ||
+				(in.readLong() != checksum) || (fingerprint.equals(in.readUTF()) == false))
+			{
+				log.debug("Compiled markup {} is outdated", file);
+				return null;
+			}
+			return CompiledMarkup.read(markupResourceStream, in);
+		}
+		catch (Exception e)
+		{
+			log.warn("Failed to read compiled markup " + file + ", parsing " + key, e);
+			return null;
+		}
+		finally
+		{
+			IOUtils.closeQuietly(in);
+		}
+	}
+
+	/**
+	 * Writes the compiled markup to a temporary file first, so concurrent readers never see
+	 * incomplete files.
+	 */
+	private void write(final File file, final String key, final long checksum,
+		final String fingerprint, final Markup markup)
+	{
+		File temp = null;
+		ObjectOutputStream out = null;
+		try
+		{
+			folder.mkdirs();
+			temp = File.createTempFile("markup", ".tmp", folder);
+			out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+			out.writeInt(MAGIC);
+			out.writeUTF(key);
+			out.writeLong(checksum);
+			out.writeUTF(fingerprint);
+			CompiledMarkup.write(markup, out);
+			out.close();
+			out = null;
+
+			file.delete();
+			if (temp.renameTo(file))
+			{
+				temp = null;
+			}
+		}
+		catch (IOException e)
+		{
+			log.debug("Markup " + key + " could not be compiled", e);
+		}
+		finally
+		{
+			IOUtils.closeQuietly(out);
+			if (temp != null)
+			{
+				temp.delete();
+			}
+		}
+	}
+}
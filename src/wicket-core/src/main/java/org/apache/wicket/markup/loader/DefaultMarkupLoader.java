@@ -21,34 +21,51 @@ import java.io.IOException;
 import org.apache.wicket.MarkupContainer;
 import org.apache.wicket.markup.Markup;
 import org.apache.wicket.markup.MarkupResourceStream;
+import org.apache.wicket.util.lang.Args;
 import org.apache.wicket.util.resource.ResourceStreamNotFoundException;
 
 /**
  * This is Wickets default markup loader. It uses the {@link InheritedMarkupMarkupLoader} and
- * {@link SimpleMarkupLoader} to load the markup associated with a {@link MarkupContainer}.
+ * {@link SimpleMarkupLoader} to load the markup associated with a {@link MarkupContainer}. Another
+ * loader, e.g. {@link CompiledMarkupLoader}, may be used instead of the {@link SimpleMarkupLoader}.
  * 
  * @author Juergen Donnerstag
  */
 public class DefaultMarkupLoader implements IMarkupLoader
 {
+	private final IMarkupLoader baseLoader;
+
 	/**
 	 * Constructor.
 	 */
 	public DefaultMarkupLoader()
 	{
+		this(new SimpleMarkupLoader());
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param baseLoader
+	 *            the loader which loads a single markup file
+	 */
+	public DefaultMarkupLoader(final IMarkupLoader baseLoader)
+	{
+		Args.notNull(baseLoader, "baseLoader");
+
+		this.baseLoader = baseLoader;
 	}
 
 	/**
-	 * Uses {@link SimpleMarkupLoader} to load the resource(s), read it and check if markup
-	 * inheritance applies. If yes, load the required other markup and merge them using
-	 * {@link InheritedMarkupMarkupLoader}.
+	 * Uses the base loader, by default {@link SimpleMarkupLoader}, to load the resource(s), read it
+	 * and check if markup inheritance applies. If yes, load the required other markup and merge
+	 * them using {@link InheritedMarkupMarkupLoader}.
 	 */
 	public final Markup loadMarkup(final MarkupContainer container,
 		final MarkupResourceStream markupResourceStream, final IMarkupLoader baseLoader,
 		final boolean enforceReload) throws IOException, ResourceStreamNotFoundException
 	{
 		IMarkupLoader loader = new InheritedMarkupMarkupLoader();
-		return loader.loadMarkup(container, markupResourceStream, new SimpleMarkupLoader(),
-			enforceReload);
+		return loader.loadMarkup(container, markupResourceStream, this.baseLoader, enforceReload);
 	}
 }
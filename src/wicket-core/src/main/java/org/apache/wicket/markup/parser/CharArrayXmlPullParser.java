@@ -0,0 +1,1066 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup.parser;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.CharBuffer;
+import java.text.ParseException;
+
+import org.apache.wicket.markup.parser.XmlTag.TagType;
+import org.apache.wicket.markup.parser.XmlTag.TextSegment;
+import org.apache.wicket.util.io.IOUtils;
+import org.apache.wicket.util.io.XmlReader;
+import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.resource.ResourceStreamNotFoundException;
+import org.apache.wicket.util.string.Strings;
+
+/**
+ * A markup pull parser which produces the same elements as {@link XmlPullParser}, but allocates
+ * less while doing so. It is meant for large markup files.
+ * <p>
+ * The markup is read into a char array and tokenized by offsets into that array. Tag and
+ * attribute names are looked up in a table of interned names instead of being cut out of the
+ * markup, and the text in between tags is handed out as a view of the array, which the markup
+ * parser copies only if it keeps it. Attribute values are copied once and unescaped only if they
+ * contain entities. The text of tags is copied, so the parsed markup does not keep the array.
+ * <p>
+ * To use it, override {@link org.apache.wicket.markup.MarkupFactory#newXmlPullParser()}.
+ * 
+ * @see XmlPullParser
+ */
+public final class CharArrayXmlPullParser implements IXmlPullParser
+{
+	/** The initial size of the buffer, if the size of the input is unknown */
+	private static final int INITIAL_BUFFER_SIZE = 8192;
+
+	/** The initial size of the table of names */
+	private static final int INITIAL_NAMES_SIZE = 64;
+
+	/**
+	 * Reads the xml data from an input stream and converts the chars according to its encoding
+	 * (<?xml ... encoding="..." ?>)
+	 */
+	private XmlReader xmlReader;
+
+	/** The markup */
+	private char[] buffer;
+
+	/** The number of chars of the markup */
+	private int size;
+
+	/** The current position in the markup */
+	private int position;
+
+	/** The start of the text to be returned by {@link #getInputFromPositionMarker(int)} */
+	private int positionMarker;
+
+	/** The position up to which the lines have been counted */
+	private int lastLineCountIndex;
+
+	private int lineNumber;
+
+	private int columnNumber;
+
+	/** The name of the closing tag to skip to, e.g. script */
+	private String skipUntilText;
+
+	/** The last text selected from the input */
+	private CharSequence lastText;
+
+	/** Everything in between &lt;!DOCTYPE ... &gt; */
+	private CharSequence doctype;
+
+	/** The type of what is in lastText */
+	private HttpTagType lastType = HttpTagType.NOT_INITIALIZED;
+
+	/** The last tag found */
+	private XmlTag lastTag;
+
+	/** Open addressing hash table of the tag and attribute names found so far */
+	private String[] names = new String[INITIAL_NAMES_SIZE];
+
+	private int nameCount;
+
+	/**
+	 * Construct.
+	 */
+	public CharArrayXmlPullParser()
+	{
+	}
+
+	public final String getEncoding()
+	{
+		return xmlReader.getEncoding();
+	}
+
+	public final CharSequence getDoctype()
+	{
+		return doctype;
+	}
+
+	public final CharSequence getInputFromPositionMarker(int toPos)
+	{
+		if (toPos < 0)
+		{
+			toPos = size;
+		}
+		else if (toPos < positionMarker)
+		{
+			return "";
+		}
+		return view(positionMarker, toPos);
+	}
+
+	public final CharSequence getInput(final int fromPos, final int toPos)
+	{
+		return view(fromPos, toPos);
+	}
+
+	/**
+	 * @see org.apache.wicket.markup.parser.IXmlPullParser#next()
+	 */
+	public final HttpTagType next() throws ParseException
+	{
+		// Reached end of markup file?
+		if (position >= size)
+		{
+			return HttpTagType.NOT_INITIALIZED;
+		}
+
+		if (skipUntilText != null)
+		{
+			skipUntil();
+			return lastType;
+		}
+
+		// Tag or Body?
+		if (buffer[position] != '<')
+		{
+			// It's a BODY
+			int openBracketIndex = indexOf('<', position);
+			if (openBracketIndex == -1)
+			{
+				openBracketIndex = size;
+			}
+			lastText = view(position, openBracketIndex);
+			position = openBracketIndex;
+			lastType = HttpTagType.BODY;
+			return lastType;
+		}
+
+		final int openBracketIndex = position;
+
+		// Determine the line number
+		countLinesTo(openBracketIndex);
+
+		// Get index of closing tag
+		int closeBracketIndex = -1;
+		if (openBracketIndex < size - 1)
+		{
+			char nextChar = buffer[openBracketIndex + 1];
+			if ((nextChar == '!') || (nextChar == '?'))
+			{
+				closeBracketIndex = indexOf('>', openBracketIndex);
+			}
+			else
+			{
+				closeBracketIndex = findOutOfQuotes('>', openBracketIndex);
+			}
+		}
+
+		if (closeBracketIndex == -1)
+		{
+			throw new ParseException("No matching close bracket at" + getLineAndColumnText(),
+				position);
+		}
+
+		// Get the complete tag text
+		lastText = new String(buffer, openBracketIndex, closeBracketIndex + 1 - openBracketIndex);
+
+		// The tag text between open and close brackets
+		int start = openBracketIndex + 1;
+		int end = closeBracketIndex;
+		if (start == end)
+		{
+			throw new ParseException("Found empty tag: '<>' at" + getLineAndColumnText(), position);
+		}
+
+		// Type of the tag, to be determined next
+		final TagType type;
+
+		// If the tag ends in '/', it's a "simple" tag like <foo/>
+		if (buffer[end - 1] == '/')
+		{
+			type = TagType.OPEN_CLOSE;
+			end--;
+		}
+		else if (buffer[start] == '/')
+		{
+			// The tag text starts with a '/', it's a simple close tag
+			type = TagType.CLOSE;
+			start++;
+		}
+		else
+		{
+			// It must be an open tag
+			type = TagType.OPEN;
+
+			// If open tag and starts with "s" like "script" or "style", than ...
+			if ((end - start > XmlPullParser.STYLE.length()) &&
+				((buffer[start] == 's') || (buffer[start] == 'S')))
+			{
+				if (startsWithIgnoreCase(start, end, XmlPullParser.SCRIPT))
+				{
+					// prepare to skip everything between the open and close tag
+					skipUntilText = XmlPullParser.SCRIPT;
+				}
+				else if (startsWithIgnoreCase(start, end, XmlPullParser.STYLE))
+				{
+					// prepare to skip everything between the open and close tag
+					skipUntilText = XmlPullParser.STYLE;
+				}
+			}
+		}
+
+		if (start == end)
+		{
+			throw new ParseException("Malformed tag" + getLineAndColumnText(), openBracketIndex);
+		}
+
+		// Handle special tags like <!-- and <![CDATA ...
+		final char firstChar = buffer[start];
+		if ((firstChar == '!') || (firstChar == '?'))
+		{
+			specialTagHandling(start, end, openBracketIndex, closeBracketIndex);
+
+			countLinesTo(openBracketIndex);
+			TextSegment text = new TextSegment(lastText, openBracketIndex, lineNumber,
+				columnNumber);
+			lastTag = new XmlTag(text, type);
+
+			return lastType;
+		}
+
+		TextSegment text = new TextSegment(lastText, openBracketIndex, lineNumber, columnNumber);
+		XmlTag tag = new XmlTag(text, type);
+		lastTag = tag;
+
+		// Parse the tag text and populate tag attributes
+		if (parseTagText(tag, start, end))
+		{
+			// Move to position after the tag
+			position = closeBracketIndex + 1;
+			lastType = HttpTagType.TAG;
+			return lastType;
+		}
+		else
+		{
+			throw new ParseException("Malformed tag" + getLineAndColumnText(), openBracketIndex);
+		}
+	}
+
+	/**
+	 * Handle special tags like <!-- --> or <![CDATA[..]]> or <?xml>
+	 * 
+	 * @param start
+	 *            the start of the tag text
+	 * @param end
+	 *            the end of the tag text
+	 * @param openBracketIndex
+	 * @param closeBracketIndex
+	 * @throws ParseException
+	 */
+	private void specialTagHandling(final int start, final int end, final int openBracketIndex,
+		int closeBracketIndex) throws ParseException
+	{
+		// Handle comments
+		if (startsWith(start, end, "!--"))
+		{
+			// downlevel-revealed conditional comments e.g.: <!--[if (gt IE9)|!(IE)]><!-->
+			if (indexOf("![endif]--", start, end) != -1)
+			{
+				lastType = HttpTagType.CONDITIONAL_COMMENT_ENDIF;
+
+				// Move to position after the tag
+				position = closeBracketIndex + 1;
+				return;
+			}
+
+			// Conditional comment? E.g.
+			// "<!--[if IE]><a href='test.html'>my link</a><![endif]-->"
+			if (startsWith(start, end, "!--[if ") && (buffer[end - 1] == ']'))
+			{
+				int pos = indexOf("]-->", openBracketIndex + 1, size);
+				if (pos == -1)
+				{
+					throw new ParseException("Unclosed conditional comment beginning at" +
+						getLineAndColumnText(), openBracketIndex);
+				}
+
+				pos += 4;
+				lastText = new String(buffer, openBracketIndex, pos - openBracketIndex);
+
+				// Actually it is no longer a comment. It is now
+				// up to the browser to select the section appropriate.
+				position = closeBracketIndex + 1;
+				lastType = HttpTagType.CONDITIONAL_COMMENT;
+			}
+			else
+			{
+				// Normal comment section.
+				// Skip ahead to "-->". Note that you can not simply test for
+				// tagText.endsWith("--") as the comment might contain a '>'
+				// inside.
+				int pos = indexOf("-->", openBracketIndex + 1, size);
+				if (pos == -1)
+				{
+					throw new ParseException("Unclosed comment beginning at" +
+						getLineAndColumnText(), openBracketIndex);
+				}
+
+				pos += 3;
+				lastText = new String(buffer, openBracketIndex, pos - openBracketIndex);
+				lastType = HttpTagType.COMMENT;
+				position = pos;
+			}
+			return;
+		}
+
+		// The closing tag of a conditional comment, e.g.
+		// "<!--[if IE]><a href='test.html'>my link</a><![endif]-->
+		// and also <!--<![endif]-->"
+		if ((end - start == 10) && startsWith(start, end, "![endif]--"))
+		{
+			lastType = HttpTagType.CONDITIONAL_COMMENT_ENDIF;
+			position = closeBracketIndex + 1;
+			return;
+		}
+
+		// CDATA sections might contain "<" which is not part of an XML tag.
+		// Make sure escaped "<" are treated right
+		if (startsWithIgnoreCase(start, end, "![CDATA["))
+		{
+			int pos1 = openBracketIndex;
+			do
+			{
+				// Get index of closing tag and advance past the tag
+				closeBracketIndex = findChar('>', pos1);
+
+				if (closeBracketIndex == -1)
+				{
+					throw new ParseException("No matching close bracket at" +
+						getLineAndColumnText(), position);
+				}
+
+				pos1 = closeBracketIndex + 1;
+			}
+			while (!endsWith(openBracketIndex + 1, closeBracketIndex, "]]"));
+
+			// Move to position after the tag
+			position = closeBracketIndex + 1;
+
+			lastText = new String(buffer, openBracketIndex + 1, closeBracketIndex -
+				openBracketIndex - 1);
+			lastType = HttpTagType.CDATA;
+			return;
+		}
+
+		if (buffer[start] == '?')
+		{
+			lastType = HttpTagType.PROCESSING_INSTRUCTION;
+
+			// Move to position after the tag
+			position = closeBracketIndex + 1;
+			return;
+		}
+
+		if (startsWith(start, end, "!DOCTYPE"))
+		{
+			lastType = HttpTagType.DOCTYPE;
+
+			// Get the tagtext between open and close brackets
+			doctype = new String(buffer, openBracketIndex + 1, closeBracketIndex -
+				openBracketIndex - 1);
+
+			// Move to position after the tag
+			position = closeBracketIndex + 1;
+			return;
+		}
+
+		// Move to position after the tag
+		lastType = HttpTagType.SPECIAL_TAG;
+		position = closeBracketIndex + 1;
+	}
+
+	/**
+	 * Whatever will be in between the current index and the closing tag, will be ignored (and thus
+	 * treated as raw markup (text). This is useful for tags like 'script'.
+	 * 
+	 * @throws ParseException
+	 */
+	private void skipUntil() throws ParseException
+	{
+		// this is a tag with non-XHTML text as body - skip this until the
+		// skipUntilText is found.
+		final int startIndex = position;
+		final int tagNameLen = skipUntilText.length();
+
+		int pos = position - 1;
+		int lastPos;
+		do
+		{
+			pos = indexOf("</", pos + 1, size);
+			if ((pos == -1) || ((pos + (tagNameLen + 2)) >= size))
+			{
+				throw new ParseException(skipUntilText + " tag not closed" +
+					getLineAndColumnText(), startIndex);
+			}
+
+			lastPos = pos + 2;
+		}
+		while (!startsWithIgnoreCase(lastPos, size, skipUntilText));
+
+		position = pos;
+		lastText = view(startIndex, pos);
+		lastType = HttpTagType.BODY;
+
+		// Check that the tag is properly closed
+		if (indexOf('>', lastPos + tagNameLen) == -1)
+		{
+			throw new ParseException(skipUntilText + " tag not closed" + getLineAndColumnText(),
+				startIndex);
+		}
+
+		// Reset the state variable
+		skipUntilText = null;
+	}
+
+	/**
+	 * Parses the text between tags, for example "a href=foo.html", the same way as the
+	 * {@link org.apache.wicket.util.parse.metapattern.parsers.TagNameParser} and
+	 * {@link org.apache.wicket.util.parse.metapattern.parsers.VariableAssignmentParser} used by
+	 * {@link XmlPullParser}: text in between the attributes which is not an attribute is ignored.
+	 * 
+	 * @param tag
+	 * @param start
+	 *            the start of the tag text
+	 * @param end
+	 *            the end of the tag text
+	 * @return false in case of an error
+	 * @throws ParseException
+	 */
+	private boolean parseTagText(final XmlTag tag, final int start, final int end)
+		throws ParseException
+	{
+		if (!isNameStart(buffer[start]))
+		{
+			return false;
+		}
+
+		int nameStart = namespaceEnd(start, end);
+		if (nameStart != start)
+		{
+			tag.namespace = lowerCase(name(start, nameStart - 1));
+		}
+		int pos = nameEnd(nameStart, end);
+		tag.name = name(nameStart, pos);
+
+		while (pos < end)
+		{
+			// Find the next attribute
+			int keyStart = pos;
+			while ((keyStart < end) && !isNameStart(buffer[keyStart]))
+			{
+				keyStart++;
+			}
+			if (keyStart == end)
+			{
+				break;
+			}
+			int keyEnd = nameEnd(namespaceEnd(keyStart, end), end);
+			pos = skipWhitespace(keyEnd, end);
+
+			// In case like <html xmlns:wicket> will the value be empty
+			String value = "";
+			if ((pos < end) && (buffer[pos] == '='))
+			{
+				int valueStart = skipWhitespace(pos + 1, end);
+				int valueEnd = valueEnd(valueStart, end);
+				if (valueEnd != -1)
+				{
+					pos = skipWhitespace(valueEnd, end);
+
+					// Chop off double quotes or single quotes
+					if ((buffer[valueStart] == '"') || (buffer[valueStart] == '\''))
+					{
+						valueStart++;
+						valueEnd--;
+					}
+					value = value(valueStart, valueEnd);
+				}
+				else
+				{
+					pos = skipWhitespace(keyEnd, end);
+				}
+			}
+
+			// Put the attribute in the attributes hash
+			final String key = name(keyStart, keyEnd);
+			if (null != tag.getAttributes().put(key, value))
+			{
+				throw new ParseException("Same attribute found twice: " + key +
+					getLineAndColumnText(), position);
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * @param start
+	 *            the start of a name
+	 * @param end
+	 * @return the start of the local name, after the namespace and colon if there is one
+	 */
+	private int namespaceEnd(final int start, final int end)
+	{
+		int pos = start + 1;
+		while ((pos < end) && isVariableChar(buffer[pos]))
+		{
+			pos++;
+		}
+		if ((pos + 1 < end) && (buffer[pos] == ':') && isNameStart(buffer[pos + 1]))
+		{
+			return pos + 1;
+		}
+		return start;
+	}
+
+	/**
+	 * @param start
+	 *            the start of a name
+	 * @param end
+	 * @return the end of the name
+	 */
+	private int nameEnd(final int start, final int end)
+	{
+		int pos = start + 1;
+		while ((pos < end) && isNameChar(buffer[pos]))
+		{
+			pos++;
+		}
+		return pos;
+	}
+
+	/**
+	 * @param start
+	 *            the start of an attribute value
+	 * @param end
+	 * @return the end of the value including the quotes, -1 if there is no value
+	 */
+	private int valueEnd(final int start, final int end)
+	{
+		if (start == end)
+		{
+			return -1;
+		}
+
+		char ch = buffer[start];
+		if (isNameChar(ch))
+		{
+			int pos = start + 1;
+			while ((pos < end) && isNameChar(buffer[pos]))
+			{
+				pos++;
+			}
+			return pos;
+		}
+		else if ((ch == '"') || (ch == '\''))
+		{
+			int pos = indexOf(ch, start + 1);
+			if ((pos != -1) && (pos < end))
+			{
+				return pos + 1;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @param start
+	 * @param end
+	 * @return the trimmed and unescaped value
+	 */
+	private String value(int start, int end)
+	{
+		while ((start < end) && (buffer[start] <= ' '))
+		{
+			start++;
+		}
+		while ((start < end) && (buffer[end - 1] <= ' '))
+		{
+			end--;
+		}
+
+		String value = new String(buffer, start, end - start);
+		for (int i = start; i < end; i++)
+		{
+			if (buffer[i] == '&')
+			{
+				return Strings.unescapeMarkup(value).toString();
+			}
+		}
+		return value;
+	}
+
+	/**
+	 * Looks up the name in the table of names, so each name is created only once.
+	 * 
+	 * @param start
+	 * @param end
+	 * @return the interned name
+	 */
+	private String name(final int start, final int end)
+	{
+		final int length = end - start;
+		int hash = 0;
+		for (int i = start; i < end; i++)
+		{
+			hash = 31 * hash + buffer[i];
+		}
+
+		int mask = names.length - 1;
+		int slot = (hash ^ (hash >>> 16)) & mask;
+		String name;
+		while ((name = names[slot]) != null)
+		{
+			if ((name.hashCode() == hash) && (name.length() == length) &&
+				regionMatches(start, name, false))
+			{
+				return name;
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		name = new String(buffer, start, length).intern();
+		names[slot] = name;
+		if (++nameCount * 2 > names.length)
+		{
+			String[] oldNames = names;
+			names = new String[oldNames.length * 2];
+			mask = names.length - 1;
+			for (String oldName : oldNames)
+			{
+				if (oldName != null)
+				{
+					int h = oldName.hashCode();
+					slot = (h ^ (h >>> 16)) & mask;
+					while (names[slot] != null)
+					{
+						slot = (slot + 1) & mask;
+					}
+					names[slot] = oldName;
+				}
+			}
+		}
+		return name;
+	}
+
+	/**
+	 * @param name
+	 * @return the name in lower case
+	 */
+	private static String lowerCase(final String name)
+	{
+		for (int i = 0; i < name.length(); i++)
+		{
+			if (Character.isUpperCase(name.charAt(i)))
+			{
+				return name.toLowerCase().intern();
+			}
+		}
+		return name;
+	}
+
+	private static boolean isNameStart(final char ch)
+	{
+		return ((ch >= 'a') && (ch <= 'z')) || ((ch >= 'A') && (ch <= 'Z')) || (ch == '_');
+	}
+
+	private static boolean isVariableChar(final char ch)
+	{
+		return isNameStart(ch) || ((ch >= '0') && (ch <= '9'));
+	}
+
+	private static boolean isNameChar(final char ch)
+	{
+		return isVariableChar(ch) || (ch == '-') || (ch == '.');
+	}
+
+	private int skipWhitespace(int pos, final int end)
+	{
+		while ((pos < end) && isWhitespace(buffer[pos]))
+		{
+			pos++;
+		}
+		return pos;
+	}
+
+	/**
+	 * @param ch
+	 * @return whether ch is whitespace as matched by \s in regular expressions
+	 */
+	private static boolean isWhitespace(final char ch)
+	{
+		return (ch == ' ') || (ch == '\t') || (ch == '\n') || (ch == '\u000B') || (ch == '\f') ||
+			(ch == '\r');
+	}
+
+	/**
+	 * Find the char but ignore any text within ".." and '..'
+	 * 
+	 * @param ch
+	 *            The character to search
+	 * @param startIndex
+	 *            Start index
+	 * @return -1 if not found, else the index
+	 */
+	private int findChar(final char ch, int startIndex)
+	{
+		char quote = 0;
+
+		for (; startIndex < size; startIndex++)
+		{
+			final char charAt = buffer[startIndex];
+			if (quote != 0)
+			{
+				if (quote == charAt)
+				{
+					quote = 0;
+				}
+			}
+			else if ((charAt == '"') || (charAt == '\''))
+			{
+				quote = charAt;
+			}
+			else if (charAt == ch)
+			{
+				return startIndex;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Find the char but ignore any text within ".." and '..', where quotes escaped with a
+	 * backslash do not end the quoted text.
+	 * 
+	 * @param ch
+	 *            The character to search
+	 * @param startIndex
+	 *            Start index
+	 * @return -1 if not found, else the index
+	 * @throws ParseException
+	 *             if a quote is not closed
+	 */
+	private int findOutOfQuotes(final char ch, final int startIndex) throws ParseException
+	{
+		if (indexOf(ch, startIndex + 1) == -1)
+		{
+			return -1;
+		}
+
+		char quote = 0;
+		int quoteIndex = -1;
+		for (int i = startIndex; i < size; i++)
+		{
+			final char charAt = buffer[i];
+			if (quote == 0)
+			{
+				if ((charAt == '"') || (charAt == '\''))
+				{
+					quote = charAt;
+					quoteIndex = i;
+				}
+				else if (charAt == ch)
+				{
+					return i;
+				}
+			}
+			else if ((charAt == quote) && (buffer[i - 1] != '\\'))
+			{
+				quote = 0;
+			}
+		}
+
+		// quotes not balanced!
+		countLinesTo(quoteIndex);
+		throw new ParseException("Opening/closing quote not found for quote at" +
+			getLineAndColumnText(), startIndex);
+	}
+
+	private int indexOf(final char ch, final int from)
+	{
+		for (int i = from; i < size; i++)
+		{
+			if (buffer[i] == ch)
+			{
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @param str
+	 * @param from
+	 * @param end
+	 * @return the position of str in between from and end, -1 if not found
+	 */
+	private int indexOf(final String str, final int from, final int end)
+	{
+		final char first = str.charAt(0);
+		for (int i = from; i + str.length() <= end; i++)
+		{
+			if ((buffer[i] == first) && regionMatches(i, str, false))
+			{
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private boolean startsWith(final int start, final int end, final String prefix)
+	{
+		return (end - start >= prefix.length()) && regionMatches(start, prefix, false);
+	}
+
+	private boolean startsWithIgnoreCase(final int start, final int end, final String prefix)
+	{
+		return (end - start >= prefix.length()) && regionMatches(start, prefix, true);
+	}
+
+	private boolean endsWith(final int start, final int end, final String suffix)
+	{
+		return (end - start >= suffix.length()) &&
+			regionMatches(end - suffix.length(), suffix, false);
+	}
+
+	/**
+	 * @param start
+	 *            the position in the buffer, there must be enough chars left for str
+	 * @param str
+	 * @param ignoreCase
+	 * @return whether the chars at start are the same as str
+	 */
+	private boolean regionMatches(final int start, final String str, final boolean ignoreCase)
+	{
+		for (int i = 0; i < str.length(); i++)
+		{
+			char ch = buffer[start + i];
+			char other = str.charAt(i);
+			if ((ch != other) &&
+				(!ignoreCase || (Character.toLowerCase(ch) != Character.toLowerCase(other))))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param start
+	 * @param end
+	 * @return a view of the markup in between start and end
+	 */
+	private CharSequence view(final int start, final int end)
+	{
+		return CharBuffer.wrap(buffer, start, end - start);
+	}
+
+	/**
+	 * Counts the lines and columns up to the position
+	 * 
+	 * @param end
+	 */
+	private void countLinesTo(final int end)
+	{
+		for (int i = lastLineCountIndex; i < end; i++)
+		{
+			final char ch = buffer[i];
+			if (ch == '\n')
+			{
+				columnNumber = 1;
+				lineNumber++;
+			}
+			else if (ch != '\r')
+			{
+				columnNumber++;
+			}
+		}
+
+		lastLineCountIndex = end;
+	}
+
+	/**
+	 * 
+	 * @return line and column number
+	 */
+	private String getLineAndColumnText()
+	{
+		return " (line " + lineNumber + ", column " + columnNumber + ")";
+	}
+
+	/**
+	 * @see org.apache.wicket.markup.parser.IXmlPullParser#getElement()
+	 */
+	public final XmlTag getElement()
+	{
+		return lastTag;
+	}
+
+	/**
+	 * @see org.apache.wicket.markup.parser.IXmlPullParser#getString()
+	 */
+	public final CharSequence getString()
+	{
+		return lastText;
+	}
+
+	/**
+	 * @return The next XML tag
+	 * @throws ParseException
+	 */
+	public final XmlTag nextTag() throws ParseException
+	{
+		while (next() != HttpTagType.NOT_INITIALIZED)
+		{
+			if (lastType == HttpTagType.TAG)
+			{
+				return lastTag;
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Parse the given string.
+	 * <p>
+	 * Note: xml character encoding is NOT applied. It is assumed the input provided does have the
+	 * correct encoding already.
+	 * 
+	 * @param string
+	 *            The input string
+	 * @throws IOException
+	 *             Error while reading the resource
+	 * @throws ResourceStreamNotFoundException
+	 *             Resource not found
+	 */
+	public void parse(final CharSequence string) throws IOException,
+		ResourceStreamNotFoundException
+	{
+		parse(new ByteArrayInputStream(string.toString().getBytes()), null);
+	}
+
+	/**
+	 * Reads and parses markup from an input stream, using UTF-8 encoding by default when not
+	 * specified in XML declaration.
+	 * 
+	 * @param in
+	 *            The input stream to read and parse
+	 * @throws IOException
+	 * @throws ResourceStreamNotFoundException
+	 */
+	public void parse(final InputStream in) throws IOException, ResourceStreamNotFoundException
+	{
+		// When XML declaration does not specify encoding, it defaults to UTF-8
+		parse(in, "UTF-8");
+	}
+
+	/**
+	 * Reads and parses markup from an input stream
+	 * 
+	 * @param inputStream
+	 *            The input stream to read and parse
+	 * @param encoding
+	 *            The default character encoding of the input
+	 * @throws IOException
+	 */
+	public void parse(final InputStream inputStream, final String encoding) throws IOException
+	{
+		Args.notNull(inputStream, "inputStream");
+
+		try
+		{
+			xmlReader = new XmlReader(new BufferedInputStream(inputStream, 4000), encoding);
+
+			char[] chars = new char[Math.max(INITIAL_BUFFER_SIZE, inputStream.available() + 1)];
+			int count = 0;
+			int read;
+			while ((read = xmlReader.read(chars, count, chars.length - count)) != -1)
+			{
+				count += read;
+				if (count == chars.length)
+				{
+					char[] larger = new char[chars.length * 2];
+					System.arraycopy(chars, 0, larger, 0, count);
+					chars = larger;
+				}
+			}
+
+			buffer = chars;
+			size = count;
+		}
+		finally
+		{
+			IOUtils.closeQuietly(inputStream);
+			IOUtils.closeQuietly(xmlReader);
+		}
+
+		position = 0;
+		positionMarker = 0;
+		lastLineCountIndex = 0;
+		lineNumber = 1;
+		columnNumber = 1;
+		skipUntilText = null;
+		lastText = null;
+		doctype = null;
+		lastType = HttpTagType.NOT_INITIALIZED;
+		lastTag = null;
+	}
+
+	public final void setPositionMarker()
+	{
+		positionMarker = position;
+	}
+
+	public final void setPositionMarker(final int pos)
+	{
+		positionMarker = pos;
+	}
+
+	@Override
+	public String toString()
+	{
+		return new String(buffer, 0, size);
+	}
+}
@@ -24,6 +24,7 @@ import org.apache.wicket.util.lang.Objects;
 import org.apache.wicket.util.string.AppendingStringBuffer;
 import org.apache.wicket.util.string.StringValue;
 import org.apache.wicket.util.string.Strings;
+import org.apache.wicket.util.value.CompactValueMap;
 import org.apache.wicket.util.value.IValueMap;
 import org.apache.wicket.util.value.ValueMap;
 import org.slf4j.Logger;
@@ -107,6 +108,26 @@ public class XmlTag
 		this.type = type;
 	}
 
+	/**
+	 * Construct a tag for the given text of the markup, e.g. when reading compiled markup.
+	 * 
+	 * @param text
+	 *            Full text of the tag
+	 * @param pos
+	 *            Position of the tag in the markup
+	 * @param line
+	 *            Line number of the tag
+	 * @param column
+	 *            Column number of the tag
+	 * @param type
+	 *            The tag type
+	 */
+	public XmlTag(final CharSequence text, final int pos, final int line, final int column,
+		final TagType type)
+	{
+		this(new TextSegment(text, pos, line, column), type);
+	}
+
 	/**
 	 * Gets whether this tag closes the provided open tag.
 	 * 
@@ -134,11 +155,13 @@ public class XmlTag
 		{
 			return false;
 		}
-		return getAttributes().equals(that.getAttributes());
+		return readAttributes().equals(that.readAttributes());
 	}
 
 	/**
-	 * Gets a hashmap of this tag's attributes.
+	 * Gets a hashmap of this tag's attributes. The attributes of an immutable tag are a
+	 * {@link CompactValueMap}; a mutable copy of such a tag shares them until they are requested
+	 * by this method, which then copies them into a modifiable map.
 	 * 
 	 * @return The tag's attributes
 	 */
@@ -155,9 +178,24 @@ public class XmlTag
 				attributes = new ValueMap(copyOf.attributes);
 			}
 		}
+		else if (isMutable && attributes.isImmutable())
+		{
+			attributes = new ValueMap(attributes);
+		}
 		return attributes;
 	}
 
+	/**
+	 * Gets the attributes for reading, without copying the attributes shared with an immutable
+	 * tag.
+	 * 
+	 * @return The tag's attributes
+	 */
+	private IValueMap readAttributes()
+	{
+		return (attributes != null) ? attributes : getAttributes();
+	}
+
 	/**
 	 * @return true if there 1 or more attributes.
 	 */
@@ -245,7 +283,7 @@ public class XmlTag
 	 */
 	public CharSequence getAttribute(final String key)
 	{
-		return getAttributes().getCharSequence(key);
+		return readAttributes().getCharSequence(key);
 	}
 
 	/**
@@ -298,8 +336,9 @@ public class XmlTag
 	}
 
 	/**
-	 * Makes this tag object immutable by making the attribute map unmodifiable. Immutable tags
-	 * cannot be made mutable again. They can only be copied into new mutable tag objects.
+	 * Makes this tag object immutable by replacing the attribute map with an unmodifiable and
+	 * compact {@link CompactValueMap}. Immutable tags cannot be made mutable again. They can only
+	 * be copied into new mutable tag objects.
 	 * 
 	 * @return this
 	 */
@@ -310,7 +349,10 @@ public class XmlTag
 			isMutable = false;
 			if (attributes != null)
 			{
-				attributes.makeImmutable();
+				if (attributes.isImmutable() == false)
+				{
+					attributes = new CompactValueMap(attributes);
+				}
 				text = null;
 			}
 		}
@@ -354,7 +396,8 @@ public class XmlTag
 		dest.copyOf = copyOf;
 		if (attributes != null)
 		{
-			dest.attributes = new ValueMap(attributes);
+			// immutable attributes are copied on write by getAttributes()
+			dest.attributes = attributes.isImmutable() ? attributes : new ValueMap(attributes);
 		}
 	}
 
@@ -523,7 +566,7 @@ public class XmlTag
 	public String toDebugString()
 	{
 		return "[Tag name = " + name + ", pos = " + text.pos + ", line = " + text.lineNumber +
-			", attributes = [" + getAttributes() + "], type = " + type + "]";
+			", attributes = [" + readAttributes() + "], type = " + type + "]";
 	}
 
 	/**
@@ -587,7 +630,7 @@ public class XmlTag
 
 		buffer.append(name);
 
-		final IValueMap attributes = getAttributes();
+		final IValueMap attributes = readAttributes();
 		if (attributes.size() > 0)
 		{
 			final Iterator<String> iterator = attributes.keySet().iterator();
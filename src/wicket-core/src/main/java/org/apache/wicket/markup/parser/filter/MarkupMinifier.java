@@ -0,0 +1,382 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup.parser.filter;
+
+import java.text.ParseException;
+
+import org.apache.wicket.markup.ComponentTag;
+import org.apache.wicket.markup.Markup;
+import org.apache.wicket.markup.MarkupElement;
+import org.apache.wicket.markup.RawMarkup;
+import org.apache.wicket.markup.parser.AbstractMarkupFilter;
+import org.apache.wicket.resource.ITextResourceCompressor;
+
+
+/**
+ * An IMarkupFilter which minifies the raw markup once when the markup is loaded, so the cached
+ * markup is already minimal and rendering does not need any additional work.
+ * <p>
+ * Outside of tags, runs of whitespace are collapsed into a single space, or a single newline if
+ * they contain a line break, and HTML comments are removed except for conditional comments. Tags
+ * and their attribute values are left as they are. The content of &lt;pre&gt;, &lt;textarea&gt;,
+ * &lt;script&gt; and &lt;style&gt; elements is never changed, but the body of inline
+ * &lt;script&gt; and &lt;style&gt; elements is compressed with the given JavaScript and CSS
+ * compressors, unless it is wrapped in a comment or CDATA section.
+ * <p>
+ * The filter works on the markup after it has been parsed and must run before
+ * {@link StyleAndScriptIdentifier} wraps the bodies of scripts and styles, which
+ * {@link org.apache.wicket.markup.MarkupParser} ensures by appending it last when
+ * {@link org.apache.wicket.settings.IMarkupSettings#getMinifyMarkup()} is enabled.
+ */
+public final class MarkupMinifier extends AbstractMarkupFilter
+{
+	private final ITextResourceCompressor javaScriptCompressor;
+
+	private final ITextResourceCompressor cssCompressor;
+
+	/** the number of open elements whose content is preserved */
+	private int preserved;
+
+	/** the name of the script or style element the raw markup is in, or null */
+	private String rawTextElement;
+
+	/**
+	 * Construct.
+	 * 
+	 * @param javaScriptCompressor
+	 *            the compressor for inline scripts, may be null
+	 * @param cssCompressor
+	 *            the compressor for inline styles, may be null
+	 */
+	public MarkupMinifier(final ITextResourceCompressor javaScriptCompressor,
+		final ITextResourceCompressor cssCompressor)
+	{
+		this.javaScriptCompressor = javaScriptCompressor;
+		this.cssCompressor = cssCompressor;
+	}
+
+	@Override
+	protected MarkupElement onComponentTag(final ComponentTag tag) throws ParseException
+	{
+		return tag;
+	}
+
+	@Override
+	public void postProcess(final Markup markup)
+	{
+		preserved = 0;
+		rawTextElement = null;
+
+		for (int i = 0; i < markup.size(); i++)
+		{
+			MarkupElement elem = markup.get(i);
+			if (elem instanceof RawMarkup)
+			{
+				String text = elem.toString();
+				String minified = minify(text);
+				if (!minified.equals(text))
+				{
+					markup.replace(i, new RawMarkup(minified));
+				}
+			}
+			else if ((elem instanceof ComponentTag) && (((ComponentTag)elem).getNamespace() == null))
+			{
+				ComponentTag tag = (ComponentTag)elem;
+				if (isRawTextElement(tag.getName()))
+				{
+					if (tag.isOpen())
+					{
+						if (compressBody(markup, i, tag))
+						{
+							// skip the body and the close tag
+							i += 2;
+						}
+						else
+						{
+							rawTextElement = tag.getName();
+						}
+					}
+					else if (tag.isClose())
+					{
+						rawTextElement = null;
+					}
+				}
+				else if (isPreservedElement(tag.getName()))
+				{
+					updatePreserved(tag.isOpen(), tag.isClose());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Compresses the body of an inline script or style, if it is raw markup directly followed by
+	 * the close tag.
+	 * 
+	 * @param markup
+	 * @param index
+	 *            the index of the open tag
+	 * @param open
+	 * @return true if the body is raw markup followed by the close tag
+	 */
+	private boolean compressBody(final Markup markup, final int index, final ComponentTag open)
+	{
+		if ((index + 2) >= markup.size())
+		{
+			return false;
+		}
+
+		MarkupElement body = markup.get(index + 1);
+		MarkupElement close = markup.get(index + 2);
+		if (!(body instanceof RawMarkup) || !(close instanceof ComponentTag) ||
+			!((ComponentTag)close).closes(open))
+		{
+			return false;
+		}
+
+		ITextResourceCompressor compressor = getCompressor(open);
+		String text = body.toString();
+		if ((compressor != null) && (text.indexOf("<!--") == -1) &&
+			(text.indexOf("<![CDATA[") == -1))
+		{
+			String compressed = compressor.compress(text);
+			if ((compressed != null) && !compressed.equals(text))
+			{
+				markup.replace(index + 1, new RawMarkup(compressed.trim()));
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param open
+	 *            the open tag of a script or style
+	 * @return the compressor for the body of the element, or null if it must not be compressed
+	 */
+	private ITextResourceCompressor getCompressor(final ComponentTag open)
+	{
+		String type = open.getAttribute("type");
+		if ("style".equalsIgnoreCase(open.getName()))
+		{
+			return ((type == null) || "text/css".equalsIgnoreCase(type)) ? cssCompressor : null;
+		}
+		return ((type == null) || "text/javascript".equalsIgnoreCase(type))
+			? javaScriptCompressor : null;
+	}
+
+	/**
+	 * Minifies raw markup, continuing in the state left by the previous raw markup and tags.
+	 * 
+	 * @param text
+	 * @return the minified markup
+	 */
+	private String minify(final String text)
+	{
+		final int length = text.length();
+		final StringBuilder buffer = new StringBuilder(length);
+		int pos = 0;
+		while (pos < length)
+		{
+			if (rawTextElement != null)
+			{
+				// copy everything up to the close tag of the script or style
+				int end = indexOfCloseTag(text, pos, rawTextElement);
+				if (end == -1)
+				{
+					buffer.append(text, pos, length);
+					break;
+				}
+				buffer.append(text, pos, end);
+				pos = end;
+				rawTextElement = null;
+			}
+
+			char c = text.charAt(pos);
+			if ((c == '<') && text.startsWith("<!--", pos))
+			{
+				int end = text.indexOf("-->", pos + 4);
+				end = (end == -1) ? length : end + 3;
+				if ((preserved > 0) || text.startsWith("<!--[if", pos) ||
+					text.startsWith("<![endif]", end - 12))
+				{
+					buffer.append(text, pos, end);
+				}
+				pos = end;
+			}
+			else if ((c == '<') && isTagStart(text, pos + 1))
+			{
+				int end = indexOfTagEnd(text, pos + 1);
+				buffer.append(text, pos, end);
+				onTag(text, pos + 1, end);
+				pos = end;
+			}
+			else if (Character.isWhitespace(c) && (preserved == 0))
+			{
+				boolean newline = false;
+				while ((pos < length) && Character.isWhitespace(text.charAt(pos)))
+				{
+					char whitespace = text.charAt(pos++);
+					newline |= (whitespace == '\n') || (whitespace == '\r');
+				}
+				int last = buffer.length() - 1;
+				if ((last >= 0) && ((buffer.charAt(last) == ' ') || (buffer.charAt(last) == '\n')))
+				{
+					// whitespace around a removed comment
+					if (newline)
+					{
+						buffer.setCharAt(last, '\n');
+					}
+				}
+				else
+				{
+					buffer.append(newline ? '\n' : ' ');
+				}
+			}
+			else
+			{
+				buffer.append(c);
+				pos++;
+			}
+		}
+		return buffer.toString();
+	}
+
+	/**
+	 * Updates the state for a tag found in the raw markup.
+	 * 
+	 * @param text
+	 * @param start
+	 *            the position after the '&lt;'
+	 * @param end
+	 *            the position after the tag
+	 */
+	private void onTag(final String text, int start, final int end)
+	{
+		boolean close = text.charAt(start) == '/';
+		if (close)
+		{
+			start++;
+		}
+		int nameEnd = start;
+		while ((nameEnd < end) && Character.isLetterOrDigit(text.charAt(nameEnd)))
+		{
+			nameEnd++;
+		}
+		String name = text.substring(start, nameEnd);
+		boolean openClose = (close == false) && (end >= 2) && (text.charAt(end - 2) == '/');
+
+		if (isRawTextElement(name))
+		{
+			if (!close && !openClose)
+			{
+				rawTextElement = name;
+			}
+		}
+		else if (isPreservedElement(name))
+		{
+			updatePreserved(!close && !openClose, close);
+		}
+	}
+
+	private void updatePreserved(final boolean open, final boolean close)
+	{
+		if (open)
+		{
+			preserved++;
+		}
+		else if (close && (preserved > 0))
+		{
+			preserved--;
+		}
+	}
+
+	/**
+	 * @param text
+	 * @param pos
+	 *            the position after a '&lt;'
+	 * @return whether a tag, a declaration or a processing instruction starts at the position
+	 */
+	private static boolean isTagStart(final String text, final int pos)
+	{
+		if (pos >= text.length())
+		{
+			return false;
+		}
+		char c = text.charAt(pos);
+		return Character.isLetter(c) || (c == '/') || (c == '!') || (c == '?');
+	}
+
+	/**
+	 * @param text
+	 * @param pos
+	 *            the position after the '&lt;'
+	 * @return the position after the '&gt;' ending the tag, skipping quoted attribute values
+	 */
+	private static int indexOfTagEnd(final String text, int pos)
+	{
+		char quote = 0;
+		for (; pos < text.length(); pos++)
+		{
+			char c = text.charAt(pos);
+			if (quote != 0)
+			{
+				if (c == quote)
+				{
+					quote = 0;
+				}
+			}
+			else if ((c == '"') || (c == '\''))
+			{
+				quote = c;
+			}
+			else if (c == '>')
+			{
+				return pos + 1;
+			}
+		}
+		return text.length();
+	}
+
+	/**
+	 * @param text
+	 * @param pos
+	 * @param name
+	 * @return the position of the close tag of the named element, or -1
+	 */
+	private static int indexOfCloseTag(final String text, int pos, final String name)
+	{
+		while ((pos = text.indexOf("</", pos)) != -1)
+		{
+			if (text.regionMatches(true, pos + 2, name, 0, name.length()))
+			{
+				return pos;
+			}
+			pos += 2;
+		}
+		return -1;
+	}
+
+	private static boolean isRawTextElement(final String name)
+	{
+		return "script".equalsIgnoreCase(name) || "style".equalsIgnoreCase(name);
+	}
+
+	private static boolean isPreservedElement(final String name)
+	{
+		return "pre".equalsIgnoreCase(name) || "textarea".equalsIgnoreCase(name);
+	}
+}
@@ -17,11 +17,19 @@
 package org.apache.wicket.page;
 
 import java.io.Serializable;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.apache.wicket.Application;
+import org.apache.wicket.request.IRequestHandler;
+import org.apache.wicket.request.cycle.RequestCycle;
+import org.apache.wicket.request.handler.ListenerInterfaceRequestHandler;
 import org.apache.wicket.settings.IExceptionSettings.ThreadDumpStrategy;
 import org.apache.wicket.util.IProvider;
 import org.apache.wicket.util.LazyInitializer;
@@ -33,6 +41,14 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Synchronizes access to page instances from multiple threads
+ * <p>
+ * A page is usually locked exclusively. Requests invoking a listener interface which is marked
+ * with {@link org.apache.wicket.RequestListenerInterface#setSharedPageLock(boolean)} lock their
+ * page in shared mode instead, so they can run in parallel with each other and only wait for
+ * requests holding the exclusive lock. A request holding a shared lock can not acquire the
+ * exclusive lock to the same page while it is processed, its lock is upgraded only when the
+ * request is committed, so the page is detached and stored exclusively.
+ * </p>
  * 
  * @author Igor Vaynberg (ivaynberg)
  */
@@ -42,7 +58,7 @@ public class PageAccessSynchronizer implements Serializable
 
 	private static final Logger logger = LoggerFactory.getLogger(PageAccessSynchronizer.class);
 
-	/** map of which pages are owned by which threads */
+	/** map of the locks of the pages which are locked or waited for */
 	private final IProvider<ConcurrentMap<Integer, PageLock>> locks = new LazyInitializer<ConcurrentMap<Integer, PageLock>>()
 	{
 		private static final long serialVersionUID = 1L;
@@ -68,72 +84,89 @@ public class PageAccessSynchronizer implements Serializable
 		this.timeout = timeout;
 	}
 
-	private static long remaining(Time start, Duration timeout)
+	/**
+	 * Acquire an exclusive lock to a page
+	 * 
+	 * @param pageId
+	 *            page id
+	 * @throws CouldNotLockPageException
+	 *             if lock could not be acquired
+	 */
+	public void lockPage(int pageId) throws CouldNotLockPageException
 	{
-		return Math.max(0, timeout.subtract(start.elapsedSince()).getMilliseconds());
+		lockPage(pageId, false);
 	}
 
 	/**
-	 * Acquire a lock to a page
+	 * Acquire a lock to a page. If the current thread holds the exclusive lock to the page already,
+	 * or the shared lock and asks for a shared lock, nothing happens.
 	 * 
 	 * @param pageId
 	 *            page id
+	 * @param shared
+	 *            {@code true} to acquire a shared lock, which can be held by several threads at
+	 *            once, {@code false} to acquire an exclusive lock
 	 * @throws CouldNotLockPageException
 	 *             if lock could not be acquired
+	 * @throws IllegalStateException
+	 *             if the current thread holds the shared lock to the page and asks for the
+	 *             exclusive lock
 	 */
-	public void lockPage(int pageId) throws CouldNotLockPageException
+	public void lockPage(int pageId, boolean shared) throws CouldNotLockPageException
 	{
 		final Thread thread = Thread.currentThread();
-		final PageLock lock = new PageLock(pageId, thread);
-		final Time start = Time.now();
-
-		boolean locked = false;
-
 		final boolean isDebugEnabled = logger.isDebugEnabled();
 
-		PageLock previous = null;
+		if (isDebugEnabled)
+		{
+			logger.debug("'{}' attempting to acquire {} lock to page with id '{}'", new Object[] {
+					thread.getName(), shared ? "shared" : "exclusive", pageId });
+		}
 
-		while (!locked && start.elapsedSince().lessThan(timeout))
+		PageLock held = locks.get().get(pageId);
+		if (held != null)
 		{
-			if (isDebugEnabled)
+			if (held.thread == thread || (shared && held.isSharedBy(thread)))
 			{
-				logger.debug("'{}' attempting to acquire lock to page with id '{}'",
-					thread.getName(), pageId);
+				// lock is already owned by this thread
+				return;
 			}
+			if (held.isSharedBy(thread))
+			{
+				// waiting for the exclusive lock would wait for this thread, and other holders of
+				// the shared lock must not see the page being modified
+				throw new IllegalStateException("Thread '" + thread.getName() +
+					"' holds a shared lock to page with id '" + pageId +
+					"' and can not acquire the exclusive lock, is the page modified or rendered " +
+					"by a listener interface with a shared page lock?");
+			}
+		}
 
-			previous = locks.get().putIfAbsent(pageId, lock);
-
-			if (previous == null || previous.thread == thread)
+		final Time start = Time.now();
+		final PageLock lock = use(pageId);
+		boolean locked = false;
+		try
+		{
+			Lock mode = shared ? lock.lock.readLock() : lock.lock.writeLock();
+			locked = mode.tryLock(timeout.getMilliseconds(), TimeUnit.MILLISECONDS);
+		}
+		catch (InterruptedException e)
+		{
+			// TODO better exception
+			throw new RuntimeException(e);
+		}
+		finally
+		{
+			if (locked)
 			{
-				// first thread to acquire lock or lock is already owned by this thread
-				locked = true;
+				lock.addHolder(thread, shared);
 			}
 			else
 			{
-				// wait for a lock to become available
-				long remaining = remaining(start, timeout);
-				if (remaining > 0)
-				{
-					synchronized (previous)
-					{
-						if (isDebugEnabled)
-						{
-							logger.debug("{} waiting for lock to page {} for {}", new Object[] {
-									thread.getName(), pageId, Duration.milliseconds(remaining) });
-						}
-						try
-						{
-							previous.wait(remaining);
-						}
-						catch (InterruptedException e)
-						{
-							// TODO better exception
-							throw new RuntimeException(e);
-						}
-					}
-				}
+				release(lock);
 			}
 		}
+
 		if (locked)
 		{
 			if (isDebugEnabled)
@@ -143,12 +176,13 @@ public class PageAccessSynchronizer implements Serializable
 		}
 		else
 		{
+			Thread holder = lock.getThread();
 			if (logger.isWarnEnabled())
 			{
 				logger.warn(
 					"Thread '{}' failed to acquire lock to page with id '{}', attempted for {} out of allowed {}. The thread that holds the lock has name '{}'.",
 					new Object[] { thread.getName(), pageId, start.elapsedSince(), timeout,
-							previous.thread.getName() });
+							holder != null ? holder.getName() : null });
 				if (Application.exists())
 				{
 					ThreadDumpStrategy strategy = Application.get()
@@ -160,7 +194,10 @@ public class PageAccessSynchronizer implements Serializable
 							Threads.dumpAllThreads(logger);
 							break;
 						case THREAD_HOLDING_LOCK :
-							Threads.dumpSingleThread(logger, previous.thread);
+							if (holder != null)
+							{
+								Threads.dumpSingleThread(logger, holder);
+							}
 							break;
 						case NO_THREADS :
 						default :
@@ -200,26 +237,17 @@ public class PageAccessSynchronizer implements Serializable
 
 		while (locks.hasNext())
 		{
-			// remove all locks held by this thread if 'pageId' is not specified
+			// release all locks held by this thread if 'pageId' is not specified
 			// otherwise just the lock for this 'pageId'
 			final PageLock lock = locks.next();
-			if ((pageId == null || pageId == lock.pageId) && lock.thread == thread)
+			if ((pageId == null || pageId == lock.pageId) && lock.removeHolder(thread))
 			{
-				locks.remove();
+				release(lock);
 				if (isDebugEnabled)
 				{
 					logger.debug("'{}' released lock to page with id '{}'", thread.getName(),
 						lock.pageId);
 				}
-				// if any locks were removed notify threads waiting for a lock
-				synchronized (lock)
-				{
-					if (isDebugEnabled)
-					{
-						logger.debug("'{}' notifying blocked threads", thread.getName());
-					}
-					lock.notifyAll();
-				}
 				if (pageId != null)
 				{
 					// unlock just the page with the specified id
@@ -229,6 +257,104 @@ public class PageAccessSynchronizer implements Serializable
 		}
 	}
 
+	/**
+	 * Upgrades the shared locks held by this thread to exclusive ones. The shared lock is released
+	 * before the exclusive lock is acquired, so other threads may access the page in between.
+	 * 
+	 * @throws CouldNotLockPageException
+	 *             if an exclusive lock could not be acquired
+	 */
+	private void upgradeSharedLocks()
+	{
+		final Thread thread = Thread.currentThread();
+		for (PageLock lock : locks.get().values())
+		{
+			if (lock.isSharedBy(thread))
+			{
+				unlockPage(lock.pageId);
+				lockPage(lock.pageId, false);
+			}
+		}
+	}
+
+	/**
+	 * Registers the current thread as a user of the lock of the page, creating the lock if there is
+	 * none yet.
+	 * 
+	 * @param pageId
+	 * @return the lock
+	 */
+	private PageLock use(final int pageId)
+	{
+		final ConcurrentMap<Integer, PageLock> map = locks.get();
+		while (true)
+		{
+			PageLock lock = map.get(pageId);
+			if (lock == null)
+			{
+				PageLock created = new PageLock(pageId);
+				lock = map.putIfAbsent(pageId, created);
+				if (lock == null)
+				{
+					lock = created;
+				}
+			}
+			synchronized (lock)
+			{
+				if (lock.removed == false)
+				{
+					lock.users++;
+					return lock;
+				}
+			}
+			// the lock has just been discarded, try again
+		}
+	}
+
+	/**
+	 * Unregisters a user of the lock and discards the lock once it is neither held nor waited for.
+	 * 
+	 * @param lock
+	 */
+	private void release(final PageLock lock)
+	{
+		synchronized (lock)
+		{
+			lock.users--;
+			if (lock.users == 0)
+			{
+				lock.removed = true;
+				locks.get().remove(lock.pageId, lock);
+			}
+		}
+	}
+
+	/**
+	 * Decides whether the current request accesses the page in shared mode. By default this is the
+	 * case when the active request handler invokes a listener interface on the page which is marked
+	 * with {@link org.apache.wicket.RequestListenerInterface#setSharedPageLock(boolean)}.
+	 * 
+	 * @param pageId
+	 *            the id of the page which is about to be locked
+	 * @return {@code true} if a shared lock is sufficient
+	 */
+	protected boolean isSharedAccess(final int pageId)
+	{
+		RequestCycle requestCycle = RequestCycle.get();
+		if (requestCycle != null)
+		{
+			IRequestHandler handler = requestCycle.getActiveRequestHandler();
+			if (handler instanceof ListenerInterfaceRequestHandler)
+			{
+				ListenerInterfaceRequestHandler listenerHandler = (ListenerInterfaceRequestHandler)handler;
+				Integer handlerPageId = listenerHandler.getPageId();
+				return listenerHandler.getListenerInterface().isSharedPageLock() &&
+					handlerPageId != null && handlerPageId == pageId;
+			}
+		}
+		return false;
+	}
+
 	/*
 	 * used by tests
 	 */
@@ -253,7 +379,7 @@ public class PageAccessSynchronizer implements Serializable
 				IManageablePage page = null;
 				try
 				{
-					lockPage(pageId);
+					lockPage(pageId, isSharedAccess(pageId));
 					page = super.getPage(pageId);
 				}
 				finally
@@ -278,6 +404,8 @@ public class PageAccessSynchronizer implements Serializable
 			{
 				try
 				{
+					// pages are detached and stored exclusively
+					upgradeSharedLocks();
 					super.commitRequest();
 				}
 				finally
@@ -289,7 +417,7 @@ public class PageAccessSynchronizer implements Serializable
 	}
 
 	/**
-	 * Thread's lock on a page
+	 * The lock of a page and the threads holding it
 	 * 
 	 * @author igor
 	 */
@@ -298,19 +426,29 @@ public class PageAccessSynchronizer implements Serializable
 		/** page id */
 		private final int pageId;
 
-		/** thread that owns the lock */
-		private final Thread thread;
+		/** waiting threads are queued, so releasing the lock wakes only the ones which can proceed */
+		private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+		/** thread that owns the exclusive lock */
+		private volatile Thread thread;
+
+		/** threads that own the shared lock, guarded by this */
+		private final Set<Thread> sharedThreads = new HashSet<Thread>();
+
+		/** number of threads holding or waiting for the lock, guarded by this */
+		private int users;
+
+		/** whether the lock has been discarded from the map, guarded by this */
+		private boolean removed;
 
 		/**
 		 * Constructor
 		 * 
 		 * @param pageId
-		 * @param thread
 		 */
-		public PageLock(int pageId, Thread thread)
+		public PageLock(int pageId)
 		{
 			this.pageId = pageId;
-			this.thread = thread;
 		}
 
 		/**
@@ -322,11 +460,77 @@ public class PageAccessSynchronizer implements Serializable
 		}
 
 		/**
-		 * @return thread that owns the lock
+		 * @return thread that owns the lock exclusively, or one of the threads sharing it, or
+		 *         {@code null} if it is not locked
 		 */
 		public Thread getThread()
 		{
-			return thread;
+			Thread owner = thread;
+			if (owner == null)
+			{
+				synchronized (this)
+				{
+					if (sharedThreads.isEmpty() == false)
+					{
+						owner = sharedThreads.iterator().next();
+					}
+				}
+			}
+			return owner;
+		}
+
+		/**
+		 * @return {@code true} if the lock is held in shared mode
+		 */
+		public synchronized boolean isShared()
+		{
+			return sharedThreads.isEmpty() == false;
+		}
+
+		private synchronized boolean isSharedBy(Thread candidate)
+		{
+			return sharedThreads.contains(candidate);
+		}
+
+		private void addHolder(Thread holder, boolean shared)
+		{
+			if (shared)
+			{
+				synchronized (this)
+				{
+					sharedThreads.add(holder);
+				}
+			}
+			else
+			{
+				thread = holder;
+			}
+		}
+
+		/**
+		 * Unlocks the lock if it is held by the thread
+		 * 
+		 * @param holder
+		 * @return {@code true} if the thread held the lock
+		 */
+		private boolean removeHolder(Thread holder)
+		{
+			if (thread == holder)
+			{
+				thread = null;
+				lock.writeLock().unlock();
+				return true;
+			}
+			boolean wasShared;
+			synchronized (this)
+			{
+				wasShared = sharedThreads.remove(holder);
+			}
+			if (wasShared)
+			{
+				lock.readLock().unlock();
+			}
+			return wasShared;
 		}
 	}
 }
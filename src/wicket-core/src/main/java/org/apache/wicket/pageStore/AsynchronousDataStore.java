@@ -16,14 +16,19 @@
  */
 package org.apache.wicket.pageStore;
 
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.time.Duration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -38,6 +43,13 @@ import org.slf4j.LoggerFactory;
  * It starts only one instance of {@link PageSavingRunnable} because all we need is to make the page
  * storing asynchronous. We don't want to write concurrently in the wrapped {@link IDataStore},
  * though it may happen in the extreme case when the queue is full. These cases should be avoided.
+ * <p>
+ * With a batch size greater than one the {@link PageSavingRunnable} takes up to that many entries
+ * from the queue at once, groups them by session and passes the pages of each session to the
+ * wrapped store in a single call if it is an {@link IBatchDataStore}. Entries which have been
+ * superseded by a newer version of the same page, or removed, before they were written are
+ * skipped.
+ * </p>
  * 
  * @author Matej Knopp
  */
@@ -77,6 +89,18 @@ public class AsynchronousDataStore implements IDataStore
 	 */
 	private final ConcurrentMap<String, Entry> entryMap;
 
+	/** the number of entries written by the wrapped {@link IDataStore} */
+	private final AtomicLong storedCount = new AtomicLong();
+
+	/** the number of entries which were superseded or removed before they were written */
+	private final AtomicLong skippedCount = new AtomicLong();
+
+	/** the number of entries written in the request thread because the queue was full */
+	private final AtomicLong synchronousCount = new AtomicLong();
+
+	/** the sum of the time the written entries have spent in the queue. In nanos. */
+	private final AtomicLong totalLatency = new AtomicLong();
+
 	/**
 	 * Construct.
 	 * 
@@ -87,11 +111,29 @@ public class AsynchronousDataStore implements IDataStore
 	 */
 	public AsynchronousDataStore(final IDataStore dataStore, final int capacity)
 	{
+		this(dataStore, capacity, 1);
+	}
+
+	/**
+	 * Construct.
+	 * 
+	 * @param dataStore
+	 *            the wrapped {@link IDataStore} that actually saved the data
+	 * @param capacity
+	 *            the capacity of the queue that delays the saving
+	 * @param batchSize
+	 *            the maximum number of entries the saving thread takes from the queue at once
+	 */
+	public AsynchronousDataStore(final IDataStore dataStore, final int capacity,
+		final int batchSize)
+	{
+		Args.withinRange(1, capacity, batchSize, "batchSize");
+
 		this.dataStore = dataStore;
 		entries = new LinkedBlockingQueue<Entry>(capacity);
 		entryMap = new ConcurrentHashMap<String, Entry>();
 
-		PageSavingRunnable savingRunnable = new PageSavingRunnable(dataStore, entries, entryMap);
+		PageSavingRunnable savingRunnable = new PageSavingRunnable(batchSize);
 		pageSavingThread = new Thread(savingRunnable, "Wicket-PageSavingThread");
 		pageSavingThread.setDaemon(true);
 		pageSavingThread.start();
@@ -169,7 +211,7 @@ public class AsynchronousDataStore implements IDataStore
 			Entry entry = entryMap.remove(key);
 			if (entry != null)
 			{
-				entries.remove(entry);
+				skipped(entry);
 			}
 		}
 
@@ -181,17 +223,15 @@ public class AsynchronousDataStore implements IDataStore
 	 */
 	public void removeData(final String sessionId)
 	{
-		for (Iterator<Entry> itor = entries.iterator(); itor.hasNext();)
+		// look in the map rather than in the queue to find also the entries which are taken by the
+		// saving thread but not written yet
+		for (Entry entry : entryMap.values())
 		{
-			Entry entry = itor.next();
-			if (entry != null) // this check is not needed in JDK6
+			if (sessionId.equals(entry.sessionId))
 			{
-				String entrySessionId = entry.sessionId;
-
-				if (sessionId.equals(entrySessionId))
+				if (entryMap.remove(getKey(entry), entry))
 				{
-					entryMap.remove(getKey(entry));
-					itor.remove();
+					skipped(entry);
 				}
 			}
 		}
@@ -209,7 +249,12 @@ public class AsynchronousDataStore implements IDataStore
 	{
 		Entry entry = new Entry(sessionId, id, data);
 		String key = getKey(entry);
-		entryMap.put(key, entry);
+		Entry previous = entryMap.put(key, entry);
+		if (previous != null)
+		{
+			// the newer version supersedes the one still waiting in the queue
+			skipped(previous);
+		}
 
 		try
 		{
@@ -218,18 +263,77 @@ public class AsynchronousDataStore implements IDataStore
 			if (added == false)
 			{
 				log.debug("Storing synchronously page with id '{}' in session '{}'", id, sessionId);
-				entryMap.remove(key);
+				entryMap.remove(key, entry);
+				synchronousCount.incrementAndGet();
 				dataStore.storeData(sessionId, id, data);
 			}
 		}
 		catch (InterruptedException e)
 		{
 			log.error(e.getMessage(), e);
-			entryMap.remove(key);
+			entryMap.remove(key, entry);
+			synchronousCount.incrementAndGet();
 			dataStore.storeData(sessionId, id, data);
 		}
 	}
 
+	/**
+	 * Takes an entry which has been superseded or removed out of the queue. Entries which the
+	 * saving thread has taken already are counted when it skips them.
+	 * 
+	 * @param entry
+	 */
+	private void skipped(final Entry entry)
+	{
+		if (entries.remove(entry))
+		{
+			skippedCount.incrementAndGet();
+		}
+	}
+
+	/**
+	 * @return the number of entries waiting to be written
+	 */
+	public int getQueueSize()
+	{
+		return entries.size();
+	}
+
+	/**
+	 * @return the number of entries written by the saving thread
+	 */
+	public long getStoredCount()
+	{
+		return storedCount.get();
+	}
+
+	/**
+	 * @return the number of entries which have not been written because they were superseded by a
+	 *         newer version of the page or removed
+	 */
+	public long getSkippedCount()
+	{
+		return skippedCount.get();
+	}
+
+	/**
+	 * @return the number of entries written in the request thread because the queue was full
+	 */
+	public long getSynchronousCount()
+	{
+		return synchronousCount.get();
+	}
+
+	/**
+	 * @return the average time the entries written by the saving thread have spent in the queue
+	 */
+	public Duration getAverageLatency()
+	{
+		long count = storedCount.get();
+		return count > 0 ? Duration.milliseconds(totalLatency.get() / count / 1000000d)
+			: Duration.NONE;
+	}
+
 	/**
 	 * 
 	 * @param pageId
@@ -252,51 +356,22 @@ public class AsynchronousDataStore implements IDataStore
 	}
 
 	/**
-	 * The structure used for an entry in the queue
+	 * The structure used for an entry in the queue. Entries are compared by identity, so a newer
+	 * version of a page can be told apart from the one it supersedes.
 	 */
 	private static class Entry
 	{
 		private final String sessionId;
 		private final int pageId;
 		private final byte data[];
+		private final long created;
 
 		public Entry(final String sessionId, final int pageId, final byte data[])
 		{
 			this.sessionId = Args.notNull(sessionId, "sessionId");
 			this.pageId = pageId;
 			this.data = Args.notNull(data, "data");
-		}
-
-		@Override
-		public int hashCode()
-		{
-			final int prime = 31;
-			int result = 1;
-			result = prime * result + pageId;
-			result = prime * result + ((sessionId == null) ? 0 : sessionId.hashCode());
-			return result;
-		}
-
-		@Override
-		public boolean equals(Object obj)
-		{
-			if (this == obj)
-				return true;
-			if (obj == null)
-				return false;
-			if (getClass() != obj.getClass())
-				return false;
-			Entry other = (Entry)obj;
-			if (pageId != other.pageId)
-				return false;
-			if (sessionId == null)
-			{
-				if (other.sessionId != null)
-					return false;
-			}
-			else if (!sessionId.equals(other.sessionId))
-				return false;
-			return true;
+			created = System.nanoTime();
 		}
 
 		@Override
@@ -310,26 +385,18 @@ public class AsynchronousDataStore implements IDataStore
 	/**
 	 * The thread that acts as consumer of {@link Entry}ies
 	 */
-	private static class PageSavingRunnable implements Runnable
+	private class PageSavingRunnable implements Runnable
 	{
-		private static final Logger log = LoggerFactory.getLogger(PageSavingRunnable.class);
-
-		private final BlockingQueue<Entry> entries;
-
-		private final ConcurrentMap<String, Entry> entryMap;
-
-		private final IDataStore dataStore;
+		private final int batchSize;
 
-		private PageSavingRunnable(IDataStore dataStore, BlockingQueue<Entry> entries,
-			ConcurrentMap<String, Entry> entryMap)
+		private PageSavingRunnable(final int batchSize)
 		{
-			this.dataStore = dataStore;
-			this.entries = entries;
-			this.entryMap = entryMap;
+			this.batchSize = batchSize;
 		}
 
 		public void run()
 		{
+			List<Entry> batch = new ArrayList<Entry>(batchSize);
 			while (!Thread.interrupted())
 			{
 				Entry entry = null;
@@ -343,12 +410,101 @@ public class AsynchronousDataStore implements IDataStore
 				}
 
 				if (entry != null)
+				{
+					batch.add(entry);
+					entries.drainTo(batch, batchSize - 1);
+					save(batch);
+					batch.clear();
+				}
+			}
+		}
+
+		/**
+		 * Saves the entries which are still current, grouped by session
+		 * 
+		 * @param batch
+		 */
+		private void save(final List<Entry> batch)
+		{
+			if (batch.size() == 1)
+			{
+				Entry entry = batch.get(0);
+				if (isCurrent(entry))
 				{
 					log.debug("Saving asynchronously: {}...", entry);
 					dataStore.storeData(entry.sessionId, entry.pageId, entry.data);
-					entryMap.remove(getKey(entry));
+					stored(entry);
 				}
+				return;
 			}
+
+			// session id -> page id -> entry. Only the newest version of a page is current, so
+			// each page is in the batch at most once
+			Map<String, Map<Integer, Entry>> sessions = new LinkedHashMap<String, Map<Integer, Entry>>();
+			for (Entry entry : batch)
+			{
+				if (isCurrent(entry))
+				{
+					Map<Integer, Entry> pages = sessions.get(entry.sessionId);
+					if (pages == null)
+					{
+						pages = new LinkedHashMap<Integer, Entry>();
+						sessions.put(entry.sessionId, pages);
+					}
+					pages.put(entry.pageId, entry);
+				}
+			}
+
+			for (Map.Entry<String, Map<Integer, Entry>> session : sessions.entrySet())
+			{
+				Map<Integer, Entry> pages = session.getValue();
+				if (pages.size() > 1 && dataStore instanceof IBatchDataStore)
+				{
+					log.debug("Saving asynchronously {} pages of session '{}'...", pages.size(),
+						session.getKey());
+					Map<Integer, byte[]> data = new LinkedHashMap<Integer, byte[]>();
+					for (Entry entry : pages.values())
+					{
+						data.put(entry.pageId, entry.data);
+					}
+					((IBatchDataStore)dataStore).storeData(session.getKey(), data);
+				}
+				else
+				{
+					for (Entry entry : pages.values())
+					{
+						log.debug("Saving asynchronously: {}...", entry);
+						dataStore.storeData(entry.sessionId, entry.pageId, entry.data);
+					}
+				}
+
+				for (Entry entry : pages.values())
+				{
+					stored(entry);
+				}
+			}
+		}
+
+		/**
+		 * @param entry
+		 * @return {@code false} if the entry has been superseded by a newer version of the page or
+		 *         removed in the meantime
+		 */
+		private boolean isCurrent(final Entry entry)
+		{
+			if (entryMap.get(getKey(entry)) == entry)
+			{
+				return true;
+			}
+			skippedCount.incrementAndGet();
+			return false;
+		}
+
+		private void stored(final Entry entry)
+		{
+			entryMap.remove(getKey(entry), entry);
+			storedCount.incrementAndGet();
+			totalLatency.addAndGet(System.nanoTime() - entry.created);
 		}
 	}
 }
@@ -0,0 +1,321 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore;
+
+import java.io.ByteArrayOutputStream;
+
+import org.apache.wicket.util.lang.Args;
+
+/**
+ * Computes and applies binary deltas between two byte arrays, e.g. two serialized versions of a
+ * page.
+ * <p>
+ * The base is indexed by the hashes of its blocks of {@value #BLOCK_SIZE} bytes. The target is
+ * scanned with a rolling hash; wherever a block of the base matches, the match is extended as far
+ * as possible and written as a copy instruction, everything else is written literally. The delta
+ * starts with the length of the target, followed by the instructions: a varint
+ * {@code length << 1 | 1} and a varint offset in the base for copies, a varint
+ * {@code length << 1} and the bytes for literals.
+ * </p>
+ *
+ * @see DefaultPageStore
+ */
+public final class BinaryDelta
+{
+	/** the size of the indexed blocks and thus of the shortest match */
+	public static final int BLOCK_SIZE = 16;
+
+	private static final int PRIME = 31;
+
+	/** PRIME ^ (BLOCK_SIZE - 1), to remove the first byte from a rolling hash */
+	private static final int PRIME_POWER;
+
+	static
+	{
+		int power = 1;
+		for (int i = 1; i < BLOCK_SIZE; i++)
+		{
+			power *= PRIME;
+		}
+		PRIME_POWER = power;
+	}
+
+	/**
+	 * The indexed blocks of a base. It can be reused to compute the deltas of several targets.
+	 */
+	public static final class Index
+	{
+		private final byte[] base;
+
+		/** block hash -&gt; offset + 1 */
+		private final int[] table;
+
+		private final int mask;
+
+		private Index(byte[] base)
+		{
+			this.base = base;
+
+			int blocks = base.length / BLOCK_SIZE;
+			int size = 16;
+			while (size < blocks * 2)
+			{
+				size <<= 1;
+			}
+			table = new int[size];
+			mask = size - 1;
+
+			for (int offset = 0; offset + BLOCK_SIZE <= base.length; offset += BLOCK_SIZE)
+			{
+				table[slot(hash(base, offset), mask)] = offset + 1;
+			}
+		}
+
+		/**
+		 * @return the indexed base
+		 */
+		public byte[] getBase()
+		{
+			return base;
+		}
+	}
+
+	/**
+	 * Construct.
+	 */
+	private BinaryDelta()
+	{
+	}
+
+	/**
+	 * Indexes the base for {@link #encode(Index, byte[])}.
+	 *
+	 * @param base
+	 * @return the index
+	 */
+	public static Index index(final byte[] base)
+	{
+		Args.notNull(base, "base");
+		return new Index(base);
+	}
+
+	/**
+	 * Computes the delta which turns the indexed base into the target.
+	 *
+	 * @param index
+	 *            the index of the base
+	 * @param target
+	 * @return the delta
+	 */
+	public static byte[] encode(final Index index, final byte[] target)
+	{
+		Args.notNull(index, "index");
+		Args.notNull(target, "target");
+
+		final byte[] base = index.base;
+		ByteArrayOutputStream out = new ByteArrayOutputStream(64 + target.length / 8);
+		writeVarInt(out, target.length);
+
+		int literalStart = 0;
+		int position = 0;
+		int hash = target.length >= BLOCK_SIZE ? hash(target, 0) : 0;
+		while (position + BLOCK_SIZE <= target.length)
+		{
+			int candidate = index.table[slot(hash, index.mask)] - 1;
+			if (candidate >= 0 && regionMatches(base, candidate, target, position))
+			{
+				// extend the match backwards into the pending literal and forwards
+				int baseStart = candidate;
+				int targetStart = position;
+				while (baseStart > 0 && targetStart > literalStart &&
+					base[baseStart - 1] == target[targetStart - 1])
+				{
+					baseStart--;
+					targetStart--;
+				}
+				int baseEnd = candidate + BLOCK_SIZE;
+				int targetEnd = position + BLOCK_SIZE;
+				while (baseEnd < base.length && targetEnd < target.length &&
+					base[baseEnd] == target[targetEnd])
+				{
+					baseEnd++;
+					targetEnd++;
+				}
+
+				writeLiteral(out, target, literalStart, targetStart);
+				writeVarInt(out, ((targetEnd - targetStart) << 1) | 1);
+				writeVarInt(out, baseStart);
+
+				position = targetEnd;
+				literalStart = targetEnd;
+				if (position + BLOCK_SIZE <= target.length)
+				{
+					hash = hash(target, position);
+				}
+			}
+			else
+			{
+				if (position + BLOCK_SIZE < target.length)
+				{
+					hash = (hash - target[position] * PRIME_POWER) * PRIME +
+						target[position + BLOCK_SIZE];
+				}
+				position++;
+			}
+		}
+		writeLiteral(out, target, literalStart, target.length);
+
+		return out.toByteArray();
+	}
+
+	/**
+	 * Applies a delta to the base.
+	 *
+	 * @param base
+	 * @param delta
+	 * @param offset
+	 *            the offset of the delta in the array
+	 * @return the target
+	 * @throws IllegalArgumentException
+	 *             if the delta is corrupt or does not belong to the base
+	 */
+	public static byte[] decode(final byte[] base, final byte[] delta, final int offset)
+	{
+		Args.notNull(base, "base");
+		Args.notNull(delta, "delta");
+
+		int[] position = { offset };
+		int length = readVarInt(delta, position);
+		if (length < 0)
+		{
+			throw new IllegalArgumentException("Corrupt delta");
+		}
+		byte[] target = new byte[length];
+		int targetPosition = 0;
+		while (position[0] < delta.length)
+		{
+			int header = readVarInt(delta, position);
+			int count = header >>> 1;
+			if (count > length - targetPosition)
+			{
+				throw new IllegalArgumentException("Corrupt delta");
+			}
+			if ((header & 1) == 1)
+			{
+				int baseOffset = readVarInt(delta, position);
+				if (baseOffset < 0 || count > base.length - baseOffset)
+				{
+					throw new IllegalArgumentException("Corrupt delta");
+				}
+				System.arraycopy(base, baseOffset, target, targetPosition, count);
+			}
+			else
+			{
+				if (count > delta.length - position[0])
+				{
+					throw new IllegalArgumentException("Corrupt delta");
+				}
+				System.arraycopy(delta, position[0], target, targetPosition, count);
+				position[0] += count;
+			}
+			targetPosition += count;
+		}
+		if (targetPosition != length)
+		{
+			throw new IllegalArgumentException("Corrupt delta");
+		}
+		return target;
+	}
+
+	private static int hash(byte[] data, int offset)
+	{
+		int hash = 0;
+		for (int i = offset; i < offset + BLOCK_SIZE; i++)
+		{
+			hash = hash * PRIME + data[i];
+		}
+		return hash;
+	}
+
+	/**
+	 * Spreads the bits of the hash before masking it
+	 * 
+	 * @param hash
+	 * @param mask
+	 * @return the slot in the index table
+	 */
+	private static int slot(int hash, int mask)
+	{
+		hash *= 0x9E3779B1;
+		return (hash ^ (hash >>> 15)) & mask;
+	}
+
+	private static boolean regionMatches(byte[] base, int baseOffset, byte[] target,
+		int targetOffset)
+	{
+		if (baseOffset + BLOCK_SIZE > base.length)
+		{
+			return false;
+		}
+		for (int i = 0; i < BLOCK_SIZE; i++)
+		{
+			if (base[baseOffset + i] != target[targetOffset + i])
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static void writeLiteral(ByteArrayOutputStream out, byte[] target, int start, int end)
+	{
+		if (end > start)
+		{
+			writeVarInt(out, (end - start) << 1);
+			out.write(target, start, end - start);
+		}
+	}
+
+	private static void writeVarInt(ByteArrayOutputStream out, int value)
+	{
+		while ((value & ~0x7F) != 0)
+		{
+			out.write((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.write(value);
+	}
+
+	private static int readVarInt(byte[] data, int[] position)
+	{
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7)
+		{
+			if (position[0] >= data.length)
+			{
+				throw new IllegalArgumentException("Corrupt delta");
+			}
+			int b = data[position[0]++];
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+			{
+				return value;
+			}
+		}
+		throw new IllegalArgumentException("Corrupt delta");
+	}
+}
@@ -0,0 +1,485 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.wicket.pageStore.PageWindowManager.PageWindow;
+import org.apache.wicket.util.collections.IntHashMap;
+
+/**
+ * An {@link IPageWindowManager} which allocates the windows in the same way as
+ * {@link PageWindowManager}, but keeps them in a linked list with a page id -&gt; window index that
+ * never has to be rebuilt. Looking up, storing and removing a page are O(1) operations (apart from
+ * merging windows), and lookups only take a shared lock so they can run in parallel.
+ * <p>
+ * Windows which are merged or removed are kept in a free list and reused for the next split or
+ * appended window.
+ * </p>
+ *
+ * @see DiskDataStore#newPageWindowManager(long)
+ */
+public class ConcurrentPageWindowManager implements IPageWindowManager
+{
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * A window in the file
+	 */
+	private static final class Window
+	{
+		/** id of page or -1 if the window is empty */
+		private int pageId = -1;
+
+		/** offset in the file where the serialized page data begins */
+		private int offset;
+
+		/** size of serialized page data */
+		private int size;
+
+		private Window previous;
+
+		private Window next;
+
+		private PageWindow toPageWindow()
+		{
+			return new PageWindow(pageId, offset, size);
+		}
+	}
+
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+	/**
+	 * Maximum page size. After this size is exceeded, the pages will be saved starting at the
+	 * beginning of file.
+	 */
+	private final long maxSize;
+
+	/** page id -> window */
+	private transient IntHashMap<Window> windowsByPageId;
+
+	/** the first window in the file */
+	private transient Window first;
+
+	/** the last window in the file */
+	private transient Window last;
+
+	/** the window of the last added page */
+	private transient Window current;
+
+	/** windows which are no longer in use, linked by {@link Window#next} */
+	private transient Window free;
+
+	private transient int totalSize;
+
+	/**
+	 * Construct.
+	 *
+	 * @param maxSize
+	 *            maximum page size. After this size is exceeded, the pages will be saved starting
+	 *            at the beginning of file
+	 */
+	public ConcurrentPageWindowManager(long maxSize)
+	{
+		this.maxSize = maxSize;
+		windowsByPageId = new IntHashMap<Window>();
+	}
+
+	/**
+	 * @see org.apache.wicket.pageStore.IPageWindowManager#createPageWindow(int, int)
+	 */
+	public PageWindow createPageWindow(int pageId, int size)
+	{
+		lock.writeLock().lock();
+		try
+		{
+			Window window = windowsByPageId.remove(pageId);
+
+			// if we found the page window, mark it as invalid
+			if (window != null)
+			{
+				window.pageId = -1;
+			}
+
+			// if we are not going to reuse a page window (because it's not the current one or
+			// because we didn't find it), move to the next window
+			if (window == null || window != current)
+			{
+				window = nextWindow();
+			}
+
+			current = allocateWindow(window, size);
+			current.pageId = pageId;
+			windowsByPageId.put(pageId, current);
+
+			return current.toPageWindow();
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * @see org.apache.wicket.pageStore.IPageWindowManager#getPageWindow(int)
+	 */
+	public PageWindow getPageWindow(int pageId)
+	{
+		lock.readLock().lock();
+		try
+		{
+			Window window = windowsByPageId.get(pageId);
+			return window != null ? window.toPageWindow() : null;
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @see org.apache.wicket.pageStore.IPageWindowManager#removePage(int)
+	 */
+	public void removePage(int pageId)
+	{
+		lock.writeLock().lock();
+		try
+		{
+			Window window = windowsByPageId.remove(pageId);
+			if (window != null)
+			{
+				if (window == last)
+				{
+					if (window == current)
+					{
+						current = window.previous;
+					}
+					totalSize -= window.size;
+					unlink(window);
+					release(window);
+				}
+				else
+				{
+					window.pageId = -1;
+				}
+			}
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * @see org.apache.wicket.pageStore.IPageWindowManager#getLastPageWindows(int)
+	 */
+	public List<PageWindow> getLastPageWindows(int count)
+	{
+		lock.readLock().lock();
+		try
+		{
+			List<PageWindow> result = new ArrayList<PageWindow>();
+
+			// start from the current window, rewind to the last one and collect all windows until
+			// the current one
+			Window window = current;
+			if (window != null)
+			{
+				do
+				{
+					if (window.pageId != -1)
+					{
+						result.add(window.toPageWindow());
+					}
+
+					window = window.previous != null ? window.previous : last;
+				}
+				while (result.size() < count && window != current);
+			}
+
+			return result;
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @see org.apache.wicket.pageStore.IPageWindowManager#getTotalSize()
+	 */
+	public int getTotalSize()
+	{
+		lock.readLock().lock();
+		try
+		{
+			return totalSize;
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return the window following the current one, the first window if the maximum file size has
+	 *         been reached, or {@code null} if a new window has to be appended
+	 */
+	private Window nextWindow()
+	{
+		if (maxSize > 0 && totalSize >= maxSize && current == last)
+		{
+			return first;
+		}
+		return current != null ? current.next : first;
+	}
+
+	/**
+	 * Allocates the given window with the size. If the window is {@code null} a new window is
+	 * appended to the file. Otherwise the window will be split or merged with the following ones.
+	 *
+	 * @param window
+	 * @param size
+	 * @return the allocated window
+	 */
+	private Window allocateWindow(Window window, int size)
+	{
+		if (window == null)
+		{
+			window = obtain();
+			window.offset = last != null ? last.offset + last.size : 0;
+			window.size = size;
+			totalSize += size;
+			linkAfter(last, window);
+		}
+		else if (window.size != size)
+		{
+			if (window == last)
+			{
+				totalSize += size - window.size;
+				window.size = size;
+			}
+			else
+			{
+				// merge as many times as necessary
+				while (window.size < size && window != last)
+				{
+					Window next = window.next;
+					window.size += next.size;
+					clear(next);
+					unlink(next);
+					release(next);
+				}
+
+				if (window.size < size)
+				{
+					// this is the last window now
+					totalSize += size - window.size;
+					window.size = size;
+				}
+				else
+				{
+					split(window, size);
+				}
+			}
+			clear(window);
+		}
+		else
+		{
+			clear(window);
+		}
+		return window;
+	}
+
+	/**
+	 * Shrinks the window to the size. The rest of the original window becomes a new empty window.
+	 *
+	 * @param window
+	 * @param size
+	 */
+	private void split(Window window, int size)
+	{
+		int delta = window.size - size;
+		if (window == last)
+		{
+			totalSize -= delta;
+			window.size = size;
+		}
+		else if (delta != 0)
+		{
+			Window rest = obtain();
+			rest.offset = window.offset + size;
+			rest.size = delta;
+			window.size = size;
+			linkAfter(window, rest);
+		}
+	}
+
+	/**
+	 * Removes the page stored in the window, if any
+	 *
+	 * @param window
+	 */
+	private void clear(Window window)
+	{
+		if (window.pageId != -1)
+		{
+			windowsByPageId.remove(window.pageId);
+			window.pageId = -1;
+		}
+	}
+
+	private void linkAfter(Window previous, Window window)
+	{
+		window.previous = previous;
+		if (previous != null)
+		{
+			window.next = previous.next;
+			previous.next = window;
+		}
+		else
+		{
+			window.next = first;
+			first = window;
+		}
+
+		if (window.next != null)
+		{
+			window.next.previous = window;
+		}
+		else
+		{
+			last = window;
+		}
+	}
+
+	private void unlink(Window window)
+	{
+		if (window.previous != null)
+		{
+			window.previous.next = window.next;
+		}
+		else
+		{
+			first = window.next;
+		}
+
+		if (window.next != null)
+		{
+			window.next.previous = window.previous;
+		}
+		else
+		{
+			last = window.previous;
+		}
+	}
+
+	/**
+	 * @return a window from the free list or a new one
+	 */
+	private Window obtain()
+	{
+		Window window = free;
+		if (window != null)
+		{
+			free = window.next;
+			window.next = null;
+		}
+		else
+		{
+			window = new Window();
+		}
+		return window;
+	}
+
+	/**
+	 * Puts the window in the free list
+	 *
+	 * @param window
+	 */
+	private void release(Window window)
+	{
+		window.pageId = -1;
+		window.previous = null;
+		window.next = free;
+		free = window;
+	}
+
+	private void writeObject(ObjectOutputStream out) throws IOException
+	{
+		lock.readLock().lock();
+		try
+		{
+			out.defaultWriteObject();
+
+			int count = 0;
+			int currentIndex = -1;
+			for (Window window = first; window != null; window = window.next)
+			{
+				if (window == current)
+				{
+					currentIndex = count;
+				}
+				count++;
+			}
+
+			out.writeInt(count);
+			out.writeInt(currentIndex);
+			for (Window window = first; window != null; window = window.next)
+			{
+				out.writeInt(window.pageId);
+				out.writeInt(window.size);
+			}
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+	{
+		in.defaultReadObject();
+
+		windowsByPageId = new IntHashMap<Window>();
+		int count = in.readInt();
+		int currentIndex = in.readInt();
+		for (int i = 0; i < count; i++)
+		{
+			Window window = new Window();
+			window.pageId = in.readInt();
+			window.size = in.readInt();
+			window.offset = totalSize;
+			totalSize += window.size;
+			linkAfter(last, window);
+
+			if (window.pageId != -1)
+			{
+				windowsByPageId.put(window.pageId, window);
+			}
+			if (i == currentIndex)
+			{
+				current = window;
+			}
+		}
+	}
+}
@@ -18,13 +18,18 @@ package org.apache.wicket.pageStore;
 
 import java.io.Serializable;
 import java.lang.ref.SoftReference;
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.Adler32;
 
 import org.apache.wicket.page.IManageablePage;
 import org.apache.wicket.serialize.ISerializer;
 import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.lang.Bytes;
 import org.apache.wicket.util.lang.Objects;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -33,12 +38,31 @@ import org.slf4j.LoggerFactory;
  * The {@link IPageStore} that converts {@link IManageablePage} instances to {@link SerializedPage}s
  * before passing them to the {@link IDataStore} to store them and the same in the opposite
  * direction when loading {@link SerializedPage} from the data store.
- * 
+ * <p>
+ * Optionally the pages are stored as deltas: the serialized page is stored once as the base for its
+ * page class in the session, the following pages of that class are stored as {@link BinaryDelta}s
+ * against the base. After {@code maxDeltaChainLength} deltas, or if a delta is not smaller than
+ * half of the page, the page becomes the new base. The bases are stored in the {@link IDataStore}
+ * too, with ids counting down from {@link Integer#MAX_VALUE}. A base is stored again once as many
+ * bytes as its own size, or {@value #BASE_RESTORE_INTERVAL} pages, have been stored in the session
+ * since, so a data store which evicts its oldest pages keeps the base of the newest deltas. A
+ * superseded base is removed from the data store as soon as no stored page depends on it anymore.
+ * A page whose base has nevertheless been removed from the data store can not be restored anymore.
+ * </p>
  */
 public class DefaultPageStore implements IPageStore
 {
 	private static final Logger LOG = LoggerFactory.getLogger(DefaultPageStore.class);
 
+	/** the first bytes of the data of a page which is stored as a delta */
+	private static final byte[] DELTA_MAGIC = { 0, 'W', 'D', 'L' };
+
+	/** magic, id of the base, length of the base, checksum of the base */
+	private static final int DELTA_HEADER_LENGTH = DELTA_MAGIC.length + 12;
+
+	/** the number of pages stored in a session after which a base is stored again */
+	private static final int BASE_RESTORE_INTERVAL = 8;
+
 	private final SerializedPagesCache serializedPagesCache;
 
 	private final IDataStore pageDataStore;
@@ -48,6 +72,16 @@ public class DefaultPageStore implements IPageStore
 	 */
 	private final ISerializer pageSerializer;
 
+	/**
+	 * The maximum number of pages stored as delta against the same base, 0 if deltas are disabled
+	 */
+	private final int maxDeltaChainLength;
+
+	/**
+	 * session id -&gt; the bases of the deltas of that session
+	 */
+	private final ConcurrentMap<String, DeltaBases> deltaBases = new ConcurrentHashMap<String, DeltaBases>();
+
 	/**
 	 * Construct.
 	 * 
@@ -61,13 +95,58 @@ public class DefaultPageStore implements IPageStore
 	 */
 	public DefaultPageStore(final ISerializer pageSerializer, final IDataStore dataStore,
 		final int cacheSize)
+	{
+		this(pageSerializer, dataStore, cacheSize, 0);
+	}
+
+	/**
+	 * Construct.
+	 * 
+	 * @param pageSerializer
+	 *            the {@link ISerializer} that will be used to convert pages from/to byte arrays
+	 * @param dataStore
+	 *            the {@link IDataStore} that actually stores the pages
+	 * @param cacheSize
+	 *            the number of pages to cache in memory before passing them to
+	 *            {@link IDataStore#storeData(String, int, byte[])}
+	 * @param maxDeltaChainLength
+	 *            the maximum number of pages stored as delta against the same base page, 0 to
+	 *            store every page completely
+	 */
+	public DefaultPageStore(final ISerializer pageSerializer, final IDataStore dataStore,
+		final int cacheSize, final int maxDeltaChainLength)
+	{
+		this(pageSerializer, dataStore, cacheSize, Bytes.MAX, maxDeltaChainLength);
+	}
+
+	/**
+	 * Construct.
+	 * 
+	 * @param pageSerializer
+	 *            the {@link ISerializer} that will be used to convert pages from/to byte arrays
+	 * @param dataStore
+	 *            the {@link IDataStore} that actually stores the pages
+	 * @param cacheSize
+	 *            the number of pages to cache in memory before passing them to
+	 *            {@link IDataStore#storeData(String, int, byte[])}
+	 * @param cacheMaxSize
+	 *            the maximum total size of the pages cached in memory
+	 * @param maxDeltaChainLength
+	 *            the maximum number of pages stored as delta against the same base page, 0 to
+	 *            store every page completely
+	 */
+	public DefaultPageStore(final ISerializer pageSerializer, final IDataStore dataStore,
+		final int cacheSize, final Bytes cacheMaxSize, final int maxDeltaChainLength)
 	{
 		Args.notNull(pageSerializer, "pageSerializer");
 		Args.notNull(dataStore, "DataStore");
+		Args.isTrue(maxDeltaChainLength >= 0, "maxDeltaChainLength must not be negative: {}",
+			maxDeltaChainLength);
 
 		this.pageSerializer = pageSerializer;
 		pageDataStore = dataStore;
-		serializedPagesCache = new SerializedPagesCache(cacheSize);
+		serializedPagesCache = new SerializedPagesCache(cacheSize, cacheMaxSize);
+		this.maxDeltaChainLength = maxDeltaChainLength;
 	}
 
 	/**
@@ -78,6 +157,17 @@ public class DefaultPageStore implements IPageStore
 		pageDataStore.destroy();
 	}
 
+	/**
+	 * @return a snapshot of the hit, miss and eviction counts and of the size of the cache of the
+	 *         recently stored serialized pages
+	 */
+	public final PageCacheStatistics getCacheStatistics()
+	{
+		return new PageCacheStatistics(serializedPagesCache.getHitCount(),
+			serializedPagesCache.getMissCount(), serializedPagesCache.getEvictionCount(),
+			serializedPagesCache.getCount(), serializedPagesCache.getSize());
+	}
+
 	/**
 	 * @param sessionId
 	 * @param pageId
@@ -127,7 +217,7 @@ public class DefaultPageStore implements IPageStore
 			return deserializePage(fromCache.data);
 		}
 
-		byte[] data = getPageData(sessionId, id);
+		byte[] data = loadPageData(sessionId, id);
 		if (data != null)
 		{
 			return deserializePage(data);
@@ -139,6 +229,7 @@ public class DefaultPageStore implements IPageStore
 	{
 		serializedPagesCache.removePage(sessionId, id);
 		removePageData(sessionId, id);
+		releaseBase(sessionId, id);
 	}
 
 	public void storePage(final String sessionId, final IManageablePage page)
@@ -147,7 +238,16 @@ public class DefaultPageStore implements IPageStore
 		if (serialized != null)
 		{
 			serializedPagesCache.storePage(serialized);
-			storePageData(sessionId, serialized.getPageId(), serialized.getData());
+
+			if (maxDeltaChainLength > 0)
+			{
+				storeDelta(sessionId, serialized.getPageId(), page.getClass().getName(),
+					serialized.getData());
+			}
+			else
+			{
+				storePageData(sessionId, serialized.getPageId(), serialized.getData());
+			}
 		}
 	}
 
@@ -155,6 +255,7 @@ public class DefaultPageStore implements IPageStore
 	{
 		removePageData(sessionId);
 		serializedPagesCache.removePages(sessionId);
+		deltaBases.remove(sessionId);
 	}
 
 	public IManageablePage convertToPage(final Object object)
@@ -173,7 +274,7 @@ public class DefaultPageStore implements IPageStore
 			byte data[] = page.getData();
 			if (data == null)
 			{
-				data = getPageData(page.getSessionId(), page.getPageId());
+				data = loadPageData(page.getSessionId(), page.getPageId());
 			}
 			if (data != null)
 			{
@@ -203,7 +304,7 @@ public class DefaultPageStore implements IPageStore
 			return result;
 		}
 
-		byte data[] = getPageData(serializedPage.getSessionId(), serializedPage.getPageId());
+		byte data[] = loadPageData(serializedPage.getSessionId(), serializedPage.getPageId());
 		return new SerializedPage(serializedPage.getSessionId(), serializedPage.getPageId(), data);
 	}
 
@@ -274,6 +375,7 @@ public class DefaultPageStore implements IPageStore
 			if (page.getData() != null)
 			{
 				storePageData(page.getSessionId(), page.getPageId(), page.getData());
+				releaseBase(page.getSessionId(), page.getPageId());
 				return new SerializedPage(page.getSessionId(), page.getPageId(), null);
 			}
 			return page;
@@ -283,6 +385,349 @@ public class DefaultPageStore implements IPageStore
 		throw new IllegalArgumentException("Unknown object type " + type);
 	}
 
+	/**
+	 * Loads the data of a page from the {@link IDataStore}, applying the delta to its base if it has
+	 * been stored as a delta.
+	 * 
+	 * @param sessionId
+	 * @param pageId
+	 * @return the serialized page or {@code null} if the page or its base is not available
+	 */
+	private byte[] loadPageData(final String sessionId, final int pageId)
+	{
+		byte[] data = getPageData(sessionId, pageId);
+		if (data != null && isDelta(data))
+		{
+			data = decodeDelta(sessionId, pageId, data);
+		}
+		return data;
+	}
+
+	/**
+	 * Stores the serialized page as a delta against the base of its page class, storing the page
+	 * as the new base if necessary. The base is stored after the delta, and stored again when the
+	 * data store may evict it before the deltas which depend on it.
+	 * 
+	 * @param sessionId
+	 * @param pageId
+	 * @param pageType
+	 *            the class name of the page
+	 * @param data
+	 *            the serialized page
+	 */
+	private void storeDelta(final String sessionId, final int pageId, final String pageType,
+		final byte[] data)
+	{
+		DeltaBases bases = deltaBases.get(sessionId);
+		if (bases == null)
+		{
+			bases = new DeltaBases();
+			DeltaBases existing = deltaBases.putIfAbsent(sessionId, bases);
+			if (existing != null)
+			{
+				bases = existing;
+			}
+		}
+
+		synchronized (bases)
+		{
+			DeltaBase base = bases.byPageType.get(pageType);
+			BinaryDelta.Index index = null;
+			byte[] delta = null;
+			if (base != null && base.chainLength < maxDeltaChainLength)
+			{
+				index = getIndex(sessionId, base);
+				if (index != null)
+				{
+					delta = BinaryDelta.encode(index, data);
+					if (delta.length < data.length / 2)
+					{
+						base.chainLength++;
+					}
+					else
+					{
+						delta = null;
+					}
+				}
+			}
+
+			if (delta == null)
+			{
+				// the page becomes the new base
+				DeltaBase superseded = base;
+				index = BinaryDelta.index(data);
+				base = new DeltaBase(bases.nextKey--, pageType, data.length, checksum(data), index);
+				bases.byPageType.put(pageType, base);
+				bases.byKey.put(base.key, base);
+				delta = BinaryDelta.encode(index, data);
+				if (superseded != null && superseded.pageIds.isEmpty())
+				{
+					removeBase(sessionId, bases, superseded);
+				}
+			}
+
+			DeltaBase previous = bases.byPageId.put(pageId, base);
+			base.pageIds.add(pageId);
+			if (previous != null && previous != base)
+			{
+				release(sessionId, bases, previous, pageId);
+			}
+
+			byte[] record = newDeltaRecord(base, delta);
+			storePageData(sessionId, pageId, record);
+			bases.storedBytes += record.length;
+			bases.storedPages++;
+
+			if (base.storedBytes < 0 || bases.storedBytes - base.storedBytes >= base.length ||
+				bases.storedPages - base.storedPages >= BASE_RESTORE_INTERVAL)
+			{
+				storePageData(sessionId, base.key, index.getBase());
+				bases.storedBytes += base.length;
+				bases.storedPages++;
+				base.storedBytes = bases.storedBytes;
+				base.storedPages = bases.storedPages;
+			}
+		}
+	}
+
+	/**
+	 * Called when a page is not stored as a delta anymore, removes the base it has been stored
+	 * against if that has been superseded and no other page depends on it.
+	 * 
+	 * @param sessionId
+	 * @param pageId
+	 */
+	private void releaseBase(final String sessionId, final int pageId)
+	{
+		DeltaBases bases = deltaBases.get(sessionId);
+		if (bases != null)
+		{
+			synchronized (bases)
+			{
+				DeltaBase base = bases.byPageId.remove(pageId);
+				if (base != null)
+				{
+					release(sessionId, bases, base, pageId);
+				}
+			}
+		}
+	}
+
+	private void release(final String sessionId, final DeltaBases bases, final DeltaBase base,
+		final int pageId)
+	{
+		base.pageIds.remove(pageId);
+		if (base.pageIds.isEmpty() && bases.byPageType.get(base.pageType) != base)
+		{
+			removeBase(sessionId, bases, base);
+		}
+	}
+
+	private void removeBase(final String sessionId, final DeltaBases bases, final DeltaBase base)
+	{
+		bases.byKey.remove(base.key);
+		removePageData(sessionId, base.key);
+	}
+
+	/**
+	 * @param sessionId
+	 * @param base
+	 * @return the index of the base, loaded from the data store if necessary, or {@code null} if
+	 *         it is not available anymore
+	 */
+	private BinaryDelta.Index getIndex(final String sessionId, final DeltaBase base)
+	{
+		BinaryDelta.Index index = base.index.get();
+		if (index == null)
+		{
+			byte[] data = getPageData(sessionId, base.key);
+			if (data != null && base.matches(data))
+			{
+				index = BinaryDelta.index(data);
+				base.index = new SoftReference<BinaryDelta.Index>(index);
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Applies the delta stored for a page to its base.
+	 * 
+	 * @param sessionId
+	 * @param pageId
+	 * @param record
+	 *            the stored delta
+	 * @return the serialized page or {@code null} if the base is not available anymore
+	 */
+	private byte[] decodeDelta(final String sessionId, final int pageId, final byte[] record)
+	{
+		if (record.length < DELTA_HEADER_LENGTH)
+		{
+			LOG.warn("Corrupt delta of page {} in session {}", pageId, sessionId);
+			return null;
+		}
+
+		int key = readInt(record, DELTA_MAGIC.length);
+		int length = readInt(record, DELTA_MAGIC.length + 4);
+		int checksum = readInt(record, DELTA_MAGIC.length + 8);
+
+		byte[] base = null;
+		DeltaBases bases = deltaBases.get(sessionId);
+		if (bases != null)
+		{
+			synchronized (bases)
+			{
+				DeltaBase candidate = bases.byKey.get(key);
+				BinaryDelta.Index index = candidate != null ? candidate.index.get() : null;
+				if (index != null)
+				{
+					base = index.getBase();
+				}
+			}
+		}
+		if (base == null)
+		{
+			base = getPageData(sessionId, key);
+			if (base == null || base.length != length || checksum(base) != checksum)
+			{
+				LOG.debug("The base of page {} in session {} is not available anymore", pageId,
+					sessionId);
+				return null;
+			}
+		}
+
+		try
+		{
+			return BinaryDelta.decode(base, record, DELTA_HEADER_LENGTH);
+		}
+		catch (IllegalArgumentException e)
+		{
+			LOG.warn("Corrupt delta of page " + pageId + " in session " + sessionId, e);
+			return null;
+		}
+	}
+
+	private static byte[] newDeltaRecord(final DeltaBase base, final byte[] delta)
+	{
+		byte[] record = new byte[DELTA_HEADER_LENGTH + delta.length];
+		System.arraycopy(DELTA_MAGIC, 0, record, 0, DELTA_MAGIC.length);
+		writeInt(record, DELTA_MAGIC.length, base.key);
+		writeInt(record, DELTA_MAGIC.length + 4, base.length);
+		writeInt(record, DELTA_MAGIC.length + 8, base.checksum);
+		System.arraycopy(delta, 0, record, DELTA_HEADER_LENGTH, delta.length);
+		return record;
+	}
+
+	private static boolean isDelta(final byte[] data)
+	{
+		if (data.length < DELTA_MAGIC.length)
+		{
+			return false;
+		}
+		for (int i = 0; i < DELTA_MAGIC.length; i++)
+		{
+			if (data[i] != DELTA_MAGIC[i])
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int checksum(final byte[] data)
+	{
+		Adler32 adler = new Adler32();
+		adler.update(data, 0, data.length);
+		return (int)adler.getValue();
+	}
+
+	private static void writeInt(final byte[] data, final int offset, final int value)
+	{
+		data[offset] = (byte)(value >>> 24);
+		data[offset + 1] = (byte)(value >>> 16);
+		data[offset + 2] = (byte)(value >>> 8);
+		data[offset + 3] = (byte)value;
+	}
+
+	private static int readInt(final byte[] data, final int offset)
+	{
+		return ((data[offset] & 0xFF) << 24) | ((data[offset + 1] & 0xFF) << 16) |
+			((data[offset + 2] & 0xFF) << 8) | (data[offset + 3] & 0xFF);
+	}
+
+	/**
+	 * The bases of the deltas of a session
+	 */
+	private static class DeltaBases
+	{
+		/** the id under which the next base is stored */
+		private int nextKey = Integer.MAX_VALUE;
+
+		/** the number of bytes stored in the session */
+		private long storedBytes;
+
+		/** the number of pages, including the bases, stored in the session */
+		private long storedPages;
+
+		/** page class name -&gt; the current base */
+		private final Map<String, DeltaBase> byPageType = new HashMap<String, DeltaBase>();
+
+		/** id of the base -&gt; the current and superseded bases which are still stored */
+		private final Map<Integer, DeltaBase> byKey = new HashMap<Integer, DeltaBase>();
+
+		/** page id -&gt; the base the page is stored against */
+		private final Map<Integer, DeltaBase> byPageId = new HashMap<Integer, DeltaBase>();
+	}
+
+	/**
+	 * A serialized page stored as the base of deltas
+	 */
+	private static class DeltaBase
+	{
+		/** the id under which the base is stored */
+		private final int key;
+
+		/** the class name of the page */
+		private final String pageType;
+
+		private final int length;
+
+		private final int checksum;
+
+		/** the number of pages stored as delta against this base */
+		private int chainLength;
+
+		/** the ids of the pages which are currently stored as delta against this base */
+		private final Set<Integer> pageIds = new HashSet<Integer>();
+
+		/** {@link DeltaBases#storedBytes} when the base was stored last, -1 if not stored yet */
+		private long storedBytes = -1;
+
+		/** {@link DeltaBases#storedPages} when the base was stored last */
+		private long storedPages;
+
+		private SoftReference<BinaryDelta.Index> index;
+
+		private DeltaBase(int key, String pageType, int length, int checksum,
+			BinaryDelta.Index index)
+		{
+			this.key = key;
+			this.pageType = pageType;
+			this.length = length;
+			this.checksum = checksum;
+			this.index = new SoftReference<BinaryDelta.Index>(index);
+		}
+
+		/**
+		 * @param data
+		 * @return whether the data is the one of this base
+		 */
+		private boolean matches(byte[] data)
+		{
+			return data.length == length && checksum(data) == checksum;
+		}
+	}
+
 	/**
 	 * A representation of {@link IManageablePage} that knows additionally the id of the http
 	 * session in which this {@link IManageablePage} instance is used. The {@link #sessionId} and
@@ -388,164 +833,4 @@ public class DefaultPageStore implements IPageStore
 		IManageablePage page = (IManageablePage)pageSerializer.deserialize(data);
 		return page;
 	}
-
-	/**
-	 * Cache that stores serialized pages. This is important to make sure that a single page is not
-	 * serialized twice or more when not necessary.
-	 * <p>
-	 * For example a page is serialized during request, but it might be also later serialized on
-	 * session replication. The purpose of this cache is to make sure that the data obtained from
-	 * first serialization is reused on second serialization.
-	 * 
-	 * @author Matej Knopp
-	 */
-	static class SerializedPagesCache
-	{
-		private final int size;
-
-		private final List<SoftReference<SerializedPage>> cache;
-
-		/**
-		 * Construct.
-		 * 
-		 * @param size
-		 */
-		public SerializedPagesCache(final int size)
-		{
-			this.size = size;
-			cache = new ArrayList<SoftReference<SerializedPage>>(size);
-		}
-
-		/**
-		 * 
-		 * @param sessionId
-		 * @param id
-		 * @return the removed {@link SerializedPage} or <code>null</code> - otherwise
-		 */
-		public SerializedPage removePage(final String sessionId, final int id)
-		{
-			Args.notNull(sessionId, "sessionId");
-
-			if (size > 0)
-			{
-				synchronized (cache)
-				{
-					for (Iterator<SoftReference<SerializedPage>> i = cache.iterator(); i.hasNext();)
-					{
-						SoftReference<SerializedPage> ref = i.next();
-						SerializedPage entry = ref.get();
-						if (entry != null && entry.getPageId() == id &&
-							entry.getSessionId().equals(sessionId))
-						{
-							i.remove();
-							return entry;
-						}
-					}
-				}
-			}
-			return null;
-		}
-
-		/**
-		 * Removes all {@link SerializedPage}s for the session with <code>sessionId</code> from the
-		 * cache.
-		 * 
-		 * @param sessionId
-		 */
-		public void removePages(String sessionId)
-		{
-			Args.notNull(sessionId, "sessionId");
-
-			if (size > 0)
-			{
-				synchronized (cache)
-				{
-					for (Iterator<SoftReference<SerializedPage>> i = cache.iterator(); i.hasNext();)
-					{
-						SoftReference<SerializedPage> ref = i.next();
-						SerializedPage entry = ref.get();
-						if (entry != null && entry.getSessionId().equals(sessionId))
-						{
-							i.remove();
-						}
-					}
-				}
-			}
-		}
-
-		/**
-		 * Returns a {@link SerializedPage} by looking it up by <code>sessionId</code> and
-		 * <code>pageId</code>. If there is a match then it is <i>touched</i>, i.e. it is moved at
-		 * the top of the cache.
-		 * 
-		 * @param sessionId
-		 * @param pageId
-		 * @return the found serialized page or <code>null</code> when not found
-		 */
-		public SerializedPage getPage(String sessionId, int pageId)
-		{
-			Args.notNull(sessionId, "sessionId");
-
-			SerializedPage result = null;
-			if (size > 0)
-			{
-				synchronized (cache)
-				{
-					for (Iterator<SoftReference<SerializedPage>> i = cache.iterator(); i.hasNext();)
-					{
-						SoftReference<SerializedPage> ref = i.next();
-						SerializedPage entry = ref.get();
-						if (entry != null && entry.getPageId() == pageId &&
-							entry.getSessionId().equals(sessionId))
-						{
-							i.remove();
-							result = entry;
-							break;
-						}
-					}
-
-					if (result != null)
-					{
-						// move to top
-						storePage(result);
-					}
-				}
-			}
-			return result;
-		}
-
-		/**
-		 * Store the serialized page in cache
-		 * 
-		 * @param sessionId
-		 * @param page
-		 */
-		void storePage(SerializedPage page)
-		{
-			SoftReference<SerializedPage> ref = new SoftReference<SerializedPage>(page);
-
-			if (size > 0)
-			{
-				synchronized (cache)
-				{
-					for (Iterator<SoftReference<SerializedPage>> i = cache.iterator(); i.hasNext();)
-					{
-						SoftReference<SerializedPage> r = i.next();
-						SerializedPage entry = r.get();
-						if (entry != null && entry.equals(page))
-						{
-							i.remove();
-							break;
-						}
-					}
-
-					cache.add(ref);
-					if (cache.size() > size)
-					{
-						cache.remove(0);
-					}
-				}
-			}
-		}
-	}
 }
@@ -29,11 +29,13 @@ import java.io.RandomAccessFile;
 import java.io.Serializable;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.apache.wicket.WicketRuntimeException;
 import org.apache.wicket.pageStore.PageWindowManager.PageWindow;
@@ -47,7 +49,7 @@ import org.slf4j.LoggerFactory;
 /**
  * A data store implementation which stores the data on disk (in a file system)
  */
-public class DiskDataStore implements IDataStore
+public class DiskDataStore implements IBatchDataStore
 {
 	private static final Logger log = LoggerFactory.getLogger(DiskDataStore.class);
 
@@ -155,11 +157,8 @@ public class DiskDataStore implements IDataStore
 		if (sessionEntry != null)
 		{
 			log.debug("Removing data for pages in session with id '{}'", sessionId);
-			synchronized (sessionEntry)
-			{
-				sessionEntryMap.remove(sessionEntry.sessionId);
-				sessionEntry.unbind();
-			}
+			sessionEntryMap.remove(sessionEntry.sessionId);
+			sessionEntry.unbind();
 		}
 	}
 
@@ -177,6 +176,22 @@ public class DiskDataStore implements IDataStore
 		}
 	}
 
+	/**
+	 * Stores the pages with a single write access to the file of the session.
+	 * 
+	 * @see org.apache.wicket.pageStore.IBatchDataStore#storeData(java.lang.String, java.util.Map)
+	 */
+	public void storeData(final String sessionId, final Map<Integer, byte[]> data)
+	{
+		SessionEntry sessionEntry = getSessionEntry(sessionId, true);
+		if (sessionEntry != null)
+		{
+			log.debug("Storing data for pages with ids '{}' in session with id '{}'",
+				data.keySet(), sessionId);
+			sessionEntry.savePages(data);
+		}
+	}
+
 	/**
 	 * 
 	 * @param sessionId
@@ -195,6 +210,19 @@ public class DiskDataStore implements IDataStore
 		return existing != null ? existing : entry;
 	}
 
+	/**
+	 * Creates the {@link IPageWindowManager} which manages the file of a session. Override to use
+	 * {@link ConcurrentPageWindowManager} for sessions with many pages.
+	 * 
+	 * @param maxSize
+	 *            the maximum size of the file
+	 * @return the page window manager
+	 */
+	protected IPageWindowManager newPageWindowManager(final long maxSize)
+	{
+		return new PageWindowManager(maxSize);
+	}
+
 	/**
 	 * Load the index
 	 */
@@ -272,20 +300,24 @@ public class DiskDataStore implements IDataStore
 		private final String sessionId;
 		private transient DiskDataStore diskDataStore;
 		private String fileName;
-		private PageWindowManager manager;
+		private IPageWindowManager manager;
 		private boolean unbound = false;
 
+		/** loading pages takes the read lock, so they can be read in parallel */
+		private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
 		protected SessionEntry(DiskDataStore diskDataStore, String sessionId)
 		{
 			this.diskDataStore = diskDataStore;
 			this.sessionId = sessionId;
 		}
 
-		public PageWindowManager getManager()
+		public synchronized IPageWindowManager getManager()
 		{
 			if (manager == null)
 			{
-				manager = new PageWindowManager(diskDataStore.maxSizePerPageSession.bytes());
+				long maxSize = diskDataStore.maxSizePerPageSession.bytes();
+				manager = diskDataStore.newPageWindowManager(maxSize);
 			}
 			return manager;
 		}
@@ -313,21 +345,54 @@ public class DiskDataStore implements IDataStore
 		 * @param pageId
 		 * @param data
 		 */
-		public synchronized void savePage(int pageId, byte data[])
+		public void savePage(int pageId, byte data[])
 		{
-			if (unbound)
-			{
-				return;
-			}
-			// only save page that has some data
-			if (data != null)
+			savePages(Collections.singletonMap(pageId, data));
+		}
+
+		/**
+		 * Saves the serialized pages to appropriate file, opening it only once.
+		 * 
+		 * @param pages
+		 *            page id -&gt; serialized page, in the order they have to be stored
+		 */
+		public void savePages(Map<Integer, byte[]> pages)
+		{
+			lock.writeLock().lock();
+			FileChannel channel = null;
+			try
 			{
-				// allocate window for page
-				PageWindow window = getManager().createPageWindow(pageId, data.length);
+				if (unbound)
+				{
+					return;
+				}
 
-				FileChannel channel = getFileChannel(true);
-				if (channel != null)
+				for (Entry<Integer, byte[]> page : pages.entrySet())
 				{
+					int pageId = page.getKey();
+					byte[] data = page.getValue();
+
+					// only save page that has some data
+					if (data == null)
+					{
+						continue;
+					}
+
+					if (channel == null)
+					{
+						channel = getFileChannel(true);
+						if (channel == null)
+						{
+							log.warn(
+								"Cannot save page with id '{}' because the data file cannot be opened.",
+								pageId);
+							return;
+						}
+					}
+
+					// allocate window for page
+					PageWindow window = getManager().createPageWindow(pageId, data.length);
+
 					try
 					{
 						// write the content
@@ -337,18 +402,13 @@ public class DiskDataStore implements IDataStore
 					{
 						log.error("Error writing to a channel " + channel, e);
 					}
-					finally
-					{
-						IOUtils.closeQuietly(channel);
-					}
-				}
-				else
-				{
-					log.warn(
-						"Cannot save page with id '{}' because the data file cannot be opened.",
-						pageId);
 				}
 			}
+			finally
+			{
+				IOUtils.closeQuietly(channel);
+				lock.writeLock().unlock();
+			}
 		}
 
 		/**
@@ -356,13 +416,20 @@ public class DiskDataStore implements IDataStore
 		 * 
 		 * @param pageId
 		 */
-		public synchronized void removePage(int pageId)
+		public void removePage(int pageId)
 		{
-			if (unbound)
+			lock.writeLock().lock();
+			try
 			{
-				return;
+				if (unbound == false)
+				{
+					getManager().removePage(pageId);
+				}
+			}
+			finally
+			{
+				lock.writeLock().unlock();
 			}
-			getManager().removePage(pageId);
 		}
 
 		/**
@@ -425,33 +492,49 @@ public class DiskDataStore implements IDataStore
 		 * @param id
 		 * @return page data or null if the page is no longer in pagemap file
 		 */
-		public synchronized byte[] loadPage(int id)
+		public byte[] loadPage(int id)
 		{
-			if (unbound)
+			lock.readLock().lock();
+			try
 			{
-				return null;
+				if (unbound)
+				{
+					return null;
+				}
+				byte[] result = null;
+				PageWindow window = getManager().getPageWindow(id);
+				if (window != null)
+				{
+					result = loadPage(window);
+				}
+				return result;
 			}
-			byte[] result = null;
-			PageWindow window = getManager().getPageWindow(id);
-			if (window != null)
+			finally
 			{
-				result = loadPage(window);
+				lock.readLock().unlock();
 			}
-			return result;
 		}
 
 		/**
 		 * Deletes all files for this session.
 		 */
-		public synchronized void unbind()
+		public void unbind()
 		{
-			File sessionFolder = diskDataStore.getSessionFolder(sessionId, false);
-			if (sessionFolder.exists())
+			lock.writeLock().lock();
+			try
+			{
+				File sessionFolder = diskDataStore.getSessionFolder(sessionId, false);
+				if (sessionFolder.exists())
+				{
+					Files.removeFolder(sessionFolder);
+					cleanup(sessionFolder);
+				}
+				unbound = true;
+			}
+			finally
 			{
-				Files.removeFolder(sessionFolder);
-				cleanup(sessionFolder);
+				lock.writeLock().unlock();
 			}
-			unbound = true;
 		}
 
 		/**
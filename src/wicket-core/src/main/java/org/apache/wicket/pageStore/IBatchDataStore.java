@@ -0,0 +1,39 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore;
+
+import java.util.Map;
+
+/**
+ * An {@link IDataStore} which can store several pages of a session in one go, e.g. with a single
+ * file operation. {@link AsynchronousDataStore} uses it to write the pages it has collected in its
+ * queue.
+ *
+ * @see AsynchronousDataStore
+ */
+public interface IBatchDataStore extends IDataStore
+{
+	/**
+	 * Store the data of several pages of a session
+	 *
+	 * @param sessionId
+	 *            Session ID
+	 * @param data
+	 *            Page ID -&gt; page data, iterated in the order the pages have been stored
+	 */
+	void storeData(String sessionId, Map<Integer, byte[]> data);
+}
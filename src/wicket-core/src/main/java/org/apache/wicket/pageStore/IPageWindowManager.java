@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore;
+
+import java.io.Serializable;
+import java.util.List;
+
+import org.apache.wicket.pageStore.PageWindowManager.PageWindow;
+
+/**
+ * Manages positions and size of serialized pages in the pagemap file of a session.
+ * 
+ * @see PageWindowManager
+ * @see ConcurrentPageWindowManager
+ * @see DiskDataStore#newPageWindowManager(long)
+ */
+public interface IPageWindowManager extends Serializable
+{
+	/**
+	 * Creates and returns a new page window for given page.
+	 * 
+	 * @param pageId
+	 * @param size
+	 * @return page window
+	 */
+	PageWindow createPageWindow(int pageId, int size);
+
+	/**
+	 * Returns the page window for given page or null if no window was found.
+	 * 
+	 * @param pageId
+	 * @return page window or null
+	 */
+	PageWindow getPageWindow(int pageId);
+
+	/**
+	 * Removes the page window for given page.
+	 * 
+	 * @param pageId
+	 */
+	void removePage(int pageId);
+
+	/**
+	 * Returns last n saved page windows.
+	 * 
+	 * @param count
+	 * @return list of page windows
+	 */
+	List<PageWindow> getLastPageWindows(int count);
+
+	/**
+	 * Returns the size of all saved pages
+	 * 
+	 * @return total size
+	 */
+	int getTotalSize();
+}
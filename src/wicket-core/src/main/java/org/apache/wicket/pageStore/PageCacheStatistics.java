@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore;
+
+import java.io.Serializable;
+
+import org.apache.wicket.util.lang.Bytes;
+
+/**
+ * A snapshot of the statistics of the cache of serialized pages kept by a
+ * {@link DefaultPageStore}, e.g. to monitor its hit rate.
+ * 
+ * @see DefaultPageStore#getCacheStatistics()
+ */
+public final class PageCacheStatistics implements Serializable
+{
+	private static final long serialVersionUID = 1L;
+
+	private final long hitCount;
+
+	private final long missCount;
+
+	private final long evictionCount;
+
+	private final int count;
+
+	private final Bytes size;
+
+	/**
+	 * Construct.
+	 * 
+	 * @param hitCount
+	 *            the number of lookups which found a page
+	 * @param missCount
+	 *            the number of lookups which did not find a page
+	 * @param evictionCount
+	 *            the number of pages which have been evicted
+	 * @param count
+	 *            the number of pages in the cache
+	 * @param size
+	 *            the total size of the data of the pages in the cache
+	 */
+	public PageCacheStatistics(final long hitCount, final long missCount,
+		final long evictionCount, final int count, final Bytes size)
+	{
+		this.hitCount = hitCount;
+		this.missCount = missCount;
+		this.evictionCount = evictionCount;
+		this.count = count;
+		this.size = size;
+	}
+
+	/**
+	 * @return the number of lookups which found a page
+	 */
+	public long getHitCount()
+	{
+		return hitCount;
+	}
+
+	/**
+	 * @return the number of lookups which did not find a page
+	 */
+	public long getMissCount()
+	{
+		return missCount;
+	}
+
+	/**
+	 * @return the number of pages which have been evicted to stay within the bounds of the cache
+	 */
+	public long getEvictionCount()
+	{
+		return evictionCount;
+	}
+
+	/**
+	 * @return the number of pages in the cache
+	 */
+	public int getCount()
+	{
+		return count;
+	}
+
+	/**
+	 * @return the total size of the data of the pages in the cache
+	 */
+	public Bytes getSize()
+	{
+		return size;
+	}
+
+	/**
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString()
+	{
+		return "[PageCacheStatistics hits=" + hitCount + ", misses=" + missCount +
+			", evictions=" + evictionCount + ", count=" + count + ", size=" + size + "]";
+	}
+}
@@ -31,7 +31,7 @@ import org.apache.wicket.util.collections.IntHashMap;
  * 
  * @author Matej Knopp
  */
-public class PageWindowManager implements Serializable
+public class PageWindowManager implements IPageWindowManager
 {
 	private static final long serialVersionUID = 1L;
 
@@ -321,13 +321,18 @@ public class PageWindowManager implements Serializable
 	}
 
 	/**
-	 * Public (read only) version of page window.
+	 * Public (read only) version of page window. It is a snapshot of the window at the time it was
+	 * returned by the manager.
 	 * 
 	 * @author Matej Knopp
 	 */
 	public static class PageWindow
 	{
-		private final PageWindowInternal pageWindowInternal;
+		private final int pageId;
+
+		private final int filePartOffset;
+
+		private final int filePartSize;
 
 		/**
 		 * Construct.
@@ -336,7 +341,22 @@ public class PageWindowManager implements Serializable
 		 */
 		private PageWindow(PageWindowInternal pageWindowInternal)
 		{
-			this.pageWindowInternal = pageWindowInternal;
+			this(pageWindowInternal.pageId, pageWindowInternal.filePartOffset,
+				pageWindowInternal.filePartSize);
+		}
+
+		/**
+		 * Construct.
+		 * 
+		 * @param pageId
+		 * @param filePartOffset
+		 * @param filePartSize
+		 */
+		PageWindow(int pageId, int filePartOffset, int filePartSize)
+		{
+			this.pageId = pageId;
+			this.filePartOffset = filePartOffset;
+			this.filePartSize = filePartSize;
 		}
 
 		/**
@@ -344,7 +364,7 @@ public class PageWindowManager implements Serializable
 		 */
 		public int getPageId()
 		{
-			return pageWindowInternal.pageId;
+			return pageId;
 		}
 
 		/**
@@ -352,7 +372,7 @@ public class PageWindowManager implements Serializable
 		 */
 		public int getFilePartOffset()
 		{
-			return pageWindowInternal.filePartOffset;
+			return filePartOffset;
 		}
 
 		/**
@@ -360,7 +380,7 @@ public class PageWindowManager implements Serializable
 		 */
 		public int getFilePartSize()
 		{
-			return pageWindowInternal.filePartSize;
+			return filePartSize;
 		}
 	}
 
@@ -0,0 +1,1010 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.wicket.WicketRuntimeException;
+import org.apache.wicket.util.file.Files;
+import org.apache.wicket.util.io.IOUtils;
+import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.lang.Bytes;
+import org.apache.wicket.util.time.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A data store implementation which packs the pages of all sessions into a small number of large,
+ * memory-mapped segment files.
+ * <p>
+ * Unlike {@link DiskDataStore}, which keeps one file per session, this store appends the page data
+ * to the currently active segment and keeps an in-memory index (session id, page id) -&gt;
+ * (segment, offset, length). Pages are read directly from the mapped memory, without a system call
+ * or an intermediate buffer, and writes to different pages don't block each other.
+ * </p>
+ * <p>
+ * Segments whose data is mostly superseded or removed are compacted by a background thread: their
+ * live pages are moved to the active segment and the segment is recycled. When all segments are
+ * full and none of them can be recycled the segment with the least live data is reclaimed and its
+ * pages are dropped, similar to the way {@link DiskDataStore} overwrites the oldest pages of a
+ * session.
+ * </p>
+ * <p>
+ * Note: the JVM unmaps the segment files only when their buffers are garbage collected, so the
+ * address space for {@code segmentSize * maxSegmentCount} bytes must be available to the process.
+ * </p>
+ *
+ * @see org.apache.wicket.settings.IStoreSettings#setSegmentedDataStore(boolean)
+ */
+public class SegmentedDataStore implements IDataStore
+{
+	private static final Logger log = LoggerFactory.getLogger(SegmentedDataStore.class);
+
+	private static final String INDEX_FILE_NAME = "SegmentedDataStoreIndex";
+
+	private static final String SEGMENT_FILE_PREFIX = "segment-";
+
+	private static final int INDEX_VERSION = 1;
+
+	/**
+	 * A sealed segment is compacted when less than this ratio of its written bytes is still live.
+	 */
+	private static final float COMPACTION_THRESHOLD = 0.5f;
+
+	/**
+	 * The time between two runs of the compaction thread.
+	 */
+	private static final Duration COMPACTION_INTERVAL = Duration.seconds(10);
+
+	private final String applicationName;
+
+	private final File fileStoreFolder;
+
+	private final long maxSizePerSession;
+
+	private final int segmentSize;
+
+	private final int maxSegmentCount;
+
+	private final ConcurrentMap<String, SessionIndex> sessionIndexMap;
+
+	/**
+	 * Guards {@link #segments}, {@link #freeSegments}, {@link #activeSegment} and the write
+	 * position and generation of each {@link Segment}
+	 */
+	private final Object allocationLock = new Object();
+
+	/**
+	 * Makes sure that only one thread at a time compacts or reclaims segments
+	 */
+	private final Object compactionLock = new Object();
+
+	private final List<Segment> segments = new ArrayList<Segment>();
+
+	private final LinkedList<Segment> freeSegments = new LinkedList<Segment>();
+
+	private Segment activeSegment;
+
+	private final Thread compactionThread;
+
+	/**
+	 * Construct.
+	 *
+	 * @param applicationName
+	 *            the name of the application
+	 * @param fileStoreFolder
+	 *            the folder where the segment files are created
+	 * @param maxSizePerSession
+	 *            the maximum size of the pages stored for one session. After this size is exceeded
+	 *            the oldest pages of the session are removed
+	 * @param segmentSize
+	 *            the size of each segment file. Must not be larger than 2GB
+	 * @param maxSegmentCount
+	 *            the maximum number of segment files. Must be at least 2
+	 */
+	public SegmentedDataStore(final String applicationName, final File fileStoreFolder,
+		final Bytes maxSizePerSession, final Bytes segmentSize, final int maxSegmentCount)
+	{
+		Args.notNull(segmentSize, "segmentSize");
+		Args.withinRange(1L, (long)Integer.MAX_VALUE, segmentSize.bytes(), "segmentSize");
+		Args.withinRange(2, Integer.MAX_VALUE, maxSegmentCount, "maxSegmentCount");
+
+		this.applicationName = applicationName;
+		this.fileStoreFolder = fileStoreFolder;
+		this.maxSizePerSession = Args.notNull(maxSizePerSession, "maxSizePerSession").bytes();
+		this.segmentSize = (int)segmentSize.bytes();
+		this.maxSegmentCount = maxSegmentCount;
+		sessionIndexMap = new ConcurrentHashMap<String, SessionIndex>();
+
+		try
+		{
+			File storeFolder = getStoreFolder();
+			if (storeFolder.exists() || storeFolder.mkdirs())
+			{
+				loadIndex();
+			}
+			else
+			{
+				log.warn("Cannot create file store folder for some reason.");
+			}
+		}
+		catch (SecurityException e)
+		{
+			throw new WicketRuntimeException(
+				"SecurityException occurred while creating SegmentedDataStore. Consider using a non-disk based IDataStore implementation. "
+					+ "See org.apache.wicket.Application.setPageManagerProvider(IPageManagerProvider)",
+				e);
+		}
+
+		compactionThread = new Thread(new CompactionRunnable(), "Wicket-SegmentCompactionThread");
+		compactionThread.setDaemon(true);
+		compactionThread.start();
+	}
+
+	/**
+	 * @see org.apache.wicket.pageStore.IDataStore#destroy()
+	 */
+	public void destroy()
+	{
+		log.debug("Destroying...");
+		if (compactionThread.isAlive())
+		{
+			compactionThread.interrupt();
+			try
+			{
+				compactionThread.join();
+			}
+			catch (InterruptedException e)
+			{
+				log.error(e.getMessage(), e);
+			}
+		}
+
+		saveIndex();
+
+		synchronized (allocationLock)
+		{
+			for (Segment segment : segments)
+			{
+				segment.close();
+			}
+			segments.clear();
+			freeSegments.clear();
+			activeSegment = null;
+		}
+		log.debug("Destroyed.");
+	}
+
+	/**
+	 * @see org.apache.wicket.pageStore.IDataStore#getData(java.lang.String, int)
+	 */
+	public byte[] getData(final String sessionId, final int id)
+	{
+		byte[] pageData = null;
+		SessionIndex sessionIndex = sessionIndexMap.get(sessionId);
+		if (sessionIndex != null)
+		{
+			Entry entry = sessionIndex.get(id);
+			while (entry != null)
+			{
+				pageData = entry.segment.read(entry);
+				if (pageData != null)
+				{
+					break;
+				}
+
+				// the page has been moved to another segment in the meantime
+				Entry current = sessionIndex.get(id);
+				entry = current != entry ? current : null;
+			}
+		}
+
+		log.debug("Returning data{} for page with id '{}' in session with id '{}'", new Object[] {
+				pageData != null ? "" : "(null)", id, sessionId });
+		return pageData;
+	}
+
+	/**
+	 * @see org.apache.wicket.pageStore.IDataStore#isReplicated()
+	 */
+	public boolean isReplicated()
+	{
+		return false;
+	}
+
+	/**
+	 * @see org.apache.wicket.pageStore.IDataStore#removeData(java.lang.String, int)
+	 */
+	public void removeData(final String sessionId, final int id)
+	{
+		SessionIndex sessionIndex = sessionIndexMap.get(sessionId);
+		if (sessionIndex != null)
+		{
+			log.debug("Removing data for page with id '{}' in session with id '{}'", new Object[] {
+					id, sessionId });
+			sessionIndex.remove(id);
+		}
+	}
+
+	/**
+	 * @see org.apache.wicket.pageStore.IDataStore#removeData(java.lang.String)
+	 */
+	public void removeData(final String sessionId)
+	{
+		SessionIndex sessionIndex = sessionIndexMap.remove(sessionId);
+		if (sessionIndex != null)
+		{
+			log.debug("Removing data for pages in session with id '{}'", sessionId);
+			sessionIndex.clear();
+		}
+	}
+
+	/**
+	 * @see org.apache.wicket.pageStore.IDataStore#storeData(java.lang.String, int, byte[])
+	 */
+	public void storeData(final String sessionId, final int id, final byte[] data)
+	{
+		// only save page that has some data
+		if (data == null)
+		{
+			return;
+		}
+
+		if (data.length > segmentSize)
+		{
+			log.warn(
+				"Cannot save page with id '{}' because its size ({} bytes) exceeds the segment size.",
+				id, data.length);
+			return;
+		}
+
+		Entry entry = append(sessionId, id, data);
+		if (entry == null)
+		{
+			reclaimSegment();
+			entry = append(sessionId, id, data);
+		}
+
+		if (entry != null)
+		{
+			log.debug("Storing data for page with id '{}' in session with id '{}'", new Object[] {
+					id, sessionId });
+			getSessionIndex(sessionId).put(entry);
+		}
+		else
+		{
+			log.warn("Cannot save page with id '{}' because there is no free segment.", id);
+		}
+	}
+
+	/**
+	 * Moves the live pages of the sealed segments which are mostly superseded to the active segment
+	 * and recycles the segments which don't hold live pages anymore. This method is called
+	 * periodically by a background thread.
+	 */
+	public void compact()
+	{
+		synchronized (compactionLock)
+		{
+			for (Segment segment : getSealedSegments())
+			{
+				int written;
+				synchronized (allocationLock)
+				{
+					written = segment.writePosition;
+				}
+
+				if (segment.liveBytes.get() < written * COMPACTION_THRESHOLD)
+				{
+					if (relocate(segment) == false)
+					{
+						// there is no room for the relocated pages
+						break;
+					}
+				}
+				recycle(segment);
+			}
+		}
+	}
+
+	/**
+	 * @return the number of segment files currently in use
+	 */
+	public int getSegmentCount()
+	{
+		synchronized (allocationLock)
+		{
+			return segments.size();
+		}
+	}
+
+	/**
+	 * This folder contains the segment files and the index.
+	 *
+	 * @return the folder where the pages are stored
+	 */
+	protected File getStoreFolder()
+	{
+		return new File(fileStoreFolder, applicationName + "-segmentstore");
+	}
+
+	/**
+	 * @param sessionId
+	 * @return the index for the session, created if it doesn't exist yet
+	 */
+	private SessionIndex getSessionIndex(final String sessionId)
+	{
+		SessionIndex sessionIndex = sessionIndexMap.get(sessionId);
+		if (sessionIndex == null)
+		{
+			sessionIndex = new SessionIndex(maxSizePerSession);
+			SessionIndex existing = sessionIndexMap.putIfAbsent(sessionId, sessionIndex);
+			if (existing != null)
+			{
+				sessionIndex = existing;
+			}
+		}
+		return sessionIndex;
+	}
+
+	/**
+	 * Reserves room for the data in the active segment and copies it there.
+	 *
+	 * @param sessionId
+	 * @param pageId
+	 * @param data
+	 * @return the entry describing the location of the data or {@code null} if there is no room
+	 */
+	private Entry append(final String sessionId, final int pageId, final byte[] data)
+	{
+		final Entry entry;
+		synchronized (allocationLock)
+		{
+			Segment segment = activeSegment;
+			if (segment == null || segment.writePosition + data.length > segmentSize)
+			{
+				segment = nextSegment();
+				if (segment == null)
+				{
+					return null;
+				}
+				activeSegment = segment;
+			}
+
+			entry = new Entry(sessionId, pageId, segment, segment.generation,
+				segment.writePosition, data.length);
+			segment.writePosition += data.length;
+
+			// account the entry right away so the segment cannot be recycled before the data is
+			// written and indexed
+			segment.add(entry);
+		}
+
+		entry.segment.write(entry.offset, data);
+		return entry;
+	}
+
+	/**
+	 * Must be called with {@link #allocationLock} held.
+	 *
+	 * @return a free or a newly created segment, or {@code null} if the maximum number of segments
+	 *         is reached
+	 */
+	private Segment nextSegment()
+	{
+		Segment segment = null;
+		if (freeSegments.isEmpty() == false)
+		{
+			segment = freeSegments.removeFirst();
+			segment.free = false;
+		}
+		else if (segments.size() < maxSegmentCount)
+		{
+			try
+			{
+				segment = openSegment(segments.size());
+				segments.add(segment);
+			}
+			catch (IOException e)
+			{
+				log.error("Cannot create a new segment file in " + getStoreFolder(), e);
+			}
+		}
+		return segment;
+	}
+
+	/**
+	 * Opens (and creates if necessary) the file of the segment with the given number and maps it
+	 * into memory.
+	 *
+	 * @param number
+	 * @return the segment
+	 * @throws IOException
+	 */
+	private Segment openSegment(final int number) throws IOException
+	{
+		File file = new File(getStoreFolder(), SEGMENT_FILE_PREFIX + number);
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+		try
+		{
+			randomAccessFile.setLength(segmentSize);
+			FileChannel channel = randomAccessFile.getChannel();
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+			return new Segment(number, channel, buffer);
+		}
+		catch (IOException e)
+		{
+			IOUtils.closeQuietly(randomAccessFile);
+			throw e;
+		}
+	}
+
+	/**
+	 * @return the segments which are neither free nor active
+	 */
+	private List<Segment> getSealedSegments()
+	{
+		List<Segment> sealed = new ArrayList<Segment>();
+		synchronized (allocationLock)
+		{
+			for (Segment segment : segments)
+			{
+				if (segment.free == false && segment != activeSegment)
+				{
+					sealed.add(segment);
+				}
+			}
+		}
+		return sealed;
+	}
+
+	/**
+	 * Copies the indexed pages of the segment to the active segment.
+	 *
+	 * @param segment
+	 * @return {@code false} if there was no room for all pages
+	 */
+	private boolean relocate(final Segment segment)
+	{
+		for (Entry entry : segment.entries.keySet())
+		{
+			SessionIndex sessionIndex = sessionIndexMap.get(entry.sessionId);
+			if (sessionIndex == null || sessionIndex.contains(entry) == false)
+			{
+				// removed or not yet indexed
+				continue;
+			}
+
+			byte[] data = segment.read(entry);
+			if (data != null)
+			{
+				Entry moved = append(entry.sessionId, entry.pageId, data);
+				if (moved == null)
+				{
+					return false;
+				}
+				if (sessionIndex.replace(entry, moved) == false)
+				{
+					moved.release();
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Makes the segment available for new writes if it doesn't hold any live data.
+	 *
+	 * @param segment
+	 */
+	private void recycle(final Segment segment)
+	{
+		segment.lock.writeLock().lock();
+		try
+		{
+			synchronized (allocationLock)
+			{
+				if (segment.liveBytes.get() == 0 && segment.free == false &&
+					segment != activeSegment)
+				{
+					segment.generation++;
+					segment.writePosition = 0;
+					segment.free = true;
+					freeSegments.add(segment);
+				}
+			}
+		}
+		finally
+		{
+			segment.lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Drops the pages of the sealed segment with the least live data so it can be reused. Called
+	 * when there is no room left for a new page.
+	 */
+	private void reclaimSegment()
+	{
+		synchronized (compactionLock)
+		{
+			synchronized (allocationLock)
+			{
+				if (freeSegments.isEmpty() == false || segments.size() < maxSegmentCount)
+				{
+					// another thread made room in the meantime
+					return;
+				}
+			}
+
+			Segment victim = null;
+			for (Segment segment : getSealedSegments())
+			{
+				if (victim == null || segment.liveBytes.get() < victim.liveBytes.get())
+				{
+					victim = segment;
+				}
+			}
+
+			if (victim != null)
+			{
+				log.debug("Reclaiming segment {} with {} live bytes", victim.number,
+					victim.liveBytes.get());
+				for (Entry entry : victim.entries.keySet())
+				{
+					SessionIndex sessionIndex = sessionIndexMap.get(entry.sessionId);
+					if (sessionIndex != null)
+					{
+						sessionIndex.remove(entry);
+					}
+				}
+				recycle(victim);
+			}
+		}
+	}
+
+	/**
+	 * Loads the index saved by {@link #saveIndex()} and reopens the segment files
+	 */
+	private void loadIndex()
+	{
+		File index = new File(getStoreFolder(), INDEX_FILE_NAME);
+		if (index.exists() && index.length() > 0)
+		{
+			DataInputStream in = null;
+			try
+			{
+				in = new DataInputStream(new BufferedInputStream(new FileInputStream(index)));
+				if (in.readInt() != INDEX_VERSION || in.readInt() != segmentSize)
+				{
+					log.info("Ignoring SegmentedDataStore index {} written with different settings.",
+						index);
+				}
+				else
+				{
+					readIndex(in);
+				}
+			}
+			catch (Exception e)
+			{
+				log.error("Couldn't load SegmentedDataStore index from file " + index + ".", e);
+				synchronized (allocationLock)
+				{
+					for (Segment segment : segments)
+					{
+						segment.close();
+					}
+					segments.clear();
+					freeSegments.clear();
+				}
+				sessionIndexMap.clear();
+			}
+			finally
+			{
+				IOUtils.closeQuietly(in);
+			}
+		}
+		Files.remove(index);
+	}
+
+	/**
+	 * @param in
+	 * @throws IOException
+	 */
+	private void readIndex(final DataInputStream in) throws IOException
+	{
+		synchronized (allocationLock)
+		{
+			int segmentCount = in.readInt();
+			for (int i = 0; i < segmentCount; i++)
+			{
+				Segment segment = openSegment(i);
+				segment.writePosition = in.readInt();
+				segments.add(segment);
+			}
+
+			int sessionCount = in.readInt();
+			for (int i = 0; i < sessionCount; i++)
+			{
+				String sessionId = in.readUTF();
+				SessionIndex sessionIndex = getSessionIndex(sessionId);
+				int pageCount = in.readInt();
+				for (int j = 0; j < pageCount; j++)
+				{
+					int pageId = in.readInt();
+					Segment segment = segments.get(in.readInt());
+					Entry entry = new Entry(sessionId, pageId, segment, segment.generation,
+						in.readInt(), in.readInt());
+					segment.add(entry);
+					sessionIndex.put(entry);
+				}
+			}
+
+			for (Segment segment : segments)
+			{
+				if (segment.liveBytes.get() == 0)
+				{
+					segment.writePosition = 0;
+					segment.free = true;
+					freeSegments.add(segment);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Saves the index so the pages can be found again after a restart
+	 */
+	private void saveIndex()
+	{
+		File storeFolder = getStoreFolder();
+		if (storeFolder.exists())
+		{
+			File index = new File(storeFolder, INDEX_FILE_NAME);
+			Files.remove(index);
+			DataOutputStream out = null;
+			try
+			{
+				out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(index)));
+				out.writeInt(INDEX_VERSION);
+				out.writeInt(segmentSize);
+				synchronized (allocationLock)
+				{
+					out.writeInt(segments.size());
+					for (Segment segment : segments)
+					{
+						out.writeInt(segment.writePosition);
+						segment.buffer.force();
+					}
+				}
+
+				out.writeInt(sessionIndexMap.size());
+				for (Map.Entry<String, SessionIndex> e : sessionIndexMap.entrySet())
+				{
+					out.writeUTF(e.getKey());
+					e.getValue().write(out);
+				}
+			}
+			catch (Exception e)
+			{
+				log.error("Couldn't write SegmentedDataStore index to file " + index + ".", e);
+			}
+			finally
+			{
+				IOUtils.closeQuietly(out);
+			}
+		}
+	}
+
+	/**
+	 * The location of a stored page
+	 */
+	private static final class Entry
+	{
+		private final String sessionId;
+		private final int pageId;
+		private final Segment segment;
+		private final int generation;
+		private final int offset;
+		private final int length;
+
+		private Entry(final String sessionId, final int pageId, final Segment segment,
+			final int generation, final int offset, final int length)
+		{
+			this.sessionId = sessionId;
+			this.pageId = pageId;
+			this.segment = segment;
+			this.generation = generation;
+			this.offset = offset;
+			this.length = length;
+		}
+
+		/**
+		 * Marks the bytes of this entry as no longer live in its segment
+		 */
+		private void release()
+		{
+			if (segment.entries.remove(this) != null)
+			{
+				segment.liveBytes.addAndGet(-length);
+			}
+		}
+	}
+
+	/**
+	 * A memory-mapped segment file
+	 */
+	private static final class Segment
+	{
+		private final int number;
+		private final FileChannel channel;
+		private final MappedByteBuffer buffer;
+
+		/**
+		 * Shared by the threads reading or writing page data, exclusive when the segment is
+		 * recycled
+		 */
+		private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+		/**
+		 * The entries which are (or are about to be) indexed
+		 */
+		private final ConcurrentMap<Entry, Boolean> entries = new ConcurrentHashMap<Entry, Boolean>();
+
+		private final AtomicInteger liveBytes = new AtomicInteger(0);
+
+		/** guarded by allocationLock */
+		private int writePosition;
+
+		/** incremented each time the segment is recycled. guarded by allocationLock */
+		private int generation;
+
+		/** guarded by allocationLock */
+		private boolean free;
+
+		private Segment(final int number, final FileChannel channel, final MappedByteBuffer buffer)
+		{
+			this.number = number;
+			this.channel = channel;
+			this.buffer = buffer;
+		}
+
+		private void add(final Entry entry)
+		{
+			entries.put(entry, Boolean.TRUE);
+			liveBytes.addAndGet(entry.length);
+		}
+
+		private void write(final int offset, final byte[] data)
+		{
+			lock.readLock().lock();
+			try
+			{
+				ByteBuffer view = buffer.duplicate();
+				view.position(offset);
+				view.put(data);
+			}
+			finally
+			{
+				lock.readLock().unlock();
+			}
+		}
+
+		/**
+		 * @param entry
+		 * @return the data of the entry or {@code null} if the segment has been recycled since the
+		 *         entry was written
+		 */
+		private byte[] read(final Entry entry)
+		{
+			lock.readLock().lock();
+			try
+			{
+				if (generation != entry.generation)
+				{
+					return null;
+				}
+				byte[] data = new byte[entry.length];
+				ByteBuffer view = buffer.duplicate();
+				view.position(entry.offset);
+				view.get(data);
+				return data;
+			}
+			finally
+			{
+				lock.readLock().unlock();
+			}
+		}
+
+		private void close()
+		{
+			try
+			{
+				buffer.force();
+			}
+			finally
+			{
+				IOUtils.closeQuietly(channel);
+			}
+		}
+	}
+
+	/**
+	 * The pages of one session, in the order they were stored
+	 */
+	private static final class SessionIndex
+	{
+		private final long maxSize;
+		private final LinkedHashMap<Integer, Entry> pages = new LinkedHashMap<Integer, Entry>();
+		private long size;
+		private boolean removed;
+
+		private SessionIndex(final long maxSize)
+		{
+			this.maxSize = maxSize;
+		}
+
+		private synchronized Entry get(final int pageId)
+		{
+			return pages.get(pageId);
+		}
+
+		private synchronized boolean contains(final Entry entry)
+		{
+			return pages.get(entry.pageId) == entry;
+		}
+
+		private synchronized void put(final Entry entry)
+		{
+			if (removed)
+			{
+				entry.release();
+				return;
+			}
+
+			Entry old = pages.remove(entry.pageId);
+			if (old != null)
+			{
+				size -= old.length;
+				old.release();
+			}
+			pages.put(entry.pageId, entry);
+			size += entry.length;
+
+			// drop the oldest pages if the session takes too much room
+			Iterator<Entry> iterator = pages.values().iterator();
+			while (size > maxSize && pages.size() > 1)
+			{
+				Entry eldest = iterator.next();
+				iterator.remove();
+				size -= eldest.length;
+				eldest.release();
+			}
+		}
+
+		/**
+		 * Replaces the entry with a relocated copy, keeping the position of the page.
+		 *
+		 * @param entry
+		 * @param moved
+		 * @return {@code false} if the entry is no longer indexed
+		 */
+		private synchronized boolean replace(final Entry entry, final Entry moved)
+		{
+			if (removed == false && pages.get(entry.pageId) == entry)
+			{
+				pages.put(entry.pageId, moved);
+				entry.release();
+				return true;
+			}
+			return false;
+		}
+
+		private synchronized void remove(final int pageId)
+		{
+			Entry entry = pages.remove(pageId);
+			if (entry != null)
+			{
+				size -= entry.length;
+				entry.release();
+			}
+		}
+
+		private synchronized void remove(final Entry entry)
+		{
+			if (pages.get(entry.pageId) == entry)
+			{
+				remove(entry.pageId);
+			}
+		}
+
+		private synchronized void clear()
+		{
+			removed = true;
+			for (Entry entry : pages.values())
+			{
+				entry.release();
+			}
+			pages.clear();
+			size = 0;
+		}
+
+		private synchronized void write(final DataOutputStream out) throws IOException
+		{
+			out.writeInt(pages.size());
+			for (Entry entry : pages.values())
+			{
+				out.writeInt(entry.pageId);
+				out.writeInt(entry.segment.number);
+				out.writeInt(entry.offset);
+				out.writeInt(entry.length);
+			}
+		}
+	}
+
+	/**
+	 * Periodically compacts the segments
+	 */
+	private class CompactionRunnable implements Runnable
+	{
+		public void run()
+		{
+			while (!Thread.interrupted())
+			{
+				try
+				{
+					Thread.sleep(COMPACTION_INTERVAL.getMilliseconds());
+				}
+				catch (InterruptedException e)
+				{
+					break;
+				}
+
+				try
+				{
+					compact();
+				}
+				catch (RuntimeException e)
+				{
+					log.error("Error while compacting the segments", e);
+				}
+			}
+		}
+	}
+}
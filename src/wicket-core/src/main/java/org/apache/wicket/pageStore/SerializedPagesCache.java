@@ -0,0 +1,432 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.wicket.pageStore.DefaultPageStore.SerializedPage;
+import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.lang.Bytes;
+
+/**
+ * Cache that stores serialized pages. This is important to make sure that a single page is not
+ * serialized twice or more when not necessary.
+ * <p>
+ * For example a page is serialized during request, but it might be also later serialized on
+ * session replication. The purpose of this cache is to make sure that the data obtained from
+ * first serialization is reused on second serialization.
+ * </p>
+ * <p>
+ * The pages are kept in a map per session, so looking up a page does not need any lock and all
+ * pages of a session can be removed at once. The cache is bounded by the number of pages and by
+ * the total size of their data, and evicts with a segmented LRU policy: new pages enter a
+ * probationary segment, pages which have been read while in it are promoted to a protected
+ * segment and survive scans of pages which are read only once. A read just marks the page as
+ * referenced, the segments are reordered lazily while storing pages.
+ * </p>
+ *
+ * @author Matej Knopp
+ */
+class SerializedPagesCache
+{
+	/** the share of the maximum number of pages which may be in the protected segment, in percent */
+	private static final int PROTECTED_PERCENTAGE = 80;
+
+	private final int maxCount;
+
+	private final long maxBytes;
+
+	private final int maxProtectedCount;
+
+	/** session id -&gt; page id -&gt; entry; modified only while holding the lock */
+	private final ConcurrentMap<String, ConcurrentMap<Integer, Entry>> sessions = new ConcurrentHashMap<String, ConcurrentMap<Integer, Entry>>();
+
+	/** guards the segments and the modifications of the maps */
+	private final ReentrantLock lock = new ReentrantLock();
+
+	/** the head of the probationary segment, the most recently stored page is next to it */
+	private final Entry probation = new Entry(null, 0);
+
+	/** the head of the protected segment, the most recently promoted page is next to it */
+	private final Entry protectedSegment = new Entry(null, 0);
+
+	private int protectedCount;
+
+	private volatile int count;
+
+	private volatile long bytes;
+
+	private final AtomicLong hits = new AtomicLong();
+
+	private final AtomicLong misses = new AtomicLong();
+
+	private final AtomicLong evictions = new AtomicLong();
+
+	/**
+	 * Construct.
+	 *
+	 * @param size
+	 *            the maximum number of pages, 0 to disable the cache
+	 */
+	public SerializedPagesCache(final int size)
+	{
+		this(size, Bytes.MAX);
+	}
+
+	/**
+	 * Construct.
+	 *
+	 * @param size
+	 *            the maximum number of pages, 0 to disable the cache
+	 * @param maxSize
+	 *            the maximum total size of the data of the pages
+	 */
+	public SerializedPagesCache(final int size, final Bytes maxSize)
+	{
+		Args.notNull(maxSize, "maxSize");
+
+		maxCount = size;
+		maxBytes = maxSize.bytes();
+		maxProtectedCount = Math.max(1, (int)((long)size * PROTECTED_PERCENTAGE / 100));
+
+		probation.linkAfter(probation);
+		protectedSegment.linkAfter(protectedSegment);
+	}
+
+	/**
+	 *
+	 * @param sessionId
+	 * @param id
+	 * @return the removed {@link SerializedPage} or <code>null</code> - otherwise
+	 */
+	public SerializedPage removePage(final String sessionId, final int id)
+	{
+		Args.notNull(sessionId, "sessionId");
+
+		if (maxCount > 0)
+		{
+			lock.lock();
+			try
+			{
+				ConcurrentMap<Integer, Entry> pages = sessions.get(sessionId);
+				if (pages != null)
+				{
+					Entry entry = pages.remove(id);
+					if (entry != null)
+					{
+						if (pages.isEmpty())
+						{
+							sessions.remove(sessionId);
+						}
+						unlink(entry);
+						return entry.page;
+					}
+				}
+			}
+			finally
+			{
+				lock.unlock();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Removes all {@link SerializedPage}s for the session with <code>sessionId</code> from the
+	 * cache.
+	 *
+	 * @param sessionId
+	 */
+	public void removePages(final String sessionId)
+	{
+		Args.notNull(sessionId, "sessionId");
+
+		if (maxCount > 0)
+		{
+			lock.lock();
+			try
+			{
+				ConcurrentMap<Integer, Entry> pages = sessions.remove(sessionId);
+				if (pages != null)
+				{
+					for (Entry entry : pages.values())
+					{
+						unlink(entry);
+					}
+				}
+			}
+			finally
+			{
+				lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Returns a {@link SerializedPage} by looking it up by <code>sessionId</code> and
+	 * <code>pageId</code>. If there is a match then it is <i>touched</i>, i.e. it will be kept
+	 * longer than pages which have not been read.
+	 *
+	 * @param sessionId
+	 * @param pageId
+	 * @return the found serialized page or <code>null</code> when not found
+	 */
+	public SerializedPage getPage(final String sessionId, final int pageId)
+	{
+		Args.notNull(sessionId, "sessionId");
+
+		if (maxCount > 0)
+		{
+			ConcurrentMap<Integer, Entry> pages = sessions.get(sessionId);
+			Entry entry = pages != null ? pages.get(pageId) : null;
+			if (entry != null)
+			{
+				entry.referenced = true;
+				hits.incrementAndGet();
+				return entry.page;
+			}
+			misses.incrementAndGet();
+		}
+		return null;
+	}
+
+	/**
+	 * Store the serialized page in cache
+	 *
+	 * @param page
+	 */
+	public void storePage(final SerializedPage page)
+	{
+		Args.notNull(page, "page");
+
+		if (maxCount > 0)
+		{
+			byte[] data = page.getData();
+			Entry entry = new Entry(page, data != null ? data.length : 0);
+
+			lock.lock();
+			try
+			{
+				ConcurrentMap<Integer, Entry> pages = sessions.get(page.getSessionId());
+				if (pages == null)
+				{
+					pages = new ConcurrentHashMap<Integer, Entry>();
+					sessions.put(page.getSessionId(), pages);
+				}
+
+				Entry previous = pages.put(page.getPageId(), entry);
+				if (previous != null)
+				{
+					unlink(previous);
+
+					// the page has been used, so keep the new version as long as the old one
+					entry.referenced = true;
+				}
+
+				entry.linkAfter(probation);
+				count++;
+				bytes += entry.weight;
+
+				evict();
+			}
+			finally
+			{
+				lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * @return the number of pages in the cache
+	 */
+	public int getCount()
+	{
+		return count;
+	}
+
+	/**
+	 * @return the total size of the data of the pages in the cache
+	 */
+	public Bytes getSize()
+	{
+		return Bytes.bytes(bytes);
+	}
+
+	/**
+	 * @return the number of lookups which found a page
+	 */
+	public long getHitCount()
+	{
+		return hits.get();
+	}
+
+	/**
+	 * @return the number of lookups which did not find a page
+	 */
+	public long getMissCount()
+	{
+		return misses.get();
+	}
+
+	/**
+	 * @return the number of pages which have been evicted to stay within the bounds of the cache
+	 */
+	public long getEvictionCount()
+	{
+		return evictions.get();
+	}
+
+	/**
+	 * Evicts pages from the tail of the probationary segment until the cache is within its bounds.
+	 * Referenced pages found there are promoted to the protected segment instead. Must be called
+	 * while holding the lock.
+	 */
+	private void evict()
+	{
+		while (count > maxCount || bytes > maxBytes)
+		{
+			Entry victim = probation.previous;
+			if (victim == probation)
+			{
+				// everything is protected
+				demote();
+				continue;
+			}
+
+			if (victim.referenced)
+			{
+				victim.referenced = false;
+				victim.unlinkFromSegment();
+				victim.linkAfter(protectedSegment);
+				victim.isProtected = true;
+				protectedCount++;
+				if (protectedCount > maxProtectedCount)
+				{
+					demote();
+				}
+			}
+			else
+			{
+				ConcurrentMap<Integer, Entry> pages = sessions.get(victim.page.getSessionId());
+				if (pages != null)
+				{
+					pages.remove(victim.page.getPageId());
+					if (pages.isEmpty())
+					{
+						sessions.remove(victim.page.getSessionId());
+					}
+				}
+				unlink(victim);
+				evictions.incrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Moves the least recently promoted page which has not been referenced since to the head of the
+	 * probationary segment. Must be called while holding the lock.
+	 */
+	private void demote()
+	{
+		while (true)
+		{
+			Entry entry = protectedSegment.previous;
+			entry.unlinkFromSegment();
+			if (entry.referenced)
+			{
+				entry.referenced = false;
+				entry.linkAfter(protectedSegment);
+			}
+			else
+			{
+				entry.isProtected = false;
+				protectedCount--;
+				entry.linkAfter(probation);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Removes the entry from its segment and the statistics. Must be called while holding the lock.
+	 *
+	 * @param entry
+	 */
+	private void unlink(final Entry entry)
+	{
+		entry.unlinkFromSegment();
+		if (entry.isProtected)
+		{
+			entry.isProtected = false;
+			protectedCount--;
+		}
+		count--;
+		bytes -= entry.weight;
+	}
+
+	/**
+	 * A cached page and its position in one of the segments
+	 */
+	private static final class Entry
+	{
+		private final SerializedPage page;
+
+		private final long weight;
+
+		/** set when the page is read, so lookups do not have to reorder the segments */
+		private volatile boolean referenced;
+
+		private boolean isProtected;
+
+		private Entry previous;
+
+		private Entry next;
+
+		private Entry(final SerializedPage page, final long weight)
+		{
+			this.page = page;
+			this.weight = weight;
+		}
+
+		private void linkAfter(final Entry head)
+		{
+			if (head == this)
+			{
+				previous = this;
+				next = this;
+			}
+			else
+			{
+				previous = head;
+				next = head.next;
+				head.next.previous = this;
+				head.next = this;
+			}
+		}
+
+		private void unlinkFromSegment()
+		{
+			previous.next = next;
+			next.previous = previous;
+			previous = null;
+			next = null;
+		}
+	}
+}
@@ -22,6 +22,11 @@ import org.apache.wicket.util.lang.WicketObjects;
 
 /**
  * An eviction strategy that keeps the data store size up to configured bytes
+ * <p>
+ * The size of a {@link HttpSessionDataStore} is measured with {@link WicketObjects#sizeof}, see
+ * {@link org.apache.wicket.util.lang.ReflectionObjectSizeOfStrategy} for a strategy which measures
+ * it without serializing the pages.
+ * </p>
  */
 public class MemorySizeEvictionStrategy implements DataStoreEvictionStrategy
 {
@@ -48,7 +53,7 @@ public class MemorySizeEvictionStrategy implements DataStoreEvictionStrategy
 	public void evict(PageTable pageTable)
 	{
 
-		long storeCurrentSize = WicketObjects.sizeof(pageTable);
+		long storeCurrentSize = pageTable.getSizeInBytes();
 
 		if (storeCurrentSize > maxBytes.bytes())
 		{
@@ -0,0 +1,344 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore.memory;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.wicket.pageStore.IDataStore;
+import org.apache.wicket.pageStore.memory.SlabMemory.OffHeapPage;
+import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.lang.Bytes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An {@link IDataStore} which keeps the pages in memory, but outside of the java heap, so they
+ * neither inflate the heap nor the http sessions and do not prolong garbage collections.
+ * <p>
+ * The memory is allocated in slabs of direct buffers, each page occupies as many blocks of a slab
+ * as it needs. The pages of each session are managed by a {@link PageTable}, so the
+ * {@link DataStoreEvictionStrategy}s work as with the {@link HttpSessionDataStore}; a
+ * {@link MemorySizeEvictionStrategy} counts the size of the data of the pages. When the memory of
+ * all sessions reaches its maximum size the pages of any session are evicted in the order they
+ * have been stored until the new page fits.
+ * </p>
+ * <p>
+ * The pages are not replicated and are lost when the application is restarted.
+ * </p>
+ * <p>
+ * Usage:
+ * 
+ * <pre>
+ * <!--@formatter:off-->
+ * MyApp#init()
+ * {
+ * 
+ * 	setPageManagerProvider(new DefaultPageManagerProvider() 
+ * 	{
+ * 		protected IDataStore newDataStore() 
+ * 		{ 
+ * 			return new OffHeapDataStore(Bytes.gigabytes(2), new PageNumberEvictionStrategy(20));
+ * 		}
+ * 	}
+ * }
+ * <!--@formatter:on-->
+ * </pre>
+ * 
+ * </p>
+ */
+public class OffHeapDataStore implements IDataStore
+{
+	private static final Logger log = LoggerFactory.getLogger(OffHeapDataStore.class);
+
+	/** the default size of a slab */
+	public static final Bytes DEFAULT_SLAB_SIZE = Bytes.megabytes(4);
+
+	/** the default size of a block */
+	public static final int DEFAULT_BLOCK_SIZE = 1024;
+
+	private final SlabMemory memory;
+
+	private final DataStoreEvictionStrategy evictionStrategy;
+
+	/** session id -&gt; the pages of the session */
+	private final ConcurrentMap<String, OffHeapPageTable> pageTables = new ConcurrentHashMap<String, OffHeapPageTable>();
+
+	/** the sequence number of the next stored page */
+	private final AtomicLong sequence = new AtomicLong();
+
+	/**
+	 * sequence number -&gt; the stored page, in the order the pages have been stored, guarded by
+	 * itself
+	 */
+	private final Map<Long, StoredPage> storedPages = new LinkedHashMap<Long, StoredPage>();
+
+	/**
+	 * Construct.
+	 * 
+	 * @param maxSize
+	 *            the maximum size of the memory used for the pages of all sessions
+	 * @param evictionStrategy
+	 *            the strategy that keeps the number or size of the pages of each session
+	 *            reasonable
+	 */
+	public OffHeapDataStore(final Bytes maxSize, final DataStoreEvictionStrategy evictionStrategy)
+	{
+		this(maxSize, DEFAULT_SLAB_SIZE, DEFAULT_BLOCK_SIZE, evictionStrategy);
+	}
+
+	/**
+	 * Construct.
+	 * 
+	 * @param maxSize
+	 *            the maximum size of the memory used for the pages of all sessions
+	 * @param slabSize
+	 *            the size of the direct buffers which are allocated when more memory is needed
+	 * @param blockSize
+	 *            the size of the blocks the slabs are divided into, the smallest unit of memory
+	 *            used by a page
+	 * @param evictionStrategy
+	 *            the strategy that keeps the number or size of the pages of each session
+	 *            reasonable
+	 */
+	public OffHeapDataStore(final Bytes maxSize, final Bytes slabSize, final int blockSize,
+		final DataStoreEvictionStrategy evictionStrategy)
+	{
+		Args.notNull(maxSize, "maxSize");
+		Args.notNull(slabSize, "slabSize");
+		Args.isTrue(slabSize.bytes() <= Integer.MAX_VALUE, "slabSize must not exceed 2GB: {}",
+			slabSize);
+
+		memory = new SlabMemory(maxSize.bytes(), (int)slabSize.bytes(), blockSize);
+		this.evictionStrategy = Args.notNull(evictionStrategy, "evictionStrategy");
+	}
+
+	/**
+	 * @see org.apache.wicket.pageStore.IDataStore#getData(java.lang.String, int)
+	 */
+	public byte[] getData(final String sessionId, final int pageId)
+	{
+		OffHeapPageTable pageTable = pageTables.get(sessionId);
+		return pageTable != null ? pageTable.getPage(pageId) : null;
+	}
+
+	/**
+	 * @see org.apache.wicket.pageStore.IDataStore#removeData(java.lang.String, int)
+	 */
+	public void removeData(final String sessionId, final int pageId)
+	{
+		OffHeapPageTable pageTable = pageTables.get(sessionId);
+		if (pageTable != null)
+		{
+			pageTable.removePage(pageId);
+		}
+	}
+
+	/**
+	 * @see org.apache.wicket.pageStore.IDataStore#removeData(java.lang.String)
+	 */
+	public void removeData(final String sessionId)
+	{
+		OffHeapPageTable pageTable = pageTables.remove(sessionId);
+		if (pageTable != null)
+		{
+			pageTable.clear();
+		}
+	}
+
+	/**
+	 * @see org.apache.wicket.pageStore.IDataStore#storeData(java.lang.String, int, byte[])
+	 */
+	public void storeData(final String sessionId, final int pageId, final byte[] data)
+	{
+		OffHeapPageTable pageTable = pageTables.get(sessionId);
+		if (pageTable == null)
+		{
+			OffHeapPageTable created = new OffHeapPageTable();
+			pageTable = pageTables.putIfAbsent(sessionId, created);
+			if (pageTable == null)
+			{
+				pageTable = created;
+			}
+		}
+
+		pageTable.storePage(pageId, data);
+		evictionStrategy.evict(pageTable);
+
+		if (pageTables.get(sessionId) != pageTable)
+		{
+			// the session has been removed meanwhile
+			pageTable.clear();
+		}
+	}
+
+	/**
+	 * @see org.apache.wicket.pageStore.IDataStore#destroy()
+	 */
+	public void destroy()
+	{
+		for (String sessionId : pageTables.keySet())
+		{
+			removeData(sessionId);
+		}
+		memory.destroy();
+	}
+
+	/**
+	 * @see org.apache.wicket.pageStore.IDataStore#isReplicated()
+	 */
+	public boolean isReplicated()
+	{
+		return false;
+	}
+
+	/**
+	 * @return the size of the memory used by the pages of all sessions
+	 */
+	public Bytes getUsedSize()
+	{
+		return Bytes.bytes(memory.getUsedSize());
+	}
+
+	/**
+	 * Copies the data into the memory, evicting pages of any session until it fits.
+	 * 
+	 * @param data
+	 * @return the page or {@code null} if it is larger than the memory
+	 */
+	private OffHeapPage write(final byte[] data)
+	{
+		if (memory.getBlockCount(data.length) > memory.getMaxBlocks())
+		{
+			log.warn("A page of {} bytes is larger than the memory of the data store", data.length);
+			return null;
+		}
+
+		OffHeapPage page = memory.write(data, sequence.getAndIncrement());
+		while (page == null && evictOldest())
+		{
+			page = memory.write(data, sequence.getAndIncrement());
+		}
+		return page;
+	}
+
+	/**
+	 * Evicts the page of any session which has been stored first. Pages which are just being
+	 * stored and have not been put into their table yet are skipped.
+	 * 
+	 * @return {@code false} if there is no page to evict
+	 */
+	private boolean evictOldest()
+	{
+		StoredPage evicted = null;
+		synchronized (storedPages)
+		{
+			Iterator<StoredPage> iterator = storedPages.values().iterator();
+			while (evicted == null && iterator.hasNext())
+			{
+				StoredPage stored = iterator.next();
+				if (stored.pageTable.removeValue(stored.pageId, stored.page))
+				{
+					iterator.remove();
+					evicted = stored;
+				}
+			}
+		}
+
+		if (evicted == null)
+		{
+			return false;
+		}
+		evicted.pageTable.discard(evicted.page);
+		return true;
+	}
+
+	/**
+	 * A page in the order of {@link OffHeapDataStore#storedPages}
+	 */
+	private static class StoredPage
+	{
+		private final OffHeapPageTable pageTable;
+
+		private final Integer pageId;
+
+		private final OffHeapPage page;
+
+		private StoredPage(final OffHeapPageTable pageTable, final Integer pageId,
+			final OffHeapPage page)
+		{
+			this.pageTable = pageTable;
+			this.pageId = pageId;
+			this.page = page;
+		}
+	}
+
+	/**
+	 * The pages of a session, with their data in the off-heap memory
+	 */
+	private class OffHeapPageTable extends PageTable
+	{
+		private static final long serialVersionUID = 1L;
+
+		/** the total length of the data of the pages */
+		private final AtomicLong size = new AtomicLong();
+
+		@Override
+		Object toValue(final Integer pageId, final byte[] pageAsBytes)
+		{
+			OffHeapPage page = write(pageAsBytes);
+			if (page != null)
+			{
+				size.addAndGet(page.getLength());
+				synchronized (storedPages)
+				{
+					storedPages.put(page.getSequence(), new StoredPage(this, pageId, page));
+				}
+			}
+			return page;
+		}
+
+		@Override
+		byte[] toBytes(final Object value)
+		{
+			return memory.read((OffHeapPage)value);
+		}
+
+		@Override
+		byte[] discard(final Object value)
+		{
+			OffHeapPage page = (OffHeapPage)value;
+			synchronized (storedPages)
+			{
+				storedPages.remove(page.getSequence());
+			}
+			size.addAndGet(-page.getLength());
+			memory.free(page);
+			return null;
+		}
+
+		@Override
+		long getSizeInBytes()
+		{
+			return size.get();
+		}
+	}
+}
@@ -16,18 +16,27 @@
  */
 package org.apache.wicket.pageStore.memory;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
 
 import org.apache.wicket.IClusterable;
+import org.apache.wicket.util.lang.WicketObjects;
 
 /**
  * A structure that holds page id => pageAsBytes.
  * 
  * <p>
  * Additionally it has an index of the least recently used pages
+ * </p>
+ * <p>
+ * Subclasses may keep the bytes elsewhere by overriding {@link #toValue(Integer, byte[])},
+ * {@link #toBytes(Object)} and {@link #discard(Object)}, the table then holds just the values
+ * referring to them.
+ * </p>
  */
 class PageTable implements IClusterable
 {
@@ -48,53 +57,100 @@ class PageTable implements IClusterable
 	 * The actual container for the pages.
 	 * 
 	 * <p>
-	 * page id => page as bytes
+	 * page id => page as bytes, or the value referring to them
 	 */
-	private final ConcurrentMap<Integer, byte[]> pages;
+	private final ConcurrentMap<Integer, Object> pages;
 
 	public PageTable()
 	{
-		pages = new ConcurrentHashMap<Integer, byte[]>();
+		pages = new ConcurrentHashMap<Integer, Object>();
 		index = new ConcurrentLinkedQueue<Integer>();
 	}
 
 	void storePage(Integer pageId, byte[] pageAsBytes)
 	{
+		// convert before locking, the conversion may have to evict pages of other tables
+		Object value = toValue(pageId, pageAsBytes);
+		if (value == null)
+		{
+			removePage(pageId);
+			return;
+		}
+
+		Object previous;
 		synchronized (index)
 		{
-			pages.put(pageId, pageAsBytes);
+			previous = pages.put(pageId, value);
 
 			updateIndex(pageId);
 		}
+		if (previous != null)
+		{
+			discard(previous);
+		}
 	}
 
 	byte[] getPage(final Integer pageId)
 	{
+		Object value;
 		synchronized (index)
 		{
-			updateIndex(pageId);
+			value = pages.get(pageId);
 
-			return pages.get(pageId);
+			if (value != null)
+			{
+				updateIndex(pageId);
+			}
 		}
+		return value != null ? toBytes(value) : null;
 	}
 
 	public byte[] removePage(Integer pageId)
 	{
+		Object value;
 		synchronized (index)
 		{
 			index.remove(pageId);
 
-			return pages.remove(pageId);
+			value = pages.remove(pageId);
 		}
+		return value != null ? discard(value) : null;
+	}
+
+	/**
+	 * Removes the page if the table still holds the value for it, without discarding the value.
+	 * 
+	 * @param pageId
+	 * @param value
+	 *            a value created by {@link #toValue(Integer, byte[])}
+	 * @return {@code true} if the page has been removed
+	 */
+	boolean removeValue(final Integer pageId, final Object value)
+	{
+		synchronized (index)
+		{
+			if (pages.remove(pageId, value))
+			{
+				index.remove(pageId);
+				return true;
+			}
+		}
+		return false;
 	}
 
 	public void clear()
 	{
+		List<Object> values;
 		synchronized (index)
 		{
+			values = new ArrayList<Object>(pages.values());
 			index.clear();
 			pages.clear();
 		}
+		for (Object value : values)
+		{
+			discard(value);
+		}
 	}
 
 	public int size()
@@ -107,6 +163,49 @@ class PageTable implements IClusterable
 		return index.peek();
 	}
 
+	/**
+	 * @return the size of the table used by {@link MemorySizeEvictionStrategy}
+	 */
+	long getSizeInBytes()
+	{
+		return WicketObjects.sizeof(this);
+	}
+
+	/**
+	 * Converts the bytes of a page to the value kept in the table. Called without holding the lock
+	 * of the table.
+	 * 
+	 * @param pageId
+	 * @param pageAsBytes
+	 * @return the value, or {@code null} if the page cannot be stored
+	 */
+	Object toValue(Integer pageId, byte[] pageAsBytes)
+	{
+		return pageAsBytes;
+	}
+
+	/**
+	 * @param value
+	 *            a value created by {@link #toValue(Integer, byte[])}
+	 * @return the bytes of the page, or {@code null} if they are not available anymore
+	 */
+	byte[] toBytes(Object value)
+	{
+		return (byte[])value;
+	}
+
+	/**
+	 * Called when a value has been removed from the table
+	 * 
+	 * @param value
+	 *            a value created by {@link #toValue(Integer, byte[])}
+	 * @return the bytes of the page if they are kept on the heap, {@code null} otherwise
+	 */
+	byte[] discard(Object value)
+	{
+		return (byte[])value;
+	}
+
 	/**
 	 * Updates the index of last/least recently used pages by removing the page id from the index
 	 * (in case it is already in) and (re-)adding it at the head
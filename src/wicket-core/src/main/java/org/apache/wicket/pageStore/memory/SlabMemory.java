@@ -0,0 +1,294 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore.memory;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.wicket.util.lang.Args;
+
+/**
+ * Memory outside of the java heap, allocated in slabs of direct {@link ByteBuffer}s which are
+ * divided into blocks of equal size. The data of a page is kept in as many blocks as it needs,
+ * wherever they are.
+ * <p>
+ * Slabs are allocated lazily up to the maximum size and are not released before
+ * {@link #destroy()}; freed blocks are reused.
+ * </p>
+ */
+final class SlabMemory
+{
+	private final int blockSize;
+
+	private final int blocksPerSlab;
+
+	private final ByteBuffer[] slabs;
+
+	/** the number of allocated slabs, guarded by the write lock */
+	private int slabCount;
+
+	/** stack of the free blocks, guarded by the write lock */
+	private int[] freeBlocks = new int[0];
+
+	private int freeCount;
+
+	/**
+	 * Reading the blocks of a page holds the read lock, freeing them the write lock, so they are not
+	 * reused while being read.
+	 */
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+	/**
+	 * Construct.
+	 * 
+	 * @param maxSize
+	 *            the maximum size of all slabs
+	 * @param slabSize
+	 *            the size of a slab
+	 * @param blockSize
+	 *            the size of a block
+	 */
+	SlabMemory(final long maxSize, final int slabSize, final int blockSize)
+	{
+		Args.isTrue(blockSize > 0, "blockSize must be positive: {}", blockSize);
+		Args.isTrue(slabSize >= blockSize, "slabSize must not be smaller than the block size: {}",
+			slabSize);
+		Args.isTrue(maxSize >= slabSize, "maxSize must not be smaller than the slab size: {}",
+			maxSize);
+
+		this.blockSize = blockSize;
+		blocksPerSlab = slabSize / blockSize;
+		slabs = new ByteBuffer[(int)Math.min(Integer.MAX_VALUE / blocksPerSlab, maxSize /
+			slabSize)];
+	}
+
+	/**
+	 * @return the maximum number of blocks
+	 */
+	int getMaxBlocks()
+	{
+		return slabs.length * blocksPerSlab;
+	}
+
+	/**
+	 * @param length
+	 * @return the number of blocks needed for data of this length
+	 */
+	int getBlockCount(final int length)
+	{
+		return (length + blockSize - 1) / blockSize;
+	}
+
+	/**
+	 * @return the size of the blocks in use
+	 */
+	long getUsedSize()
+	{
+		lock.readLock().lock();
+		try
+		{
+			return ((long)slabCount * blocksPerSlab - freeCount) * blockSize;
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Copies the data into free blocks.
+	 * 
+	 * @param data
+	 * @param sequence
+	 *            the sequence number of the page
+	 * @return the page or {@code null} if there are not enough free blocks
+	 */
+	OffHeapPage write(final byte[] data, final long sequence)
+	{
+		int count = getBlockCount(data.length);
+		int[] blocks = new int[count];
+
+		lock.writeLock().lock();
+		try
+		{
+			while (freeCount < count && slabCount < slabs.length)
+			{
+				addSlab();
+			}
+			if (freeCount < count)
+			{
+				return null;
+			}
+			freeCount -= count;
+			System.arraycopy(freeBlocks, freeCount, blocks, 0, count);
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+
+		// the blocks belong to this page only, so they can be written without the lock
+		int offset = 0;
+		for (int block : blocks)
+		{
+			int length = Math.min(blockSize, data.length - offset);
+			ByteBuffer buffer = buffer(block);
+			buffer.put(data, offset, length);
+			offset += length;
+		}
+		return new OffHeapPage(blocks, data.length, sequence);
+	}
+
+	/**
+	 * @param page
+	 * @return the data of the page or {@code null} if it has been freed
+	 */
+	byte[] read(final OffHeapPage page)
+	{
+		lock.readLock().lock();
+		try
+		{
+			if (page.freed)
+			{
+				return null;
+			}
+			byte[] data = new byte[page.length];
+			int offset = 0;
+			for (int block : page.blocks)
+			{
+				int length = Math.min(blockSize, data.length - offset);
+				buffer(block).get(data, offset, length);
+				offset += length;
+			}
+			return data;
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns the blocks of the page to the free blocks
+	 * 
+	 * @param page
+	 */
+	void free(final OffHeapPage page)
+	{
+		lock.writeLock().lock();
+		try
+		{
+			if (page.freed == false)
+			{
+				page.freed = true;
+				System.arraycopy(page.blocks, 0, freeBlocks, freeCount, page.blocks.length);
+				freeCount += page.blocks.length;
+			}
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Drops all slabs
+	 */
+	void destroy()
+	{
+		lock.writeLock().lock();
+		try
+		{
+			for (int i = 0; i < slabCount; i++)
+			{
+				slabs[i] = null;
+			}
+			slabCount = 0;
+			freeBlocks = new int[0];
+			freeCount = 0;
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * @param block
+	 * @return a buffer positioned at the start of the block
+	 */
+	private ByteBuffer buffer(final int block)
+	{
+		ByteBuffer buffer = slabs[block / blocksPerSlab].duplicate();
+		buffer.position((block % blocksPerSlab) * blockSize);
+		return buffer;
+	}
+
+	private void addSlab()
+	{
+		slabs[slabCount] = ByteBuffer.allocateDirect(blocksPerSlab * blockSize);
+
+		int[] newFreeBlocks = new int[(slabCount + 1) * blocksPerSlab];
+		System.arraycopy(freeBlocks, 0, newFreeBlocks, 0, freeCount);
+		// push in reverse order, so the blocks are used in ascending order
+		int first = slabCount * blocksPerSlab;
+		for (int block = first + blocksPerSlab - 1; block >= first; block--)
+		{
+			newFreeBlocks[freeCount++] = block;
+		}
+		freeBlocks = newFreeBlocks;
+		slabCount++;
+	}
+
+	/**
+	 * The blocks holding the data of a page
+	 */
+	static final class OffHeapPage
+	{
+		private final int[] blocks;
+
+		private final int length;
+
+		private final long sequence;
+
+		/** guarded by the write lock of the memory */
+		private boolean freed;
+
+		private OffHeapPage(final int[] blocks, final int length, final long sequence)
+		{
+			this.blocks = blocks;
+			this.length = length;
+			this.sequence = sequence;
+		}
+
+		/**
+		 * @return the length of the data
+		 */
+		int getLength()
+		{
+			return length;
+		}
+
+		/**
+		 * @return the sequence number of the page, higher for pages stored later
+		 */
+		long getSequence()
+		{
+			return sequence;
+		}
+	}
+}
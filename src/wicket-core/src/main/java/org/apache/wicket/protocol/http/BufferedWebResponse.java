@@ -19,6 +19,7 @@ package org.apache.wicket.protocol.http;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.CharBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -32,6 +33,7 @@ import org.apache.wicket.request.http.WebResponse;
 import org.apache.wicket.response.filter.IResponseFilter;
 import org.apache.wicket.util.lang.Args;
 import org.apache.wicket.util.string.AppendingStringBuffer;
+import org.apache.wicket.util.string.PreEncodedText;
 import org.apache.wicket.util.time.Time;
 
 /**
@@ -132,6 +134,12 @@ public class BufferedWebResponse extends WebResponse implements IMetaDataBufferi
 	{
 		private final StringBuilder builder = new StringBuilder(4096);
 
+		/** the pre-encoded texts in the builder, in the order they have been written */
+		private List<PreEncodedText> preEncodedTexts;
+
+		/** the offsets of the pre-encoded texts in the builder */
+		private List<Integer> preEncodedOffsets;
+
 		public WriteCharSequenceAction()
 		{
 
@@ -142,15 +150,56 @@ public class BufferedWebResponse extends WebResponse implements IMetaDataBufferi
 			builder.append(sequence);
 		}
 
+		public void append(PreEncodedText text)
+		{
+			if (preEncodedTexts == null)
+			{
+				preEncodedTexts = new ArrayList<PreEncodedText>();
+				preEncodedOffsets = new ArrayList<Integer>();
+			}
+			preEncodedTexts.add(text);
+			preEncodedOffsets.add(builder.length());
+			builder.append(text.toString());
+		}
+
+		public void clear()
+		{
+			builder.setLength(0);
+			preEncodedTexts = null;
+			preEncodedOffsets = null;
+		}
+
 		@Override
 		protected void invoke(WebResponse response)
 		{
-			AppendingStringBuffer responseBuffer = new AppendingStringBuffer(builder);
-
 			List<IResponseFilter> responseFilters = Application.get()
 				.getRequestCycleSettings()
 				.getResponseFilters();
 
+			if (preEncodedTexts != null && (responseFilters == null || responseFilters.isEmpty()))
+			{
+				// nothing changes the text, so the pre-encoded parts can be written as they are
+				int start = 0;
+				for (int i = 0; i < preEncodedTexts.size(); i++)
+				{
+					PreEncodedText text = preEncodedTexts.get(i);
+					int offset = preEncodedOffsets.get(i);
+					if (offset > start)
+					{
+						response.write(CharBuffer.wrap(builder, start, offset));
+					}
+					response.writePreEncoded(text);
+					start = offset + text.length();
+				}
+				if (builder.length() > start)
+				{
+					response.write(CharBuffer.wrap(builder, start, builder.length()));
+				}
+				return;
+			}
+
+			AppendingStringBuffer responseBuffer = new AppendingStringBuffer(builder);
+
 			if (responseFilters != null)
 			{
 				for (IResponseFilter filter : responseFilters)
@@ -474,6 +523,29 @@ public class BufferedWebResponse extends WebResponse implements IMetaDataBufferi
 		charSequenceAction.append(sequence);
 	}
 
+	/**
+	 * Buffers the text along with its encoded form, which is written to the original response
+	 * unless there are response filters changing the text.
+	 * 
+	 * @see org.apache.wicket.request.Response#writePreEncoded(org.apache.wicket.util.string.PreEncodedText)
+	 */
+	@Override
+	public void writePreEncoded(PreEncodedText text)
+	{
+		if (dataAction != null)
+		{
+			throw new IllegalStateException(
+				"Can't call write(CharSequence) after write(byte[]) has been called.");
+		}
+
+		if (charSequenceAction == null)
+		{
+			charSequenceAction = new WriteCharSequenceAction();
+			actions.add(charSequenceAction);
+		}
+		charSequenceAction.append(text);
+	}
+
 	/**
 	 * Returns the text already written to this response.
 	 * 
@@ -508,7 +580,7 @@ public class BufferedWebResponse extends WebResponse implements IMetaDataBufferi
 		}
 		if (charSequenceAction != null)
 		{
-			charSequenceAction.builder.setLength(0);
+			charSequenceAction.clear();
 		}
 		write(text);
 	}
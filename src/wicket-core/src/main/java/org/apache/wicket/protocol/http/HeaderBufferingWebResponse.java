@@ -16,11 +16,15 @@
  */
 package org.apache.wicket.protocol.http;
 
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
 import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.wicket.request.http.WebResponse;
 import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.string.PreEncodedText;
 import org.apache.wicket.util.time.Time;
 
 /**
@@ -174,6 +178,13 @@ class HeaderBufferingWebResponse extends WebResponse implements IMetaDataBufferi
 		originalResponse.write(sequence);
 	}
 
+	@Override
+	public void writePreEncoded(PreEncodedText text)
+	{
+		writeBuffered();
+		originalResponse.writePreEncoded(text);
+	}
+
 	@Override
 	public void write(byte[] array)
 	{
@@ -189,6 +200,13 @@ class HeaderBufferingWebResponse extends WebResponse implements IMetaDataBufferi
 		originalResponse.write(array, offset, length);
 	}
 
+	@Override
+	public void write(FileChannel channel, long position, long count) throws IOException
+	{
+		writeBuffered();
+		originalResponse.write(channel, position, count);
+	}
+
 	@Override
 	public void reset()
 	{
@@ -17,13 +17,20 @@
 package org.apache.wicket.protocol.http.servlet;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
 
+import javax.servlet.ServletOutputStream;
 import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.wicket.WicketRuntimeException;
 import org.apache.wicket.request.http.WebResponse;
 import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.string.PreEncodedText;
 import org.apache.wicket.util.time.Time;
 
 /**
@@ -38,6 +45,15 @@ public class ServletWebResponse extends WebResponse
 
 	private boolean redirect = false;
 
+	/** whether text has been written with the writer of the servlet response */
+	private boolean writerUsed = false;
+
+	/**
+	 * the charset of the text written to the output stream of the servlet response, set when
+	 * pre-encoded text is written before any text has been written with the writer
+	 */
+	private Charset streamCharset;
+
 	/**
 	 * Construct.
 	 * 
@@ -103,7 +119,17 @@ public class ServletWebResponse extends WebResponse
 	{
 		try
 		{
-			httpServletResponse.getWriter().append(sequence);
+			if (streamCharset != null)
+			{
+				ByteBuffer buffer = streamCharset.encode(CharBuffer.wrap(sequence));
+				httpServletResponse.getOutputStream().write(buffer.array(),
+					buffer.arrayOffset() + buffer.position(), buffer.remaining());
+			}
+			else
+			{
+				writerUsed = true;
+				httpServletResponse.getWriter().append(sequence);
+			}
 		}
 		catch (IOException e)
 		{
@@ -111,6 +137,39 @@ public class ServletWebResponse extends WebResponse
 		}
 	}
 
+	/**
+	 * Writes the encoded form of the text to the output stream of the servlet response, unless the
+	 * writer of the servlet response is already in use. As the servlet response can not use both,
+	 * all text written afterwards is encoded by this response too.
+	 * 
+	 * @see org.apache.wicket.request.Response#writePreEncoded(org.apache.wicket.util.string.PreEncodedText)
+	 */
+	@Override
+	public void writePreEncoded(PreEncodedText text)
+	{
+		if (streamCharset == null && writerUsed == false)
+		{
+			try
+			{
+				streamCharset = Charset.forName(httpServletResponse.getCharacterEncoding());
+			}
+			catch (IllegalArgumentException e)
+			{
+				// unknown charset, leave the encoding to the writer
+				writerUsed = true;
+			}
+		}
+
+		if (streamCharset != null)
+		{
+			write(text.getBytes(streamCharset));
+		}
+		else
+		{
+			write(text.toString());
+		}
+	}
+
 	@Override
 	public void write(byte[] array)
 	{
@@ -137,6 +196,41 @@ public class ServletWebResponse extends WebResponse
 		}
 	}
 
+	/**
+	 * Transfers the region with {@link FileChannel#transferTo(long, long, WritableByteChannel)} if
+	 * the output stream of the container is a channel, so the data does not have to be copied
+	 * through the heap. Once nothing is transferred, e.g. as a non-blocking channel is not ready,
+	 * the rest of the region is copied through the heap.
+	 * 
+	 * @see org.apache.wicket.request.http.WebResponse#write(java.nio.channels.FileChannel, long,
+	 *      long)
+	 */
+	@Override
+	public void write(FileChannel channel, long position, long count) throws IOException
+	{
+		ServletOutputStream out = httpServletResponse.getOutputStream();
+		if (out instanceof WritableByteChannel)
+		{
+			WritableByteChannel target = (WritableByteChannel)out;
+			long offset = position;
+			long end = position + count;
+			while (offset < end)
+			{
+				long transferred = channel.transferTo(offset, end - offset, target);
+				if (transferred <= 0)
+				{
+					// retrying might spin, the copy blocks or reports the end of the file
+					super.write(channel, offset, end - offset);
+					return;
+				}
+				offset += transferred;
+			}
+		}
+		else
+		{
+			super.write(channel, position, count);
+		}
+	}
 
 	@Override
 	public void setStatus(int sc)
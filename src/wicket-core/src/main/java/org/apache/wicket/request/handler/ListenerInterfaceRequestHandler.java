@@ -134,7 +134,12 @@ public class ListenerInterfaceRequestHandler
 			logData = new ListenerInterfaceLogData(pageComponentProvider, listenerInterface,
 				behaviorId);
 		}
-		pageComponentProvider.detach();
+		if (listenerInterface.isSharedPageLock() == false)
+		{
+			// a page locked in shared mode is detached by the page manager once the lock has been
+			// upgraded
+			pageComponentProvider.detach();
+		}
 	}
 
 	/**
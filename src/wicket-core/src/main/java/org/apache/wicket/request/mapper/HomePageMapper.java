@@ -98,6 +98,18 @@ public class HomePageMapper extends MountedMapper
 		return super.parseRequest(request);
 	}
 
+	/**
+	 * The home page class may be provided by the application and change, so the handlers are not
+	 * indexed.
+	 * 
+	 * @see org.apache.wicket.request.mapper.MountedMapper#getHandlerKey()
+	 */
+	@Override
+	public Object getHandlerKey()
+	{
+		return null;
+	}
+
 	/**
 	 * Use this mapper as a last option. Let all other mappers to try to handle the request
 	 * 
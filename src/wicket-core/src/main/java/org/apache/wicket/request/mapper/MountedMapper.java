@@ -64,7 +64,7 @@ import org.apache.wicket.util.string.Strings;
  * 
  * @author Matej Knopp
  */
-public class MountedMapper extends AbstractBookmarkableMapper
+public class MountedMapper extends AbstractBookmarkableMapper implements IIndexableRequestMapper
 {
 	private final IPageParametersEncoder pageParametersEncoder;
 
@@ -502,6 +502,26 @@ public class MountedMapper extends AbstractBookmarkableMapper
 		}
 	}
 
+	/**
+	 * @see org.apache.wicket.request.mapper.IIndexableRequestMapper#getMountPathSegments()
+	 */
+	public String[] getMountPathSegments()
+	{
+		return mountSegments.clone();
+	}
+
+	/**
+	 * The key of the handlers is the name of the mounted page class.
+	 * 
+	 * @see org.apache.wicket.request.mapper.IIndexableRequestMapper#getHandlerKey()
+	 * @see org.apache.wicket.SystemMapper#getHandlerKey(IRequestHandler)
+	 */
+	public Object getHandlerKey()
+	{
+		Class<? extends IRequestablePage> pageClass = getPageClass();
+		return pageClass != null ? pageClass.getName() : null;
+	}
+
 	/**
 	 * @see org.apache.wicket.request.mapper.AbstractBookmarkableMapper#checkPageClass(java.lang.Class)
 	 */
@@ -511,7 +531,10 @@ public class MountedMapper extends AbstractBookmarkableMapper
 		return pageClass.equals(this.getPageClass());
 	}
 
-	private Class<? extends IRequestablePage> getPageClass()
+	/**
+	 * @return the mounted page class
+	 */
+	public Class<? extends IRequestablePage> getPageClass()
 	{
 		return pageClassProvider.get();
 	}
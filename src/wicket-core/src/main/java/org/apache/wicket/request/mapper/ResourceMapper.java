@@ -65,7 +65,7 @@ import org.apache.wicket.util.string.Strings;
  * 
  * @author Peter Ertl
  */
-public class ResourceMapper extends AbstractMapper implements IRequestMapper
+public class ResourceMapper extends AbstractMapper implements IIndexableRequestMapper
 {
 	// encode page parameters into url + decode page parameters from url
 	private final IPageParametersEncoder parametersEncoder;
@@ -154,6 +154,33 @@ public class ResourceMapper extends AbstractMapper implements IRequestMapper
 		return 0; // pages always have priority over resources
 	}
 
+	/**
+	 * The last segment is matched by any segment, because the caching strategy may have decorated
+	 * the filename in the url, e.g. with a version.
+	 * 
+	 * @see org.apache.wicket.request.mapper.IIndexableRequestMapper#getMountPathSegments()
+	 */
+	public String[] getMountPathSegments()
+	{
+		String[] segments = mountSegments.clone();
+		if (segments.length > 0)
+		{
+			segments[segments.length - 1] = "${filename}";
+		}
+		return segments;
+	}
+
+	/**
+	 * The key of the handlers is the mounted resource reference.
+	 * 
+	 * @see org.apache.wicket.request.mapper.IIndexableRequestMapper#getHandlerKey()
+	 * @see org.apache.wicket.SystemMapper#getHandlerKey(IRequestHandler)
+	 */
+	public Object getHandlerKey()
+	{
+		return resourceReference;
+	}
+
 	public Url mapHandler(IRequestHandler requestHandler)
 	{
 		if ((requestHandler instanceof ResourceReferenceRequestHandler) == false)
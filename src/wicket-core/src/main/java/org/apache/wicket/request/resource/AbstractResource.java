@@ -16,12 +16,25 @@
  */
 package org.apache.wicket.request.resource;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.Serializable;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
 import java.util.Set;
+import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
 
+import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.wicket.Application;
@@ -32,6 +45,7 @@ import org.apache.wicket.request.http.WebRequest;
 import org.apache.wicket.request.http.WebResponse;
 import org.apache.wicket.request.resource.caching.IResourceCachingStrategy;
 import org.apache.wicket.request.resource.caching.IStaticCacheableResource;
+import org.apache.wicket.response.ByteArrayResponse;
 import org.apache.wicket.settings.IResourceSettings;
 import org.apache.wicket.util.io.Streams;
 import org.apache.wicket.util.lang.Args;
@@ -66,6 +80,19 @@ public abstract class AbstractResource implements IResource
 		INTERNAL_HEADERS.add("content-disposition");
 	}
 
+	/** the content encoding of gzip compressed responses */
+	private static final String GZIP = "gzip";
+
+	/** requests for more ranges are answered with the whole data */
+	private static final int MAX_RANGES = 16;
+
+	/** responses with less data are not compressed */
+	private static final long MIN_COMPRESSED_LENGTH = 256;
+
+	/** responses with more data are not compressed, to not buffer them */
+	private static final long MAX_COMPRESSED_LENGTH = 4 * 1024 * 1024;
+
+
 	/**
 	 * Construct.
 	 */
@@ -91,11 +118,14 @@ public abstract class AbstractResource implements IResource
 	{
 		private Integer errorCode;
 		private String errorMessage;
+		private Integer statusCode;
 		private String fileName = null;
 		private ContentDisposition contentDisposition = ContentDisposition.INLINE;
 		private String contentType = null;
 		private String textEncoding;
+		private String contentEncoding;
 		private long contentLength = -1;
+		private boolean acceptRanges;
 		private Time lastModified = null;
 		private WriteCallback writeCallback;
 		private Duration cacheDuration;
@@ -159,6 +189,25 @@ public abstract class AbstractResource implements IResource
 			return errorMessage;
 		}
 
+		/**
+		 * Sets the status code of a successful response, e.g. 206 for partial content.
+		 * 
+		 * @param statusCode
+		 *            status code or <code>null</code> for the default
+		 */
+		public void setStatusCode(Integer statusCode)
+		{
+			this.statusCode = statusCode;
+		}
+
+		/**
+		 * @return status code or <code>null</code>
+		 */
+		public Integer getStatusCode()
+		{
+			return statusCode;
+		}
+
 		/**
 		 * Sets the file name of the resource.
 		 * 
@@ -244,6 +293,27 @@ public abstract class AbstractResource implements IResource
 			return textEncoding;
 		}
 
+		/**
+		 * Sets the content encoding of the data, e.g. <code>gzip</code> if the data written by the
+		 * write callback is compressed. The content encoding is negotiated by the resource if
+		 * {@link IResourceSettings#isCompressResources()} is enabled.
+		 * 
+		 * @param contentEncoding
+		 *            content encoding or <code>null</code> if the data is not encoded
+		 */
+		public void setContentEncoding(String contentEncoding)
+		{
+			this.contentEncoding = contentEncoding;
+		}
+
+		/**
+		 * @return content encoding or <code>null</code>
+		 */
+		public String getContentEncoding()
+		{
+			return contentEncoding;
+		}
+
 		/**
 		 * Sets the content length (in bytes) of the data. Content length is optional but it's
 		 * recommended to set it so that the browser can show download progress.
@@ -264,6 +334,30 @@ public abstract class AbstractResource implements IResource
 			return contentLength;
 		}
 
+		/**
+		 * Sets whether parts of the data may be sent to clients requesting byte ranges. This requires
+		 * the content length; the ranges are written with
+		 * {@link WriteCallback#writeRange(org.apache.wicket.request.resource.IResource.Attributes, long, long)}.
+		 * Text written by the write callback is encoded with the text encoding of the response and
+		 * cut like bytes. Data which accepts ranges is never compressed, so a range is always a
+		 * part of the same representation.
+		 * 
+		 * @param acceptRanges
+		 *            <code>true</code> if byte ranges are supported
+		 */
+		public void setAcceptRanges(boolean acceptRanges)
+		{
+			this.acceptRanges = acceptRanges;
+		}
+
+		/**
+		 * @return <code>true</code> if byte ranges are supported
+		 */
+		public boolean isAcceptRanges()
+		{
+			return acceptRanges;
+		}
+
 		/**
 		 * Sets the last modified data of the resource. Even though this method is optional it is
 		 * recommended to set the date. If the date is set properly Wicket can check the
@@ -481,6 +575,12 @@ public abstract class AbstractResource implements IResource
 		{
 			getCachingStrategy().decorateResponse(data, (IStaticCacheableResource)this);
 		}
+		// send the requested byte ranges
+		negotiateRanges(data, attributes);
+
+		// compress the data if the client accepts it
+		negotiateContentEncoding(data, attributes);
+
 		// set response header
 		setResponseHeaders(data, attributes);
 
@@ -497,6 +597,464 @@ public abstract class AbstractResource implements IResource
 		data.getWriteCallback().writeData(attributes);
 	}
 
+	/**
+	 * Sends the byte ranges requested by the <code>Range</code> header with status 206 if the data
+	 * accepts ranges, see {@link ResourceResponse#setAcceptRanges(boolean)}. A single range is sent
+	 * as it is, several ranges as <code>multipart/byteranges</code>. The whole data is sent if the
+	 * <code>If-Range</code> header does not match the last modification time, the header is invalid
+	 * or asks for too many ranges.
+	 * 
+	 * @param data
+	 *            resource data
+	 * @param attributes
+	 *            request attributes
+	 */
+	private void negotiateRanges(final ResourceResponse data, final Attributes attributes)
+	{
+		if (!data.isAcceptRanges() || (data.getErrorCode() != null) ||
+			(data.getContentEncoding() != null))
+		{
+			return;
+		}
+		if (!(attributes.getRequest() instanceof WebRequest) ||
+			!(attributes.getResponse() instanceof WebResponse))
+		{
+			return;
+		}
+		final long length = data.getContentLength();
+		if ((length == -1) || !data.dataNeedsToBeWritten(attributes) ||
+			(data.getWriteCallback() == null))
+		{
+			return;
+		}
+
+		data.getHeaders().addHeader("Accept-Ranges", "bytes");
+
+		WebRequest request = (WebRequest)attributes.getRequest();
+		String header = request.getHeader("Range");
+		if ((header == null) || !isRangeCurrent(request, data))
+		{
+			return;
+		}
+
+		final List<ByteRange> ranges = parseRanges(header, length);
+		if ((ranges == null) || (ranges.size() > MAX_RANGES))
+		{
+			return;
+		}
+		if (ranges.isEmpty())
+		{
+			((WebResponse)attributes.getResponse()).setHeader("Content-Range", "bytes */" + length);
+			data.setError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+			return;
+		}
+
+		final WriteCallback callback = data.getWriteCallback();
+		data.setStatusCode(HttpServletResponse.SC_PARTIAL_CONTENT);
+		if (ranges.size() == 1)
+		{
+			final ByteRange range = ranges.get(0);
+			data.getHeaders().addHeader("Content-Range", range.toContentRange(length));
+			data.setContentLength(range.length());
+			data.setWriteCallback(new WriteCallback()
+			{
+				@Override
+				public void writeData(final Attributes attributes)
+				{
+					callback.writeRange(attributes, range.first, range.length());
+				}
+			});
+		}
+		else
+		{
+			String contentType = data.getContentType();
+			if ((contentType != null) && (data.getTextEncoding() != null))
+			{
+				contentType += "; charset=" + data.getTextEncoding();
+			}
+
+			final String boundary = UUID.randomUUID().toString().replace("-", "");
+			final List<byte[]> partHeaders = new ArrayList<byte[]>(ranges.size());
+			long multipartLength = 0;
+			for (ByteRange range : ranges)
+			{
+				StringBuilder partHeader = new StringBuilder();
+				partHeader.append("\r\n--").append(boundary).append("\r\n");
+				if (contentType != null)
+				{
+					partHeader.append("Content-Type: ").append(contentType).append("\r\n");
+				}
+				partHeader.append("Content-Range: ").append(range.toContentRange(length));
+				partHeader.append("\r\n\r\n");
+				byte[] bytes = toAscii(partHeader);
+				partHeaders.add(bytes);
+				multipartLength += bytes.length + range.length();
+			}
+			final byte[] end = toAscii("\r\n--" + boundary + "--\r\n");
+			multipartLength += end.length;
+
+			// the text of the parts is encoded as it would be without ranges
+			final String encoding = data.getTextEncoding();
+			data.setContentType("multipart/byteranges; boundary=" + boundary);
+			data.setTextEncoding(null);
+			data.setContentLength(multipartLength);
+			data.setWriteCallback(new WriteCallback()
+			{
+				@Override
+				public void writeData(final Attributes attributes)
+				{
+					Attributes partAttributes = attributes;
+					if (encoding != null)
+					{
+						partAttributes = new Attributes(attributes.getRequest(), new RangeResponse(
+							attributes.getResponse(), encoding), attributes.getParameters());
+					}
+					for (int i = 0; i < ranges.size(); i++)
+					{
+						ByteRange range = ranges.get(i);
+						attributes.getResponse().write(partHeaders.get(i));
+						callback.writeRange(partAttributes, range.first, range.length());
+					}
+					attributes.getResponse().write(end);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Checks the <code>If-Range</code> header. Entity tags never match, as resources do not send
+	 * them.
+	 * 
+	 * @param request
+	 * @param data
+	 * @return <code>true</code> if there is no <code>If-Range</code> header or it matches the last
+	 *         modification time of the data
+	 */
+	private static boolean isRangeCurrent(final WebRequest request, final ResourceResponse data)
+	{
+		String header = request.getHeader("If-Range");
+		if (header == null)
+		{
+			return true;
+		}
+		header = header.trim();
+		if (header.startsWith("\"") || header.startsWith("W/"))
+		{
+			return false;
+		}
+
+		Time ifRange = request.getDateHeader("If-Range");
+		Time lastModified = data.getLastModified();
+
+		// http dates have a resolution of seconds
+		return (ifRange != null) && (lastModified != null) &&
+			(ifRange.getMilliseconds() / 1000 == lastModified.getMilliseconds() / 1000);
+	}
+
+	/**
+	 * Parses the value of a <code>Range</code> header.
+	 * 
+	 * @param header
+	 * @param length
+	 *            the length of the data
+	 * @return the satisfiable ranges, an empty list if there is none or <code>null</code> if the
+	 *         header is invalid
+	 */
+	static List<ByteRange> parseRanges(final String header, final long length)
+	{
+		String value = header.trim();
+		if (!value.regionMatches(true, 0, "bytes=", 0, 6))
+		{
+			return null;
+		}
+
+		List<ByteRange> ranges = new ArrayList<ByteRange>();
+		boolean empty = true;
+		for (String spec : value.substring(6).split(","))
+		{
+			spec = spec.trim();
+			if (spec.length() == 0)
+			{
+				continue;
+			}
+			empty = false;
+
+			int dash = spec.indexOf('-');
+			if (dash == -1)
+			{
+				return null;
+			}
+			try
+			{
+				if (dash == 0)
+				{
+					// the last bytes
+					long suffix = Long.parseLong(spec.substring(1).trim());
+					if (suffix < 0)
+					{
+						return null;
+					}
+					if ((suffix > 0) && (length > 0))
+					{
+						ranges.add(new ByteRange(Math.max(0, length - suffix), length - 1));
+					}
+				}
+				else
+				{
+					long first = Long.parseLong(spec.substring(0, dash).trim());
+					String lastSpec = spec.substring(dash + 1).trim();
+					long last = (lastSpec.length() == 0) ? Long.MAX_VALUE
+						: Long.parseLong(lastSpec);
+					if ((first < 0) || (last < first))
+					{
+						return null;
+					}
+					if (first < length)
+					{
+						ranges.add(new ByteRange(first, Math.min(last, length - 1)));
+					}
+				}
+			}
+			catch (NumberFormatException e)
+			{
+				return null;
+			}
+		}
+		return empty ? null : ranges;
+	}
+
+	/**
+	 * @param text
+	 * @return the text encoded as US-ASCII
+	 */
+	private static byte[] toAscii(final CharSequence text)
+	{
+		byte[] bytes = new byte[text.length()];
+		for (int i = 0; i < bytes.length; i++)
+		{
+			bytes[i] = (byte)text.charAt(i);
+		}
+		return bytes;
+	}
+
+	/**
+	 * Compresses the data with gzip if it is enabled by {@link IResourceSettings#isCompressResources()},
+	 * the data is compressible and the client accepts it. The compressed data of
+	 * {@link IStaticCacheableResource}s is kept in the {@link CompressedResourceCache} of the
+	 * application, by their cache key and last modification time, so it is compressed once.
+	 * 
+	 * @param data
+	 *            resource data
+	 * @param attributes
+	 *            request attributes
+	 */
+	private void negotiateContentEncoding(final ResourceResponse data, final Attributes attributes)
+	{
+		if (!Application.exists() || !Application.get().getResourceSettings().isCompressResources())
+		{
+			return;
+		}
+		if (!(attributes.getRequest() instanceof WebRequest) ||
+			!(attributes.getResponse() instanceof WebResponse))
+		{
+			return;
+		}
+		// a range of the uncompressed data can not resume a compressed download
+		if ((data.getErrorCode() != null) || (data.getStatusCode() != null) ||
+			(data.getContentEncoding() != null) || data.isAcceptRanges() || !isCompressible(data))
+		{
+			return;
+		}
+
+		// the response varies with the accepted encodings, whether it is compressed or not
+		data.getHeaders().addHeader("Vary", "Accept-Encoding");
+
+		if (!acceptsGzip((WebRequest)attributes.getRequest()) ||
+			!data.dataNeedsToBeWritten(attributes) || (data.getWriteCallback() == null))
+		{
+			return;
+		}
+
+		final CompressedResourceCache cache = Application.get()
+			.getResourceSettings()
+			.getCompressedResourceCache();
+		Serializable key = null;
+		if ((cache != null) && (this instanceof IStaticCacheableResource))
+		{
+			key = ((IStaticCacheableResource)this).getCacheKey();
+		}
+
+		CompressedResourceCache.Data compressed = null;
+		if (key != null)
+		{
+			compressed = cache.get(getClass(), key, data.getLastModified());
+		}
+
+		final byte[] bytes;
+		if (compressed != null)
+		{
+			bytes = compressed.getBytes();
+		}
+		else
+		{
+			byte[] precompressed = getPrecompressedData(data, attributes);
+			if (precompressed != null)
+			{
+				bytes = precompressed;
+			}
+			else
+			{
+				// write the data once, it is written uncompressed if compressing does not pay
+				ByteArrayResponse captured = new ByteArrayResponse();
+				data.getWriteCallback().writeData(
+					new Attributes(attributes.getRequest(), captured, attributes.getParameters()));
+				final byte[] uncompressed = captured.getBytes();
+				bytes = gzip(uncompressed);
+				if (bytes == null)
+				{
+					data.setContentLength(uncompressed.length);
+					data.setWriteCallback(new WriteCallback()
+					{
+						@Override
+						public void writeData(final Attributes attributes)
+						{
+							attributes.getResponse().write(uncompressed);
+						}
+					});
+				}
+			}
+
+			if (key != null)
+			{
+				cache.put(getClass(), key,
+					new CompressedResourceCache.Data(data.getLastModified(), bytes));
+			}
+		}
+
+		if (bytes != null)
+		{
+			data.setContentEncoding(GZIP);
+			data.setContentLength(bytes.length);
+			data.setWriteCallback(new WriteCallback()
+			{
+				@Override
+				public void writeData(final Attributes attributes)
+				{
+					attributes.getResponse().write(bytes);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Gets whether the data of the response may be compressed. By default text, JavaScript, JSON
+	 * and XML are compressed if the content length is known and neither too small nor too large
+	 * to pay off.
+	 * 
+	 * @param data
+	 *            resource data
+	 * @return <code>true</code> if the data may be compressed
+	 */
+	protected boolean isCompressible(final ResourceResponse data)
+	{
+		long length = data.getContentLength();
+		if ((length < MIN_COMPRESSED_LENGTH) || (length > MAX_COMPRESSED_LENGTH))
+		{
+			return false;
+		}
+
+		String contentType = data.getContentType();
+		if (contentType == null)
+		{
+			return false;
+		}
+		contentType = contentType.toLowerCase(Locale.ENGLISH);
+		return contentType.startsWith("text/") || (contentType.indexOf("javascript") != -1) ||
+			(contentType.indexOf("json") != -1) || (contentType.indexOf("xml") != -1);
+	}
+
+	/**
+	 * Gets data which has been compressed with gzip in advance, e.g. a file shipped next to the
+	 * resource, to be sent instead of compressing the data written by the write callback.
+	 * 
+	 * @param data
+	 *            resource data
+	 * @param attributes
+	 *            request attributes
+	 * @return the gzip compressed data or <code>null</code>
+	 */
+	protected byte[] getPrecompressedData(final ResourceResponse data, final Attributes attributes)
+	{
+		return null;
+	}
+
+	/**
+	 * Checks the <code>Accept-Encoding</code> request header for gzip.
+	 * 
+	 * @param request
+	 * @return <code>true</code> if the client accepts gzip compressed data
+	 */
+	private static boolean acceptsGzip(final WebRequest request)
+	{
+		boolean wildcard = false;
+		for (String header : request.getHeaders("Accept-Encoding"))
+		{
+			for (String coding : header.split(","))
+			{
+				String name = coding;
+				float quality = 1;
+				int semicolon = coding.indexOf(';');
+				if (semicolon != -1)
+				{
+					name = coding.substring(0, semicolon);
+					String parameter = coding.substring(semicolon + 1).trim();
+					if (parameter.startsWith("q="))
+					{
+						try
+						{
+							quality = Float.parseFloat(parameter.substring(2).trim());
+						}
+						catch (NumberFormatException e)
+						{
+							quality = 0;
+						}
+					}
+				}
+				name = name.trim();
+
+				if (GZIP.equalsIgnoreCase(name) || "x-gzip".equalsIgnoreCase(name))
+				{
+					return quality > 0;
+				}
+				else if ("*".equals(name))
+				{
+					wildcard = quality > 0;
+				}
+			}
+		}
+		return wildcard;
+	}
+
+	/**
+	 * @param data
+	 * @return the gzip compressed data or <code>null</code> if it is not smaller
+	 */
+	private static byte[] gzip(final byte[] data)
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(data.length / 3 + 64);
+		try
+		{
+			GZIPOutputStream out = new GZIPOutputStream(bytes);
+			out.write(data);
+			out.close();
+		}
+		catch (IOException e)
+		{
+			throw new WicketRuntimeException(e);
+		}
+		return (bytes.size() < data.length) ? bytes.toByteArray() : null;
+	}
+
 	/**
 	 * check if header is directly modifyable
 	 * 
@@ -557,6 +1115,12 @@ public abstract class AbstractResource implements IResource
 
 			long contentLength = data.getContentLength();
 
+			// e.g. partial content
+			if (data.getStatusCode() != null)
+			{
+				webResponse.setStatus(data.getStatusCode());
+			}
+
 			// 3. Content Disposition
 			if (ContentDisposition.ATTACHMENT == disposition)
 			{
@@ -582,7 +1146,13 @@ public abstract class AbstractResource implements IResource
 				}
 			}
 
-			// 5. Content Length
+			// 5. Content Encoding
+			if (data.getContentEncoding() != null)
+			{
+				webResponse.setHeader("Content-Encoding", data.getContentEncoding());
+			}
+
+			// 6. Content Length
 			if (contentLength != -1)
 			{
 				webResponse.setContentLength(contentLength);
@@ -601,7 +1171,7 @@ public abstract class AbstractResource implements IResource
 				}
 			}
 
-			// 6. Flush the response
+			// 7. Flush the response
 			flushResponseAfterHeaders(webResponse);
 		}
 	}
@@ -636,6 +1206,26 @@ public abstract class AbstractResource implements IResource
 		 */
 		public abstract void writeData(Attributes attributes);
 
+		/**
+		 * Writes a range of the resource data to response. It is called for byte range requests if
+		 * the resource accepts ranges, see {@link ResourceResponse#setAcceptRanges(boolean)}, once
+		 * for each requested range. The default implementation calls
+		 * {@link #writeData(org.apache.wicket.request.resource.IResource.Attributes)} and discards
+		 * the bytes outside of the range; callbacks with seekable data should override it.
+		 * 
+		 * @param attributes
+		 *            request attributes
+		 * @param offset
+		 *            the position of the first byte of the range
+		 * @param length
+		 *            the number of bytes of the range
+		 */
+		public void writeRange(final Attributes attributes, final long offset, final long length)
+		{
+			writeData(new Attributes(attributes.getRequest(), new RangeResponse(
+				attributes.getResponse(), offset, length), attributes.getParameters()));
+		}
+
 		/**
 		 * Convenience method to write an {@link InputStream} to response.
 		 * 
@@ -676,5 +1266,180 @@ public abstract class AbstractResource implements IResource
 				throw new WicketRuntimeException(e);
 			}
 		}
+
+		/**
+		 * Convenience method to write a region of a file to response. Web responses write it
+		 * directly from the channel of the file, see
+		 * {@link WebResponse#write(FileChannel, long, long)}, without copying it through streams.
+		 * 
+		 * @param attributes
+		 *            request attributes
+		 * @param file
+		 *            the file
+		 * @param position
+		 *            the position of the first byte of the region
+		 * @param count
+		 *            the number of bytes to write
+		 */
+		protected final void writeFile(Attributes attributes, File file, long position, long count)
+		{
+			final Response response = attributes.getResponse();
+			try
+			{
+				FileInputStream in = new FileInputStream(file);
+				try
+				{
+					FileChannel channel = in.getChannel();
+					if (response instanceof WebResponse)
+					{
+						((WebResponse)response).write(channel, position, count);
+					}
+					else
+					{
+						byte[] buffer = new byte[(int)Math.min(count, 8192)];
+						long offset = position;
+						long end = position + count;
+						while (offset < end)
+						{
+							ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0,
+								(int)Math.min(buffer.length, end - offset));
+							int read = channel.read(byteBuffer, offset);
+							if (read == -1)
+							{
+								throw new IOException("File " + file + " ends before " + end);
+							}
+							response.write(buffer, 0, read);
+							offset += read;
+						}
+					}
+				}
+				finally
+				{
+					in.close();
+				}
+			}
+			catch (IOException e)
+			{
+				throw new WicketRuntimeException(e);
+			}
+		}
+	}
+
+	/**
+	 * A range of bytes, from the first to the last byte inclusive
+	 */
+	static final class ByteRange
+	{
+		final long first;
+
+		final long last;
+
+		ByteRange(final long first, final long last)
+		{
+			this.first = first;
+			this.last = last;
+		}
+
+		long length()
+		{
+			return last - first + 1;
+		}
+
+		String toContentRange(final long length)
+		{
+			return "bytes " + first + "-" + last + "/" + length;
+		}
+	}
+
+	/**
+	 * A response which passes on the bytes within a range only
+	 */
+	private static final class RangeResponse extends Response
+	{
+		private final Response response;
+
+		private final long first;
+
+		private final long end;
+
+		/** the encoding of written text, <code>null</code> for the one of the servlet response */
+		private final String encoding;
+
+		/** the position of the next byte written */
+		private long position;
+
+		/**
+		 * A response which writes all data, encoding text with the given encoding
+		 * 
+		 * @param response
+		 * @param encoding
+		 */
+		private RangeResponse(final Response response, final String encoding)
+		{
+			this(response, 0, Long.MAX_VALUE, encoding);
+		}
+
+		private RangeResponse(final Response response, final long offset, final long length)
+		{
+			this(response, offset, length, (response instanceof RangeResponse)
+				? ((RangeResponse)response).encoding : null);
+		}
+
+		private RangeResponse(final Response response, final long offset, final long length,
+			final String encoding)
+		{
+			this.response = response;
+			this.encoding = encoding;
+			first = offset;
+			end = offset + length;
+		}
+
+		@Override
+		public void write(final CharSequence sequence)
+		{
+			String charset = encoding;
+			if ((charset == null) && (response.getContainerResponse() instanceof ServletResponse))
+			{
+				charset = ((ServletResponse)response.getContainerResponse()).getCharacterEncoding();
+			}
+			try
+			{
+				write(sequence.toString().getBytes(charset != null ? charset : "ISO-8859-1"));
+			}
+			catch (UnsupportedEncodingException e)
+			{
+				throw new WicketRuntimeException(e);
+			}
+		}
+
+		@Override
+		public void write(final byte[] array)
+		{
+			write(array, 0, array.length);
+		}
+
+		@Override
+		public void write(final byte[] array, final int offset, final int length)
+		{
+			long start = Math.max(position, first);
+			long stop = Math.min(position + length, end);
+			if (start < stop)
+			{
+				response.write(array, offset + (int)(start - position), (int)(stop - start));
+			}
+			position += length;
+		}
+
+		@Override
+		public String encodeURL(final CharSequence url)
+		{
+			return response.encodeURL(url);
+		}
+
+		@Override
+		public Object getContainerResponse()
+		{
+			return response.getContainerResponse();
+		}
 	}
 }
\ No newline at end of file
@@ -0,0 +1,176 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.request.resource;
+
+import java.io.Serializable;
+
+import org.apache.wicket.markup.MarkupCache.BoundedCacheImplementation;
+import org.apache.wicket.request.resource.caching.IStaticCacheableResource;
+import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.lang.Bytes;
+import org.apache.wicket.util.lang.Objects;
+import org.apache.wicket.util.time.Time;
+
+/**
+ * Keeps the gzip compressed data of {@link IStaticCacheableResource}s, so a resource is compressed
+ * once per application, although e.g. package resources are instantiated for every request.
+ * <p>
+ * The data is kept by the type and the cache key of the resource, together with the last
+ * modification time of the data it has been compressed from; data which has been modified since
+ * is compressed again. The cache is bounded by the size of the data and evicts rarely used data
+ * first, see {@link BoundedCacheImplementation}.
+ * 
+ * @see org.apache.wicket.settings.IResourceSettings#setCompressedResourceCacheMaxSize(Bytes)
+ */
+public class CompressedResourceCache
+{
+	private final BoundedCacheImplementation<Key, Data> cache;
+
+	/**
+	 * Construct.
+	 * 
+	 * @param maxSize
+	 *            the maximum size of the cached data
+	 */
+	public CompressedResourceCache(final Bytes maxSize)
+	{
+		cache = new BoundedCacheImplementation<Key, Data>(maxSize)
+		{
+			@Override
+			protected long weigh(final Key key, final Data value)
+			{
+				return 128 + (value.bytes != null ? value.bytes.length : 0);
+			}
+		};
+	}
+
+	/**
+	 * @param type
+	 *            the type of the resource
+	 * @param cacheKey
+	 *            the cache key of the resource
+	 * @param lastModified
+	 *            the last modification time of the uncompressed data
+	 * @return the data or <code>null</code> if it is not cached or has been modified since
+	 */
+	Data get(final Class<?> type, final Serializable cacheKey, final Time lastModified)
+	{
+		Data data = cache.get(new Key(type, cacheKey));
+		if ((data != null) && !Objects.equal(data.lastModified, lastModified))
+		{
+			data = null;
+		}
+		return data;
+	}
+
+	/**
+	 * @param type
+	 *            the type of the resource
+	 * @param cacheKey
+	 *            the cache key of the resource
+	 * @param data
+	 */
+	void put(final Class<?> type, final Serializable cacheKey, final Data data)
+	{
+		Args.notNull(data, "data");
+
+		cache.put(new Key(type, cacheKey), data);
+	}
+
+	/**
+	 * Removes all data.
+	 */
+	public void clear()
+	{
+		cache.clear();
+	}
+
+	/**
+	 * @return the number of resources in the cache
+	 */
+	public int getCount()
+	{
+		return cache.size();
+	}
+
+	/**
+	 * @return the size of the cached data
+	 */
+	public Bytes getSize()
+	{
+		return cache.getSize();
+	}
+
+	/**
+	 * The resources of different types may process the same file differently
+	 */
+	private static final class Key
+	{
+		private final String type;
+
+		private final Serializable cacheKey;
+
+		private Key(final Class<?> type, final Serializable cacheKey)
+		{
+			this.type = type.getName();
+			this.cacheKey = Args.notNull(cacheKey, "cacheKey");
+		}
+
+		@Override
+		public boolean equals(final Object obj)
+		{
+			if (this == obj)
+			{
+				return true;
+			}
+			if (!(obj instanceof Key))
+			{
+				return false;
+			}
+			Key other = (Key)obj;
+			return type.equals(other.type) && cacheKey.equals(other.cacheKey);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return 31 * type.hashCode() + cacheKey.hashCode();
+		}
+	}
+
+	/**
+	 * The compressed data of a resource
+	 */
+	static final class Data
+	{
+		private final Time lastModified;
+
+		/** the compressed data, <code>null</code> if compressing does not pay off */
+		private final byte[] bytes;
+
+		Data(final Time lastModified, final byte[] bytes)
+		{
+			this.lastModified = lastModified;
+			this.bytes = bytes;
+		}
+
+		byte[] getBytes()
+		{
+			return bytes;
+		}
+	}
+}
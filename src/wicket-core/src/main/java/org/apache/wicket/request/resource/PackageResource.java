@@ -237,6 +237,26 @@ public class PackageResource extends AbstractResource implements IStaticCacheabl
 	{
 		final ResourceResponse resourceResponse = new ResourceResponse();
 
+		// serve the data kept in memory, without locating the resource stream
+		final PackageResourceCache cache = getPackageResourceCache();
+		CacheKey cacheKey = null;
+		if (cache != null)
+		{
+			cacheKey = new CacheKey(scopeName, absolutePath, locale, style, variation);
+			PackageResourceCache.Data data = cache.get(cacheKey);
+			if (data != null)
+			{
+				resourceResponse.setLastModified(data.getLastModified());
+				if (resourceResponse.dataNeedsToBeWritten(attributes))
+				{
+					resourceResponse.setContentType(data.getContentType());
+					resourceResponse.setTextEncoding(getTextEncoding());
+					setData(resourceResponse, data.getBytes());
+				}
+				return resourceResponse;
+			}
+		}
+
 		final IResourceStream resourceStream = getResourceStream();
 
 		// bail out if resource stream could not be found
@@ -275,18 +295,13 @@ public class PackageResource extends AbstractResource implements IStaticCacheabl
 
 				final byte[] processed = processResponse(attributes, bytes);
 
-				// send Content-Length header
-				resourceResponse.setContentLength(processed.length);
-
-				// send response body with resource data
-				resourceResponse.setWriteCallback(new WriteCallback()
+				if (cacheKey != null)
 				{
-					@Override
-					public void writeData(Attributes attributes)
-					{
-						attributes.getResponse().write(processed);
-					}
-				});
+					cache.put(cacheKey, new PackageResourceCache.Data(processed, lastModified,
+						contentType), resourceStream);
+				}
+
+				setData(resourceResponse, processed);
 			}
 			catch (IOException e)
 			{
@@ -314,6 +329,42 @@ public class PackageResource extends AbstractResource implements IStaticCacheabl
 		return resourceResponse;
 	}
 
+	/**
+	 * Sets the data to send.
+	 * 
+	 * @param resourceResponse
+	 * @param data
+	 */
+	private static void setData(final ResourceResponse resourceResponse, final byte[] data)
+	{
+		// send Content-Length header
+		resourceResponse.setContentLength(data.length);
+
+		// send response body with resource data
+		resourceResponse.setWriteCallback(new WriteCallback()
+		{
+			@Override
+			public void writeData(Attributes attributes)
+			{
+				attributes.getResponse().write(data);
+			}
+		});
+	}
+
+	/**
+	 * Gets the cache to keep the processed data of this resource in memory. By default it is the
+	 * cache configured in the resource settings, if any. Resources whose data depends on the
+	 * request, e.g. because they override {@link #getResourceStream()} or
+	 * {@link #processResponse(Attributes, byte[])} to do so, must return <code>null</code>.
+	 * 
+	 * @return the cache or <code>null</code> to read the data for every request
+	 * @see org.apache.wicket.settings.IResourceSettings#setPackageResourceCacheMaxSize(org.apache.wicket.util.lang.Bytes)
+	 */
+	protected PackageResourceCache getPackageResourceCache()
+	{
+		return Application.get().getResourceSettings().getPackageResourceCache();
+	}
+
 	/**
 	 * Gives a chance to modify the resource going to be written in the response
 	 * 
@@ -328,6 +379,73 @@ public class PackageResource extends AbstractResource implements IStaticCacheabl
 		return original;
 	}
 
+	/**
+	 * Gets the data of a file named like the resource with the extension <code>.gz</code> next to
+	 * it, if there is one which is not older than the resource and the resource has no style,
+	 * variation or locale specific variant. The file is sent as it is, without
+	 * {@link #processResponse(Attributes, byte[])}.
+	 * 
+	 * @see org.apache.wicket.request.resource.AbstractResource#getPrecompressedData(org.apache.wicket.request.resource.AbstractResource.ResourceResponse,
+	 *      org.apache.wicket.request.resource.IResource.Attributes)
+	 */
+	@Override
+	protected byte[] getPrecompressedData(final ResourceResponse data, final Attributes attributes)
+	{
+		final IResourceStream resourceStream = getResourceStream();
+		if (!(resourceStream instanceof IFixedLocationResourceStream))
+		{
+			return null;
+		}
+		String location = ((IFixedLocationResourceStream)resourceStream).locationAsString();
+		if ((location == null) || !location.endsWith(absolutePath))
+		{
+			return null;
+		}
+
+		IResourceStream compressedStream = Application.get()
+			.getResourceSettings()
+			.getResourceStreamLocator()
+			.locate(getScope(), absolutePath + ".gz", null, null, null, null, true);
+		if (compressedStream == null)
+		{
+			return null;
+		}
+
+		try
+		{
+			Time lastModified = resourceStream.lastModifiedTime();
+			Time compressedLastModified = compressedStream.lastModifiedTime();
+			if ((lastModified != null) && (compressedLastModified != null) &&
+				compressedLastModified.before(lastModified))
+			{
+				log.debug("Ignoring outdated precompressed resource {}.gz", absolutePath);
+				return null;
+			}
+			return IOUtils.toByteArray(compressedStream.getInputStream());
+		}
+		catch (IOException e)
+		{
+			log.debug(e.getMessage(), e);
+			return null;
+		}
+		catch (ResourceStreamNotFoundException e)
+		{
+			log.debug(e.getMessage(), e);
+			return null;
+		}
+		finally
+		{
+			try
+			{
+				compressedStream.close();
+			}
+			catch (IOException e)
+			{
+				log.warn("Unable to close the resource stream", e);
+			}
+		}
+	}
+
 	/**
 	 * send resource specific error message and write log entry
 	 * 
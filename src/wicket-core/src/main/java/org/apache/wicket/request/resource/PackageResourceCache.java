@@ -0,0 +1,295 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.request.resource;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.wicket.Application;
+import org.apache.wicket.markup.MarkupCache.BoundedCacheImplementation;
+import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.lang.Bytes;
+import org.apache.wicket.util.listener.IChangeListener;
+import org.apache.wicket.util.time.Time;
+import org.apache.wicket.util.watch.IModifiable;
+import org.apache.wicket.util.watch.IModificationWatcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the data of {@link PackageResource}s in memory, after it has been processed, e.g. by a
+ * JavaScript or CSS compressor. Thus hot static resources are served without locating, reading and
+ * processing them again.
+ * <p>
+ * The cache is bounded by the size of the data and evicts rarely used data first, see
+ * {@link BoundedCacheImplementation}. Lookups do not lock. If the resource watcher is running,
+ * e.g. in development mode, the data of a resource is removed once the resource changes. A
+ * resource is watched only as long as its data is cached.
+ * 
+ * @see org.apache.wicket.settings.IResourceSettings#setPackageResourceCacheMaxSize(Bytes)
+ */
+public class PackageResourceCache
+{
+	private static final Logger log = LoggerFactory.getLogger(PackageResourceCache.class);
+
+	private final BoundedCacheImplementation<Serializable, Data> cache;
+
+	private final AtomicLong hits = new AtomicLong();
+
+	private final AtomicLong misses = new AtomicLong();
+
+	/** the watches of the cached resources by key; guarded by itself */
+	private final Map<Serializable, Watch> watches = new HashMap<Serializable, Watch>();
+
+	/**
+	 * Construct.
+	 * 
+	 * @param maxSize
+	 *            the maximum size of the cached data
+	 */
+	public PackageResourceCache(final Bytes maxSize)
+	{
+		cache = new BoundedCacheImplementation<Serializable, Data>(maxSize)
+		{
+			@Override
+			protected long weigh(final Serializable key, final Data value)
+			{
+				return 128 + value.bytes.length;
+			}
+
+			@Override
+			protected void onEvicted(final Serializable key, final Data value)
+			{
+				unwatch(key, value);
+			}
+		};
+	}
+
+	/**
+	 * @param key
+	 * @return the data or <code>null</code> if it is not cached
+	 */
+	Data get(final Serializable key)
+	{
+		Data data = cache.get(key);
+		if (data != null)
+		{
+			hits.incrementAndGet();
+		}
+		else
+		{
+			misses.incrementAndGet();
+		}
+		return data;
+	}
+
+	/**
+	 * Caches the data of a resource and watches the resource for changes, if the resource watcher
+	 * is running. The resource replaces the one watched for the data cached before with the same
+	 * key, as the resource streams are not equal to each other.
+	 * 
+	 * @param key
+	 * @param data
+	 * @param modifiable
+	 *            the resource the data has been read from
+	 */
+	void put(final Serializable key, final Data data, final IModifiable modifiable)
+	{
+		Args.notNull(key, "key");
+		Args.notNull(data, "data");
+
+		final IModificationWatcher watcher = Application.get()
+			.getResourceSettings()
+			.getResourceWatcher(true);
+		if ((watcher != null) && (modifiable != null))
+		{
+			// watch before caching, so the watch is cancelled if the data is evicted right away
+			Watch watch = new Watch(key, data, modifiable, watcher);
+			synchronized (watches)
+			{
+				Watch previous = watches.put(key, watch);
+				if (previous != null)
+				{
+					previous.cancel();
+				}
+				watcher.add(modifiable, watch);
+			}
+		}
+
+		cache.put(key, data);
+	}
+
+	/**
+	 * Cancels the watch of the resource the data has been read from, unless the data has been
+	 * replaced already.
+	 * 
+	 * @param key
+	 * @param data
+	 */
+	private void unwatch(final Serializable key, final Data data)
+	{
+		synchronized (watches)
+		{
+			Watch watch = watches.get(key);
+			if ((watch != null) && (watch.data == data))
+			{
+				watches.remove(key);
+				watch.cancel();
+			}
+		}
+	}
+
+	/**
+	 * Removes all data.
+	 */
+	public void clear()
+	{
+		cache.clear();
+
+		synchronized (watches)
+		{
+			for (Watch watch : watches.values())
+			{
+				watch.cancel();
+			}
+			watches.clear();
+		}
+	}
+
+	/**
+	 * @return the number of resources which are watched for changes
+	 */
+	int getWatchCount()
+	{
+		synchronized (watches)
+		{
+			return watches.size();
+		}
+	}
+
+	/**
+	 * @return the number of resources in the cache
+	 */
+	public int getCount()
+	{
+		return cache.size();
+	}
+
+	/**
+	 * @return the size of the cached data
+	 */
+	public Bytes getSize()
+	{
+		return cache.getSize();
+	}
+
+	/**
+	 * @return the number of lookups which found the data in the cache
+	 */
+	public long getHitCount()
+	{
+		return hits.get();
+	}
+
+	/**
+	 * @return the number of lookups which did not find the data in the cache
+	 */
+	public long getMissCount()
+	{
+		return misses.get();
+	}
+
+	/**
+	 * @return the number of resources which have been evicted to stay within the maximum size
+	 */
+	public long getEvictionCount()
+	{
+		return cache.getEvictionCount();
+	}
+
+	/**
+	 * Removes the data of a resource from the cache once the resource changes
+	 */
+	private final class Watch implements IChangeListener
+	{
+		private final Serializable key;
+
+		private final Data data;
+
+		private final IModifiable modifiable;
+
+		private final IModificationWatcher watcher;
+
+		private Watch(final Serializable key, final Data data, final IModifiable modifiable,
+			final IModificationWatcher watcher)
+		{
+			this.key = key;
+			this.data = data;
+			this.modifiable = modifiable;
+			this.watcher = watcher;
+		}
+
+		public void onChange()
+		{
+			log.debug("Removing changed package resource {} from the cache", key);
+
+			unwatch(key, data);
+			cache.remove(key);
+		}
+
+		private void cancel()
+		{
+			watcher.remove(modifiable);
+		}
+	}
+
+	/**
+	 * The processed data of a package resource
+	 */
+	static final class Data
+	{
+		private final byte[] bytes;
+
+		private final Time lastModified;
+
+		private final String contentType;
+
+		Data(final byte[] bytes, final Time lastModified, final String contentType)
+		{
+			this.bytes = bytes;
+			this.lastModified = lastModified;
+			this.contentType = contentType;
+		}
+
+		byte[] getBytes()
+		{
+			return bytes;
+		}
+
+		Time getLastModified()
+		{
+			return lastModified;
+		}
+
+		String getContentType()
+		{
+			return contentType;
+		}
+	}
+}
@@ -22,10 +22,13 @@ import java.io.InputStream;
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.wicket.Application;
+import org.apache.wicket.WicketRuntimeException;
 import org.apache.wicket.util.lang.Bytes;
 import org.apache.wicket.util.lang.Checks;
+import org.apache.wicket.util.resource.FileResourceStream;
 import org.apache.wicket.util.resource.IResourceStream;
 import org.apache.wicket.util.resource.IResourceStreamWriter;
+import org.apache.wicket.util.resource.ISeekableResourceStream;
 import org.apache.wicket.util.resource.ResourceStreamNotFoundException;
 import org.apache.wicket.util.time.Duration;
 import org.apache.wicket.util.time.Time;
@@ -34,7 +37,10 @@ import org.slf4j.LoggerFactory;
 
 
 /**
- * TODO javadoc
+ * A resource serving the data of an {@link IResourceStream}. The data of
+ * {@link ISeekableResourceStream}s with a known length is sent partially to clients requesting byte
+ * ranges, e.g. to resume downloads. The data of {@link FileResourceStream}s is written directly
+ * from the file, see {@link WriteCallback#writeFile(Attributes, java.io.File, long, long)}.
  */
 public class ResourceStreamResource extends AbstractResource
 {
@@ -158,7 +164,7 @@ public class ResourceStreamResource extends AbstractResource
 			}
 
 			data.setContentDisposition(contentDisposition);
-			Bytes length = resourceStream.length();
+			final Bytes length = resourceStream.length();
 			if (length != null)
 			{
 				data.setContentLength(length.bytes());
@@ -188,6 +194,9 @@ public class ResourceStreamResource extends AbstractResource
 			else
 			{
 				final InputStream s = inputStream;
+				final java.io.File file = getFile(resourceStream);
+				data.setAcceptRanges((length != null) &&
+					(resourceStream instanceof ISeekableResourceStream));
 				data.setWriteCallback(new WriteCallback()
 				{
 					@Override
@@ -195,7 +204,47 @@ public class ResourceStreamResource extends AbstractResource
 					{
 						try
 						{
-							writeStream(attributes, s);
+							if ((file != null) && (length != null))
+							{
+								writeFile(attributes, file, 0, length.bytes());
+							}
+							else
+							{
+								writeStream(attributes, s);
+							}
+						}
+						finally
+						{
+							close();
+						}
+					}
+
+					@Override
+					public void writeRange(Attributes attributes, long offset, long length)
+					{
+						if (resourceStream instanceof ISeekableResourceStream == false)
+						{
+							super.writeRange(attributes, offset, length);
+							return;
+						}
+
+						try
+						{
+							if (file != null)
+							{
+								writeFile(attributes, file, offset, length);
+								return;
+							}
+							((ISeekableResourceStream)resourceStream).writeRange(
+								attributes.getResponse().getOutputStream(), offset, length);
+						}
+						catch (IOException e)
+						{
+							throw new WicketRuntimeException(e);
+						}
+						catch (ResourceStreamNotFoundException e)
+						{
+							throw new WicketRuntimeException(e);
 						}
 						finally
 						{
@@ -209,6 +258,19 @@ public class ResourceStreamResource extends AbstractResource
 		return data;
 	}
 
+	/**
+	 * @param resourceStream
+	 * @return the file of a {@link FileResourceStream} or <code>null</code>
+	 */
+	private static java.io.File getFile(final IResourceStream resourceStream)
+	{
+		if (resourceStream instanceof FileResourceStream)
+		{
+			return ((FileResourceStream)resourceStream).getFile();
+		}
+		return null;
+	}
+
 	private void close()
 	{
 		try
@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.request.resource.caching.version;
+
+import org.apache.wicket.request.resource.PackageResource;
+import org.apache.wicket.request.resource.caching.IStaticCacheableResource;
+import org.apache.wicket.resource.manifest.ResourceManifest;
+import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.lang.Packages;
+import org.apache.wicket.util.resource.IFixedLocationResourceStream;
+import org.apache.wicket.util.resource.IResourceStream;
+
+/**
+ * Looks up the versions of package resources in a {@link ResourceManifest} computed at build time,
+ * so they do not have to be hashed when the first url is rendered. Resources which are not in the
+ * manifest, e.g. because they are not package resources or have been added after the manifest was
+ * built, get their version from a fallback.
+ * <p/>
+ * The version of a package resource is found by the location of its stream, so localized and
+ * styled variants of a resource get the versions of their own content.
+ * 
+ * <pre>
+ * IResourceVersion fallback = new CachingResourceVersion(new MessageDigestResourceVersion());
+ * ResourceManifest manifest = ResourceManifest.load(getApplicationSettings().getClassResolver());
+ * getResourceSettings().setCachingStrategy(new FilenameWithVersionResourceCachingStrategy(
+ * 	new ManifestResourceVersion(manifest, fallback)));
+ * </pre>
+ * 
+ * @see org.apache.wicket.resource.manifest.ResourceManifestBuilder
+ */
+public class ManifestResourceVersion implements IResourceVersion
+{
+	private final ResourceManifest manifest;
+
+	private final IResourceVersion fallback;
+
+	/**
+	 * Construct.
+	 * 
+	 * @param manifest
+	 *            the versions computed at build time
+	 * @param fallback
+	 *            the version provider for the resources not in the manifest
+	 */
+	public ManifestResourceVersion(ResourceManifest manifest, IResourceVersion fallback)
+	{
+		this.manifest = Args.notNull(manifest, "manifest");
+		this.fallback = Args.notNull(fallback, "fallback");
+	}
+
+	public String getVersion(IStaticCacheableResource resource)
+	{
+		if (resource instanceof PackageResource)
+		{
+			IResourceStream stream = resource.getCacheableResourceStream();
+			if (stream instanceof IFixedLocationResourceStream)
+			{
+				String version = getVersion(((PackageResource)resource).getScope(),
+					((IFixedLocationResourceStream)stream).locationAsString());
+				if (version != null)
+				{
+					return version;
+				}
+			}
+		}
+		return fallback.getVersion(resource);
+	}
+
+	/**
+	 * Finds the path of the resource relative to the classpath in the location of its stream,
+	 * which is e.g. a file in a directory or an url of an entry in a jar.
+	 * 
+	 * @param scope
+	 * @param location
+	 * @return the version of the resource or <code>null</code> if it is not in the manifest
+	 */
+	private String getVersion(Class<?> scope, String location)
+	{
+		if (location == null)
+		{
+			return null;
+		}
+
+		location = location.replace('\\', '/');
+		String packagePath = Packages.absolutePath(scope, "");
+		if (packagePath.length() > 0)
+		{
+			packagePath += '/';
+		}
+		if (location.startsWith(packagePath))
+		{
+			String version = manifest.getVersion(location);
+			if (version != null)
+			{
+				return version;
+			}
+		}
+
+		// the package may occur several times in the location, e.g. in the name of the jar
+		String separatedPackagePath = '/' + packagePath;
+		int index = location.indexOf(separatedPackagePath);
+		while (index != -1)
+		{
+			String version = manifest.getVersion(location.substring(index + 1));
+			if (version != null)
+			{
+				return version;
+			}
+			index = location.indexOf(separatedPackagePath, index + 1);
+		}
+		return null;
+	}
+}
@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.resource.manifest;
+
+import org.apache.wicket.markup.html.DecoratingHeaderResponse;
+import org.apache.wicket.markup.html.IHeaderResponse;
+import org.apache.wicket.request.mapper.parameter.PageParameters;
+import org.apache.wicket.request.resource.CssResourceReference;
+import org.apache.wicket.request.resource.JavaScriptResourceReference;
+import org.apache.wicket.request.resource.ResourceReference;
+import org.apache.wicket.util.lang.WicketObjects;
+import org.apache.wicket.util.lang.Args;
+
+/**
+ * A header response that renders the bundle built by {@link ResourceManifestBuilder} in place of
+ * each of its members, so a page needs a single request for all of them. The bundle is rendered
+ * at the position of the first member which is rendered and only once, so the bundles should be
+ * declared with their members in the order they depend on each other.
+ * <p>
+ * Only references without locale, style and variation are replaced, as the bundles are built from
+ * the plain resources.
+ * </p>
+ * 
+ * <pre>
+ * final ResourceManifest manifest = ResourceManifest.load(getApplicationSettings().getClassResolver());
+ * setHeaderResponseDecorator(new IHeaderResponseDecorator()
+ * {
+ * 	public IHeaderResponse decorate(IHeaderResponse response)
+ * 	{
+ * 		return new ResourceBundleHeaderResponse(response, manifest);
+ * 	}
+ * });
+ * </pre>
+ * 
+ * @see ResourceManifest
+ */
+public class ResourceBundleHeaderResponse extends DecoratingHeaderResponse
+{
+	private final ResourceManifest manifest;
+
+	/**
+	 * Construct.
+	 * 
+	 * @param real
+	 *            the decorated header response
+	 * @param manifest
+	 *            the manifest declaring the bundles
+	 */
+	public ResourceBundleHeaderResponse(IHeaderResponse real, ResourceManifest manifest)
+	{
+		super(real);
+		this.manifest = Args.notNull(manifest, "manifest");
+	}
+
+	@Override
+	public void renderJavaScriptReference(ResourceReference reference)
+	{
+		super.renderJavaScriptReference(getBundle(reference, true));
+	}
+
+	@Override
+	public void renderJavaScriptReference(ResourceReference reference, String id)
+	{
+		super.renderJavaScriptReference(getBundle(reference, true), id);
+	}
+
+	@Override
+	public void renderJavaScriptReference(ResourceReference reference,
+		PageParameters pageParameters, String id)
+	{
+		super.renderJavaScriptReference(getBundle(reference, true), pageParameters, id);
+	}
+
+	@Override
+	public void renderJavaScriptReference(ResourceReference reference,
+		PageParameters pageParameters, String id, boolean defer)
+	{
+		super.renderJavaScriptReference(getBundle(reference, true), pageParameters, id, defer);
+	}
+
+	@Override
+	public void renderJavaScriptReference(ResourceReference reference,
+		PageParameters pageParameters, String id, boolean defer, String charset)
+	{
+		super.renderJavaScriptReference(getBundle(reference, true), pageParameters, id, defer,
+			charset);
+	}
+
+	@Override
+	public void renderCSSReference(ResourceReference reference)
+	{
+		super.renderCSSReference(getBundle(reference, false));
+	}
+
+	@Override
+	public void renderCSSReference(ResourceReference reference, String media)
+	{
+		super.renderCSSReference(getBundle(reference, false), media);
+	}
+
+	@Override
+	public void renderCSSReference(ResourceReference reference, PageParameters pageParameters,
+		String media)
+	{
+		super.renderCSSReference(getBundle(reference, false), pageParameters, media);
+	}
+
+	@Override
+	public void renderCSSReference(ResourceReference reference, PageParameters pageParameters,
+		String media, String condition)
+	{
+		super.renderCSSReference(getBundle(reference, false), pageParameters, media, condition);
+	}
+
+	/**
+	 * @param reference
+	 *            the rendered reference
+	 * @param javaScript
+	 *            whether the reference is rendered as JavaScript or as CSS
+	 * @return the reference to the bundle containing the rendered reference or the reference
+	 *         itself if it is not bundled
+	 */
+	protected ResourceReference getBundle(ResourceReference reference, boolean javaScript)
+	{
+		if (reference.getLocale() != null || reference.getStyle() != null ||
+			reference.getVariation() != null)
+		{
+			return reference;
+		}
+
+		String bundle = manifest.getBundle(ResourceManifest.getReference(reference.getScope(),
+			reference.getName()));
+		if (bundle == null)
+		{
+			return reference;
+		}
+
+		Class<?> scope = WicketObjects.resolveClass(ResourceManifest.getScopeName(bundle));
+		if (scope == null)
+		{
+			// the bundle can not be served without its scope
+			return reference;
+		}
+		String name = ResourceManifest.getName(bundle);
+		if (javaScript)
+		{
+			return new JavaScriptResourceReference(scope, name);
+		}
+		else
+		{
+			return new CssResourceReference(scope, name);
+		}
+	}
+}
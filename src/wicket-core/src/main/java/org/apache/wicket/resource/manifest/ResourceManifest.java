@@ -0,0 +1,264 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.resource.manifest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.wicket.WicketRuntimeException;
+import org.apache.wicket.application.IClassResolver;
+import org.apache.wicket.util.io.IOUtils;
+import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.lang.Packages;
+import org.apache.wicket.util.string.Strings;
+
+/**
+ * The versions and bundles of package resources computed at build time by
+ * {@link ResourceManifestBuilder}.
+ * <p>
+ * The versions map the paths of the resources relative to the classpath, e.g.
+ * <code>org/apache/wicket/ajax/wicket-ajax.js</code>, to the hexadecimal MD5 hash of their content.
+ * The bundles map a resource to the resources concatenated into it. Both refer to the resources by
+ * their scope class and name, e.g. <code>org.example.HomePage/all.js</code>, see
+ * {@link #getReference(Class, String)}.
+ * </p>
+ * 
+ * @see ResourceManifestBuilder
+ * @see org.apache.wicket.request.resource.caching.version.ManifestResourceVersion
+ * @see ResourceBundleHeaderResponse
+ */
+public class ResourceManifest
+{
+	/** the classpath location of the versions */
+	public static final String VERSIONS = "META-INF/wicket/resource-versions.properties";
+
+	/** the classpath location of the bundles */
+	public static final String BUNDLES = "META-INF/wicket/resource-bundles.properties";
+
+	/** path -&gt; version */
+	private final Map<String, String> versions = new HashMap<String, String>();
+
+	/** bundle -&gt; members */
+	private final Map<String, List<String>> bundles = new HashMap<String, List<String>>();
+
+	/** member -&gt; bundle */
+	private final Map<String, String> memberBundles = new HashMap<String, String>();
+
+	/**
+	 * Construct.
+	 * 
+	 * @param versions
+	 *            the versions by path
+	 * @param bundles
+	 *            the comma separated members by bundle
+	 */
+	public ResourceManifest(final Properties versions, final Properties bundles)
+	{
+		Args.notNull(versions, "versions");
+		Args.notNull(bundles, "bundles");
+
+		for (Map.Entry<Object, Object> entry : versions.entrySet())
+		{
+			this.versions.put((String)entry.getKey(), (String)entry.getValue());
+		}
+		for (Map.Entry<Object, Object> entry : bundles.entrySet())
+		{
+			String bundle = (String)entry.getKey();
+			List<String> members = parseMembers((String)entry.getValue());
+			this.bundles.put(bundle, Collections.unmodifiableList(members));
+			for (String member : members)
+			{
+				memberBundles.put(member, bundle);
+			}
+		}
+	}
+
+	/**
+	 * Loads the manifests of all the jars and directories on the classpath.
+	 * 
+	 * @param classResolver
+	 *            the resolver to find the manifests with
+	 * @return the manifest, empty if there are none
+	 */
+	public static ResourceManifest load(final IClassResolver classResolver)
+	{
+		Args.notNull(classResolver, "classResolver");
+
+		return new ResourceManifest(load(classResolver, VERSIONS), load(classResolver, BUNDLES));
+	}
+
+	private static Properties load(final IClassResolver classResolver, final String name)
+	{
+		Properties properties = new Properties();
+		Iterator<URL> urls = classResolver.getResources(name);
+		while (urls.hasNext())
+		{
+			URL url = urls.next();
+			try
+			{
+				InputStream in = url.openStream();
+				try
+				{
+					properties.load(in);
+				}
+				finally
+				{
+					IOUtils.close(in);
+				}
+			}
+			catch (IOException e)
+			{
+				throw new WicketRuntimeException("Unable to load resource manifest " + url, e);
+			}
+		}
+		return properties;
+	}
+
+	/**
+	 * Splits the comma separated members of a bundle.
+	 * 
+	 * @param value
+	 * @return the members in their order
+	 */
+	static List<String> parseMembers(final String value)
+	{
+		List<String> members = new ArrayList<String>();
+		for (String member : Strings.split(value, ','))
+		{
+			member = member.trim();
+			if (member.length() > 0)
+			{
+				members.add(member);
+			}
+		}
+		return members;
+	}
+
+	/**
+	 * @param path
+	 *            the path of the resource relative to the classpath
+	 * @return the version of the resource or <code>null</code> if it is not in the manifest
+	 */
+	public String getVersion(final String path)
+	{
+		return versions.get(path);
+	}
+
+	/**
+	 * @param reference
+	 *            the resource
+	 * @return the bundle containing the resource or <code>null</code> if it is not bundled
+	 */
+	public String getBundle(final String reference)
+	{
+		return memberBundles.get(reference);
+	}
+
+	/**
+	 * @param bundle
+	 * @return the resources concatenated into the bundle, empty if it is not a bundle
+	 */
+	public List<String> getMembers(final String bundle)
+	{
+		List<String> members = bundles.get(bundle);
+		return members != null ? members : Collections.<String> emptyList();
+	}
+
+	/**
+	 * @return <code>true</code> if there are neither versions nor bundles
+	 */
+	public boolean isEmpty()
+	{
+		return versions.isEmpty() && bundles.isEmpty();
+	}
+
+	/**
+	 * @param scope
+	 *            the scope class of the resource
+	 * @param name
+	 *            the name of the resource relative to the package of the scope
+	 * @return the resource as referred to by the bundles, i.e. <code>scope/name</code>
+	 */
+	public static String getReference(final Class<?> scope, final String name)
+	{
+		return getReference(scope.getName(), name);
+	}
+
+	/**
+	 * @param scopeName
+	 *            the name of the scope class of the resource
+	 * @param name
+	 *            the name of the resource relative to the package of the scope
+	 * @return the resource as referred to by the bundles, i.e. <code>scope/name</code>
+	 */
+	public static String getReference(final String scopeName, final String name)
+	{
+		return scopeName + '/' + name;
+	}
+
+	/**
+	 * @param reference
+	 *            a resource as referred to by the bundles
+	 * @return the name of the scope class
+	 */
+	public static String getScopeName(final String reference)
+	{
+		return reference.substring(0, separator(reference));
+	}
+
+	/**
+	 * @param reference
+	 *            a resource as referred to by the bundles
+	 * @return the name of the resource relative to the package of the scope
+	 */
+	public static String getName(final String reference)
+	{
+		return reference.substring(separator(reference) + 1);
+	}
+
+	/**
+	 * @param reference
+	 *            a resource as referred to by the bundles
+	 * @return the path of the resource relative to the classpath
+	 */
+	public static String getPath(final String reference)
+	{
+		String scopeName = getScopeName(reference);
+		int dot = scopeName.lastIndexOf('.');
+		return Packages.absolutePath(dot != -1 ? scopeName.substring(0, dot) : "",
+			getName(reference));
+	}
+
+	private static int separator(final String reference)
+	{
+		int index = reference.indexOf('/');
+		if (index <= 0)
+		{
+			throw new IllegalArgumentException("Not a resource reference of the form scope/name: " +
+				reference);
+		}
+		return index;
+	}
+}
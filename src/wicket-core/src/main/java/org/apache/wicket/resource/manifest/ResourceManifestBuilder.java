@@ -0,0 +1,362 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.resource.manifest;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.apache.wicket.util.io.IOUtils;
+import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.string.Strings;
+
+/**
+ * Computes the {@link ResourceManifest} of a directory of compiled classes and resources at build
+ * time, so the versions of the resources do not have to be computed by hashing them at runtime,
+ * and concatenates the declared bundles into single resources.
+ * <p>
+ * The bundles are declared in a properties file which maps each bundle to its comma separated
+ * members, all referred to by scope class and name:
+ * 
+ * <pre>
+ * org.example.HomePage/all.js = org.example.Lib/jquery.js, org.example.HomePage/home.js
+ * org.example.HomePage/all.css = org.example.HomePage/layout.css, org.example.HomePage/home.css
+ * </pre>
+ * 
+ * The members are concatenated in the declared order, separated by a line break - and by a
+ * semicolon in JavaScript bundles - and written to the path of the bundle. Members must be found
+ * in the directory, and all of them should have the same type and text encoding.
+ * </p>
+ * <p>
+ * The builder is run after the resources have been copied, e.g. with the exec-maven-plugin:
+ * 
+ * <pre>
+ * &lt;plugin&gt;
+ *   &lt;groupId&gt;org.codehaus.mojo&lt;/groupId&gt;
+ *   &lt;artifactId&gt;exec-maven-plugin&lt;/artifactId&gt;
+ *   &lt;executions&gt;
+ *     &lt;execution&gt;
+ *       &lt;phase&gt;process-classes&lt;/phase&gt;
+ *       &lt;goals&gt;&lt;goal&gt;java&lt;/goal&gt;&lt;/goals&gt;
+ *       &lt;configuration&gt;
+ *         &lt;mainClass&gt;org.apache.wicket.resource.manifest.ResourceManifestBuilder&lt;/mainClass&gt;
+ *         &lt;arguments&gt;
+ *           &lt;argument&gt;${project.build.outputDirectory}&lt;/argument&gt;
+ *           &lt;argument&gt;${basedir}/src/main/resource-bundles.properties&lt;/argument&gt;
+ *         &lt;/arguments&gt;
+ *       &lt;/configuration&gt;
+ *     &lt;/execution&gt;
+ *   &lt;/executions&gt;
+ * &lt;/plugin&gt;
+ * </pre>
+ * 
+ * </p>
+ * 
+ * @see ResourceManifest
+ */
+public class ResourceManifestBuilder
+{
+	private static final String ALGORITHM = "MD5";
+
+	private final File directory;
+
+	/** bundle -&gt; members */
+	private final Map<String, List<String>> bundles = new LinkedHashMap<String, List<String>>();
+
+	/**
+	 * Construct.
+	 * 
+	 * @param directory
+	 *            the root directory of the classes and resources
+	 */
+	public ResourceManifestBuilder(final File directory)
+	{
+		this.directory = Args.notNull(directory, "directory");
+	}
+
+	/**
+	 * Declares a bundle.
+	 * 
+	 * @param bundle
+	 *            the bundle, e.g. <code>org.example.HomePage/all.js</code>
+	 * @param members
+	 *            the resources to concatenate into the bundle
+	 */
+	public void addBundle(final String bundle, final List<String> members)
+	{
+		Args.notEmpty(bundle, "bundle");
+		Args.notNull(members, "members");
+
+		ResourceManifest.getPath(bundle);
+		for (String member : members)
+		{
+			ResourceManifest.getPath(member);
+		}
+		bundles.put(bundle, new ArrayList<String>(members));
+	}
+
+	/**
+	 * Declares the bundles of a properties file.
+	 * 
+	 * @param declarations
+	 *            the file mapping the bundles to their comma separated members
+	 * @throws IOException
+	 */
+	public void addBundles(final File declarations) throws IOException
+	{
+		Properties properties = new Properties();
+		InputStream in = new FileInputStream(declarations);
+		try
+		{
+			properties.load(in);
+		}
+		finally
+		{
+			IOUtils.close(in);
+		}
+
+		// sorted so the output does not depend on the order of the hash table
+		for (Map.Entry<Object, Object> entry : new TreeMap<Object, Object>(properties).entrySet())
+		{
+			addBundle((String)entry.getKey(),
+				ResourceManifest.parseMembers((String)entry.getValue()));
+		}
+	}
+
+	/**
+	 * Writes the bundles, then the versions of all resources, including the bundles, and the
+	 * bundles to {@link ResourceManifest#VERSIONS} and {@link ResourceManifest#BUNDLES} in the
+	 * directory.
+	 * 
+	 * @throws IOException
+	 */
+	public void build() throws IOException
+	{
+		SortedMap<String, String> bundleDeclarations = new TreeMap<String, String>();
+		for (Map.Entry<String, List<String>> bundle : bundles.entrySet())
+		{
+			writeBundle(bundle.getKey(), bundle.getValue());
+			bundleDeclarations.put(bundle.getKey(), Strings.join(",", bundle.getValue()));
+		}
+
+		SortedMap<String, String> versions = new TreeMap<String, String>();
+		collectVersions(directory, "", versions);
+
+		write(ResourceManifest.VERSIONS, versions);
+		write(ResourceManifest.BUNDLES, bundleDeclarations);
+	}
+
+	private void writeBundle(final String bundle, final List<String> members) throws IOException
+	{
+		File file = getFile(ResourceManifest.getPath(bundle));
+		file.getParentFile().mkdirs();
+		// a script without a trailing semicolon would run into a next one starting with ( or [
+		byte[] separator = bundle.endsWith(".js") ? new byte[] { ';', '\n' }
+			: new byte[] { '\n' };
+		OutputStream out = new FileOutputStream(file);
+		try
+		{
+			for (String member : members)
+			{
+				File memberFile = getFile(ResourceManifest.getPath(member));
+				if (memberFile.isFile() == false)
+				{
+					throw new IOException("Member " + member + " of bundle " + bundle +
+						" not found at " + memberFile);
+				}
+				InputStream in = new FileInputStream(memberFile);
+				try
+				{
+					IOUtils.copy(in, out);
+				}
+				finally
+				{
+					IOUtils.close(in);
+				}
+				out.write(separator);
+			}
+		}
+		finally
+		{
+			IOUtils.close(out);
+		}
+	}
+
+	/**
+	 * Hashes all resources below the directory, skipping classes and the manifest itself.
+	 * 
+	 * @param dir
+	 * @param path
+	 *            the path of the directory relative to the root directory
+	 * @param versions
+	 * @throws IOException
+	 */
+	private void collectVersions(final File dir, final String path,
+		final Map<String, String> versions) throws IOException
+	{
+		File[] files = dir.listFiles();
+		if (files == null)
+		{
+			return;
+		}
+		for (File file : files)
+		{
+			String filePath = path + file.getName();
+			if (file.isDirectory())
+			{
+				collectVersions(file, filePath + '/', versions);
+			}
+			else if (filePath.endsWith(".class") == false &&
+				filePath.equals(ResourceManifest.VERSIONS) == false &&
+				filePath.equals(ResourceManifest.BUNDLES) == false)
+			{
+				versions.put(filePath, Strings.toHexString(digest(file)));
+			}
+		}
+	}
+
+	private static byte[] digest(final File file) throws IOException
+	{
+		MessageDigest digest;
+		try
+		{
+			digest = MessageDigest.getInstance(ALGORITHM);
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			throw new IllegalStateException("message digest " + ALGORITHM + " not found", e);
+		}
+
+		InputStream in = new FileInputStream(file);
+		try
+		{
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = in.read(buffer)) != -1)
+			{
+				digest.update(buffer, 0, read);
+			}
+		}
+		finally
+		{
+			IOUtils.close(in);
+		}
+		return digest.digest();
+	}
+
+	/**
+	 * Writes the entries in the format of a properties file, without the date comment of
+	 * {@link Properties#store(OutputStream, String)} so unchanged resources produce unchanged
+	 * manifests.
+	 * 
+	 * @param path
+	 * @param entries
+	 * @throws IOException
+	 */
+	private void write(final String path, final SortedMap<String, String> entries)
+		throws IOException
+	{
+		File file = getFile(path);
+		file.getParentFile().mkdirs();
+		Writer writer = new OutputStreamWriter(new FileOutputStream(file), "ISO-8859-1");
+		try
+		{
+			for (Map.Entry<String, String> entry : entries.entrySet())
+			{
+				writer.write(escape(entry.getKey()));
+				writer.write('=');
+				writer.write(escape(entry.getValue()));
+				writer.write('\n');
+			}
+		}
+		finally
+		{
+			IOUtils.close(writer);
+		}
+	}
+
+	private static String escape(final String value)
+	{
+		StringBuilder escaped = new StringBuilder(value.length());
+		for (int i = 0; i < value.length(); i++)
+		{
+			char c = value.charAt(i);
+			if (c == '\\' || c == '=' || c == ':' || c == '#' || c == '!' || c == ' ')
+			{
+				escaped.append('\\').append(c);
+			}
+			else if (c < 0x20 || c > 0x7e)
+			{
+				escaped.append("\\u");
+				String hex = Integer.toHexString(c);
+				for (int j = hex.length(); j < 4; j++)
+				{
+					escaped.append('0');
+				}
+				escaped.append(hex);
+			}
+			else
+			{
+				escaped.append(c);
+			}
+		}
+		return escaped.toString();
+	}
+
+	private File getFile(final String path)
+	{
+		return new File(directory, path.replace('/', File.separatorChar));
+	}
+
+	/**
+	 * Builds the manifest of a directory.
+	 * 
+	 * @param args
+	 *            the directory of the classes and resources, optionally followed by the properties
+	 *            file declaring the bundles
+	 * @throws IOException
+	 */
+	public static void main(final String[] args) throws IOException
+	{
+		if (args.length < 1 || args.length > 2)
+		{
+			System.err.println("Usage: ResourceManifestBuilder <classes directory> [<bundles file>]");
+			System.exit(1);
+		}
+
+		ResourceManifestBuilder builder = new ResourceManifestBuilder(new File(args[0]));
+		if (args.length > 1)
+		{
+			builder.addBundles(new File(args[1]));
+		}
+		builder.build();
+	}
+}
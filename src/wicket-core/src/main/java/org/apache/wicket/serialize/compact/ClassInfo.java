@@ -0,0 +1,602 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.serialize.compact;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The cached reflective information {@link CompactSerializer} needs to write and read the instances
+ * of a class: its serializable fields (made accessible once), the {@code writeReplace} and
+ * {@code readResolve} methods and the constructor used to instantiate it without calling the
+ * constructors of its serializable classes.
+ * <p>
+ * Classes which define their own serialization ({@code writeObject}, {@code readObject},
+ * {@code Externalizable}, {@code serialPersistentFields}) and classes of the JDK which have
+ * serializable state are not supported; {@link #getUnsupportedReason()} tells why.
+ * </p>
+ */
+final class ClassInfo
+{
+	/** sun.reflect.ReflectionFactory, if available */
+	private static final Object REFLECTION_FACTORY;
+
+	/** ReflectionFactory#newConstructorForSerialization(Class, Constructor) */
+	private static final Method NEW_CONSTRUCTOR_FOR_SERIALIZATION;
+
+	static
+	{
+		Object factory = null;
+		Method method = null;
+		try
+		{
+			Class<?> factoryClass = Class.forName("sun.reflect.ReflectionFactory");
+			factory = factoryClass.getMethod("getReflectionFactory").invoke(null);
+			method = factoryClass.getMethod("newConstructorForSerialization", Class.class,
+				Constructor.class);
+		}
+		catch (Exception e)
+		{
+			factory = null;
+			method = null;
+		}
+		catch (LinkageError e)
+		{
+			factory = null;
+			method = null;
+		}
+		REFLECTION_FACTORY = factory;
+		NEW_CONSTRUCTOR_FOR_SERIALIZATION = method;
+	}
+
+	private static final Comparator<Field> FIELD_ORDER = new Comparator<Field>()
+	{
+		public int compare(Field f1, Field f2)
+		{
+			boolean primitive1 = f1.getType().isPrimitive();
+			boolean primitive2 = f2.getType().isPrimitive();
+			if (primitive1 != primitive2)
+			{
+				return primitive1 ? -1 : 1;
+			}
+			return f1.getName().compareTo(f2.getName());
+		}
+	};
+
+	private static final Field[] NO_FIELDS = new Field[0];
+
+	private final Class<?> type;
+
+	private final int structureHash;
+
+	private String unsupportedReason;
+
+	private Field[] fields = NO_FIELDS;
+
+	/** the type of each field: one of ZBCSIJFD for primitives, L for objects */
+	private char[] fieldTypes = new char[0];
+
+	private Method writeReplace;
+
+	private Method readResolve;
+
+	private Constructor<?> constructor;
+
+	/**
+	 * Construct.
+	 *
+	 * @param type
+	 */
+	ClassInfo(Class<?> type)
+	{
+		this.type = type;
+		structureHash = computeStructureHash(type);
+
+		if (Serializable.class.isAssignableFrom(type) == false)
+		{
+			unsupportedReason = "not serializable";
+		}
+		else if (type.isInterface() || type.isArray() || type.isEnum() ||
+			Modifier.isAbstract(type.getModifiers()))
+		{
+			unsupportedReason = "not an instantiable class";
+		}
+		else if (Externalizable.class.isAssignableFrom(type))
+		{
+			unsupportedReason = "externalizable";
+		}
+		else if (Proxy.isProxyClass(type))
+		{
+			unsupportedReason = "proxy class";
+		}
+		else if (NEW_CONSTRUCTOR_FOR_SERIALIZATION == null)
+		{
+			unsupportedReason = "no sun.reflect.ReflectionFactory";
+		}
+		else
+		{
+			try
+			{
+				init();
+			}
+			catch (RuntimeException e)
+			{
+				// e.g. setAccessible() denied by a security manager or the module system
+				unsupportedReason = e.toString();
+			}
+		}
+	}
+
+	private void init()
+	{
+		// collect the fields from the topmost serializable class down to the type
+		List<Class<?>> hierarchy = serializableHierarchy(type);
+		List<Field> fieldList = new ArrayList<Field>();
+		for (Class<?> level : hierarchy)
+		{
+			unsupportedReason = checkLevel(level);
+			if (unsupportedReason != null)
+			{
+				return;
+			}
+
+			Field[] levelFields = serializableFields(level);
+			if (levelFields.length > 0 && isJdkClass(level))
+			{
+				unsupportedReason = "JDK class " + level.getName() + " has serializable fields";
+				return;
+			}
+			for (Field field : levelFields)
+			{
+				field.setAccessible(true);
+			}
+			Arrays.sort(levelFields, FIELD_ORDER);
+			fieldList.addAll(Arrays.asList(levelFields));
+		}
+
+		fields = fieldList.toArray(new Field[fieldList.size()]);
+		fieldTypes = new char[fields.length];
+		for (int i = 0; i < fields.length; i++)
+		{
+			fieldTypes[i] = typeCode(fields[i].getType());
+		}
+
+		writeReplace = getInheritableMethod(type, "writeReplace");
+		readResolve = getInheritableMethod(type, "readResolve");
+
+		constructor = newSerializationConstructor();
+		if (constructor == null)
+		{
+			unsupportedReason = "no accessible no-arg constructor in " +
+				"the first non-serializable superclass";
+		}
+	}
+
+	/**
+	 * @param level
+	 * @return the reason why the class can not be handled or {@code null}
+	 */
+	private static String checkLevel(Class<?> level)
+	{
+		if (hasPrivateMethod(level, "writeObject", ObjectOutputStream.class))
+		{
+			return "writeObject() in " + level.getName();
+		}
+		if (hasPrivateMethod(level, "readObject", ObjectInputStream.class))
+		{
+			return "readObject() in " + level.getName();
+		}
+		if (hasPrivateMethod(level, "readObjectNoData"))
+		{
+			return "readObjectNoData() in " + level.getName();
+		}
+		try
+		{
+			Field field = level.getDeclaredField("serialPersistentFields");
+			if (Modifier.isStatic(field.getModifiers()))
+			{
+				return "serialPersistentFields in " + level.getName();
+			}
+		}
+		catch (NoSuchFieldException e)
+		{
+			// fine
+		}
+		return null;
+	}
+
+	/**
+	 * @return the constructor which instantiates the type by calling the no-arg constructor of its
+	 *         first non-serializable superclass, or {@code null}
+	 */
+	private Constructor<?> newSerializationConstructor()
+	{
+		Class<?> nonSerializable = type;
+		while (Serializable.class.isAssignableFrom(nonSerializable))
+		{
+			nonSerializable = nonSerializable.getSuperclass();
+		}
+
+		Constructor<?> superConstructor;
+		try
+		{
+			superConstructor = nonSerializable.getDeclaredConstructor();
+		}
+		catch (NoSuchMethodException e)
+		{
+			return null;
+		}
+
+		// same rules as java serialization
+		int modifiers = superConstructor.getModifiers();
+		if (Modifier.isPrivate(modifiers) ||
+			((modifiers & (Modifier.PUBLIC | Modifier.PROTECTED)) == 0 && !isSamePackage(type,
+				nonSerializable)))
+		{
+			return null;
+		}
+
+		try
+		{
+			Constructor<?> constructor = (Constructor<?>)NEW_CONSTRUCTOR_FOR_SERIALIZATION.invoke(
+				REFLECTION_FACTORY, type, superConstructor);
+			constructor.setAccessible(true);
+			return constructor;
+		}
+		catch (Exception e)
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * @return the class
+	 */
+	Class<?> getType()
+	{
+		return type;
+	}
+
+	/**
+	 * @return a hash of the serializable fields of the class and its superclasses, 0 for classes
+	 *         which are not serializable
+	 */
+	int getStructureHash()
+	{
+		return structureHash;
+	}
+
+	/**
+	 * @return why the instances of the class can not be serialized, {@code null} if they can
+	 */
+	String getUnsupportedReason()
+	{
+		return unsupportedReason;
+	}
+
+	/**
+	 * @return the serializable fields, in the order they are written
+	 */
+	Field[] getFields()
+	{
+		return fields;
+	}
+
+	/**
+	 * @return the type codes of the fields
+	 */
+	char[] getFieldTypes()
+	{
+		return fieldTypes;
+	}
+
+	/**
+	 * @return whether the class has a {@code writeReplace} method
+	 */
+	boolean hasWriteReplace()
+	{
+		return writeReplace != null;
+	}
+
+	/**
+	 * @return whether the class has a {@code readResolve} method
+	 */
+	boolean hasReadResolve()
+	{
+		return readResolve != null;
+	}
+
+	/**
+	 * @param object
+	 * @return the result of {@code writeReplace}
+	 * @throws IOException
+	 */
+	Object invokeWriteReplace(Object object) throws IOException
+	{
+		return invoke(writeReplace, object);
+	}
+
+	/**
+	 * @param object
+	 * @return the result of {@code readResolve}
+	 * @throws IOException
+	 */
+	Object invokeReadResolve(Object object) throws IOException
+	{
+		return invoke(readResolve, object);
+	}
+
+	/**
+	 * @return a new instance, created without calling the constructors of the serializable classes
+	 * @throws IOException
+	 */
+	Object newInstance() throws IOException
+	{
+		if (unsupportedReason != null)
+		{
+			throw new InvalidClassException(type.getName(), unsupportedReason);
+		}
+		try
+		{
+			return constructor.newInstance();
+		}
+		catch (InvocationTargetException e)
+		{
+			throw newIOException(e.getTargetException());
+		}
+		catch (Exception e)
+		{
+			throw newIOException(e);
+		}
+	}
+
+	private static Object invoke(Method method, Object object) throws IOException
+	{
+		try
+		{
+			return method.invoke(object);
+		}
+		catch (InvocationTargetException e)
+		{
+			Throwable cause = e.getTargetException();
+			if (cause instanceof IOException)
+			{
+				throw (IOException)cause;
+			}
+			if (cause instanceof RuntimeException)
+			{
+				throw (RuntimeException)cause;
+			}
+			if (cause instanceof Error)
+			{
+				throw (Error)cause;
+			}
+			throw newIOException(cause);
+		}
+		catch (IllegalAccessException e)
+		{
+			throw newIOException(e);
+		}
+	}
+
+	private static IOException newIOException(Throwable cause)
+	{
+		IOException exception = new IOException(cause.toString());
+		exception.initCause(cause);
+		return exception;
+	}
+
+	/**
+	 * @param type
+	 * @return the serializable classes of the hierarchy, the topmost first
+	 */
+	private static List<Class<?>> serializableHierarchy(Class<?> type)
+	{
+		List<Class<?>> hierarchy = new ArrayList<Class<?>>();
+		Class<?> c = type;
+		while (c != null && Serializable.class.isAssignableFrom(c))
+		{
+			hierarchy.add(0, c);
+			c = c.getSuperclass();
+		}
+		return hierarchy;
+	}
+
+	/**
+	 * @param level
+	 * @return the non-static, non-transient fields declared by the class
+	 */
+	private static Field[] serializableFields(Class<?> level)
+	{
+		List<Field> result = new ArrayList<Field>();
+		for (Field field : level.getDeclaredFields())
+		{
+			int modifiers = field.getModifiers();
+			if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers))
+			{
+				result.add(field);
+			}
+		}
+		return result.toArray(new Field[result.size()]);
+	}
+
+	/**
+	 * @param type
+	 * @return a hash over the names and types of the serializable fields
+	 */
+	private static int computeStructureHash(Class<?> type)
+	{
+		if (!Serializable.class.isAssignableFrom(type) || type.isArray() || type.isEnum() ||
+			type.isInterface())
+		{
+			return 0;
+		}
+
+		int hash = 17;
+		for (Class<?> level : serializableHierarchy(type))
+		{
+			hash = 31 * hash + level.getName().hashCode();
+			Field[] levelFields = serializableFields(level);
+			Arrays.sort(levelFields, FIELD_ORDER);
+			for (Field field : levelFields)
+			{
+				hash = 31 * hash + field.getName().hashCode();
+				hash = 31 * hash + field.getType().getName().hashCode();
+			}
+		}
+		return hash;
+	}
+
+	private static char typeCode(Class<?> fieldType)
+	{
+		if (fieldType == int.class)
+		{
+			return 'I';
+		}
+		else if (fieldType == long.class)
+		{
+			return 'J';
+		}
+		else if (fieldType == boolean.class)
+		{
+			return 'Z';
+		}
+		else if (fieldType == byte.class)
+		{
+			return 'B';
+		}
+		else if (fieldType == char.class)
+		{
+			return 'C';
+		}
+		else if (fieldType == short.class)
+		{
+			return 'S';
+		}
+		else if (fieldType == float.class)
+		{
+			return 'F';
+		}
+		else if (fieldType == double.class)
+		{
+			return 'D';
+		}
+		return 'L';
+	}
+
+	private static boolean isJdkClass(Class<?> c)
+	{
+		String name = c.getName();
+		return name.startsWith("java.") || name.startsWith("javax.") || name.startsWith("sun.") ||
+			name.startsWith("com.sun.");
+	}
+
+	private static boolean hasPrivateMethod(Class<?> c, String name, Class<?>... parameterTypes)
+	{
+		try
+		{
+			Method method = c.getDeclaredMethod(name, parameterTypes);
+			int modifiers = method.getModifiers();
+			return Modifier.isPrivate(modifiers) && !Modifier.isStatic(modifiers);
+		}
+		catch (NoSuchMethodException e)
+		{
+			return false;
+		}
+	}
+
+	/**
+	 * Looks up a {@code writeReplace} or {@code readResolve} method like java serialization does.
+	 *
+	 * @param type
+	 * @param name
+	 * @return the accessible method or {@code null}
+	 */
+	private static Method getInheritableMethod(Class<?> type, String name)
+	{
+		Method method = null;
+		Class<?> definingClass = type;
+		while (definingClass != null)
+		{
+			try
+			{
+				method = definingClass.getDeclaredMethod(name);
+				break;
+			}
+			catch (NoSuchMethodException e)
+			{
+				definingClass = definingClass.getSuperclass();
+			}
+		}
+
+		if (method == null || method.getReturnType() != Object.class)
+		{
+			return null;
+		}
+
+		int modifiers = method.getModifiers();
+		if (Modifier.isStatic(modifiers) || Modifier.isAbstract(modifiers))
+		{
+			return null;
+		}
+		else if (Modifier.isPublic(modifiers) || Modifier.isProtected(modifiers))
+		{
+			// accessible from everywhere in the hierarchy
+		}
+		else if (Modifier.isPrivate(modifiers))
+		{
+			if (definingClass != type)
+			{
+				return null;
+			}
+		}
+		else if (!isSamePackage(type, definingClass))
+		{
+			return null;
+		}
+
+		method.setAccessible(true);
+		return method;
+	}
+
+	private static boolean isSamePackage(Class<?> c1, Class<?> c2)
+	{
+		return c1.getClassLoader() == c2.getClassLoader() &&
+			packageName(c1).equals(packageName(c2));
+	}
+
+	private static String packageName(Class<?> c)
+	{
+		String name = c.getName();
+		int index = name.lastIndexOf('.');
+		return index != -1 ? name.substring(0, index) : "";
+	}
+}
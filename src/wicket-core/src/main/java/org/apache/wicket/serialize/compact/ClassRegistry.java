@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.serialize.compact;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.wicket.AttributeModifier;
+import org.apache.wicket.MetaDataEntry;
+import org.apache.wicket.PageReference;
+import org.apache.wicket.behavior.AttributeAppender;
+import org.apache.wicket.markup.html.WebMarkupContainer;
+import org.apache.wicket.markup.html.basic.Label;
+import org.apache.wicket.markup.html.basic.MultiLineLabel;
+import org.apache.wicket.markup.html.form.Button;
+import org.apache.wicket.markup.html.form.Check;
+import org.apache.wicket.markup.html.form.CheckBox;
+import org.apache.wicket.markup.html.form.CheckBoxMultipleChoice;
+import org.apache.wicket.markup.html.form.CheckGroup;
+import org.apache.wicket.markup.html.form.ChoiceRenderer;
+import org.apache.wicket.markup.html.form.DropDownChoice;
+import org.apache.wicket.markup.html.form.Form;
+import org.apache.wicket.markup.html.form.FormComponentLabel;
+import org.apache.wicket.markup.html.form.HiddenField;
+import org.apache.wicket.markup.html.form.ListChoice;
+import org.apache.wicket.markup.html.form.ListMultipleChoice;
+import org.apache.wicket.markup.html.form.PasswordTextField;
+import org.apache.wicket.markup.html.form.Radio;
+import org.apache.wicket.markup.html.form.RadioChoice;
+import org.apache.wicket.markup.html.form.RadioGroup;
+import org.apache.wicket.markup.html.form.TextArea;
+import org.apache.wicket.markup.html.form.TextField;
+import org.apache.wicket.markup.html.image.Image;
+import org.apache.wicket.markup.html.link.BookmarkablePageLink;
+import org.apache.wicket.markup.html.link.ExternalLink;
+import org.apache.wicket.markup.html.list.ListItem;
+import org.apache.wicket.markup.html.panel.EmptyPanel;
+import org.apache.wicket.markup.html.panel.FeedbackPanel;
+import org.apache.wicket.markup.html.panel.Fragment;
+import org.apache.wicket.markup.repeater.Item;
+import org.apache.wicket.markup.repeater.RepeatingView;
+import org.apache.wicket.model.CompoundPropertyModel;
+import org.apache.wicket.model.Model;
+import org.apache.wicket.model.PropertyModel;
+import org.apache.wicket.model.ResourceModel;
+import org.apache.wicket.model.StringResourceModel;
+import org.apache.wicket.request.mapper.parameter.PageParameters;
+import org.apache.wicket.util.lang.Args;
+
+/**
+ * Maps classes to small ids, so {@link CompactSerializer} does not have to write their names. It
+ * knows the most common Wicket components, models and behaviors; applications can register their
+ * own classes.
+ * <p>
+ * The ids depend on the order of registration. Streams carry a fingerprint of the registry and can
+ * only be read by a registry with the same classes in the same order.
+ * </p>
+ */
+final class ClassRegistry
+{
+	// the deprecated SimpleAttributeModifier is qualified, as imports can not suppress warnings
+	@SuppressWarnings("deprecation")
+	private static final Class<?>[] WICKET_CLASSES = { Object.class, Object[].class, String[].class,
+			MetaDataEntry.class, MetaDataEntry[].class, PageReference.class, PageParameters.class,
+			WebMarkupContainer.class, Label.class, MultiLineLabel.class, Image.class, Form.class,
+			TextField.class, TextArea.class, PasswordTextField.class, HiddenField.class,
+			CheckBox.class, DropDownChoice.class, RadioChoice.class, ListChoice.class,
+			ListMultipleChoice.class, CheckBoxMultipleChoice.class, RadioGroup.class, Radio.class,
+			CheckGroup.class, Check.class, Button.class, FormComponentLabel.class,
+			ChoiceRenderer.class, BookmarkablePageLink.class, ExternalLink.class,
+			FeedbackPanel.class, EmptyPanel.class, Fragment.class, ListItem.class, Item.class,
+			RepeatingView.class, Model.class, PropertyModel.class, CompoundPropertyModel.class,
+			ResourceModel.class, StringResourceModel.class, AttributeModifier.class,
+			AttributeAppender.class, org.apache.wicket.behavior.SimpleAttributeModifier.class };
+
+	/** registered classes by id */
+	private volatile Class<?>[] classes = new Class<?>[0];
+
+	/** class -&gt; id */
+	private volatile Map<Class<?>, Integer> ids = new HashMap<Class<?>, Integer>();
+
+	private volatile int fingerprint;
+
+	/**
+	 * Construct.
+	 */
+	ClassRegistry()
+	{
+		register(WICKET_CLASSES);
+	}
+
+	/**
+	 * Registers classes which are not registered yet.
+	 *
+	 * @param types
+	 */
+	synchronized void register(Class<?>... types)
+	{
+		List<Class<?>> list = new ArrayList<Class<?>>();
+		for (Class<?> type : classes)
+		{
+			list.add(type);
+		}
+
+		Map<Class<?>, Integer> newIds = new HashMap<Class<?>, Integer>(ids);
+		int newFingerprint = fingerprint;
+		for (Class<?> type : types)
+		{
+			Args.notNull(type, "type");
+			if (newIds.containsKey(type) == false)
+			{
+				newIds.put(type, list.size());
+				list.add(type);
+				newFingerprint = 31 * newFingerprint + type.getName().hashCode();
+			}
+		}
+
+		classes = list.toArray(new Class<?>[list.size()]);
+		ids = newIds;
+		fingerprint = newFingerprint;
+	}
+
+	/**
+	 * @param type
+	 * @return the id of the class or -1 if it is not registered
+	 */
+	int getId(Class<?> type)
+	{
+		Integer id = ids.get(type);
+		return id != null ? id : -1;
+	}
+
+	/**
+	 * @param id
+	 * @return the class with the id or {@code null}
+	 */
+	Class<?> getClass(int id)
+	{
+		Class<?>[] registered = classes;
+		return id >= 0 && id < registered.length ? registered[id] : null;
+	}
+
+	/**
+	 * @return a hash over the names of the registered classes
+	 */
+	int getFingerprint()
+	{
+		return fingerprint;
+	}
+}
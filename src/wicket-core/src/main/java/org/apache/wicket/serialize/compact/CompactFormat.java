@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.serialize.compact;
+
+/**
+ * Constants of the binary format written by {@link CompactOutput} and read by {@link CompactInput}.
+ * <p>
+ * A stream starts with the {@link #MAGIC} bytes, the {@link #VERSION} and the fingerprint of the
+ * {@link ClassRegistry}, followed by the application key and the serialized object. Every value is
+ * written as a tag followed by its data. Classes are written by name (or registry id) and the hash
+ * of their fields the first time they occur in a stream and by a per stream handle afterwards.
+ * Objects which may be referenced more than once get a handle too.
+ * </p>
+ */
+final class CompactFormat
+{
+	/** the first bytes of a stream; differ from the magic of java serialization */
+	static final byte[] MAGIC = { 'W', 'C' };
+
+	/** format version */
+	static final byte VERSION = 1;
+
+	static final byte NULL = 0;
+	static final byte REFERENCE = 1;
+	static final byte OBJECT = 2;
+	static final byte STRING = 3;
+	static final byte ARRAY = 4;
+	static final byte ENUM = 5;
+	static final byte CLASS = 6;
+	static final byte TRUE = 7;
+	static final byte FALSE = 8;
+	static final byte BYTE = 9;
+	static final byte SHORT = 10;
+	static final byte CHARACTER = 11;
+	static final byte INTEGER = 12;
+	static final byte LONG = 13;
+	static final byte FLOAT = 14;
+	static final byte DOUBLE = 15;
+	static final byte ARRAY_LIST = 16;
+	static final byte LINKED_LIST = 17;
+	static final byte HASH_MAP = 18;
+	static final byte HASH_SET = 19;
+	static final byte LINKED_HASH_SET = 20;
+	static final byte TREE_MAP = 21;
+	static final byte TREE_SET = 22;
+	static final byte DATE = 23;
+	static final byte EMPTY_LIST = 24;
+	static final byte EMPTY_SET = 25;
+	static final byte EMPTY_MAP = 26;
+
+	/** a class written by name */
+	static final int CLASS_NAME = 0;
+
+	/** a class written by its registry id */
+	static final int CLASS_ID = 1;
+
+	/** offset of class handles */
+	static final int CLASS_HANDLE = 2;
+
+	/**
+	 * Construct.
+	 */
+	private CompactFormat()
+	{
+	}
+}
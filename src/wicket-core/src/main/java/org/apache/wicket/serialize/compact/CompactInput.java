@@ -0,0 +1,550 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.serialize.compact;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.StreamCorruptedException;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Reads an object graph written by {@link CompactOutput}.
+ */
+final class CompactInput
+{
+	private final CompactSerializer serializer;
+
+	private final byte[] data;
+
+	private int position;
+
+	/** handle -&gt; object */
+	private final List<Object> handles = new ArrayList<Object>();
+
+	/** handle -&gt; class */
+	private final List<Class<?>> classes = new ArrayList<Class<?>>();
+
+	/**
+	 * Construct.
+	 *
+	 * @param serializer
+	 * @param data
+	 */
+	CompactInput(CompactSerializer serializer, byte[] data)
+	{
+		this.serializer = serializer;
+		this.data = data;
+	}
+
+	/**
+	 * @param data
+	 * @return whether the data starts with the magic bytes of the compact format
+	 */
+	static boolean isCompactFormat(byte[] data)
+	{
+		return data.length >= CompactFormat.MAGIC.length &&
+			data[0] == CompactFormat.MAGIC[0] && data[1] == CompactFormat.MAGIC[1];
+	}
+
+	/**
+	 * Reads and checks the stream header.
+	 *
+	 * @param fingerprint
+	 *            the fingerprint of the class registry
+	 * @throws IOException
+	 */
+	void readHeader(int fingerprint) throws IOException
+	{
+		position = CompactFormat.MAGIC.length;
+		int version = readByte();
+		if (version != CompactFormat.VERSION)
+		{
+			throw new StreamCorruptedException("Unsupported version " + version);
+		}
+		if (readInt() != fingerprint)
+		{
+			throw new StreamCorruptedException(
+				"The stream has been written with different registered classes");
+		}
+	}
+
+	/**
+	 * Reads an object and everything it references.
+	 *
+	 * @return the object
+	 * @throws IOException
+	 * @throws ClassNotFoundException
+	 */
+	Object readObject() throws IOException, ClassNotFoundException
+	{
+		int tag = readByte();
+		switch (tag)
+		{
+			case CompactFormat.NULL :
+				return null;
+			case CompactFormat.REFERENCE :
+				int handle = readVarInt();
+				if (handle >= handles.size())
+				{
+					throw new StreamCorruptedException("Invalid handle " + handle);
+				}
+				return handles.get(handle);
+			case CompactFormat.STRING :
+				String string = readString();
+				handles.add(string);
+				return string;
+			case CompactFormat.TRUE :
+				return Boolean.TRUE;
+			case CompactFormat.FALSE :
+				return Boolean.FALSE;
+			case CompactFormat.BYTE :
+				return (byte)readByte();
+			case CompactFormat.SHORT :
+				return (short)unZigZag(readVarInt());
+			case CompactFormat.CHARACTER :
+				return (char)readVarInt();
+			case CompactFormat.INTEGER :
+				return unZigZag(readVarInt());
+			case CompactFormat.LONG :
+				return unZigZag(readVarLong());
+			case CompactFormat.FLOAT :
+				return Float.intBitsToFloat(readInt());
+			case CompactFormat.DOUBLE :
+				return Double.longBitsToDouble(readLong());
+			case CompactFormat.ENUM :
+				return readEnum();
+			case CompactFormat.CLASS :
+				return readClass();
+			case CompactFormat.ARRAY :
+				return readArray();
+			case CompactFormat.OBJECT :
+				return readOrdinaryObject();
+			case CompactFormat.ARRAY_LIST :
+				return readElements(new ArrayList<Object>());
+			case CompactFormat.LINKED_LIST :
+				return readElements(new LinkedList<Object>());
+			case CompactFormat.HASH_SET :
+				return readElements(new HashSet<Object>());
+			case CompactFormat.LINKED_HASH_SET :
+				return readElements(new LinkedHashSet<Object>());
+			case CompactFormat.HASH_MAP :
+				return readEntries(new HashMap<Object, Object>());
+			case CompactFormat.TREE_MAP :
+			{
+				int slot = reserveHandle();
+				TreeMap<Object, Object> map = new TreeMap<Object, Object>(readComparator());
+				handles.set(slot, map);
+				return readEntries(map, false);
+			}
+			case CompactFormat.TREE_SET :
+			{
+				int slot = reserveHandle();
+				TreeSet<Object> set = new TreeSet<Object>(readComparator());
+				handles.set(slot, set);
+				return readElements(set, false);
+			}
+			case CompactFormat.DATE :
+				Date date = new Date(unZigZag(readVarLong()));
+				handles.add(date);
+				return date;
+			case CompactFormat.EMPTY_LIST :
+				return Collections.EMPTY_LIST;
+			case CompactFormat.EMPTY_SET :
+				return Collections.EMPTY_SET;
+			case CompactFormat.EMPTY_MAP :
+				return Collections.EMPTY_MAP;
+			default :
+				throw new StreamCorruptedException("Invalid tag " + tag);
+		}
+	}
+
+	private Object readOrdinaryObject() throws IOException, ClassNotFoundException
+	{
+		Class<?> type = readClass();
+		ClassInfo info = serializer.getClassInfo(type);
+		Object object = info.newInstance();
+		int handle = handles.size();
+		handles.add(object);
+
+		Field[] fields = info.getFields();
+		char[] types = info.getFieldTypes();
+		try
+		{
+			for (int i = 0; i < fields.length; i++)
+			{
+				Field field = fields[i];
+				switch (types[i])
+				{
+					case 'I' :
+						field.setInt(object, unZigZag(readVarInt()));
+						break;
+					case 'J' :
+						field.setLong(object, unZigZag(readVarLong()));
+						break;
+					case 'Z' :
+						field.setBoolean(object, readByte() != 0);
+						break;
+					case 'B' :
+						field.setByte(object, (byte)readByte());
+						break;
+					case 'C' :
+						field.setChar(object, (char)readVarInt());
+						break;
+					case 'S' :
+						field.setShort(object, (short)unZigZag(readVarInt()));
+						break;
+					case 'F' :
+						field.setFloat(object, Float.intBitsToFloat(readInt()));
+						break;
+					case 'D' :
+						field.setDouble(object, Double.longBitsToDouble(readLong()));
+						break;
+					default :
+						Object value = readObject();
+						if (value != null && !field.getType().isInstance(value))
+						{
+							throw new InvalidClassException(type.getName(), "cannot assign " +
+								value.getClass().getName() + " to field " + field.getName());
+						}
+						field.set(object, value);
+				}
+			}
+		}
+		catch (IllegalAccessException e)
+		{
+			IOException exception = new IOException(e.toString());
+			exception.initCause(e);
+			throw exception;
+		}
+
+		if (info.hasReadResolve())
+		{
+			object = info.invokeReadResolve(object);
+			handles.set(handle, object);
+		}
+		return object;
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private Object readEnum() throws IOException, ClassNotFoundException
+	{
+		Class<?> type = readClass();
+		String name = readString();
+		if (!type.isEnum())
+		{
+			throw new InvalidClassException(type.getName(), "not an enum");
+		}
+		try
+		{
+			return Enum.valueOf((Class<Enum>)type, name);
+		}
+		catch (IllegalArgumentException e)
+		{
+			throw new InvalidClassException(type.getName(), "no enum constant " + name);
+		}
+	}
+
+	private Object readArray() throws IOException, ClassNotFoundException
+	{
+		Class<?> type = readClass();
+		Class<?> componentType = type.getComponentType();
+		if (componentType == null)
+		{
+			throw new InvalidClassException(type.getName(), "not an array");
+		}
+
+		int length = readVarInt();
+		Object array = Array.newInstance(componentType, length);
+		handles.add(array);
+
+		if (componentType == byte.class)
+		{
+			checkAvailable(length);
+			System.arraycopy(data, position, array, 0, length);
+			position += length;
+		}
+		else if (componentType == int.class)
+		{
+			int[] ints = (int[])array;
+			for (int i = 0; i < length; i++)
+			{
+				ints[i] = unZigZag(readVarInt());
+			}
+		}
+		else if (componentType == long.class)
+		{
+			long[] longs = (long[])array;
+			for (int i = 0; i < length; i++)
+			{
+				longs[i] = unZigZag(readVarLong());
+			}
+		}
+		else if (componentType == boolean.class)
+		{
+			boolean[] booleans = (boolean[])array;
+			for (int i = 0; i < length; i++)
+			{
+				booleans[i] = readByte() != 0;
+			}
+		}
+		else if (componentType == char.class)
+		{
+			char[] chars = (char[])array;
+			for (int i = 0; i < length; i++)
+			{
+				chars[i] = (char)readVarInt();
+			}
+		}
+		else if (componentType == short.class)
+		{
+			short[] shorts = (short[])array;
+			for (int i = 0; i < length; i++)
+			{
+				shorts[i] = (short)unZigZag(readVarInt());
+			}
+		}
+		else if (componentType == float.class)
+		{
+			float[] floats = (float[])array;
+			for (int i = 0; i < length; i++)
+			{
+				floats[i] = Float.intBitsToFloat(readInt());
+			}
+		}
+		else if (componentType == double.class)
+		{
+			double[] doubles = (double[])array;
+			for (int i = 0; i < length; i++)
+			{
+				doubles[i] = Double.longBitsToDouble(readLong());
+			}
+		}
+		else
+		{
+			Object[] objects = (Object[])array;
+			for (int i = 0; i < length; i++)
+			{
+				Object value = readObject();
+				if (value != null && !componentType.isInstance(value))
+				{
+					throw new InvalidClassException(type.getName(), "cannot store " +
+						value.getClass().getName());
+				}
+				objects[i] = value;
+			}
+		}
+		return array;
+	}
+
+	@SuppressWarnings("unchecked")
+	private Comparator<Object> readComparator() throws IOException, ClassNotFoundException
+	{
+		return (Comparator<Object>)readObject();
+	}
+
+	private Collection<Object> readElements(Collection<Object> collection) throws IOException,
+		ClassNotFoundException
+	{
+		return readElements(collection, true);
+	}
+
+	private Collection<Object> readElements(Collection<Object> collection, boolean assignHandle)
+		throws IOException, ClassNotFoundException
+	{
+		if (assignHandle)
+		{
+			handles.add(collection);
+		}
+		int size = readVarInt();
+		for (int i = 0; i < size; i++)
+		{
+			collection.add(readObject());
+		}
+		return collection;
+	}
+
+	private Map<Object, Object> readEntries(Map<Object, Object> map) throws IOException,
+		ClassNotFoundException
+	{
+		return readEntries(map, true);
+	}
+
+	private Map<Object, Object> readEntries(Map<Object, Object> map, boolean assignHandle)
+		throws IOException, ClassNotFoundException
+	{
+		if (assignHandle)
+		{
+			handles.add(map);
+		}
+		int size = readVarInt();
+		for (int i = 0; i < size; i++)
+		{
+			Object key = readObject();
+			map.put(key, readObject());
+		}
+		return map;
+	}
+
+	private int reserveHandle()
+	{
+		handles.add(null);
+		return handles.size() - 1;
+	}
+
+	private Class<?> readClass() throws IOException, ClassNotFoundException
+	{
+		int code = readVarInt();
+		if (code >= CompactFormat.CLASS_HANDLE)
+		{
+			int handle = code - CompactFormat.CLASS_HANDLE;
+			if (handle >= classes.size())
+			{
+				throw new StreamCorruptedException("Invalid class handle " + handle);
+			}
+			return classes.get(handle);
+		}
+
+		Class<?> type;
+		if (code == CompactFormat.CLASS_ID)
+		{
+			int id = readVarInt();
+			type = serializer.getRegistry().getClass(id);
+			if (type == null)
+			{
+				throw new StreamCorruptedException("Invalid class id " + id);
+			}
+		}
+		else
+		{
+			type = serializer.resolveClass(readString());
+		}
+
+		int hash = readInt();
+		if (hash != serializer.getClassInfo(type).getStructureHash())
+		{
+			throw new InvalidClassException(type.getName(),
+				"the serializable fields of the class have changed");
+		}
+		classes.add(type);
+		return type;
+	}
+
+	private String readString() throws IOException
+	{
+		int length = readVarInt();
+		char[] chars = new char[length];
+		for (int i = 0; i < length; i++)
+		{
+			checkAvailable(1);
+			byte b = data[position];
+			if (b >= 0)
+			{
+				chars[i] = (char)b;
+				position++;
+			}
+			else
+			{
+				chars[i] = (char)readVarInt();
+			}
+		}
+		return new String(chars);
+	}
+
+	private int readByte() throws IOException
+	{
+		checkAvailable(1);
+		return data[position++];
+	}
+
+	private int readInt() throws IOException
+	{
+		checkAvailable(4);
+		int value = ((data[position] & 0xFF) << 24) | ((data[position + 1] & 0xFF) << 16) |
+			((data[position + 2] & 0xFF) << 8) | (data[position + 3] & 0xFF);
+		position += 4;
+		return value;
+	}
+
+	private long readLong() throws IOException
+	{
+		long high = readInt();
+		return (high << 32) | (readInt() & 0xFFFFFFFFL);
+	}
+
+	private int readVarInt() throws IOException
+	{
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7)
+		{
+			int b = readByte();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+			{
+				return value;
+			}
+		}
+		throw new StreamCorruptedException("Malformed int");
+	}
+
+	private long readVarLong() throws IOException
+	{
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7)
+		{
+			int b = readByte();
+			value |= (long)(b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+			{
+				return value;
+			}
+		}
+		throw new StreamCorruptedException("Malformed long");
+	}
+
+	private void checkAvailable(int length) throws EOFException
+	{
+		if (length < 0 || position + length > data.length)
+		{
+			throw new EOFException();
+		}
+	}
+
+	private static int unZigZag(int value)
+	{
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	private static long unZigZag(long value)
+	{
+		return (value >>> 1) ^ -(value & 1);
+	}
+}
@@ -0,0 +1,652 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.serialize.compact;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Writes an object graph in the {@link CompactFormat}. An instance is reused by one thread at a
+ * time: {@link #reset()} clears it but keeps its buffer and handle tables.
+ */
+final class CompactOutput
+{
+	/** the initial size of the buffer */
+	private static final int INITIAL_SIZE = 4 * 1024;
+
+	/** bigger buffers are not kept for the next stream */
+	private static final int MAX_POOLED_SIZE = 1024 * 1024;
+
+	/** handle tables with more entries are not kept for the next stream */
+	private static final int MAX_POOLED_HANDLES = 8 * 1024;
+
+	private final CompactSerializer serializer;
+
+	private byte[] buffer = new byte[INITIAL_SIZE];
+
+	private int position;
+
+	/** object -&gt; handle */
+	private IdentityHashMap<Object, Integer> handles = new IdentityHashMap<Object, Integer>();
+
+	private int nextHandle;
+
+	/** class -&gt; handle */
+	private IdentityHashMap<Class<?>, Integer> classHandles = new IdentityHashMap<Class<?>, Integer>();
+
+	/** whether the instance is used by a serialization in progress */
+	private boolean inUse;
+
+	/**
+	 * Construct.
+	 *
+	 * @param serializer
+	 */
+	CompactOutput(CompactSerializer serializer)
+	{
+		this.serializer = serializer;
+	}
+
+	/**
+	 * @return whether a serialization is using this instance
+	 */
+	boolean isInUse()
+	{
+		return inUse;
+	}
+
+	/**
+	 * Starts a new stream.
+	 */
+	void begin()
+	{
+		inUse = true;
+		position = 0;
+		nextHandle = 0;
+	}
+
+	/**
+	 * Clears the state of the stream, keeping the buffers unless they grew too big.
+	 */
+	void reset()
+	{
+		inUse = false;
+		position = 0;
+		nextHandle = 0;
+		if (buffer.length > MAX_POOLED_SIZE)
+		{
+			buffer = new byte[INITIAL_SIZE];
+		}
+		if (handles.size() > MAX_POOLED_HANDLES)
+		{
+			handles = new IdentityHashMap<Object, Integer>();
+		}
+		else
+		{
+			handles.clear();
+		}
+		classHandles.clear();
+	}
+
+	/**
+	 * @return a copy of the written bytes
+	 */
+	byte[] toByteArray()
+	{
+		byte[] result = new byte[position];
+		System.arraycopy(buffer, 0, result, 0, position);
+		return result;
+	}
+
+	/**
+	 * Writes the stream header.
+	 *
+	 * @param fingerprint
+	 *            the fingerprint of the class registry
+	 */
+	void writeHeader(int fingerprint)
+	{
+		writeBytes(CompactFormat.MAGIC, 0, CompactFormat.MAGIC.length);
+		writeByte(CompactFormat.VERSION);
+		writeInt(fingerprint);
+	}
+
+	/**
+	 * Writes an object and everything it references.
+	 *
+	 * @param object
+	 * @throws IOException
+	 * @throws UnsupportedClassException
+	 *             if the graph contains an object which can not be written in this format
+	 */
+	void writeObject(Object object) throws IOException
+	{
+		writeObject(object, true);
+	}
+
+	private void writeObject(Object object, boolean replace) throws IOException
+	{
+		if (object == null)
+		{
+			writeByte(CompactFormat.NULL);
+			return;
+		}
+
+		Integer handle = handles.get(object);
+		if (handle != null)
+		{
+			writeByte(CompactFormat.REFERENCE);
+			writeVarInt(handle);
+			return;
+		}
+
+		Class<?> type = object.getClass();
+		if (type == String.class)
+		{
+			assignHandle(object);
+			writeByte(CompactFormat.STRING);
+			writeString((String)object);
+		}
+		else if (writeBoxed(type, object))
+		{
+			// done, boxed values have no handles
+		}
+		else if (object instanceof Enum<?>)
+		{
+			writeByte(CompactFormat.ENUM);
+			writeClass(((Enum<?>)object).getDeclaringClass());
+			writeString(((Enum<?>)object).name());
+		}
+		else if (type == Class.class)
+		{
+			writeByte(CompactFormat.CLASS);
+			writeClass((Class<?>)object);
+		}
+		else if (type.isArray())
+		{
+			assignHandle(object);
+			writeByte(CompactFormat.ARRAY);
+			writeClass(type);
+			writeArray(type.getComponentType(), object);
+		}
+		else if (writeCollection(type, object))
+		{
+			// done
+		}
+		else
+		{
+			ClassInfo info = serializer.getClassInfo(type);
+			if (info.getUnsupportedReason() != null)
+			{
+				throw new UnsupportedClassException(type, info.getUnsupportedReason());
+			}
+
+			if (replace && info.hasWriteReplace())
+			{
+				Object replacement = info.invokeWriteReplace(object);
+				if (replacement != object)
+				{
+					writeObject(replacement, replacement == null || replacement.getClass() != type);
+
+					// later references to the original object refer to its replacement
+					Integer replacementHandle = replacement != null ? handles.get(replacement)
+						: null;
+					if (replacementHandle != null)
+					{
+						handles.put(object, replacementHandle);
+					}
+					return;
+				}
+			}
+
+			assignHandle(object);
+			writeByte(CompactFormat.OBJECT);
+			writeClass(type);
+			writeFields(info, object);
+		}
+	}
+
+	private void writeFields(ClassInfo info, Object object) throws IOException
+	{
+		Field[] fields = info.getFields();
+		char[] types = info.getFieldTypes();
+		try
+		{
+			for (int i = 0; i < fields.length; i++)
+			{
+				Field field = fields[i];
+				switch (types[i])
+				{
+					case 'I' :
+						writeVarInt(zigZag(field.getInt(object)));
+						break;
+					case 'J' :
+						writeVarLong(zigZag(field.getLong(object)));
+						break;
+					case 'Z' :
+						writeByte(field.getBoolean(object) ? 1 : 0);
+						break;
+					case 'B' :
+						writeByte(field.getByte(object));
+						break;
+					case 'C' :
+						writeVarInt(field.getChar(object));
+						break;
+					case 'S' :
+						writeVarInt(zigZag(field.getShort(object)));
+						break;
+					case 'F' :
+						writeInt(Float.floatToIntBits(field.getFloat(object)));
+						break;
+					case 'D' :
+						writeLong(Double.doubleToLongBits(field.getDouble(object)));
+						break;
+					default :
+						writeObject(field.get(object));
+				}
+			}
+		}
+		catch (IllegalAccessException e)
+		{
+			IOException exception = new IOException(e.toString());
+			exception.initCause(e);
+			throw exception;
+		}
+	}
+
+	private boolean writeBoxed(Class<?> type, Object object)
+	{
+		if (type == Integer.class)
+		{
+			writeByte(CompactFormat.INTEGER);
+			writeVarInt(zigZag((Integer)object));
+		}
+		else if (type == Long.class)
+		{
+			writeByte(CompactFormat.LONG);
+			writeVarLong(zigZag((Long)object));
+		}
+		else if (type == Boolean.class)
+		{
+			writeByte((Boolean)object ? CompactFormat.TRUE : CompactFormat.FALSE);
+		}
+		else if (type == Byte.class)
+		{
+			writeByte(CompactFormat.BYTE);
+			writeByte((Byte)object);
+		}
+		else if (type == Short.class)
+		{
+			writeByte(CompactFormat.SHORT);
+			writeVarInt(zigZag((Short)object));
+		}
+		else if (type == Character.class)
+		{
+			writeByte(CompactFormat.CHARACTER);
+			writeVarInt((Character)object);
+		}
+		else if (type == Float.class)
+		{
+			writeByte(CompactFormat.FLOAT);
+			writeInt(Float.floatToIntBits((Float)object));
+		}
+		else if (type == Double.class)
+		{
+			writeByte(CompactFormat.DOUBLE);
+			writeLong(Double.doubleToLongBits((Double)object));
+		}
+		else
+		{
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Writes the collections of java.util which are supported natively
+	 *
+	 * @param type
+	 * @param object
+	 * @return {@code false} if the object is not such a collection
+	 * @throws IOException
+	 */
+	private boolean writeCollection(Class<?> type, Object object) throws IOException
+	{
+		if (type == ArrayList.class)
+		{
+			assignHandle(object);
+			writeByte(CompactFormat.ARRAY_LIST);
+			writeElements((Collection<?>)object);
+		}
+		else if (type == HashMap.class)
+		{
+			assignHandle(object);
+			writeByte(CompactFormat.HASH_MAP);
+			writeEntries((Map<?, ?>)object);
+		}
+		else if (type == HashSet.class)
+		{
+			assignHandle(object);
+			writeByte(CompactFormat.HASH_SET);
+			writeElements((Collection<?>)object);
+		}
+		else if (type == LinkedHashSet.class)
+		{
+			assignHandle(object);
+			writeByte(CompactFormat.LINKED_HASH_SET);
+			writeElements((Collection<?>)object);
+		}
+		else if (type == LinkedList.class)
+		{
+			assignHandle(object);
+			writeByte(CompactFormat.LINKED_LIST);
+			writeElements((Collection<?>)object);
+		}
+		else if (type == TreeMap.class)
+		{
+			assignHandle(object);
+			writeByte(CompactFormat.TREE_MAP);
+			writeObject(((TreeMap<?, ?>)object).comparator());
+			writeEntries((Map<?, ?>)object);
+		}
+		else if (type == TreeSet.class)
+		{
+			assignHandle(object);
+			writeByte(CompactFormat.TREE_SET);
+			writeObject(((TreeSet<?>)object).comparator());
+			writeElements((Collection<?>)object);
+		}
+		else if (type == Date.class)
+		{
+			assignHandle(object);
+			writeByte(CompactFormat.DATE);
+			writeVarLong(zigZag(((Date)object).getTime()));
+		}
+		else if (object == Collections.EMPTY_LIST)
+		{
+			writeByte(CompactFormat.EMPTY_LIST);
+		}
+		else if (object == Collections.EMPTY_SET)
+		{
+			writeByte(CompactFormat.EMPTY_SET);
+		}
+		else if (object == Collections.EMPTY_MAP)
+		{
+			writeByte(CompactFormat.EMPTY_MAP);
+		}
+		else
+		{
+			return false;
+		}
+		return true;
+	}
+
+	private void writeElements(Collection<?> collection) throws IOException
+	{
+		writeVarInt(collection.size());
+		for (Object element : collection)
+		{
+			writeObject(element);
+		}
+	}
+
+	private void writeEntries(Map<?, ?> map) throws IOException
+	{
+		writeVarInt(map.size());
+		for (Map.Entry<?, ?> entry : map.entrySet())
+		{
+			writeObject(entry.getKey());
+			writeObject(entry.getValue());
+		}
+	}
+
+	private void writeArray(Class<?> componentType, Object array) throws IOException
+	{
+		if (componentType == byte.class)
+		{
+			byte[] bytes = (byte[])array;
+			writeVarInt(bytes.length);
+			writeBytes(bytes, 0, bytes.length);
+		}
+		else if (componentType == int.class)
+		{
+			int[] ints = (int[])array;
+			writeVarInt(ints.length);
+			for (int value : ints)
+			{
+				writeVarInt(zigZag(value));
+			}
+		}
+		else if (componentType == long.class)
+		{
+			long[] longs = (long[])array;
+			writeVarInt(longs.length);
+			for (long value : longs)
+			{
+				writeVarLong(zigZag(value));
+			}
+		}
+		else if (componentType == boolean.class)
+		{
+			boolean[] booleans = (boolean[])array;
+			writeVarInt(booleans.length);
+			for (boolean value : booleans)
+			{
+				writeByte(value ? 1 : 0);
+			}
+		}
+		else if (componentType == char.class)
+		{
+			char[] chars = (char[])array;
+			writeVarInt(chars.length);
+			for (char value : chars)
+			{
+				writeVarInt(value);
+			}
+		}
+		else if (componentType == short.class)
+		{
+			short[] shorts = (short[])array;
+			writeVarInt(shorts.length);
+			for (short value : shorts)
+			{
+				writeVarInt(zigZag(value));
+			}
+		}
+		else if (componentType == float.class)
+		{
+			float[] floats = (float[])array;
+			writeVarInt(floats.length);
+			for (float value : floats)
+			{
+				writeInt(Float.floatToIntBits(value));
+			}
+		}
+		else if (componentType == double.class)
+		{
+			double[] doubles = (double[])array;
+			writeVarInt(doubles.length);
+			for (double value : doubles)
+			{
+				writeLong(Double.doubleToLongBits(value));
+			}
+		}
+		else
+		{
+			Object[] objects = (Object[])array;
+			writeVarInt(objects.length);
+			for (Object value : objects)
+			{
+				writeObject(value);
+			}
+		}
+	}
+
+	/**
+	 * Writes a class: by handle if it has been written before, otherwise by registry id or name
+	 * followed by its structure hash.
+	 *
+	 * @param type
+	 */
+	private void writeClass(Class<?> type)
+	{
+		Integer handle = classHandles.get(type);
+		if (handle != null)
+		{
+			writeVarInt(CompactFormat.CLASS_HANDLE + handle);
+			return;
+		}
+
+		int id = serializer.getRegistry().getId(type);
+		if (id != -1)
+		{
+			writeVarInt(CompactFormat.CLASS_ID);
+			writeVarInt(id);
+		}
+		else
+		{
+			writeVarInt(CompactFormat.CLASS_NAME);
+			writeString(type.getName());
+		}
+		writeInt(serializer.getClassInfo(type).getStructureHash());
+		classHandles.put(type, classHandles.size());
+	}
+
+	private void assignHandle(Object object)
+	{
+		handles.put(object, nextHandle++);
+	}
+
+	private void writeString(String string)
+	{
+		int length = string.length();
+		writeVarInt(length);
+
+		// a char takes up to three bytes
+		ensureCapacity(3 * length);
+		for (int i = 0; i < length; i++)
+		{
+			char c = string.charAt(i);
+			if (c < 0x80)
+			{
+				buffer[position++] = (byte)c;
+			}
+			else
+			{
+				writeVarInt(c);
+			}
+		}
+	}
+
+	private void writeByte(int value)
+	{
+		ensureCapacity(1);
+		buffer[position++] = (byte)value;
+	}
+
+	private void writeBytes(byte[] bytes, int offset, int length)
+	{
+		ensureCapacity(length);
+		System.arraycopy(bytes, offset, buffer, position, length);
+		position += length;
+	}
+
+	private void writeInt(int value)
+	{
+		ensureCapacity(4);
+		buffer[position++] = (byte)(value >>> 24);
+		buffer[position++] = (byte)(value >>> 16);
+		buffer[position++] = (byte)(value >>> 8);
+		buffer[position++] = (byte)value;
+	}
+
+	private void writeLong(long value)
+	{
+		writeInt((int)(value >>> 32));
+		writeInt((int)value);
+	}
+
+	/**
+	 * Writes an unsigned int in 1 to 5 bytes, 7 bits per byte
+	 *
+	 * @param value
+	 */
+	private void writeVarInt(int value)
+	{
+		ensureCapacity(5);
+		while ((value & ~0x7F) != 0)
+		{
+			buffer[position++] = (byte)((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		buffer[position++] = (byte)value;
+	}
+
+	/**
+	 * Writes an unsigned long in 1 to 10 bytes, 7 bits per byte
+	 *
+	 * @param value
+	 */
+	private void writeVarLong(long value)
+	{
+		ensureCapacity(10);
+		while ((value & ~0x7FL) != 0)
+		{
+			buffer[position++] = (byte)((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		buffer[position++] = (byte)value;
+	}
+
+	private void ensureCapacity(int length)
+	{
+		if (position + length > buffer.length)
+		{
+			byte[] newBuffer = new byte[Math.max(buffer.length * 2, position + length)];
+			System.arraycopy(buffer, 0, newBuffer, 0, position);
+			buffer = newBuffer;
+		}
+	}
+
+	/**
+	 * Maps signed ints to unsigned ones so that small negative numbers stay small.
+	 *
+	 * @param value
+	 * @return the zig zag encoded value
+	 */
+	private static int zigZag(int value)
+	{
+		return (value << 1) ^ (value >> 31);
+	}
+
+	private static long zigZag(long value)
+	{
+		return (value << 1) ^ (value >> 63);
+	}
+}
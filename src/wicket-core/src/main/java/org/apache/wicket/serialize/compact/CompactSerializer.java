@@ -0,0 +1,284 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.serialize.compact;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.wicket.Application;
+import org.apache.wicket.ThreadContext;
+import org.apache.wicket.WicketRuntimeException;
+import org.apache.wicket.application.DefaultClassResolver;
+import org.apache.wicket.application.IClassResolver;
+import org.apache.wicket.serialize.ISerializer;
+import org.apache.wicket.serialize.java.JavaSerializer;
+import org.apache.wicket.util.lang.Args;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An {@link ISerializer} which writes a compact binary format instead of using java serialization.
+ * It avoids the class descriptors of java serialization: classes are written by name once per
+ * stream, and the most common Wicket classes as well as the ones registered with
+ * {@link #register(Class...)} by a small id. The reflective information about the classes is
+ * cached, and each thread reuses its buffers.
+ * <p>
+ * Objects are written field by field, honoring {@code transient}, {@code writeReplace} and
+ * {@code readResolve}. Object graphs which contain instances of classes with custom serialization
+ * ({@code writeObject}/{@code readObject}, {@code Externalizable}) or JDK classes other than
+ * strings, boxed primitives, enums, arrays and the common collections of {@code java.util}, are
+ * serialized with the fallback serializer instead, by default a {@link JavaSerializer}. Data
+ * written by the fallback serializer is recognized when deserializing, so pages stored by the
+ * {@link JavaSerializer} can still be read after switching to this serializer.
+ * </p>
+ * <p>
+ * To use this serializer, put the following code in your application's init:
+ *
+ * <pre>
+ * CompactSerializer serializer = new CompactSerializer(getApplicationKey());
+ * serializer.register(MyPanel.class, MyModel.class);
+ * getFrameworkSettings().setSerializer(serializer);
+ * </pre>
+ *
+ * </p>
+ * <p>
+ * The format is not meant to be exchanged between applications: the serialized data can only be
+ * read back if the serializable fields of the classes and the registered classes have not
+ * changed.
+ * </p>
+ */
+public class CompactSerializer implements ISerializer
+{
+	private static final Logger log = LoggerFactory.getLogger(CompactSerializer.class);
+
+	/**
+	 * The key of the application which can be used later to find the proper {@link IClassResolver}
+	 */
+	private final String applicationKey;
+
+	private final ISerializer fallback;
+
+	private final ClassRegistry registry = new ClassRegistry();
+
+	/** class -&gt; cached reflective information */
+	private final ConcurrentMap<Class<?>, ClassInfo> classInfos = new ConcurrentHashMap<Class<?>, ClassInfo>();
+
+	/**
+	 * Classes of objects whose graphs have been serialized by the fallback serializer. They are
+	 * passed to it directly next time.
+	 */
+	private final ConcurrentMap<Class<?>, Boolean> fallbackClasses = new ConcurrentHashMap<Class<?>, Boolean>();
+
+	private final ThreadLocal<CompactOutput> outputs = new ThreadLocal<CompactOutput>();
+
+	/** used to resolve classes when there is no application */
+	private final IClassResolver defaultClassResolver = new DefaultClassResolver();
+
+	/**
+	 * Construct.
+	 *
+	 * @param applicationKey
+	 */
+	public CompactSerializer(final String applicationKey)
+	{
+		this(applicationKey, new JavaSerializer(applicationKey));
+	}
+
+	/**
+	 * Construct.
+	 *
+	 * @param applicationKey
+	 * @param fallback
+	 *            the serializer used for object graphs which can not be written in the compact
+	 *            format
+	 */
+	public CompactSerializer(final String applicationKey, final ISerializer fallback)
+	{
+		this.applicationKey = applicationKey;
+		this.fallback = Args.notNull(fallback, "fallback");
+	}
+
+	/**
+	 * Registers classes so they are written by a small id instead of by name. The ids depend on the
+	 * order of registration, so the classes have to be registered in the same order whenever the
+	 * application starts, and before the first page is serialized.
+	 *
+	 * @param types
+	 *            the classes to register
+	 */
+	public final void register(final Class<?>... types)
+	{
+		registry.register(types);
+	}
+
+	/**
+	 * @see org.apache.wicket.serialize.ISerializer#serialize(java.lang.Object)
+	 */
+	public byte[] serialize(final Object object)
+	{
+		if (fallbackClasses.containsKey(object.getClass()))
+		{
+			return fallback.serialize(object);
+		}
+
+		CompactOutput output = outputs.get();
+		if (output == null)
+		{
+			output = new CompactOutput(this);
+			outputs.set(output);
+		}
+		else if (output.isInUse())
+		{
+			// serialize() has been called while serializing, e.g. by writeReplace()
+			output = new CompactOutput(this);
+		}
+
+		output.begin();
+		try
+		{
+			output.writeHeader(registry.getFingerprint());
+			output.writeObject(applicationKey);
+			output.writeObject(object);
+			return output.toByteArray();
+		}
+		catch (UnsupportedClassException e)
+		{
+			log.debug("Using the fallback serializer for {}: {}", object.getClass(),
+				e.getMessage());
+			fallbackClasses.put(object.getClass(), Boolean.TRUE);
+			return fallback.serialize(object);
+		}
+		catch (Exception e)
+		{
+			log.error("Error serializing object " + object.getClass() + " [object=" + object + "]",
+				e);
+			return null;
+		}
+		finally
+		{
+			output.reset();
+		}
+	}
+
+	/**
+	 * @see org.apache.wicket.serialize.ISerializer#deserialize(byte[])
+	 */
+	public Object deserialize(final byte[] data)
+	{
+		if (!CompactInput.isCompactFormat(data))
+		{
+			return fallback.deserialize(data);
+		}
+
+		ThreadContext old = ThreadContext.get(false);
+		try
+		{
+			CompactInput input = new CompactInput(this, data);
+			input.readHeader(registry.getFingerprint());
+
+			String applicationName = (String)input.readObject();
+			if (applicationName != null)
+			{
+				Application app = Application.get(applicationName);
+				if (app != null)
+				{
+					ThreadContext.setApplication(app);
+				}
+			}
+			return input.readObject();
+		}
+		catch (ClassNotFoundException e)
+		{
+			throw new RuntimeException("Could not deserialize object using: " + getClass(), e);
+		}
+		catch (IOException e)
+		{
+			throw new RuntimeException("Could not deserialize object using: " + getClass(), e);
+		}
+		finally
+		{
+			ThreadContext.restore(old);
+		}
+	}
+
+	/**
+	 * @return the registry of class ids
+	 */
+	final ClassRegistry getRegistry()
+	{
+		return registry;
+	}
+
+	/**
+	 * @param type
+	 * @return the cached reflective information about the class
+	 */
+	final ClassInfo getClassInfo(final Class<?> type)
+	{
+		ClassInfo info = classInfos.get(type);
+		if (info == null)
+		{
+			info = new ClassInfo(type);
+			ClassInfo existing = classInfos.putIfAbsent(type, info);
+			if (existing != null)
+			{
+				info = existing;
+			}
+		}
+		return info;
+	}
+
+	/**
+	 * Resolves a class by name, using the {@link IClassResolver} of the application if there is
+	 * one.
+	 *
+	 * @param className
+	 * @return the class
+	 * @throws ClassNotFoundException
+	 */
+	protected Class<?> resolveClass(final String className) throws ClassNotFoundException
+	{
+		IClassResolver classResolver;
+		if (Application.exists())
+		{
+			classResolver = Application.get().getApplicationSettings().getClassResolver();
+		}
+		else
+		{
+			classResolver = defaultClassResolver;
+		}
+
+		try
+		{
+			Class<?> type = classResolver.resolveClass(className);
+			if (type == null)
+			{
+				throw new ClassNotFoundException(className);
+			}
+			return type;
+		}
+		catch (WicketRuntimeException e)
+		{
+			if (e.getCause() instanceof ClassNotFoundException)
+			{
+				throw (ClassNotFoundException)e.getCause();
+			}
+			throw e;
+		}
+	}
+}
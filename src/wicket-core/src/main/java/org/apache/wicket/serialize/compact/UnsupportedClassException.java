@@ -0,0 +1,40 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.serialize.compact;
+
+/**
+ * Thrown by {@link CompactOutput} when the object graph contains an object which can not be
+ * written in the {@link CompactFormat}. {@link CompactSerializer} falls back to its fallback
+ * serializer then.
+ */
+final class UnsupportedClassException extends RuntimeException
+{
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Construct.
+	 *
+	 * @param type
+	 *            the class which is not supported
+	 * @param reason
+	 *            why it is not supported
+	 */
+	UnsupportedClassException(Class<?> type, String reason)
+	{
+		super(type.getName() + ": " + reason);
+	}
+}
@@ -17,6 +17,7 @@
 package org.apache.wicket.settings;
 
 import org.apache.wicket.markup.MarkupFactory;
+import org.apache.wicket.util.lang.Bytes;
 
 /**
  * Interface for markup related settings.
@@ -41,6 +42,12 @@ public interface IMarkupSettings
 	 */
 	boolean getAutomaticLinking();
 
+	/**
+	 * @return whether the render plans are cached
+	 * @see IMarkupSettings#setCacheRenderPlans(boolean)
+	 */
+	boolean getCacheRenderPlans();
+
 	/**
 	 * @return Returns the compressWhitespace.
 	 * @see IMarkupSettings#setCompressWhitespace(boolean)
@@ -64,6 +71,24 @@ public interface IMarkupSettings
 	 */
 	String getDefaultMarkupEncoding();
 
+	/**
+	 * @return the maximum estimated size of each of the markup caches
+	 * @see IMarkupSettings#setMarkupCacheMaxSize(Bytes)
+	 */
+	Bytes getMarkupCacheMaxSize();
+
+	/**
+	 * @return whether the markup is minified when it is loaded
+	 * @see IMarkupSettings#setMinifyMarkup(boolean)
+	 */
+	boolean getMinifyMarkup();
+
+	/**
+	 * @return whether the raw markup is kept in its encoded form
+	 * @see IMarkupSettings#setPreEncodeRawMarkup(boolean)
+	 */
+	boolean getPreEncodeRawMarkup();
+
 	/**
 	 * @return Returns the stripComments.
 	 * @see IMarkupSettings#setStripComments(boolean)
@@ -93,6 +118,18 @@ public interface IMarkupSettings
 	 */
 	void setAutomaticLinking(boolean automaticLinking);
 
+	/**
+	 * Caches which elements of the markup a container renders itself and which are the tags of
+	 * its children, so rendering loops over the cached plan instead of walking the markup stream
+	 * and skipping the bodies of the children. The plans are kept with the immutable markup and
+	 * discarded with it; the children are still looked up for each render.
+	 * 
+	 * @param cacheRenderPlans
+	 *            whether to cache the render plans, false by default
+	 * @see org.apache.wicket.markup.RenderPlan
+	 */
+	void setCacheRenderPlans(boolean cacheRenderPlans);
+
 	/**
 	 * Turns on whitespace compression. Multiple occurrences of space/tab characters will be
 	 * compressed to a single space. Multiple line breaks newline/carriage-return will also be
@@ -132,6 +169,48 @@ public interface IMarkupSettings
 	 */
 	void setDefaultMarkupEncoding(final String encoding);
 
+	/**
+	 * Bounds the markup cache by the estimated size of the cached markup. When the cache gets
+	 * bigger, the markup which has been used least is evicted and loaded again when it is needed.
+	 * This limits the memory used for applications with many combinations of locale, style and
+	 * variation. The setting is read when the markup cache is created.
+	 * 
+	 * @param maxSize
+	 *            the maximum estimated size of each of the markup caches, {@link Bytes#MAX} (the
+	 *            default) for unbounded caches
+	 * @see org.apache.wicket.markup.MarkupCache.BoundedCacheImplementation
+	 */
+	void setMarkupCacheMaxSize(Bytes maxSize);
+
+	/**
+	 * Minifies the markup when it is loaded, so the cached markup is already minimal: whitespace
+	 * is collapsed and comments are removed outside of tags, except within &lt;pre&gt; and
+	 * &lt;textarea&gt; elements and for conditional comments, and the bodies of inline scripts
+	 * and styles are compressed with the JavaScript and CSS compressors of the resource settings.
+	 * Unlike {@link #setCompressWhitespace(boolean)} this is HTML aware.
+	 * 
+	 * @param minifyMarkup
+	 *            whether to minify the markup, false by default
+	 * @see org.apache.wicket.markup.parser.filter.MarkupMinifier
+	 */
+	void setMinifyMarkup(boolean minifyMarkup);
+
+	/**
+	 * Merges adjacent raw markup when the markup is loaded and keeps it in its encoded form, so
+	 * that the static parts of the templates are not encoded again on every render. Responses which
+	 * write the rendered page as bytes, e.g. the servlet response, then write the encoded raw
+	 * markup as it is, unless there are response filters which may change the rendered page, e.g.
+	 * in development mode.
+	 * <p>
+	 * The pre-encoded raw markup is written to the output stream of the servlet response, so this
+	 * should not be enabled if something else writes to the writer of the servlet response after
+	 * the page has been rendered.
+	 * 
+	 * @param preEncodeRawMarkup
+	 *            whether to keep the raw markup in its encoded form, false by default
+	 */
+	void setPreEncodeRawMarkup(boolean preEncodeRawMarkup);
+
 	/**
 	 * Enables stripping of markup comments denoted in markup by HTML comment tagging.
 	 * 
@@ -25,12 +25,15 @@ import org.apache.wicket.javascript.IJavaScriptCompressor;
 import org.apache.wicket.markup.html.IPackageResourceGuard;
 import org.apache.wicket.markup.html.PackageResourceGuard;
 import org.apache.wicket.model.IModel;
+import org.apache.wicket.request.resource.CompressedResourceCache;
+import org.apache.wicket.request.resource.PackageResourceCache;
 import org.apache.wicket.request.resource.caching.IResourceCachingStrategy;
 import org.apache.wicket.resource.IPropertiesFactory;
 import org.apache.wicket.resource.IPropertiesFactoryContext;
 import org.apache.wicket.resource.loader.IStringResourceLoader;
 import org.apache.wicket.util.file.IFileCleaner;
 import org.apache.wicket.util.file.IResourceFinder;
+import org.apache.wicket.util.lang.Bytes;
 import org.apache.wicket.util.resource.locator.IResourceStreamLocator;
 import org.apache.wicket.util.time.Duration;
 import org.apache.wicket.util.watch.IModificationWatcher;
@@ -365,4 +368,71 @@ public interface IResourceSettings extends IPropertiesFactoryContext
 	 *      {@code true} when the jsessionid should be encoded, {@code false} - otherwise
 	 */
 	void setEncodeJSessionId(boolean encodeJSessionId);
+
+	/**
+	 * A flag indicating whether resources should be compressed with gzip if the client accepts it.
+	 *
+	 * @return {@code true} if textual resources are sent compressed to clients accepting it
+	 * @see org.apache.wicket.request.resource.AbstractResource
+	 */
+	boolean isCompressResources();
+
+	/**
+	 * Sets a flag indicating whether resources should be compressed with gzip if the client accepts
+	 * it. The compressed data of resources implementing
+	 * {@link org.apache.wicket.request.resource.caching.IStaticCacheableResource} is kept in the
+	 * {@link #getCompressedResourceCache()}, so they are compressed once.
+	 *
+	 * @param compressResources
+	 *      {@code true} when resources should be compressed, {@code false} - otherwise
+	 */
+	void setCompressResources(boolean compressResources);
+
+	/**
+	 * @return the maximum size of the data of package resources kept in memory
+	 * @see #setPackageResourceCacheMaxSize(Bytes)
+	 */
+	Bytes getPackageResourceCacheMaxSize();
+
+	/**
+	 * Sets the maximum size of the data of package resources kept in memory, after it has been
+	 * processed e.g. by the JavaScript and CSS compressors. The default is
+	 * <code>Bytes.bytes(0)</code>, i.e. the data is read for every request.
+	 *
+	 * @param maxSize
+	 *      the maximum size of the cached data
+	 * @see PackageResourceCache
+	 */
+	void setPackageResourceCacheMaxSize(Bytes maxSize);
+
+	/**
+	 * @return the cache of the data of package resources or <code>null</code> if it is disabled
+	 * @see #setPackageResourceCacheMaxSize(Bytes)
+	 */
+	PackageResourceCache getPackageResourceCache();
+
+	/**
+	 * @return the maximum size of the compressed data of static resources kept in memory
+	 * @see #setCompressedResourceCacheMaxSize(Bytes)
+	 */
+	Bytes getCompressedResourceCacheMaxSize();
+
+	/**
+	 * Sets the maximum size of the compressed data of static resources kept in memory, if
+	 * resources are compressed at all, see {@link #setCompressResources(boolean)}. The default is
+	 * <code>Bytes.megabytes(4)</code>, with <code>Bytes.bytes(0)</code> the data is compressed for
+	 * every request.
+	 *
+	 * @param maxSize
+	 *      the maximum size of the cached data
+	 * @see CompressedResourceCache
+	 */
+	void setCompressedResourceCacheMaxSize(Bytes maxSize);
+
+	/**
+	 * @return the cache of the compressed data of static resources or <code>null</code> if it is
+	 *         disabled
+	 * @see #setCompressedResourceCacheMaxSize(Bytes)
+	 */
+	CompressedResourceCache getCompressedResourceCache();
 }
@@ -23,6 +23,7 @@ import org.apache.wicket.pageStore.AsynchronousDataStore;
 import org.apache.wicket.pageStore.DiskDataStore;
 import org.apache.wicket.pageStore.IDataStore;
 import org.apache.wicket.pageStore.IPageStore;
+import org.apache.wicket.pageStore.SegmentedDataStore;
 import org.apache.wicket.util.lang.Bytes;
 
 /**
@@ -53,6 +54,26 @@ public interface IStoreSettings
 	 */
 	void setInmemoryCacheSize(int inmemoryCacheSize);
 
+	/**
+	 * @return the maximum total size of the page instances stored in the application scoped cache
+	 */
+	Bytes getInmemoryCacheMaxSize();
+
+	/**
+	 * Sets the maximum total size of the serialized page instances which will be stored in the
+	 * application scoped second level cache. The least used pages are evicted when either this size
+	 * or the number of pages set with {@link #setInmemoryCacheSize(int)} is exceeded.
+	 * <p>
+	 * The default is 10 megabytes. Formerly the cache was bounded by the number of pages only and
+	 * held them through soft references, so an application with large pages may keep fewer of them
+	 * in the cache now and may have to raise this limit.
+	 * </p>
+	 * 
+	 * @param inmemoryCacheMaxSize
+	 *            the maximum total size of the pages held in the application scoped cache
+	 */
+	void setInmemoryCacheMaxSize(Bytes inmemoryCacheMaxSize);
+
 	/**
 	 * @return maximum page size. After this size is exceeded, the {@link DiskDataStore} will start
 	 *         saving the pages at the beginning of file.
@@ -100,6 +121,23 @@ public interface IStoreSettings
 	 */
 	void setAsynchronousQueueCapacity(int capacity);
 
+	/**
+	 * @return the maximum number of pages which are written at once by {@link AsynchronousDataStore}
+	 */
+	int getAsynchronousBatchSize();
+
+	/**
+	 * Sets the maximum number of pages which are taken from the queue and written at once by
+	 * {@link AsynchronousDataStore}. The pages of a session are written with a single call if the
+	 * wrapped store is an {@link org.apache.wicket.pageStore.IBatchDataStore}, and only the latest
+	 * version of a page is written.
+	 * 
+	 * @param batchSize
+	 *            the batch size, between 1 (no batching) and the queue capacity
+	 * @see AsynchronousDataStore
+	 */
+	void setAsynchronousBatchSize(int batchSize);
+
 	/**
 	 * Sets a flag whether to wrap the configured {@link IDataStore} with
 	 * {@link AsynchronousDataStore}. By doing this the HTTP worker thread will not wait for the
@@ -114,4 +152,64 @@ public interface IStoreSettings
 	 * @return {@code true} if the storing of page's bytes is asynchronous
 	 */
 	boolean isAsynchronous();
+
+	/**
+	 * Sets a flag whether to use {@link SegmentedDataStore} instead of {@link DiskDataStore}. The
+	 * segmented store packs the pages of all sessions into a few large memory-mapped files instead
+	 * of using one file per session.
+	 * 
+	 * @param segmented
+	 *            {@code true} to use {@link SegmentedDataStore}, {@code false} - otherwise
+	 */
+	void setSegmentedDataStore(boolean segmented);
+
+	/**
+	 * @return {@code true} if the pages are stored with {@link SegmentedDataStore}
+	 */
+	boolean isSegmentedDataStore();
+
+	/**
+	 * @return the size of each file used by {@link SegmentedDataStore}
+	 */
+	Bytes getSegmentSize();
+
+	/**
+	 * Sets the size of each file used by {@link SegmentedDataStore}. Must not be larger than 2GB.
+	 * 
+	 * @param segmentSize
+	 *            the size of a segment file
+	 */
+	void setSegmentSize(Bytes segmentSize);
+
+	/**
+	 * @return the maximum number of files used by {@link SegmentedDataStore}
+	 */
+	int getMaxSegmentCount();
+
+	/**
+	 * Sets the maximum number of files used by {@link SegmentedDataStore}. When all of them are full
+	 * the pages in the least used one are dropped.
+	 * 
+	 * @param maxSegmentCount
+	 *            the maximum number of segment files, at least 2
+	 */
+	void setMaxSegmentCount(int maxSegmentCount);
+
+	/**
+	 * @return the maximum number of pages stored as delta against the same base page, 0 if the
+	 *         pages are stored completely
+	 */
+	int getMaxDeltaChainLength();
+
+	/**
+	 * Sets the maximum number of pages of the same class which are stored as delta against the
+	 * same base page before a page is stored as the new base. Storing deltas reduces the amount of
+	 * data written by the {@link IDataStore} considerably, but a page can not be restored anymore
+	 * once its base has been removed from the data store. Default is 0, i.e. every page is stored
+	 * completely.
+	 * 
+	 * @param maxDeltaChainLength
+	 *            the maximum number of deltas per base, 0 to disable deltas
+	 */
+	void setMaxDeltaChainLength(int maxDeltaChainLength);
 }
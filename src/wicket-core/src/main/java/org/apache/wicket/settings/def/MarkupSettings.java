@@ -19,6 +19,7 @@ package org.apache.wicket.settings.def;
 import org.apache.wicket.markup.MarkupFactory;
 import org.apache.wicket.settings.IMarkupSettings;
 import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.lang.Bytes;
 
 /**
  * @author Jonathan Locke
@@ -38,6 +39,9 @@ public class MarkupSettings implements IMarkupSettings
 	/** True if multiple tabs/spaces should be compressed to a single space */
 	private boolean compressWhitespace = false;
 
+	/** Whether the render plans are cached */
+	private boolean cacheRenderPlans = false;
+
 	/** Default markup for after a disabled link */
 	private String defaultAfterDisabledLink = "</em>";
 
@@ -53,6 +57,15 @@ public class MarkupSettings implements IMarkupSettings
 	/** if true than throw an exception if the xml declaration is missing from the markup file */
 	private boolean throwExceptionOnMissingXmlDeclaration = false;
 
+	/** Should the markup be minified when it is loaded? */
+	private boolean minifyMarkup = false;
+
+	/** Should raw markup be kept in its encoded form? */
+	private boolean preEncodeRawMarkup = false;
+
+	/** The maximum estimated size of each of the markup caches */
+	private Bytes markupCacheMaxSize = Bytes.MAX;
+
 	/** Should HTML comments be stripped during rendering? */
 	private boolean stripComments = false;
 
@@ -76,6 +89,14 @@ public class MarkupSettings implements IMarkupSettings
 		return automaticLinking;
 	}
 
+	/**
+	 * @see org.apache.wicket.settings.IMarkupSettings#getCacheRenderPlans()
+	 */
+	public boolean getCacheRenderPlans()
+	{
+		return cacheRenderPlans;
+	}
+
 	/**
 	 * @see org.apache.wicket.settings.IMarkupSettings#getCompressWhitespace()
 	 */
@@ -120,6 +141,30 @@ public class MarkupSettings implements IMarkupSettings
 		return markupFactory;
 	}
 
+	/**
+	 * @see org.apache.wicket.settings.IMarkupSettings#getMarkupCacheMaxSize()
+	 */
+	public Bytes getMarkupCacheMaxSize()
+	{
+		return markupCacheMaxSize;
+	}
+
+	/**
+	 * @see org.apache.wicket.settings.IMarkupSettings#getMinifyMarkup()
+	 */
+	public boolean getMinifyMarkup()
+	{
+		return minifyMarkup;
+	}
+
+	/**
+	 * @see org.apache.wicket.settings.IMarkupSettings#getPreEncodeRawMarkup()
+	 */
+	public boolean getPreEncodeRawMarkup()
+	{
+		return preEncodeRawMarkup;
+	}
+
 	/**
 	 * @see org.apache.wicket.settings.IMarkupSettings#getStripComments()
 	 */
@@ -152,6 +197,14 @@ public class MarkupSettings implements IMarkupSettings
 		this.automaticLinking = automaticLinking;
 	}
 
+	/**
+	 * @see org.apache.wicket.settings.IMarkupSettings#setCacheRenderPlans(boolean)
+	 */
+	public void setCacheRenderPlans(boolean cacheRenderPlans)
+	{
+		this.cacheRenderPlans = cacheRenderPlans;
+	}
+
 	/**
 	 * @see org.apache.wicket.settings.IMarkupSettings#setCompressWhitespace(boolean)
 	 */
@@ -193,6 +246,30 @@ public class MarkupSettings implements IMarkupSettings
 		markupFactory = factory;
 	}
 
+	/**
+	 * @see org.apache.wicket.settings.IMarkupSettings#setMarkupCacheMaxSize(org.apache.wicket.util.lang.Bytes)
+	 */
+	public void setMarkupCacheMaxSize(final Bytes maxSize)
+	{
+		markupCacheMaxSize = Args.notNull(maxSize, "maxSize");
+	}
+
+	/**
+	 * @see org.apache.wicket.settings.IMarkupSettings#setMinifyMarkup(boolean)
+	 */
+	public void setMinifyMarkup(boolean minifyMarkup)
+	{
+		this.minifyMarkup = minifyMarkup;
+	}
+
+	/**
+	 * @see org.apache.wicket.settings.IMarkupSettings#setPreEncodeRawMarkup(boolean)
+	 */
+	public void setPreEncodeRawMarkup(boolean preEncodeRawMarkup)
+	{
+		this.preEncodeRawMarkup = preEncodeRawMarkup;
+	}
+
 	/**
 	 * @see org.apache.wicket.settings.IMarkupSettings#setStripComments(boolean)
 	 */
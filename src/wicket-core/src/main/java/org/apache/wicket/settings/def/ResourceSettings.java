@@ -28,6 +28,8 @@ import org.apache.wicket.javascript.IJavaScriptCompressor;
 import org.apache.wicket.markup.html.IPackageResourceGuard;
 import org.apache.wicket.markup.html.SecurePackageResourceGuard;
 import org.apache.wicket.request.http.WebResponse;
+import org.apache.wicket.request.resource.CompressedResourceCache;
+import org.apache.wicket.request.resource.PackageResourceCache;
 import org.apache.wicket.request.resource.caching.FilenameWithVersionResourceCachingStrategy;
 import org.apache.wicket.request.resource.caching.IResourceCachingStrategy;
 import org.apache.wicket.request.resource.caching.NoOpResourceCachingStrategy;
@@ -49,6 +51,7 @@ import org.apache.wicket.util.file.IResourceFinder;
 import org.apache.wicket.util.file.IResourcePath;
 import org.apache.wicket.util.file.Path;
 import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.lang.Bytes;
 import org.apache.wicket.util.lang.Generics;
 import org.apache.wicket.util.resource.IResourceStream;
 import org.apache.wicket.util.resource.locator.IResourceStreamLocator;
@@ -130,6 +133,17 @@ public class ResourceSettings implements IResourceSettings
 
 	private boolean encodeJSessionId = false;
 
+	private boolean compressResources = false;
+
+	private Bytes packageResourceCacheMaxSize = Bytes.bytes(0);
+
+	private PackageResourceCache packageResourceCache;
+
+	private Bytes compressedResourceCacheMaxSize = Bytes.megabytes(4);
+
+	private CompressedResourceCache compressedResourceCache = new CompressedResourceCache(
+		compressedResourceCacheMaxSize);
+
 	/**
 	 * Configures Wicket's default ResourceLoaders.<br>
 	 * For an example in {@code FooApplication} let {@code bar.Foo} extend {@link Component}, this
@@ -460,6 +474,53 @@ public class ResourceSettings implements IResourceSettings
 		this.encodeJSessionId = encodeJSessionId;
 	}
 
+	public boolean isCompressResources()
+	{
+		return compressResources;
+	}
+
+	public void setCompressResources(boolean compressResources)
+	{
+		this.compressResources = compressResources;
+	}
+
+	public Bytes getPackageResourceCacheMaxSize()
+	{
+		return packageResourceCacheMaxSize;
+	}
+
+	public void setPackageResourceCacheMaxSize(Bytes maxSize)
+	{
+		Args.notNull(maxSize, "maxSize");
+
+		packageResourceCacheMaxSize = maxSize;
+		packageResourceCache = maxSize.bytes() > 0 ? new PackageResourceCache(maxSize) : null;
+	}
+
+	public PackageResourceCache getPackageResourceCache()
+	{
+		return packageResourceCache;
+	}
+
+	public Bytes getCompressedResourceCacheMaxSize()
+	{
+		return compressedResourceCacheMaxSize;
+	}
+
+	public void setCompressedResourceCacheMaxSize(Bytes maxSize)
+	{
+		Args.notNull(maxSize, "maxSize");
+
+		compressedResourceCacheMaxSize = maxSize;
+		compressedResourceCache = maxSize.bytes() > 0 ? new CompressedResourceCache(maxSize)
+			: null;
+	}
+
+	public CompressedResourceCache getCompressedResourceCache()
+	{
+		return compressedResourceCache;
+	}
+
 	public ICssCompressor setCssCompressor(ICssCompressor compressor)
 	{
 		ICssCompressor old = cssCompressor;
@@ -33,20 +33,42 @@ public class StoreSettings implements IStoreSettings
 {
 	private static final int DEFAULT_CACHE_SIZE = 40;
 
+	private static final Bytes DEFAULT_CACHE_MAX_SIZE = Bytes.megabytes(10);
+
 	private static final Bytes DEFAULT_MAX_SIZE_PER_SESSION = Bytes.megabytes(10);
 
 	private static final int DEFAULT_ASYNCHRONOUS_QUEUE_CAPACITY = 100;
 
+	private static final int DEFAULT_ASYNCHRONOUS_BATCH_SIZE = 1;
+
+	private static final Bytes DEFAULT_SEGMENT_SIZE = Bytes.megabytes(64);
+
+	private static final int DEFAULT_MAX_SEGMENT_COUNT = 16;
+
+	private static final int DEFAULT_MAX_DELTA_CHAIN_LENGTH = 0;
+
 	private int inmemoryCacheSize = DEFAULT_CACHE_SIZE;
 
+	private Bytes inmemoryCacheMaxSize = DEFAULT_CACHE_MAX_SIZE;
+
 	private Bytes maxSizePerSession = DEFAULT_MAX_SIZE_PER_SESSION;
 
 	private File fileStoreFolder = null;
 
 	private int asynchronousQueueCapacity = DEFAULT_ASYNCHRONOUS_QUEUE_CAPACITY;
 
+	private int asynchronousBatchSize = DEFAULT_ASYNCHRONOUS_BATCH_SIZE;
+
 	private boolean isAsynchronous = true;
 
+	private boolean isSegmentedDataStore = false;
+
+	private Bytes segmentSize = DEFAULT_SEGMENT_SIZE;
+
+	private int maxSegmentCount = DEFAULT_MAX_SEGMENT_COUNT;
+
+	private int maxDeltaChainLength = DEFAULT_MAX_DELTA_CHAIN_LENGTH;
+
 	/**
 	 * Construct.
 	 * 
@@ -66,6 +88,16 @@ public class StoreSettings implements IStoreSettings
 		this.inmemoryCacheSize = inmemoryCacheSize;
 	}
 
+	public Bytes getInmemoryCacheMaxSize()
+	{
+		return inmemoryCacheMaxSize;
+	}
+
+	public void setInmemoryCacheMaxSize(Bytes inmemoryCacheMaxSize)
+	{
+		this.inmemoryCacheMaxSize = Args.notNull(inmemoryCacheMaxSize, "inmemoryCacheMaxSize");
+	}
+
 	public Bytes getMaxSizePerSession()
 	{
 		return maxSizePerSession;
@@ -123,6 +155,20 @@ public class StoreSettings implements IStoreSettings
 		asynchronousQueueCapacity = queueCapacity;
 	}
 
+	public int getAsynchronousBatchSize()
+	{
+		return asynchronousBatchSize;
+	}
+
+	public void setAsynchronousBatchSize(int batchSize)
+	{
+		if (batchSize < 1)
+		{
+			throw new IllegalArgumentException("The asynchronous batch size should be at least 1.");
+		}
+		asynchronousBatchSize = batchSize;
+	}
+
 	public void setAsynchronous(boolean async)
 	{
 		isAsynchronous = async;
@@ -132,4 +178,59 @@ public class StoreSettings implements IStoreSettings
 	{
 		return isAsynchronous;
 	}
+
+	public void setSegmentedDataStore(boolean segmented)
+	{
+		isSegmentedDataStore = segmented;
+	}
+
+	public boolean isSegmentedDataStore()
+	{
+		return isSegmentedDataStore;
+	}
+
+	public Bytes getSegmentSize()
+	{
+		return segmentSize;
+	}
+
+	public void setSegmentSize(final Bytes segmentSize)
+	{
+		Args.notNull(segmentSize, "segmentSize");
+		if (segmentSize.bytes() < 1 || segmentSize.bytes() > Integer.MAX_VALUE)
+		{
+			throw new IllegalArgumentException(
+				"The segment size should be between 1 byte and 2 gigabytes.");
+		}
+		this.segmentSize = segmentSize;
+	}
+
+	public int getMaxSegmentCount()
+	{
+		return maxSegmentCount;
+	}
+
+	public void setMaxSegmentCount(int maxSegmentCount)
+	{
+		if (maxSegmentCount < 2)
+		{
+			throw new IllegalArgumentException("The maximum number of segments should be at least 2.");
+		}
+		this.maxSegmentCount = maxSegmentCount;
+	}
+
+	public int getMaxDeltaChainLength()
+	{
+		return maxDeltaChainLength;
+	}
+
+	public void setMaxDeltaChainLength(int maxDeltaChainLength)
+	{
+		if (maxDeltaChainLength < 0)
+		{
+			throw new IllegalArgumentException(
+				"The maximum delta chain length should not be negative.");
+		}
+		this.maxDeltaChainLength = maxDeltaChainLength;
+	}
 }
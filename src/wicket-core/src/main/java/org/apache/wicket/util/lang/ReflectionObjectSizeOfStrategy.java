@@ -0,0 +1,478 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.util.lang;
+
+import java.io.Serializable;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import org.apache.wicket.util.lang.WicketObjects.IObjectSizeOfStrategy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link IObjectSizeOfStrategy} that walks the object graph reflectively and adds up the sizes the
+ * objects occupy in the heap. Unlike the {@link WicketObjects.SerializingObjectSizeOfStrategy} it
+ * does not serialize anything, and unlike the instrumentation based strategy it does not need a
+ * java agent.
+ * <p>
+ * The shallow size of each class is computed once from the offsets of its fields, if
+ * {@code sun.misc.Unsafe} is available, or else from the sizes of its fields, and takes the size
+ * of the object header and of references (compressed or not) of the running JVM into account.
+ * Every object is counted once, no matter how often it is referenced.
+ * </p>
+ * <p>
+ * Static fields are not followed, and neither are classes, class loaders, threads and enum
+ * constants. Transient fields are followed, as their values occupy the heap as well. Maps and
+ * collections of the {@code java} packages are walked through their public API, their internal
+ * nodes are estimated. Other maps and collections are walked through their fields like any other
+ * object, so they are never iterated.
+ * </p>
+ * <p>
+ * To use it, put the following code in your application's init:
+ * 
+ * <pre>
+ * WicketObjects.setObjectSizeOfStrategy(new ReflectionObjectSizeOfStrategy());
+ * </pre>
+ * 
+ * </p>
+ */
+public class ReflectionObjectSizeOfStrategy implements IObjectSizeOfStrategy
+{
+	private static final Logger log = LoggerFactory.getLogger(ReflectionObjectSizeOfStrategy.class);
+
+	private static final int ALIGNMENT = 8;
+
+	/** sun.misc.Unsafe, if available */
+	private static final Object UNSAFE;
+
+	/** Unsafe#objectFieldOffset(Field) */
+	private static final Method OBJECT_FIELD_OFFSET;
+
+	/** Unsafe#arrayBaseOffset(Class) */
+	private static final Method ARRAY_BASE_OFFSET;
+
+	/** Unsafe#arrayIndexScale(Class) */
+	private static final Method ARRAY_INDEX_SCALE;
+
+	static
+	{
+		Object unsafe = null;
+		Method objectFieldOffset = null;
+		Method arrayBaseOffset = null;
+		Method arrayIndexScale = null;
+		try
+		{
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Field field = unsafeClass.getDeclaredField("theUnsafe");
+			field.setAccessible(true);
+			unsafe = field.get(null);
+			objectFieldOffset = unsafeClass.getMethod("objectFieldOffset", Field.class);
+			arrayBaseOffset = unsafeClass.getMethod("arrayBaseOffset", Class.class);
+			arrayIndexScale = unsafeClass.getMethod("arrayIndexScale", Class.class);
+		}
+		catch (Exception e)
+		{
+			unsafe = null;
+		}
+		catch (LinkageError e)
+		{
+			unsafe = null;
+		}
+		UNSAFE = unsafe;
+		OBJECT_FIELD_OFFSET = objectFieldOffset;
+		ARRAY_BASE_OFFSET = arrayBaseOffset;
+		ARRAY_INDEX_SCALE = arrayIndexScale;
+	}
+
+	/** the size of a reference */
+	private final int referenceSize;
+
+	/** the size of the header of an object */
+	private final int objectHeaderSize;
+
+	/** the size of the header of an array, if it cannot be asked for */
+	private final int arrayHeaderSize;
+
+	/** class -&gt; cached layout */
+	private final ConcurrentMap<Class<?>, ClassLayout> layouts = new ConcurrentHashMap<Class<?>, ClassLayout>();
+
+	/**
+	 * Construct.
+	 */
+	public ReflectionObjectSizeOfStrategy()
+	{
+		boolean is64Bit = "64".equals(System.getProperty("sun.arch.data.model")) ||
+			System.getProperty("os.arch", "").indexOf("64") >= 0;
+
+		int reference = 4;
+		if (UNSAFE != null)
+		{
+			try
+			{
+				reference = (Integer)ARRAY_INDEX_SCALE.invoke(UNSAFE, Object[].class);
+			}
+			catch (Exception e)
+			{
+				reference = guessReferenceSize(is64Bit);
+			}
+		}
+		else
+		{
+			reference = guessReferenceSize(is64Bit);
+		}
+
+		referenceSize = reference;
+		objectHeaderSize = is64Bit ? (reference == 4 ? 12 : 16) : 8;
+		arrayHeaderSize = is64Bit && reference == 8 ? 24 : objectHeaderSize + 4;
+	}
+
+	/**
+	 * @param is64Bit
+	 * @return the size of references as configured for a HotSpot JVM
+	 */
+	private static int guessReferenceSize(final boolean is64Bit)
+	{
+		if (is64Bit == false)
+		{
+			return 4;
+		}
+		try
+		{
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName("com.sun.management:type=HotSpotDiagnostic");
+			CompositeData option = (CompositeData)server.invoke(name, "getVMOption",
+				new Object[] { "UseCompressedOops" }, new String[] { String.class.getName() });
+			return Boolean.valueOf((String)option.get("value")) ? 4 : 8;
+		}
+		catch (Exception e)
+		{
+			// compressed references are the default for heaps smaller than 32GB
+			return Runtime.getRuntime().maxMemory() < 32L * 1024 * 1024 * 1024 ? 4 : 8;
+		}
+	}
+
+	/**
+	 * @see org.apache.wicket.util.lang.WicketObjects.IObjectSizeOfStrategy#sizeOf(java.io.Serializable)
+	 */
+	public long sizeOf(final Serializable object)
+	{
+		if (object == null)
+		{
+			return 0;
+		}
+
+		final IdentityHashMap<Object, Object> visited = new IdentityHashMap<Object, Object>();
+		final List<Object> stack = new ArrayList<Object>();
+		push(object, visited, stack);
+
+		long size = 0;
+		while (stack.isEmpty() == false)
+		{
+			size += visit(stack.remove(stack.size() - 1), visited, stack);
+		}
+		return size;
+	}
+
+	/**
+	 * @param object
+	 * @param visited
+	 * @param stack
+	 * @return the shallow size of the object, plus the estimated size of the internals of JDK maps
+	 *         and collections
+	 */
+	private long visit(final Object object, final IdentityHashMap<Object, Object> visited,
+		final List<Object> stack)
+	{
+		final Class<?> type = object.getClass();
+		final ClassLayout layout = getLayout(type);
+
+		if (type.isArray())
+		{
+			int length = Array.getLength(object);
+			if (type.getComponentType().isPrimitive() == false)
+			{
+				for (Object element : (Object[])object)
+				{
+					push(element, visited, stack);
+				}
+			}
+			return align(layout.shallowSize + (long)length * layout.elementSize);
+		}
+
+		long size = layout.shallowSize;
+		for (Field field : layout.references)
+		{
+			try
+			{
+				push(field.get(object), visited, stack);
+			}
+			catch (IllegalAccessException e)
+			{
+				// cannot happen, the field has been made accessible
+			}
+		}
+
+		if (layout.walkedByApi)
+		{
+			try
+			{
+				size += visitByApi(object, visited, stack);
+			}
+			catch (RuntimeException e)
+			{
+				log.debug("Unable to walk the content of {}: {}", type, e.getMessage());
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Walks strings, maps and collections of the JDK through their public API, and estimates the
+	 * size of their internals.
+	 * 
+	 * @param object
+	 * @param visited
+	 * @param stack
+	 * @return the estimated size of the internals
+	 */
+	private long visitByApi(final Object object, final IdentityHashMap<Object, Object> visited,
+		final List<Object> stack)
+	{
+		if (object instanceof String)
+		{
+			return align(arrayHeaderSize + 2L * ((String)object).length());
+		}
+		else if (object instanceof Map)
+		{
+			Map<?, ?> map = (Map<?, ?>)object;
+			int count = 0;
+			for (Map.Entry<?, ?> entry : map.entrySet())
+			{
+				push(entry.getKey(), visited, stack);
+				push(entry.getValue(), visited, stack);
+				count++;
+			}
+			// a table of about 4/3 of the size and an entry with key, value, next and hash each
+			long table = align(arrayHeaderSize + (long)referenceSize * (count + count / 3));
+			long entry = align(objectHeaderSize + 3L * referenceSize + 4);
+			return table + count * entry;
+		}
+		else if (object instanceof Collection)
+		{
+			int count = 0;
+			for (Object element : (Collection<?>)object)
+			{
+				push(element, visited, stack);
+				count++;
+			}
+			// a backing array, the nodes of linked structures are not counted
+			return align(arrayHeaderSize + (long)referenceSize * count);
+		}
+		return 0;
+	}
+
+	private static void push(final Object object, final IdentityHashMap<Object, Object> visited,
+		final List<Object> stack)
+	{
+		if (object == null || object instanceof Class || object instanceof ClassLoader ||
+			object instanceof Thread || object instanceof Enum)
+		{
+			return;
+		}
+		if (visited.put(object, object) == null)
+		{
+			stack.add(object);
+		}
+	}
+
+	/**
+	 * @param type
+	 * @return the cached layout of the class
+	 */
+	private ClassLayout getLayout(final Class<?> type)
+	{
+		ClassLayout layout = layouts.get(type);
+		if (layout == null)
+		{
+			layout = type.isArray() ? newArrayLayout(type) : newLayout(type);
+			ClassLayout existing = layouts.putIfAbsent(type, layout);
+			if (existing != null)
+			{
+				layout = existing;
+			}
+		}
+		return layout;
+	}
+
+	private ClassLayout newArrayLayout(final Class<?> type)
+	{
+		int header = arrayHeaderSize;
+		int elementSize = fieldSize(type.getComponentType());
+		if (UNSAFE != null)
+		{
+			try
+			{
+				header = (Integer)ARRAY_BASE_OFFSET.invoke(UNSAFE, type);
+				elementSize = (Integer)ARRAY_INDEX_SCALE.invoke(UNSAFE, type);
+			}
+			catch (Exception e)
+			{
+				header = arrayHeaderSize;
+			}
+		}
+		return new ClassLayout(header, elementSize, new Field[0], false);
+	}
+
+	private ClassLayout newLayout(final Class<?> type)
+	{
+		// iterating other maps and collections might e.g. load their content lazily
+		final boolean walkedByApi = type == String.class ||
+			(type.getName().startsWith("java.") && (Map.class.isAssignableFrom(type) ||
+				Collection.class.isAssignableFrom(type)));
+
+		List<Field> references = new ArrayList<Field>();
+		long end = objectHeaderSize;
+		long fieldsSize = 0;
+		boolean offsetsKnown = UNSAFE != null;
+
+		for (Class<?> c = type; c != null; c = c.getSuperclass())
+		{
+			final boolean jdkClass = isJdkClass(c);
+			for (Field field : c.getDeclaredFields())
+			{
+				int modifiers = field.getModifiers();
+				if (Modifier.isStatic(modifiers))
+				{
+					continue;
+				}
+
+				int size = fieldSize(field.getType());
+				fieldsSize += size;
+				if (offsetsKnown)
+				{
+					try
+					{
+						long offset = (Long)OBJECT_FIELD_OFFSET.invoke(UNSAFE, field);
+						end = Math.max(end, offset + size);
+					}
+					catch (Exception e)
+					{
+						offsetsKnown = false;
+					}
+				}
+
+				// the internals of JDK maps and collections are estimated by visitByApi()
+				if (field.getType().isPrimitive() || (jdkClass && walkedByApi))
+				{
+					continue;
+				}
+				try
+				{
+					field.setAccessible(true);
+					references.add(field);
+				}
+				catch (RuntimeException e)
+				{
+					// e.g. a field of a JDK class which is not open
+					log.debug("Unable to follow field {}: {}", field, e.getMessage());
+				}
+			}
+		}
+
+		long shallowSize = align(offsetsKnown ? end : objectHeaderSize + fieldsSize);
+		return new ClassLayout(shallowSize, 0, references.toArray(new Field[references.size()]),
+			walkedByApi);
+	}
+
+	/**
+	 * @param type
+	 * @return the size of a field or an array element of this type
+	 */
+	private int fieldSize(final Class<?> type)
+	{
+		if (type == long.class || type == double.class)
+		{
+			return 8;
+		}
+		else if (type == int.class || type == float.class)
+		{
+			return 4;
+		}
+		else if (type == char.class || type == short.class)
+		{
+			return 2;
+		}
+		else if (type == byte.class || type == boolean.class)
+		{
+			return 1;
+		}
+		return referenceSize;
+	}
+
+	private static boolean isJdkClass(final Class<?> type)
+	{
+		String name = type.getName();
+		return name.startsWith("java.") || name.startsWith("javax.") || name.startsWith("sun.");
+	}
+
+	private static long align(final long size)
+	{
+		return (size + ALIGNMENT - 1) & ~(ALIGNMENT - 1);
+	}
+
+	/**
+	 * The cached information about a class
+	 */
+	private static final class ClassLayout
+	{
+		/** the size of an instance without the objects it references, for arrays the header */
+		private final long shallowSize;
+
+		/** the size of an element of an array */
+		private final int elementSize;
+
+		/** the fields which are followed */
+		private final Field[] references;
+
+		/** whether the content is walked through the public API of maps and collections */
+		private final boolean walkedByApi;
+
+		private ClassLayout(final long shallowSize, final int elementSize,
+			final Field[] references, final boolean walkedByApi)
+		{
+			this.shallowSize = shallowSize;
+			this.elementSize = elementSize;
+			this.references = references;
+			this.walkedByApi = walkedByApi;
+		}
+	}
+}
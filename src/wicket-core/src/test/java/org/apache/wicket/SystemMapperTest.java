@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket;
+
+import org.apache.wicket.request.IRequestHandler;
+import org.apache.wicket.request.IRequestMapper;
+import org.apache.wicket.request.Url;
+import org.apache.wicket.request.handler.BookmarkablePageRequestHandler;
+import org.apache.wicket.request.handler.IPageClassRequestHandler;
+import org.apache.wicket.request.handler.PageProvider;
+import org.apache.wicket.request.handler.resource.ResourceReferenceRequestHandler;
+import org.apache.wicket.request.resource.PackageResourceReference;
+import org.apache.wicket.request.resource.ResourceReference;
+import org.apache.wicket.request.resource.caching.FilenameWithVersionResourceCachingStrategy;
+import org.apache.wicket.request.resource.caching.version.StaticResourceVersion;
+import org.junit.Test;
+
+/**
+ * Tests for {@link SystemMapper}
+ */
+public class SystemMapperTest extends WicketTestCase
+{
+	private IRequestHandler mapRequest(String url)
+	{
+		IRequestMapper mapper = tester.getApplication().getRootRequestMapper();
+		return mapper.mapRequest(tester.getRequestCycle().getRequest().cloneWithUrl(
+			Url.parse(url)));
+	}
+
+	private Url mapHandler(IRequestHandler handler)
+	{
+		return tester.getApplication().getRootRequestMapper().mapHandler(handler);
+	}
+
+	/**
+	 * The mounted pages and resources are found by the index for requests and handlers
+	 */
+	@Test
+	public void indexedMounts()
+	{
+		ResourceReference reference = new PackageResourceReference(SystemMapperTest.class,
+			"LoginPage.html");
+		tester.getApplication().mountPage("a/${p}/x", MockPageWithLink.class);
+		tester.getApplication().mountPage("a/b", MockPageWithForm.class);
+		tester.getApplication().mountPage("a/#{o}/c", MockPageWithOneComponent.class);
+		tester.getApplication().mountResource("resources/login.html", reference);
+		tester.getApplication()
+			.getResourceSettings()
+			.setCachingStrategy(
+				new FilenameWithVersionResourceCachingStrategy("-ver-", new StaticResourceVersion("1")));
+
+		assertEquals(MockPageWithForm.class,
+			((IPageClassRequestHandler)mapRequest("a/b")).getPageClass());
+		assertEquals(MockPageWithLink.class,
+			((IPageClassRequestHandler)mapRequest("a/b/x")).getPageClass());
+		assertEquals(MockPageWithOneComponent.class,
+			((IPageClassRequestHandler)mapRequest("a/c")).getPageClass());
+		assertEquals(MockPageWithOneComponent.class,
+			((IPageClassRequestHandler)mapRequest("a/d/c")).getPageClass());
+
+		assertEquals("a/b", mapHandler(
+			new BookmarkablePageRequestHandler(new PageProvider(MockPageWithForm.class))).toString());
+		assertEquals("a/c", mapHandler(
+			new BookmarkablePageRequestHandler(new PageProvider(MockPageWithOneComponent.class)))
+			.toString());
+
+		// the filename of the resource is decorated with its version
+		assertEquals("resources/login-ver-1.html",
+			mapHandler(new ResourceReferenceRequestHandler(reference)).toString());
+		assertEquals(reference, ((ResourceReferenceRequestHandler)mapRequest(
+			"resources/login-ver-1.html")).getResourceReference());
+	}
+}
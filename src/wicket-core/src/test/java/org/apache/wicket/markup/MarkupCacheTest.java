@@ -16,10 +16,14 @@
  */
 package org.apache.wicket.markup;
 
+import java.util.Iterator;
+
 import org.apache.wicket.Application;
 import org.apache.wicket.MarkupContainer;
 import org.apache.wicket.WicketTestCase;
+import org.apache.wicket.markup.MarkupCache.BoundedCacheImplementation;
 import org.apache.wicket.markup.html.panel.Panel;
+import org.apache.wicket.util.lang.Bytes;
 import org.apache.wicket.util.resource.IResourceStream;
 import org.junit.Before;
 import org.junit.Test;
@@ -86,6 +90,92 @@ public class MarkupCacheTest extends WicketTestCase
 		assertNull(markup);
 	}
 
+	/**
+	 * Lookups, loads and evictions are counted
+	 */
+	@Test
+	public void statistics()
+	{
+		tester.startPage(MarkupInheritanceExtension_1.class);
+		long misses = cache.getMissCount();
+		long loads = cache.getLoadCount();
+		assertTrue(misses > 0);
+		assertTrue(loads > 0);
+		assertEquals(0, cache.getEvictionCount());
+
+		long hits = cache.getHitCount();
+		tester.startPage(MarkupInheritanceExtension_1.class);
+		assertTrue(cache.getHitCount() > hits);
+		assertEquals(misses, cache.getMissCount());
+		assertEquals(loads, cache.getLoadCount());
+	}
+
+	/**
+	 * The markup is evicted from a bounded cache and loaded again when it is needed
+	 */
+	@Test
+	public void boundedMarkupCache()
+	{
+		Application.get().getMarkupSettings().setMarkupCacheMaxSize(Bytes.bytes(1));
+		cache = new MarkupCache();
+
+		tester.startPage(MarkupInheritanceExtension_1.class);
+		tester.assertRenderedPage(MarkupInheritanceExtension_1.class);
+		assertTrue(cache.getEvictionCount() > 0);
+		long loads = cache.getLoadCount();
+
+		tester.startPage(MarkupInheritanceExtension_1.class);
+		tester.assertRenderedPage(MarkupInheritanceExtension_1.class);
+		assertTrue(cache.getLoadCount() > loads);
+	}
+
+	/**
+	 * Entries which have been used survive entries which have been put later but not used
+	 */
+	@Test
+	public void boundedCacheImplementation()
+	{
+		BoundedCacheImplementation<String, String> bounded = new BoundedCacheImplementation<String, String>(
+			Bytes.bytes(3))
+		{
+			@Override
+			protected long weigh(String key, String value)
+			{
+				return 1;
+			}
+		};
+		bounded.put("a", "1");
+		bounded.put("b", "2");
+		bounded.put("c", "3");
+		assertEquals("1", bounded.get("a"));
+
+		bounded.put("d", "4");
+		assertEquals(3, bounded.size());
+		assertEquals(1, bounded.getEvictionCount());
+		assertEquals(3, bounded.getSize().bytes());
+		assertTrue(bounded.containsKey("a"));
+		assertFalse(bounded.containsKey("b"));
+
+		// replacing an entry does not add its weight twice
+		bounded.put("d", "5");
+		assertEquals("5", bounded.get("d"));
+		assertEquals(3, bounded.getSize().bytes());
+
+		assertTrue(bounded.remove("c"));
+		assertFalse(bounded.remove("c"));
+		assertEquals(2, bounded.getSize().bytes());
+
+		Iterator<String> values = bounded.getValues().iterator();
+		values.next();
+		values.remove();
+		assertEquals(1, bounded.size());
+		assertEquals(1, bounded.getSize().bytes());
+
+		bounded.clear();
+		assertEquals(0, bounded.size());
+		assertEquals(0, bounded.getSize().bytes());
+	}
+
 	private static class MarkupCachingAssumingComponent extends Panel
 		implements
 			IMarkupResourceStreamProvider
@@ -31,8 +31,10 @@ import org.apache.wicket.markup.parser.filter.WicketTagIdentifier;
 import org.apache.wicket.settings.IMarkupSettings;
 import org.apache.wicket.util.resource.IResourceStream;
 import org.apache.wicket.util.resource.ResourceStreamNotFoundException;
+import org.apache.wicket.util.resource.StringResourceStream;
 import org.apache.wicket.util.resource.locator.IResourceStreamLocator;
 import org.apache.wicket.util.resource.locator.ResourceStreamLocator;
+import org.apache.wicket.util.string.PreEncodedText;
 import org.apache.wicket.util.string.StringValueConversionException;
 import org.junit.Test;
 import org.slf4j.Logger;
@@ -653,4 +655,27 @@ public final class MarkupParserTest extends WicketTestCase
 			tester.getApplication().getMarkupSettings().setStripComments(stripComments);
 		}
 	}
+
+	/**
+	 * Adjacent raw markup is merged and pre-encoded if enabled in the markup settings
+	 */
+	@Test
+	public void preEncodeRawMarkup()
+	{
+		tester.getApplication().getMarkupSettings().setPreEncodeRawMarkup(true);
+
+		Markup markup = new Markup(new MarkupResourceStream(new StringResourceStream("")));
+		markup.addMarkupElement(new RawMarkup("<p>"));
+		markup.addMarkupElement(new RawMarkup("text"));
+		markup.addMarkupElement(new ComponentTag("span", TagType.OPEN_CLOSE));
+		markup.addMarkupElement(new RawMarkup("</p>"));
+		markup.makeImmutable();
+
+		assertEquals(3, markup.size());
+		assertEquals("<p>text", markup.get(0).toString());
+		assertTrue(markup.get(0).toCharSequence() instanceof PreEncodedText);
+		assertTrue(markup.get(1) instanceof ComponentTag);
+		assertEquals("</p>", markup.get(2).toString());
+		assertTrue(markup.get(2).toCharSequence() instanceof PreEncodedText);
+	}
 }
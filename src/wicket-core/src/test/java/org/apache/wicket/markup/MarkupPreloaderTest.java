@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.wicket.WicketTestCase;
+import org.apache.wicket.markup.html.panel.PanelPage_3;
+import org.apache.wicket.markup.parser.AbstractMarkupFilter;
+import org.apache.wicket.protocol.http.WebApplication;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link MarkupPreloader} and for concurrent loading in {@link MarkupCache}
+ */
+public class MarkupPreloaderTest extends WicketTestCase
+{
+	/** the number of parsed markup files */
+	private final AtomicInteger parsed = new AtomicInteger();
+
+	/** how long parsing a markup file takes */
+	private volatile long parseMillis;
+
+	/**
+	 *
+	 */
+	@Before
+	public void before()
+	{
+		tester.getApplication().getMarkupSettings().setMarkupFactory(new MarkupFactory()
+		{
+			@Override
+			public MarkupParser newMarkupParser(final MarkupResourceStream resource)
+			{
+				MarkupParser parser = super.newMarkupParser(resource);
+				parser.add(new ParseCounter());
+				return parser;
+			}
+		});
+	}
+
+	/**
+	 * The markup of the mounted pages and their panels is cached after preloading
+	 */
+	@Test
+	public void preloadMountedPages()
+	{
+		WebApplication application = tester.getApplication();
+		application.mountPage("/panel", PanelPage_3.class);
+		application.mountPage("/inherited", MarkupInheritanceExtension_1.class);
+
+		Locale locale = tester.getSession().getLocale();
+		int pages = new MarkupPreloader(application).addMountedPages()
+			.setLocales(locale)
+			.setThreads(2)
+			.preload();
+		assertEquals(3, pages);
+
+		// the home page, the page with the panel, the panel, the page and its base page
+		int preloaded = parsed.get();
+		assertEquals(5, preloaded);
+
+		tester.startPage(PanelPage_3.class);
+		tester.assertRenderedPage(PanelPage_3.class);
+		tester.startPage(MarkupInheritanceExtension_1.class);
+		tester.assertRenderedPage(MarkupInheritanceExtension_1.class);
+		assertEquals(preloaded, parsed.get());
+	}
+
+	/**
+	 * Concurrent requests for the same markup share a single load
+	 */
+	@Test
+	public void loadOnce()
+	{
+		parseMillis = 200;
+
+		Locale locale = tester.getSession().getLocale();
+		int pages = new MarkupPreloader(tester.getApplication()).addPage(PanelPage_3.class)
+			.setLocales(locale, locale, locale)
+			.setThreads(3)
+			.preload();
+		assertEquals(3, pages);
+
+		// the page and the panel
+		assertEquals(2, parsed.get());
+	}
+
+	/**
+	 * Counts the parsed markup files
+	 */
+	private class ParseCounter extends AbstractMarkupFilter
+	{
+		private boolean counted;
+
+		@Override
+		protected MarkupElement onComponentTag(final ComponentTag tag)
+		{
+			if (counted == false)
+			{
+				counted = true;
+				parsed.incrementAndGet();
+				if (parseMillis > 0)
+				{
+					try
+					{
+						Thread.sleep(parseMillis);
+					}
+					catch (InterruptedException e)
+					{
+						Thread.currentThread().interrupt();
+					}
+				}
+			}
+			return tag;
+		}
+	}
+}
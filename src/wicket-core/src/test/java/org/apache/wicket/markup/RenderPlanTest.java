@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup;
+
+import org.apache.wicket.MarkupContainer;
+import org.apache.wicket.WicketTestCase;
+import org.apache.wicket.markup.html.WebPage;
+import org.apache.wicket.markup.html.basic.Label;
+import org.apache.wicket.markup.html.border.BorderRenderWrappedTestPage_1;
+import org.apache.wicket.markup.html.list.IncrementalTableNavigationPage;
+import org.apache.wicket.util.resource.IResourceStream;
+import org.apache.wicket.util.resource.StringResourceStream;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link RenderPlan}
+ */
+public class RenderPlanTest extends WicketTestCase
+{
+	/**
+	 * 
+	 */
+	@Before
+	public void before()
+	{
+		tester.getApplication().getMarkupSettings().setCacheRenderPlans(true);
+	}
+
+	/**
+	 * The plan contains the raw markup and the tags of the children, their bodies are skipped
+	 */
+	@Test
+	public void plan()
+	{
+		Markup markup = Markup.of("<div wicket:id=\"a\"><span>x</span></div><p>y</p><span wicket:id=\"b\"/>");
+		// <div>, <span>x</span>, </div>, <p>y</p>, <span>, </span>
+		assertEquals(6, markup.size());
+
+		RenderPlan plan = markup.getRenderPlan(0);
+		assertSame(plan, markup.getRenderPlan(0));
+		assertEquals(3, plan.size());
+		assertEquals(0, plan.getOffset(0));
+		assertTrue(plan.isComponent(0));
+		assertEquals(3, plan.getOffset(1));
+		assertFalse(plan.isComponent(1));
+		assertEquals(4, plan.getOffset(2));
+		assertTrue(plan.isComponent(2));
+		assertEquals(6, plan.getEnd());
+
+		// the body of <div> ends at its close tag
+		plan = markup.getRenderPlan(1);
+		assertEquals(1, plan.size());
+		assertFalse(plan.isComponent(0));
+		assertEquals(1, plan.getEnd());
+	}
+
+	/**
+	 * Mutable markup has no plans
+	 */
+	@Test
+	public void mutableMarkup()
+	{
+		Markup markup = new Markup(new MarkupResourceStream(new StringResourceStream("")));
+		markup.addMarkupElement(new RawMarkup("text"));
+		assertNull(markup.getRenderPlan(0));
+
+		markup.makeImmutable();
+		assertNotNull(markup.getRenderPlan(0));
+	}
+
+	/**
+	 * A border renders the same with plans
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void renderBorder() throws Exception
+	{
+		tester.executeTest(BorderRenderWrappedTestPage_1.class, BorderRenderWrappedTestPage_1.class,
+			"BorderRenderWrappedTestPage_ExpectedResult_1.html");
+	}
+
+	/**
+	 * A list view renders the same with plans
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void renderListView() throws Exception
+	{
+		tester.executeTest(IncrementalTableNavigationPage.class,
+			IncrementalTableNavigationPage.class, "IncrementalTableNavigationPage_ExpectedResult_1.html");
+	}
+
+	/**
+	 * Inherited markup renders the same with plans
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void renderInheritedMarkup() throws Exception
+	{
+		executeTest(MarkupInheritanceExtension_1.class, "MarkupInheritanceExpectedResult_1.html");
+	}
+
+	/**
+	 * The plan does not contain the components, so changing them changes the output
+	 */
+	@Test
+	public void hierarchyChange()
+	{
+		PlanPage page = new PlanPage();
+		tester.startPage(page);
+		tester.assertContains("<span wicket:id=\"label\">first</span>");
+
+		page.replace(new Label("label", "second"));
+		tester.startPage(page);
+		tester.assertContains("<span wicket:id=\"label\">second</span>");
+
+		page.get("label").setVisible(false);
+		tester.startPage(page);
+		tester.assertContainsNot("second");
+		tester.assertContains("<p>after</p>");
+	}
+
+	/** */
+	public static class PlanPage extends WebPage implements IMarkupResourceStreamProvider
+	{
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Construct.
+		 */
+		public PlanPage()
+		{
+			add(new Label("label", "first"));
+		}
+
+		public IResourceStream getMarkupResourceStream(MarkupContainer container,
+			Class<?> containerClass)
+		{
+			return new StringResourceStream(
+				"<html><body><span wicket:id=\"label\">text</span><p>after</p></body></html>");
+		}
+	}
+}
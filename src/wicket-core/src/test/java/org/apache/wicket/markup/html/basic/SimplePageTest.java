@@ -47,6 +47,18 @@ public class SimplePageTest extends WicketTestCase
 		executeTest(SimplePage.class, "SimplePageExpectedResult.html");
 	}
 
+	/**
+	 * The page renders the same with pre-encoded raw markup
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void renderHomePagePreEncoded() throws Exception
+	{
+		tester.getApplication().getMarkupSettings().setPreEncodeRawMarkup(true);
+		executeTest(SimplePage.class, "SimplePageExpectedResult.html");
+	}
+
 	/**
 	 * @throws Exception
 	 */
@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup.loader;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.wicket.Page;
+import org.apache.wicket.WicketTestCase;
+import org.apache.wicket.markup.ComponentTag;
+import org.apache.wicket.markup.MarkupElement;
+import org.apache.wicket.markup.MarkupFactory;
+import org.apache.wicket.markup.MarkupInheritanceExtension_1;
+import org.apache.wicket.markup.MarkupParser;
+import org.apache.wicket.markup.MarkupResourceStream;
+import org.apache.wicket.markup.parser.AbstractMarkupFilter;
+import org.apache.wicket.util.file.Files;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link CompiledMarkupLoader}
+ */
+public class CompiledMarkupLoaderTest extends WicketTestCase
+{
+	private File folder;
+
+	/** the number of parsed markup files */
+	private int parsed;
+
+	/**
+	 * @throws IOException
+	 */
+	@Before
+	public void before() throws IOException
+	{
+		File tmp = File.createTempFile("markup", null);
+		Files.remove(tmp);
+		folder = tmp;
+
+		tester.getApplication().getMarkupSettings().setMarkupFactory(new MarkupFactory()
+		{
+			@Override
+			public IMarkupLoader getMarkupLoader()
+			{
+				return new DefaultMarkupLoader(new CompiledMarkupLoader(folder));
+			}
+
+			@Override
+			public MarkupParser newMarkupParser(final MarkupResourceStream resource)
+			{
+				MarkupParser parser = super.newMarkupParser(resource);
+				parser.add(new ParseCounter());
+				return parser;
+			}
+		});
+	}
+
+	/**
+	 *
+	 */
+	@After
+	public void after()
+	{
+		Files.removeFolder(folder);
+	}
+
+	private String render(Class<? extends Page> pageClass)
+	{
+		MarkupFactory.get().getMarkupCache().clear();
+		tester.startPage(pageClass);
+		tester.assertRenderedPage(pageClass);
+		return tester.getLastResponseAsString();
+	}
+
+	/**
+	 * The markup is parsed once, later it is read from the compiled markup and renders the same
+	 */
+	@Test
+	public void loadCompiledMarkup()
+	{
+		String parsedPage = render(CompiledMarkupPage.class);
+		assertEquals(1, parsed);
+		assertEquals(1, folder.list().length);
+		assertTrue(parsedPage.contains("title=\"Compiled title\""));
+		assertFalse(parsedPage.contains("enclosed"));
+
+		String compiledPage = render(CompiledMarkupPage.class);
+		assertEquals(1, parsed);
+		assertEquals(parsedPage, compiledPage);
+
+		// inherited markup is merged after loading the compiled markup
+		String parsedInheritance = render(MarkupInheritanceExtension_1.class);
+		assertEquals(3, parsed);
+		assertEquals(parsedInheritance, render(MarkupInheritanceExtension_1.class));
+		assertEquals(3, parsed);
+	}
+
+	/**
+	 * Changes of the settings which influence the parsed markup make the compiled markup outdated
+	 */
+	@Test
+	public void outdatedCompiledMarkup()
+	{
+		render(CompiledMarkupPage.class);
+		assertEquals(1, parsed);
+
+		tester.getApplication().getMarkupSettings().setStripComments(true);
+		String page = render(CompiledMarkupPage.class);
+		assertEquals(2, parsed);
+		assertFalse(page.contains("a comment"));
+
+		assertEquals(page, render(CompiledMarkupPage.class));
+		assertEquals(2, parsed);
+	}
+
+	/**
+	 * Counts the parsed markup files
+	 */
+	private class ParseCounter extends AbstractMarkupFilter
+	{
+		private boolean counted;
+
+		@Override
+		protected MarkupElement onComponentTag(final ComponentTag tag)
+		{
+			if (counted == false)
+			{
+				counted = true;
+				parsed++;
+			}
+			return tag;
+		}
+	}
+}
@@ -0,0 +1,202 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup.parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.text.ParseException;
+
+import org.apache.wicket.markup.parser.IXmlPullParser.HttpTagType;
+import org.apache.wicket.util.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link CharArrayXmlPullParser}, which must produce the same elements as
+ * {@link XmlPullParser}.
+ */
+public class CharArrayXmlPullParserTest extends Assert
+{
+	/**
+	 * Tags, attributes, bodies and special tags
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void elements() throws Exception
+	{
+		assertSameElements("This is a text");
+		assertSameElements("<tag/><tag ></tag ><Wicket:Panel wicket:id=\"a\">body</wicket:panel>");
+		assertSameElements("<a href=\"foo.html?a=1&amp;b=2\" class='x' disabled>link</a>");
+		assertSameElements("<tag attr= \" 1234 \"  test=23 xmlns:wicket=http://wicket.apache.org/>");
+		assertSameElements("<tag a=\"x>y\" b='it\\'s' c=\"<\" ==junk d />");
+		assertSameElements("<input value=\"\" a-b:c=1 _x.y=2>\n<br/>");
+		assertSameElements("<!DOCTYPE html><?xml version=\"1.0\"?><!-- comment <b> -->text");
+		assertSameElements("<!--[if IE]><a href='test.html'>my link</a><![endif]-->");
+		assertSameElements("<!--[if (gt IE9)|!(IE)]><!--><p>x</p><!--<![endif]-->");
+		assertSameElements("<![CDATA[ a < b > c ]]><!ELEMENT x>");
+		assertSameElements("<script>if (a < b) { x = '</b>'; }</script><style type='text/css'>a>b{}</style>");
+		assertSameElements("<SCRIPT language=\"JavaScript\">a<b</SCRIPT>tail");
+	}
+
+	/**
+	 * Malformed markup fails the same way
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void errors() throws Exception
+	{
+		assertSameElements("<>");
+		assertSameElements("<a");
+		assertSameElements("< a>");
+		assertSameElements("<a href=\"x>");
+		assertSameElements("<a b=1 b=2>");
+		assertSameElements("<!-- not closed");
+		assertSameElements("<script>not closed");
+		assertSameElements("<![CDATA[ not closed >");
+	}
+
+	/**
+	 * All the markup of the tests is parsed the same
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testMarkup() throws Exception
+	{
+		File root = new File(getClass().getResource("/org/apache/wicket").toURI());
+		assertTrue(assertSameElements(root) > 100);
+	}
+
+	private int assertSameElements(final File dir) throws Exception
+	{
+		int count = 0;
+		for (File file : dir.listFiles())
+		{
+			if (file.isDirectory())
+			{
+				count += assertSameElements(file);
+			}
+			else if (file.getName().endsWith(".html"))
+			{
+				assertSameElements(read(file));
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private static byte[] read(final File file) throws IOException
+	{
+		FileInputStream in = new FileInputStream(file);
+		try
+		{
+			return IOUtils.toByteArray(in);
+		}
+		finally
+		{
+			IOUtils.closeQuietly(in);
+		}
+	}
+
+	private static int lineNumber(final String markup, final int pos)
+	{
+		int line = 1;
+		for (int i = 0; i < pos; i++)
+		{
+			if (markup.charAt(i) == '\n')
+			{
+				line++;
+			}
+		}
+		return line;
+	}
+
+	private static void assertSameElements(final String markup) throws Exception
+	{
+		assertSameElements(markup.getBytes("UTF-8"));
+	}
+
+	private static void assertSameElements(final byte[] markup) throws Exception
+	{
+		XmlPullParser expected = new XmlPullParser();
+		expected.parse(new ByteArrayInputStream(markup), "UTF-8");
+		CharArrayXmlPullParser actual = new CharArrayXmlPullParser();
+		actual.parse(new ByteArrayInputStream(markup), "UTF-8");
+		String context = new String(markup, "UTF-8");
+
+		while (true)
+		{
+			HttpTagType expectedType;
+			try
+			{
+				expectedType = expected.next();
+			}
+			catch (ParseException e)
+			{
+				try
+				{
+					actual.next();
+					fail("Expected '" + e.getMessage() + "' for " + context);
+				}
+				catch (ParseException e2)
+				{
+					assertEquals(context, e.getMessage(), e2.getMessage());
+				}
+				break;
+			}
+
+			assertEquals(context, expectedType, actual.next());
+			if (expectedType == HttpTagType.NOT_INITIALIZED)
+			{
+				break;
+			}
+			assertEquals(context, expected.getString().toString(), actual.getString().toString());
+
+			if (expectedType != HttpTagType.BODY)
+			{
+				XmlTag expectedTag = expected.getElement();
+				XmlTag actualTag = actual.getElement();
+				assertEquals(context, expectedTag.getName(), actualTag.getName());
+				assertEquals(context, expectedTag.getNamespace(), actualTag.getNamespace());
+				assertEquals(context, expectedTag.getType(), actualTag.getType());
+				assertEquals(context, expectedTag.getPos(), actualTag.getPos());
+				// XmlPullParser reports the line of the first quote in the tag
+				assertEquals(context, lineNumber(actual.toString(), actualTag.getPos()),
+					actualTag.getLineNumber());
+				assertEquals(context, expectedTag.getAttributes(), actualTag.getAttributes());
+				assertEquals(context, expectedTag.toCharSequence().toString(),
+					actualTag.toCharSequence().toString());
+
+				assertEquals(context,
+					expected.getInputFromPositionMarker(expectedTag.getPos()).toString(),
+					actual.getInputFromPositionMarker(actualTag.getPos()).toString());
+				expected.setPositionMarker();
+				actual.setPositionMarker();
+			}
+		}
+
+		assertEquals(context, expected.getInputFromPositionMarker(-1).toString(),
+			actual.getInputFromPositionMarker(-1).toString());
+		assertEquals(context, expected.getEncoding(), actual.getEncoding());
+		assertEquals(context, String.valueOf(expected.getDoctype()),
+			String.valueOf(actual.getDoctype()));
+	}
+}
@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup.parser;
+
+import org.apache.wicket.util.value.CompactValueMap;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link XmlTag}
+ */
+public class XmlTagTest extends Assert
+{
+	private static XmlTag parse(String markup) throws Exception
+	{
+		XmlPullParser parser = new XmlPullParser();
+		parser.parse(markup);
+		return parser.nextTag();
+	}
+
+	/**
+	 * Immutable tags keep their attributes in a compact map
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void immutableAttributes() throws Exception
+	{
+		XmlTag tag = parse("<div class=\"a\" wicket:id=\"b\" disabled>");
+		tag.makeImmutable();
+
+		assertTrue(tag.getAttributes() instanceof CompactValueMap);
+		assertEquals(3, tag.getAttributes().size());
+		assertEquals("a", tag.getAttribute("class"));
+		assertTrue(tag.getAttributes().containsKey("disabled"));
+		assertEquals("<div class=\"a\" wicket:id=\"b\" disabled=\"\">",
+			tag.toCharSequence().toString());
+
+		try
+		{
+			tag.put("class", "c");
+			fail();
+		}
+		catch (UnsupportedOperationException expected)
+		{
+			// expected
+		}
+	}
+
+	/**
+	 * A mutable copy shares the attributes of the immutable tag until they are changed
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void copyOnWrite() throws Exception
+	{
+		XmlTag tag = parse("<div class=\"a\" id=\"b\">");
+		tag.makeImmutable();
+
+		XmlTag copy = tag.mutable();
+		assertNotSame(tag, copy);
+		assertEquals("a", copy.getAttribute("class"));
+		assertTrue(copy.hasAttributes());
+		assertEquals("<div class=\"a\" id=\"b\">", copy.toCharSequence().toString());
+
+		copy.put("class", "c");
+		copy.remove("id");
+		assertFalse(copy.getAttributes().isImmutable());
+		assertEquals("<div class=\"c\">", copy.toCharSequence().toString());
+		assertEquals("<div class=\"a\" id=\"b\">", tag.toCharSequence().toString());
+		assertSame(copy, copy.mutable());
+
+		XmlTag otherCopy = tag.mutable();
+		assertEquals("a", otherCopy.getAttribute("class"));
+		assertTrue(otherCopy.closes(tag) == false);
+		assertTrue(tag.equalTo(otherCopy));
+		assertFalse(tag.equalTo(copy));
+	}
+}
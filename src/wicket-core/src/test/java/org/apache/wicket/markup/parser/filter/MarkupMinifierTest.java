@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup.parser.filter;
+
+import org.apache.wicket.WicketTestCase;
+import org.apache.wicket.css.ICssCompressor;
+import org.apache.wicket.javascript.DefaultJavaScriptCompressor;
+import org.apache.wicket.markup.Markup;
+import org.apache.wicket.markup.MarkupParser;
+import org.junit.Test;
+
+/**
+ * Tests for {@link MarkupMinifier}
+ */
+public class MarkupMinifierTest extends WicketTestCase
+{
+	private String minify(String markup) throws Exception
+	{
+		tester.getApplication().getMarkupSettings().setMinifyMarkup(true);
+		Markup parsed = new MarkupParser(markup).parse();
+		return parsed.toString(true);
+	}
+
+	/**
+	 * Whitespace is collapsed and comments are removed outside of tags
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void whitespaceAndComments() throws Exception
+	{
+		assertEquals("<div class=\"a  b\" title=' x '>\n<b>text with spaces</b> <i>x</i>\n</div>",
+			minify("<div class=\"a  b\" title=' x '>\n\n  <b>text   with\tspaces</b>  <i>x</i>\n" +
+				"<!-- a comment -->\n</div>"));
+	}
+
+	/**
+	 * Conditional comments are kept
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void conditionalComments() throws Exception
+	{
+		String markup = "<!--[if IE]><p>ie</p><![endif]--><!--[if !IE]><!--><p>other</p><!--<![endif]-->";
+		assertEquals(markup, minify(markup));
+	}
+
+	/**
+	 * The content of pre and textarea elements is not changed, even if it contains components
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void preAndTextarea() throws Exception
+	{
+		assertEquals(
+			"<p> a </p><pre>  x\n\n <span wicket:id=\"label\"></span>  <!-- c -->\n</pre>\n<p> b </p>" +
+				"<textarea>  y  </textarea>",
+			minify("<p>  a  </p><pre>  x\n\n <span wicket:id=\"label\"></span>  <!-- c -->\n</pre>\n\n" +
+				"<p>  b  </p><textarea>  y  </textarea>"));
+	}
+
+	/**
+	 * The bodies of inline scripts and styles are compressed
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void scriptsAndStyles() throws Exception
+	{
+		tester.getApplication()
+			.getResourceSettings()
+			.setJavaScriptCompressor(new DefaultJavaScriptCompressor());
+		tester.getApplication().getResourceSettings().setCssCompressor(new ICssCompressor()
+		{
+			public String compress(String original)
+			{
+				return original.replaceAll("\\s+", "");
+			}
+		});
+
+		String minified = minify("<script>\n  // comment\n  var a  =  1;\n</script>\n" +
+			"<style type=\"text/css\">\n  p { color: red; }\n</style>\n" +
+			"<script type=\"text/template\">  <b>  x  </b>  </script>\n" +
+			"<script><!--\n  var b;\n//--></script>");
+		assertEquals("<script>\n/*<![CDATA[*/\nvar a = 1;\n/*]]>*/\n" +
+			"</script>\n<style type=\"text/css\">\n/*<![CDATA[*/\np{color:red;}\n/*]]>*/\n" +
+			"</style>\n<script type=\"text/template\">  <b>  x  </b>  </script>\n" +
+			"<script><!--\n  var b;\n//--></script>", minified);
+	}
+
+	/**
+	 * Markup is not minified by default
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void disabled() throws Exception
+	{
+		String markup = "<p>  a  <!-- c --></p>";
+		assertEquals(markup, new MarkupParser(markup).parse().toString(true));
+	}
+}
@@ -107,6 +107,78 @@ public class PageAccessSynchronizerTest extends Assert
 		assertTrue(!t2locks[0].before(t1locks[0].add(hold)));
 	}
 
+	/**
+	 * Shared locks do not block each other, but exclusive ones
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testSharedLocks() throws Exception
+	{
+		final PageAccessSynchronizer sync = new PageAccessSynchronizer(Duration.milliseconds(500));
+		final boolean[] locked = new boolean[2];
+
+		class Locker extends Thread
+		{
+			private final int index;
+
+			private final boolean shared;
+
+			Locker(int index, boolean shared)
+			{
+				this.index = index;
+				this.shared = shared;
+			}
+
+			@Override
+			public void run()
+			{
+				try
+				{
+					sync.lockPage(1, shared);
+					locked[index] = true;
+					sync.unlockAllPages();
+				}
+				catch (CouldNotLockPageException e)
+				{
+					locked[index] = false;
+				}
+			}
+		}
+
+		sync.lockPage(1, true);
+		assertTrue(sync.getLocks().get().get(1).isShared());
+
+		Locker sharedLocker = new Locker(0, true);
+		sharedLocker.start();
+		sharedLocker.join();
+		assertTrue(locked[0]);
+
+		Locker exclusiveLocker = new Locker(1, false);
+		exclusiveLocker.start();
+		exclusiveLocker.join();
+		assertFalse(locked[1]);
+
+		// a thread holding a shared lock holds it already, but can not acquire the exclusive lock
+		sync.lockPage(1, true);
+		try
+		{
+			sync.lockPage(1);
+			fail();
+		}
+		catch (IllegalStateException expected)
+		{
+		}
+		sync.unlockAllPages();
+		assertNull(sync.getLocks().get().get(1));
+
+		exclusiveLocker = new Locker(1, false);
+		exclusiveLocker.start();
+		exclusiveLocker.join();
+		assertTrue(locked[1]);
+		assertNull(sync.getLocks().get().get(1));
+	}
+
 	/**
 	 * @param pages
 	 * @param workers
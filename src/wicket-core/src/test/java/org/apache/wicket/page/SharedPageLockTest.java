@@ -0,0 +1,305 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.page;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.wicket.IPageManagerProvider;
+import org.apache.wicket.IRequestListener;
+import org.apache.wicket.MarkupContainer;
+import org.apache.wicket.RequestListenerInterface;
+import org.apache.wicket.ThreadContext;
+import org.apache.wicket.WicketTestCase;
+import org.apache.wicket.markup.IMarkupResourceStreamProvider;
+import org.apache.wicket.markup.html.WebMarkupContainer;
+import org.apache.wicket.markup.html.WebPage;
+import org.apache.wicket.pageStore.DefaultPageStore;
+import org.apache.wicket.pageStore.IPageStore;
+import org.apache.wicket.protocol.http.WebApplication;
+import org.apache.wicket.protocol.http.mock.MockHttpServletRequest;
+import org.apache.wicket.protocol.http.mock.MockHttpServletResponse;
+import org.apache.wicket.protocol.http.servlet.ServletWebRequest;
+import org.apache.wicket.protocol.http.servlet.ServletWebResponse;
+import org.apache.wicket.request.Url;
+import org.apache.wicket.request.cycle.RequestCycle;
+import org.apache.wicket.request.handler.ListenerInterfaceRequestHandler;
+import org.apache.wicket.request.handler.PageAndComponentProvider;
+import org.apache.wicket.serialize.java.JavaSerializer;
+import org.apache.wicket.util.resource.IResourceStream;
+import org.apache.wicket.util.resource.StringResourceStream;
+import org.apache.wicket.util.tester.WicketTester;
+import org.apache.wicket.versioning.InMemoryPageStore;
+import org.junit.Test;
+
+/**
+ * Tests for listener interfaces which lock their page in shared mode
+ */
+public class SharedPageLockTest extends WicketTestCase
+{
+	/** the number of requests which are invoking the listener at once */
+	private static CountDownLatch invoking;
+
+	/** the number of threads detaching the page at once */
+	private static final AtomicInteger detaching = new AtomicInteger();
+
+	/** the maximum number of threads which have been detaching the page at once */
+	private static final AtomicInteger maxDetaching = new AtomicInteger();
+
+	private final AtomicInteger storeCount = new AtomicInteger();
+
+	@Override
+	protected WicketTester newWicketTester(final WebApplication app)
+	{
+		return new WicketTester(app)
+		{
+			@Override
+			protected IPageManagerProvider newTestPageManagerProvider()
+			{
+				return new IPageManagerProvider()
+				{
+					public IPageManager get(IPageManagerContext pageManagerContext)
+					{
+						IPageStore pageStore = new DefaultPageStore(new JavaSerializer(
+							app.getApplicationKey()), new InMemoryPageStore()
+						{
+							@Override
+							public synchronized void storeData(String sessionId, int pageId,
+								byte[] pageAsBytes)
+							{
+								super.storeData(sessionId, pageId, pageAsBytes);
+								storeCount.incrementAndGet();
+							}
+						}, 4);
+						return new PageStoreManager(app.getName(), pageStore, pageManagerContext);
+					}
+				};
+			}
+		};
+	}
+
+	/**
+	 * Two requests invoke a shared listener on the same page at once, but detach and store the page
+	 * one after the other.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void sharedListeners() throws Exception
+	{
+		SharedPage page = tester.startPage(SharedPage.class);
+		final Url url = tester.urlFor(new ListenerInterfaceRequestHandler(
+			new PageAndComponentProvider(page, page.get("shared")), ISharedListener.INTERFACE));
+
+		invoking = new CountDownLatch(2);
+		detaching.set(0);
+		maxDetaching.set(0);
+		int stored = storeCount.get();
+
+		final boolean[] invoked = new boolean[2];
+		final Throwable[] failures = new Throwable[2];
+		Thread[] threads = new Thread[2];
+		for (int i = 0; i < threads.length; i++)
+		{
+			final int index = i;
+			threads[i] = new Thread()
+			{
+				@Override
+				public void run()
+				{
+					try
+					{
+						invoked[index] = process(url);
+					}
+					catch (Throwable t)
+					{
+						failures[index] = t;
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for (Thread thread : threads)
+		{
+			thread.join();
+		}
+
+		for (int i = 0; i < threads.length; i++)
+		{
+			assertNull(failures[i]);
+			assertTrue(invoked[i]);
+		}
+		assertEquals(0, invoking.getCount());
+		assertEquals(1, maxDetaching.get());
+		assertEquals(stored + 2, storeCount.get());
+	}
+
+	/**
+	 * A shared lock can not be combined with rendering the page after invocation
+	 */
+	@Test
+	public void sharedLockRejectsRendering()
+	{
+		try
+		{
+			IRenderingListener.INTERFACE.setSharedPageLock(true);
+			fail();
+		}
+		catch (IllegalStateException expected)
+		{
+		}
+
+		try
+		{
+			ISharedListener.INTERFACE.setRenderPageAfterInvocation(true);
+			fail();
+		}
+		catch (IllegalStateException expected)
+		{
+		}
+	}
+
+	/**
+	 * Processes a request in the current thread, as the tester processes its requests in the test
+	 * thread only.
+	 * 
+	 * @param url
+	 * @return whether the other request invoked the listener at the same time
+	 */
+	private boolean process(final Url url)
+	{
+		WebApplication application = tester.getApplication();
+		ThreadContext.setApplication(application);
+		try
+		{
+			MockHttpServletRequest request = new MockHttpServletRequest(application,
+				tester.getHttpSession(), tester.getServletContext());
+			request.setUrl(url);
+			ServletWebRequest webRequest = new ServletWebRequest(request, request.getFilterPrefix());
+			RequestCycle requestCycle = application.createRequestCycle(webRequest,
+				new ServletWebResponse(webRequest, new MockHttpServletResponse(request)));
+			requestCycle.processRequestAndDetach();
+
+			return invoking.getCount() == 0;
+		}
+		finally
+		{
+			ThreadContext.detach();
+		}
+	}
+
+	/**
+	 * A listener interface which locks its page in shared mode
+	 */
+	public static interface ISharedListener extends IRequestListener
+	{
+		/** the listener interface */
+		RequestListenerInterface INTERFACE = new RequestListenerInterface(ISharedListener.class).setRenderPageAfterInvocation(
+			false)
+			.setSharedPageLock(true);
+
+		/**
+		 * Called when invoked
+		 */
+		void onShared();
+	}
+
+	/**
+	 * A listener interface which renders its page after invocation
+	 */
+	public static interface IRenderingListener extends IRequestListener
+	{
+		/** the listener interface */
+		RequestListenerInterface INTERFACE = new RequestListenerInterface(IRenderingListener.class);
+
+		/**
+		 * Called when invoked
+		 */
+		void onRendering();
+	}
+
+	/**
+	 * A page with a shared listener, which records how many threads are detaching it at once
+	 */
+	public static class SharedPage extends WebPage implements IMarkupResourceStreamProvider
+	{
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Construct.
+		 */
+		public SharedPage()
+		{
+			setStatelessHint(false);
+			add(new SharedContainer("shared"));
+		}
+
+		@Override
+		protected void onDetach()
+		{
+			int current = detaching.incrementAndGet();
+			if (current > maxDetaching.get())
+			{
+				maxDetaching.set(current);
+			}
+			try
+			{
+				Thread.sleep(50);
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+			finally
+			{
+				detaching.decrementAndGet();
+			}
+			super.onDetach();
+		}
+
+		public IResourceStream getMarkupResourceStream(MarkupContainer container,
+			Class<?> containerClass)
+		{
+			return new StringResourceStream("<html><body><div wicket:id='shared'></div></body></html>");
+		}
+	}
+
+	private static class SharedContainer extends WebMarkupContainer implements ISharedListener
+	{
+		private static final long serialVersionUID = 1L;
+
+		private SharedContainer(String id)
+		{
+			super(id);
+		}
+
+		public void onShared()
+		{
+			invoking.countDown();
+			try
+			{
+				// both requests are in the listener at once
+				invoking.await(5, TimeUnit.SECONDS);
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+}
@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.page.persistent.disk;
+
+import java.util.List;
+import java.util.Random;
+
+import org.apache.wicket.pageStore.ConcurrentPageWindowManager;
+import org.apache.wicket.pageStore.IPageWindowManager;
+import org.apache.wicket.pageStore.PageWindowManager;
+import org.apache.wicket.pageStore.PageWindowManager.PageWindow;
+import org.apache.wicket.util.lang.WicketObjects;
+import org.junit.Test;
+
+/**
+ * Runs the tests of {@link PageWindowManagerTest} against {@link ConcurrentPageWindowManager} and
+ * checks that both allocate the windows the same way.
+ */
+public class ConcurrentPageWindowManagerTest extends PageWindowManagerTest
+{
+	@Override
+	protected IPageWindowManager newManager(long maxSize)
+	{
+		return new ConcurrentPageWindowManager(maxSize);
+	}
+
+	/**
+	 * Executes the same random operations on both managers
+	 */
+	@Test
+	public void sameWindowsAsPageWindowManager()
+	{
+		Random random = new Random(17);
+		IPageWindowManager expected = new PageWindowManager(1000);
+		IPageWindowManager actual = newManager(1000);
+
+		for (int i = 0; i < 20000; i++)
+		{
+			int pageId = random.nextInt(30);
+			if (random.nextInt(4) == 0)
+			{
+				expected.removePage(pageId);
+				actual.removePage(pageId);
+			}
+			else
+			{
+				int size = 1 + random.nextInt(200);
+				assertWindow(expected.createPageWindow(pageId, size),
+					actual.createPageWindow(pageId, size));
+			}
+
+			assertEquals(expected.getTotalSize(), actual.getTotalSize());
+			assertWindow(expected.getPageWindow(pageId), actual.getPageWindow(pageId));
+			assertWindows(expected.getLastPageWindows(10), actual.getLastPageWindows(10));
+		}
+	}
+
+	/**
+	 * The windows survive serialization
+	 */
+	@Test
+	public void serialize()
+	{
+		IPageWindowManager manager = newManager(100);
+		manager.createPageWindow(1, 30);
+		manager.createPageWindow(2, 30);
+		manager.createPageWindow(3, 30);
+		manager.createPageWindow(4, 30);
+		manager.createPageWindow(5, 20);
+
+		IPageWindowManager copy = (IPageWindowManager)WicketObjects.cloneObject(manager);
+
+		assertEquals(manager.getTotalSize(), copy.getTotalSize());
+		assertWindows(manager.getLastPageWindows(10), copy.getLastPageWindows(10));
+		assertWindow(manager.createPageWindow(6, 10), copy.createPageWindow(6, 10));
+	}
+
+	private void assertWindows(List<PageWindow> expected, List<PageWindow> actual)
+	{
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++)
+		{
+			assertWindow(expected.get(i), actual.get(i));
+		}
+	}
+
+	private void assertWindow(PageWindow expected, PageWindow actual)
+	{
+		if (expected == null)
+		{
+			assertNull(actual);
+		}
+		else
+		{
+			assertEquals(expected.getPageId(), actual.getPageId());
+			assertEquals(expected.getFilePartOffset(), actual.getFilePartOffset());
+			assertEquals(expected.getFilePartSize(), actual.getFilePartSize());
+		}
+	}
+}
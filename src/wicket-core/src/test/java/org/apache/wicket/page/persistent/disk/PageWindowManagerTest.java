@@ -21,6 +21,7 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
+import org.apache.wicket.pageStore.IPageWindowManager;
 import org.apache.wicket.pageStore.PageWindowManager;
 import org.apache.wicket.pageStore.PageWindowManager.PageWindow;
 import org.junit.Assert;
@@ -31,6 +32,15 @@ import org.junit.Test;
  */
 public class PageWindowManagerTest extends Assert
 {
+	/**
+	 * @param maxSize
+	 * @return the manager to test
+	 */
+	protected IPageWindowManager newManager(long maxSize)
+	{
+		return new PageWindowManager(maxSize);
+	}
+
 	/**
 	 * https://issues.apache.org/jira/browse/WICKET-4572
 	 */
@@ -42,7 +52,7 @@ public class PageWindowManagerTest extends Assert
 			page2id = 2;
 		int maxSize = 10;
 
-		PageWindowManager manager = new PageWindowManager(maxSize);
+		IPageWindowManager manager = newManager(maxSize);
 
 		// Add few pages.
 		// All of them fully occupy the max space in the pageWindowManager.
@@ -72,7 +82,7 @@ public class PageWindowManagerTest extends Assert
 	@Test
 	public void addRemove()
 	{
-		PageWindowManager manager = new PageWindowManager(300);
+		IPageWindowManager manager = newManager(300);
 		PageWindow window;
 
 		window = manager.createPageWindow(1, 50);
@@ -101,7 +111,7 @@ public class PageWindowManagerTest extends Assert
 	@Test
 	public void pageWindowCycle()
 	{
-		PageWindowManager manager = new PageWindowManager(100);
+		IPageWindowManager manager = newManager(100);
 		PageWindow window;
 
 		window = manager.createPageWindow(1, 30);
@@ -192,7 +202,7 @@ public class PageWindowManagerTest extends Assert
 	/** used to wait the executions */
 	private static final CountDownLatch LATCH = new CountDownLatch(EXECUTIONS);
 
-	private final PageWindowManager pageWindowManager = new PageWindowManager(1000L);
+	private final IPageWindowManager pageWindowManager = newManager(1000L);
 
 	/** the execution types */
 	private final Runnable[] TASKS = new Runnable[]
@@ -229,9 +239,9 @@ public class PageWindowManagerTest extends Assert
 		/** the ids for the stored/removed pages */
 		private static final int[] PAGE_IDS = new int[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10 };
 
-		protected final PageWindowManager pageWindowManager;
+		protected final IPageWindowManager pageWindowManager;
 
-		private AbstractTask(PageWindowManager pageWindowManager)
+		private AbstractTask(IPageWindowManager pageWindowManager)
 		{
 			this.pageWindowManager = pageWindowManager;
 		}
@@ -258,7 +268,7 @@ public class PageWindowManagerTest extends Assert
 
 	private static class CreatePageWindowTask extends AbstractTask
 	{
-		private CreatePageWindowTask(PageWindowManager pageWindowManager)
+		private CreatePageWindowTask(IPageWindowManager pageWindowManager)
 		{
 			super(pageWindowManager);
 		}
@@ -272,7 +282,7 @@ public class PageWindowManagerTest extends Assert
 
 	private static class GetPageWindowTask extends AbstractTask
 	{
-		private GetPageWindowTask(PageWindowManager pageWindowManager)
+		private GetPageWindowTask(IPageWindowManager pageWindowManager)
 		{
 			super(pageWindowManager);
 		}
@@ -286,7 +296,7 @@ public class PageWindowManagerTest extends Assert
 
 	private static class RemovePageInSessionTask extends AbstractTask
 	{
-		private RemovePageInSessionTask(PageWindowManager pageWindowManager)
+		private RemovePageInSessionTask(IPageWindowManager pageWindowManager)
 		{
 			super(pageWindowManager);
 		}
@@ -17,17 +17,23 @@
 package org.apache.wicket.pageStore;
 
 import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.wicket.versioning.InMemoryPageStore;
+import org.junit.Assert;
 import org.junit.Test;
 
 /**
  * Tests for {@link AsynchronousDataStore}
  */
-public class AsynchronousDataStoreTest
+public class AsynchronousDataStoreTest extends Assert
 {
 //	private static final IDataStore WRAPPED_DATA_STORE = new DiskDataStore("asyncDataStoreApp", new StoreSettings(null).getFileStoreFolder(), Bytes.kilobytes(1));
 	private static final IDataStore WRAPPED_DATA_STORE = new InMemoryPageStore();
@@ -77,6 +83,87 @@ public class AsynchronousDataStoreTest
 		DATA_STORE.destroy();
 	}
 
+	/**
+	 * The pages taken from the queue at once are written per session, superseded versions are
+	 * skipped
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void batching() throws Exception
+	{
+		BlockingBatchDataStore wrapped = new BlockingBatchDataStore();
+		AsynchronousDataStore store = new AsynchronousDataStore(wrapped, 100, 10);
+		try
+		{
+			// the saving thread blocks while writing the first page
+			store.storeData("s1", 1, new byte[] { 1 });
+			assertTrue(wrapped.writing.await(5, TimeUnit.SECONDS));
+
+			store.storeData("s1", 2, new byte[] { 2 });
+			store.storeData("s1", 3, new byte[] { 3 });
+			store.storeData("s1", 2, new byte[] { 4 });
+			store.storeData("s2", 1, new byte[] { 5 });
+
+			// the superseded version of page 2 has left the queue
+			assertEquals(3, store.getQueueSize());
+			assertEquals(1, store.getSkippedCount());
+			assertArrayEquals(new byte[] { 4 }, store.getData("s1", 2));
+
+			wrapped.release.countDown();
+			for (int i = 0; i < 100 && store.getStoredCount() < 4; i++)
+			{
+				Thread.sleep(50);
+			}
+
+			assertEquals(4, store.getStoredCount());
+			assertEquals(1, store.getSkippedCount());
+			assertEquals(0, store.getQueueSize());
+			assertEquals(Arrays.asList(3, 2), wrapped.batches);
+			assertArrayEquals(new byte[] { 4 }, store.getData("s1", 2));
+			assertArrayEquals(new byte[] { 3 }, store.getData("s1", 3));
+			assertArrayEquals(new byte[] { 5 }, store.getData("s2", 1));
+		}
+		finally
+		{
+			store.destroy();
+		}
+	}
+
+	private static class BlockingBatchDataStore extends InMemoryPageStore implements
+		IBatchDataStore
+	{
+		private final CountDownLatch writing = new CountDownLatch(1);
+
+		private final CountDownLatch release = new CountDownLatch(1);
+
+		private final List<Integer> batches = new ArrayList<Integer>();
+
+		@Override
+		public void storeData(String sessionId, int pageId, byte[] pageAsBytes)
+		{
+			writing.countDown();
+			try
+			{
+				release.await(5, TimeUnit.SECONDS);
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+			super.storeData(sessionId, pageId, pageAsBytes);
+		}
+
+		public void storeData(String sessionId, Map<Integer, byte[]> data)
+		{
+			for (Map.Entry<Integer, byte[]> page : data.entrySet())
+			{
+				batches.add(page.getKey());
+				super.storeData(sessionId, page.getKey(), page.getValue());
+			}
+		}
+	}
+
 	private static abstract class AbstractTask implements Runnable
 	{
 		protected abstract void r();
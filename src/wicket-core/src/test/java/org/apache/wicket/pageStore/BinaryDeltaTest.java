@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link BinaryDelta}
+ */
+public class BinaryDeltaTest extends Assert
+{
+	private final Random random = new Random(11);
+
+	private byte[] randomBytes(int length)
+	{
+		byte[] bytes = new byte[length];
+		random.nextBytes(bytes);
+		return bytes;
+	}
+
+	private static byte[] roundTrip(byte[] base, byte[] target)
+	{
+		byte[] delta = BinaryDelta.encode(BinaryDelta.index(base), target);
+		assertArrayEquals(target, BinaryDelta.decode(base, delta, 0));
+		return delta;
+	}
+
+	/**
+	 * Small changes result in small deltas
+	 */
+	@Test
+	public void smallChanges()
+	{
+		byte[] base = randomBytes(50000);
+
+		byte[] target = base.clone();
+		target[100] ^= 1;
+		target[30000] ^= 1;
+		assertTrue(roundTrip(base, target).length < 50);
+
+		// insertion
+		byte[] inserted = new byte[base.length + 10];
+		System.arraycopy(base, 0, inserted, 0, 20000);
+		System.arraycopy(base, 20000, inserted, 20010, base.length - 20000);
+		assertTrue(roundTrip(base, inserted).length < 50);
+
+		// removal
+		byte[] removed = new byte[base.length - 10];
+		System.arraycopy(base, 0, removed, 0, 20000);
+		System.arraycopy(base, 20010, removed, 20000, removed.length - 20000);
+		assertTrue(roundTrip(base, removed).length < 50);
+
+		assertTrue(roundTrip(base, base).length < 10);
+	}
+
+	/**
+	 * Unrelated, short and empty arrays
+	 */
+	@Test
+	public void edgeCases()
+	{
+		byte[] base = randomBytes(1000);
+		byte[] other = randomBytes(1000);
+		assertTrue(roundTrip(base, other).length > 1000);
+
+		roundTrip(base, new byte[0]);
+		roundTrip(new byte[0], base);
+		roundTrip(new byte[0], new byte[0]);
+		roundTrip(base, randomBytes(5));
+		roundTrip(new byte[] { 1, 2, 3 }, new byte[] { 1, 2, 3 });
+	}
+
+	/**
+	 * Random modifications
+	 */
+	@Test
+	public void randomChanges()
+	{
+		for (int i = 0; i < 200; i++)
+		{
+			byte[] base = randomBytes(random.nextInt(5000));
+			byte[] target = base.clone();
+			for (int j = random.nextInt(10); j > 0 && target.length > 0; j--)
+			{
+				int position = random.nextInt(target.length);
+				int length = Math.min(random.nextInt(100), target.length - position);
+				byte[] modified = new byte[target.length - length + random.nextInt(100)];
+				System.arraycopy(target, 0, modified, 0, position);
+				int rest = Math.min(target.length - position - length, modified.length - position);
+				System.arraycopy(target, position + length, modified, modified.length - rest, rest);
+				target = modified;
+			}
+			roundTrip(base, target);
+		}
+	}
+
+	/**
+	 * Corrupt deltas are detected
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void corrupt()
+	{
+		byte[] base = randomBytes(1000);
+		byte[] delta = BinaryDelta.encode(BinaryDelta.index(base), base);
+		BinaryDelta.decode(new byte[10], delta, 0);
+	}
+}
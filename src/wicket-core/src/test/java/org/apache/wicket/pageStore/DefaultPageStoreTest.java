@@ -0,0 +1,287 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.wicket.page.IManageablePage;
+import org.apache.wicket.serialize.java.JavaSerializer;
+import org.apache.wicket.util.file.Files;
+import org.apache.wicket.util.lang.Bytes;
+import org.apache.wicket.versioning.InMemoryPageStore;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link DefaultPageStore}
+ */
+public class DefaultPageStoreTest extends Assert
+{
+	private final CountingDataStore dataStore = new CountingDataStore();
+
+	/**
+	 * Pages are stored as deltas against a base and can be restored
+	 */
+	@Test
+	public void deltas()
+	{
+		DefaultPageStore store = new DefaultPageStore(new JavaSerializer("test"), dataStore, 0, 3);
+
+		TestPage page = new TestPage(1);
+		for (int i = 1; i <= 6; i++)
+		{
+			page = page.next(i);
+			store.storePage("s1", page);
+			assertEquals(page, store.getPage("s1", i));
+		}
+
+		// only the two bases are kept completely
+		assertTrue(dataStore.getSize() < 3 * page.data.length);
+
+		for (int i = 1; i <= 6; i++)
+		{
+			assertEquals(i, store.getPage("s1", i).getPageId());
+		}
+
+		// the same page again
+		TestPage same = page.next(6);
+		store.storePage("s1", same);
+		assertEquals(same, store.getPage("s1", 6));
+		assertNull(store.getPage("s2", 6));
+	}
+
+	/**
+	 * The base is loaded from the data store. A page whose base is gone can not be restored
+	 * anymore.
+	 */
+	@Test
+	public void baseRemoved()
+	{
+		DefaultPageStore store = new DefaultPageStore(new JavaSerializer("test"), dataStore, 0, 3);
+		store.storePage("s1", new TestPage(1));
+		store.storePage("s1", new TestPage(1).next(2));
+
+		// a new store has to load the base from the data store
+		store = new DefaultPageStore(new JavaSerializer("test"), dataStore, 0, 3);
+		assertEquals(new TestPage(1).next(2), store.getPage("s1", 2));
+
+		dataStore.removeData("s1", Integer.MAX_VALUE);
+		assertNull(store.getPage("s1", 2));
+	}
+
+	/**
+	 * Without deltas the pages are stored completely
+	 */
+	@Test
+	public void noDeltas()
+	{
+		DefaultPageStore store = new DefaultPageStore(new JavaSerializer("test"), dataStore, 0);
+		TestPage page = new TestPage(1);
+		store.storePage("s1", page);
+		assertEquals(page, store.getPage("s1", 1));
+		assertNull(dataStore.getData("s1", Integer.MAX_VALUE));
+	}
+
+	/**
+	 * The data store evicts its oldest pages. The newest pages stay restorable, because their base
+	 * is stored again before it is evicted.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void boundedDataStore() throws Exception
+	{
+		File folder = File.createTempFile("wicket-deltas", "");
+		folder.delete();
+		DiskDataStore diskDataStore = new DiskDataStore("deltas", folder, Bytes.kilobytes(40));
+		try
+		{
+			DefaultPageStore store = new DefaultPageStore(new JavaSerializer("test"),
+				diskDataStore, 0, 1000);
+			TestPage page = new TestPage(1);
+			for (int i = 1; i <= 300; i++)
+			{
+				page = page.next(i);
+				store.storePage("s1", page);
+			}
+
+			// a new store does not have the bases in memory
+			store = new DefaultPageStore(new JavaSerializer("test"), diskDataStore, 0, 1000);
+			for (int i = 295; i <= 300; i++)
+			{
+				assertEquals(i, store.getPage("s1", i).getPageId());
+			}
+		}
+		finally
+		{
+			diskDataStore.destroy();
+			Files.removeFolder(folder);
+		}
+	}
+
+	/**
+	 * A superseded base is removed as soon as no page depends on it anymore
+	 */
+	@Test
+	public void supersededBaseRemoved()
+	{
+		DefaultPageStore store = new DefaultPageStore(new JavaSerializer("test"), dataStore, 0, 1);
+		TestPage page = new TestPage(1);
+		store.storePage("s1", page);
+		store.storePage("s1", page.next(2));
+
+		// the third page becomes the new base
+		store.storePage("s1", page.next(3));
+		assertNotNull(dataStore.getData("s1", Integer.MAX_VALUE));
+		assertNotNull(dataStore.getData("s1", Integer.MAX_VALUE - 1));
+
+		store.removePage("s1", 1);
+		assertNotNull(dataStore.getData("s1", Integer.MAX_VALUE));
+		assertEquals(page.next(2), store.getPage("s1", 2));
+
+		store.removePage("s1", 2);
+		assertNull(dataStore.getData("s1", Integer.MAX_VALUE));
+		assertEquals(page.next(3), store.getPage("s1", 3));
+	}
+
+	/**
+	 * The statistics of the cache of serialized pages are public
+	 */
+	@Test
+	public void cacheStatistics()
+	{
+		DefaultPageStore store = new DefaultPageStore(new JavaSerializer("test"), dataStore, 1);
+		store.storePage("s1", new TestPage(1));
+		PageCacheStatistics before = store.getCacheStatistics();
+		assertNotNull(store.getPage("s1", 1));
+		assertNotNull(store.getPage("s1", 1));
+		assertEquals(before.getHitCount() + 2, store.getCacheStatistics().getHitCount());
+
+		// one of the pages is evicted from the cache, but both are found in the data store
+		store.storePage("s1", new TestPage(2));
+		before = store.getCacheStatistics();
+		assertNotNull(store.getPage("s1", 1));
+		assertNotNull(store.getPage("s1", 2));
+
+		PageCacheStatistics statistics = store.getCacheStatistics();
+		assertEquals(before.getHitCount() + 1, statistics.getHitCount());
+		assertEquals(before.getMissCount() + 1, statistics.getMissCount());
+		assertEquals(1, statistics.getEvictionCount());
+		assertEquals(1, statistics.getCount());
+		assertTrue(statistics.getSize().bytes() > 0);
+	}
+
+	private static class CountingDataStore extends InMemoryPageStore
+	{
+		private final Map<String, Integer> sizes = new HashMap<String, Integer>();
+
+		@Override
+		public void storeData(String sessionId, int pageId, byte[] pageAsBytes)
+		{
+			sizes.put(sessionId + ':' + pageId, pageAsBytes.length);
+			super.storeData(sessionId, pageId, pageAsBytes);
+		}
+
+		@Override
+		public void removeData(String sessionId, int pageId)
+		{
+			sizes.remove(sessionId + ':' + pageId);
+			super.removeData(sessionId, pageId);
+		}
+
+		/**
+		 * @return the total size of the stored pages
+		 */
+		private int getSize()
+		{
+			int size = 0;
+			for (int pageSize : sizes.values())
+			{
+				size += pageSize;
+			}
+			return size;
+		}
+	}
+
+	private static class TestPage implements IManageablePage
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final int pageId;
+
+		private final byte[] data;
+
+		private TestPage(int pageId)
+		{
+			this(pageId, new byte[10000]);
+			new Random(pageId).nextBytes(data);
+		}
+
+		private TestPage(int pageId, byte[] data)
+		{
+			this.pageId = pageId;
+			this.data = data;
+		}
+
+		/**
+		 * @param id
+		 * @return a new version of this page, with a small change
+		 */
+		private TestPage next(int id)
+		{
+			byte[] copy = data.clone();
+			copy[(id * 100) % copy.length]++;
+			return new TestPage(id, copy);
+		}
+
+		public boolean isPageStateless()
+		{
+			return false;
+		}
+
+		public int getPageId()
+		{
+			return pageId;
+		}
+
+		public void detach()
+		{
+		}
+
+		public boolean setFreezePageId(boolean freeze)
+		{
+			return false;
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			return obj instanceof TestPage && ((TestPage)obj).pageId == pageId &&
+				Arrays.equals(((TestPage)obj).data, data);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return pageId;
+		}
+	}
+}
@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.wicket.util.file.Files;
+import org.apache.wicket.util.lang.Bytes;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link SegmentedDataStore}
+ */
+public class SegmentedDataStoreTest extends Assert
+{
+	private static final String APP_NAME = "SegmentedDataStoreTest";
+
+	private File folder;
+
+	private SegmentedDataStore store;
+
+	/**
+	 * @throws IOException
+	 */
+	@Before
+	public void before() throws IOException
+	{
+		File tmp = File.createTempFile("segments", null);
+		Files.remove(tmp);
+		folder = tmp;
+		store = newStore(Bytes.kilobytes(10));
+	}
+
+	/**
+	 *
+	 */
+	@After
+	public void after()
+	{
+		store.destroy();
+		Files.removeFolder(folder);
+	}
+
+	private SegmentedDataStore newStore(Bytes maxSizePerSession)
+	{
+		return new SegmentedDataStore(APP_NAME, folder, maxSizePerSession, Bytes.bytes(1024), 3);
+	}
+
+	private static byte[] data(int length, int seed)
+	{
+		byte[] data = new byte[length];
+		Arrays.fill(data, (byte)seed);
+		return data;
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void storeAndRemove()
+	{
+		store.storeData("s1", 1, data(100, 1));
+		store.storeData("s1", 2, data(200, 2));
+		store.storeData("s2", 1, data(300, 3));
+
+		assertArrayEquals(data(100, 1), store.getData("s1", 1));
+		assertArrayEquals(data(200, 2), store.getData("s1", 2));
+		assertArrayEquals(data(300, 3), store.getData("s2", 1));
+		assertNull(store.getData("s2", 2));
+
+		store.storeData("s1", 1, data(50, 4));
+		assertArrayEquals(data(50, 4), store.getData("s1", 1));
+
+		store.removeData("s1", 2);
+		assertNull(store.getData("s1", 2));
+
+		store.removeData("s1");
+		assertNull(store.getData("s1", 1));
+		assertArrayEquals(data(300, 3), store.getData("s2", 1));
+	}
+
+	/**
+	 * The oldest pages of a session are removed when it exceeds its maximum size
+	 */
+	@Test
+	public void maxSizePerSession()
+	{
+		store.destroy();
+		store = newStore(Bytes.bytes(500));
+
+		store.storeData("s1", 1, data(200, 1));
+		store.storeData("s1", 2, data(200, 2));
+		store.storeData("s1", 3, data(200, 3));
+
+		assertNull(store.getData("s1", 1));
+		assertArrayEquals(data(200, 2), store.getData("s1", 2));
+		assertArrayEquals(data(200, 3), store.getData("s1", 3));
+	}
+
+	/**
+	 * Superseded data is compacted and its segments are reused
+	 */
+	@Test
+	public void compaction()
+	{
+		for (int i = 0; i < 30; i++)
+		{
+			store.storeData("s1", i % 2, data(300, i));
+			store.compact();
+		}
+
+		assertTrue(store.getSegmentCount() <= 3);
+		assertArrayEquals(data(300, 28), store.getData("s1", 0));
+		assertArrayEquals(data(300, 29), store.getData("s1", 1));
+	}
+
+	/**
+	 * When all segments are full the pages of the least used segment are dropped
+	 */
+	@Test
+	public void reclaim()
+	{
+		for (int i = 0; i < 12; i++)
+		{
+			store.storeData("s" + i, 1, data(300, i));
+		}
+
+		assertEquals(3, store.getSegmentCount());
+		assertArrayEquals(data(300, 11), store.getData("s11", 1));
+		assertNull(store.getData("s0", 1));
+	}
+
+	/**
+	 * Pages larger than a segment are not stored
+	 */
+	@Test
+	public void tooLarge()
+	{
+		store.storeData("s1", 1, data(2000, 1));
+		assertNull(store.getData("s1", 1));
+	}
+
+	/**
+	 * The index is saved on destroy and loaded again on startup
+	 */
+	@Test
+	public void restart()
+	{
+		store.storeData("s1", 1, data(100, 1));
+		store.storeData("s2", 2, data(900, 2));
+		store.storeData("s1", 3, data(500, 3));
+		store.destroy();
+
+		store = newStore(Bytes.kilobytes(10));
+		assertArrayEquals(data(100, 1), store.getData("s1", 1));
+		assertArrayEquals(data(900, 2), store.getData("s2", 2));
+		assertArrayEquals(data(500, 3), store.getData("s1", 3));
+	}
+}
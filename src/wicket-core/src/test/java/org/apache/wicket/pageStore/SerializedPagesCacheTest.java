@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore;
+
+import org.apache.wicket.pageStore.DefaultPageStore.SerializedPage;
+import org.apache.wicket.util.lang.Bytes;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link SerializedPagesCache}
+ */
+public class SerializedPagesCacheTest extends Assert
+{
+	private static SerializedPage page(String sessionId, int pageId, int size)
+	{
+		return new SerializedPage(sessionId, pageId, new byte[size]);
+	}
+
+	/**
+	 * Pages are found by session and page id, the hits and misses are counted
+	 */
+	@Test
+	public void storeAndGet()
+	{
+		SerializedPagesCache cache = new SerializedPagesCache(10);
+		SerializedPage page = page("s1", 1, 10);
+		cache.storePage(page);
+		cache.storePage(page("s2", 1, 20));
+
+		assertSame(page, cache.getPage("s1", 1));
+		assertNull(cache.getPage("s1", 2));
+		assertNull(cache.getPage("s3", 1));
+		assertEquals(2, cache.getCount());
+		assertEquals(30, cache.getSize().bytes());
+		assertEquals(1, cache.getHitCount());
+		assertEquals(2, cache.getMissCount());
+
+		// replacing a page does not count twice
+		SerializedPage newer = page("s1", 1, 5);
+		cache.storePage(newer);
+		assertSame(newer, cache.getPage("s1", 1));
+		assertEquals(2, cache.getCount());
+		assertEquals(25, cache.getSize().bytes());
+	}
+
+	/**
+	 * The pages which have been read survive pages which have been stored later but never read
+	 */
+	@Test
+	public void evictByCount()
+	{
+		SerializedPagesCache cache = new SerializedPagesCache(3);
+		cache.storePage(page("s", 1, 1));
+		cache.storePage(page("s", 2, 1));
+		cache.storePage(page("s", 3, 1));
+		assertNotNull(cache.getPage("s", 1));
+
+		for (int i = 4; i < 10; i++)
+		{
+			cache.storePage(page("s", i, 1));
+		}
+
+		assertEquals(3, cache.getCount());
+		assertEquals(6, cache.getEvictionCount());
+		assertNotNull(cache.getPage("s", 1));
+		assertNotNull(cache.getPage("s", 9));
+		assertNull(cache.getPage("s", 2));
+	}
+
+	/**
+	 * The total size of the pages is bounded
+	 */
+	@Test
+	public void evictBySize()
+	{
+		SerializedPagesCache cache = new SerializedPagesCache(100, Bytes.bytes(100));
+		for (int i = 0; i < 10; i++)
+		{
+			cache.storePage(page("s", i, 30));
+		}
+		assertEquals(3, cache.getCount());
+		assertEquals(90, cache.getSize().bytes());
+
+		// a page larger than the cache is not kept
+		cache.storePage(page("s", 10, 101));
+		assertNull(cache.getPage("s", 10));
+		assertTrue(cache.getSize().bytes() <= 100);
+	}
+
+	/**
+	 * Removing single pages and all pages of a session
+	 */
+	@Test
+	public void remove()
+	{
+		SerializedPagesCache cache = new SerializedPagesCache(10);
+		cache.storePage(page("s1", 1, 10));
+		cache.storePage(page("s1", 2, 10));
+		cache.storePage(page("s2", 1, 10));
+		assertNotNull(cache.getPage("s1", 2));
+
+		assertEquals(1, cache.removePage("s1", 1).getPageId());
+		assertNull(cache.removePage("s1", 1));
+		assertEquals(2, cache.getCount());
+
+		cache.removePages("s1");
+		assertNull(cache.getPage("s1", 2));
+		assertNotNull(cache.getPage("s2", 1));
+		assertEquals(1, cache.getCount());
+		assertEquals(10, cache.getSize().bytes());
+	}
+
+	/**
+	 * A cache of size 0 does not keep anything
+	 */
+	@Test
+	public void disabled()
+	{
+		SerializedPagesCache cache = new SerializedPagesCache(0);
+		cache.storePage(page("s", 1, 10));
+		assertNull(cache.getPage("s", 1));
+		assertEquals(0, cache.getCount());
+	}
+}
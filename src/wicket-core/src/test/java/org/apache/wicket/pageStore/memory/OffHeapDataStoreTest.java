@@ -0,0 +1,176 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore.memory;
+
+import java.util.Arrays;
+
+import org.apache.wicket.util.lang.Bytes;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link OffHeapDataStore}
+ */
+public class OffHeapDataStoreTest extends Assert
+{
+	private OffHeapDataStore store;
+
+	private static byte[] page(int length, int value)
+	{
+		byte[] data = new byte[length];
+		Arrays.fill(data, (byte)value);
+		data[length - 1] = (byte)(value + 1);
+		return data;
+	}
+
+	/**
+	 * after()
+	 */
+	@After
+	public void after()
+	{
+		if (store != null)
+		{
+			store.destroy();
+		}
+	}
+
+	/**
+	 * Storing, reading and removing pages
+	 */
+	@Test
+	public void storeAndRemove()
+	{
+		store = new OffHeapDataStore(Bytes.kilobytes(64), Bytes.kilobytes(16), 256,
+			new PageNumberEvictionStrategy(10));
+
+		byte[] page1 = page(1000, 1);
+		byte[] page2 = page(10, 2);
+		store.storeData("s1", 1, page1);
+		store.storeData("s1", 2, page2);
+		store.storeData("s2", 1, page2);
+		assertArrayEquals(page1, store.getData("s1", 1));
+		assertArrayEquals(page2, store.getData("s1", 2));
+		assertArrayEquals(page2, store.getData("s2", 1));
+		assertNull(store.getData("s1", 3));
+		assertNull(store.getData("s3", 1));
+		assertEquals(6 * 256, store.getUsedSize().bytes());
+
+		// overwrite
+		store.storeData("s1", 1, page2);
+		assertArrayEquals(page2, store.getData("s1", 1));
+		assertEquals(3 * 256, store.getUsedSize().bytes());
+
+		store.removeData("s1", 1);
+		assertNull(store.getData("s1", 1));
+		store.removeData("s1");
+		assertNull(store.getData("s1", 2));
+		assertArrayEquals(page2, store.getData("s2", 1));
+		assertEquals(256, store.getUsedSize().bytes());
+		assertFalse(store.isReplicated());
+	}
+
+	/**
+	 * The eviction strategies apply to the pages of each session
+	 */
+	@Test
+	public void evictionStrategies()
+	{
+		store = new OffHeapDataStore(Bytes.kilobytes(64), Bytes.kilobytes(16), 256,
+			new PageNumberEvictionStrategy(2));
+		for (int i = 1; i <= 3; i++)
+		{
+			store.storeData("s1", i, page(100, i));
+			store.storeData("s2", i, page(100, i));
+		}
+		assertNull(store.getData("s1", 1));
+		assertNotNull(store.getData("s1", 2));
+		assertNotNull(store.getData("s2", 3));
+		store.destroy();
+
+		store = new OffHeapDataStore(Bytes.kilobytes(64), Bytes.kilobytes(16), 256,
+			new MemorySizeEvictionStrategy(Bytes.bytes(250)));
+		store.storeData("s1", 1, page(100, 1));
+		store.storeData("s1", 2, page(100, 2));
+		assertNotNull(store.getData("s1", 1));
+		store.storeData("s1", 3, page(100, 3));
+		assertNull(store.getData("s1", 2));
+		assertNotNull(store.getData("s1", 1));
+		assertNotNull(store.getData("s1", 3));
+	}
+
+	/**
+	 * The memory of all sessions is bounded
+	 */
+	@Test
+	public void globalLimit()
+	{
+		store = new OffHeapDataStore(Bytes.kilobytes(4), Bytes.kilobytes(2), 512,
+			new PageNumberEvictionStrategy(100));
+
+		// three blocks each, only two pages fit
+		store.storeData("s1", 1, page(1500, 1));
+		store.storeData("s2", 1, page(1500, 2));
+		store.storeData("s1", 2, page(1500, 3));
+		assertNull(store.getData("s1", 1));
+		assertArrayEquals(page(1500, 2), store.getData("s2", 1));
+		assertArrayEquals(page(1500, 3), store.getData("s1", 2));
+		assertTrue(store.getUsedSize().bytes() <= Bytes.kilobytes(4).bytes());
+
+		// larger than the memory
+		store.storeData("s3", 1, page(5000, 4));
+		assertNull(store.getData("s3", 1));
+		assertNotNull(store.getData("s2", 1));
+	}
+
+	/**
+	 * The pages of all sessions are evicted in the order they have been stored
+	 */
+	@Test
+	public void evictionOrder()
+	{
+		store = new OffHeapDataStore(Bytes.kilobytes(8), Bytes.kilobytes(2), 512,
+			new PageNumberEvictionStrategy(100));
+
+		// one block each, 16 pages fit
+		for (int i = 0; i < 16; i++)
+		{
+			store.storeData("s" + i, 1, page(500, i));
+		}
+
+		// storing a page again moves it to the end of the order
+		store.storeData("s0", 1, page(500, 100));
+		store.removeData("s1");
+
+		for (int i = 16; i < 20; i++)
+		{
+			store.storeData("s" + i, 1, page(500, i));
+		}
+
+		assertArrayEquals(page(500, 100), store.getData("s0", 1));
+		for (int i = 2; i < 5; i++)
+		{
+			assertNull(store.getData("s" + i, 1));
+		}
+		for (int i = 5; i < 20; i++)
+		{
+			assertArrayEquals(page(500, i), store.getData("s" + i, 1));
+		}
+		assertEquals(Bytes.kilobytes(8).bytes(), store.getUsedSize().bytes());
+	}
+}
@@ -18,9 +18,13 @@ package org.apache.wicket.protocol.http;
 
 import java.util.ArrayList;
 
+import org.apache.wicket.RuntimeConfigurationType;
 import org.apache.wicket.WicketTestCase;
+import org.apache.wicket.mock.MockApplication;
 import org.apache.wicket.mock.MockWebResponse;
 import org.apache.wicket.request.http.WebResponse;
+import org.apache.wicket.util.string.PreEncodedText;
+import org.junit.Test;
 
 
 /**
@@ -32,6 +36,20 @@ public class BufferedWebResponseTest extends WicketTestCase
 		SET_HEADER, WRITE_RESPONSE
 	}
 
+	@Override
+	protected WebApplication newApplication()
+	{
+		// without the response filters of the development mode
+		return new MockApplication()
+		{
+			@Override
+			public RuntimeConfigurationType getConfigurationType()
+			{
+				return RuntimeConfigurationType.DEPLOYMENT;
+			}
+		};
+	}
+
 	/**
 	 * Asserting that set header actions are invoked before write in response actions.
 	 * 
@@ -61,4 +79,36 @@ public class BufferedWebResponseTest extends WicketTestCase
 		assertEquals(0, actionsSequence.indexOf(TestAction.SET_HEADER));
 		assertEquals(1, actionsSequence.indexOf(TestAction.WRITE_RESPONSE));
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Pre-encoded text is buffered as text and written as pre-encoded text to the original response
+	 */
+	@Test
+	public void writePreEncoded()
+	{
+		final StringBuilder written = new StringBuilder();
+		WebResponse originalResponse = new MockWebResponse()
+		{
+			@Override
+			public void write(CharSequence sequence)
+			{
+				written.append(sequence);
+			}
+
+			@Override
+			public void writePreEncoded(PreEncodedText text)
+			{
+				written.append('[').append(text).append(']');
+			}
+		};
+		BufferedWebResponse response = new BufferedWebResponse(originalResponse);
+		response.write("a");
+		response.writePreEncoded(new PreEncodedText("b"));
+		response.writePreEncoded(new PreEncodedText("c"));
+		response.write("d");
+		assertEquals("abcd", response.getText().toString());
+
+		response.writeTo(originalResponse);
+		assertEquals("a[b][c]d", written.toString());
+	}
+}
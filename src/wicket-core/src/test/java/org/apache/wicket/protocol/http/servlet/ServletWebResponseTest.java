@@ -17,16 +17,25 @@
 package org.apache.wicket.protocol.http.servlet;
 
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 
+import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.apache.wicket.util.string.PreEncodedText;
 import org.junit.Assert;
 import org.junit.Test;
 import org.mockito.Matchers;
@@ -102,4 +111,261 @@ public class ServletWebResponseTest extends Assert
 		verify(httpServletResponse).sendRedirect("relative/path");
 		assertTrue(webResponse.isRedirect());
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Pre-encoded text is written to the output stream, and so is all text written afterwards
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void writePreEncoded() throws IOException
+	{
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		HttpServletResponse httpServletResponse = mock(HttpServletResponse.class);
+		when(httpServletResponse.getCharacterEncoding()).thenReturn("UTF-8");
+		when(httpServletResponse.getOutputStream()).thenReturn(new ServletOutputStream()
+		{
+			@Override
+			public void write(int b) throws IOException
+			{
+				bytes.write(b);
+			}
+		});
+
+		ServletWebResponse webResponse = new ServletWebResponse(mock(ServletWebRequest.class),
+			httpServletResponse);
+		PreEncodedText text = new PreEncodedText("<p>\u00e9</p>");
+		webResponse.writePreEncoded(text);
+		webResponse.write("\u20ac");
+		webResponse.writePreEncoded(text);
+
+		verify(httpServletResponse, never()).getWriter();
+		assertEquals("<p>\u00e9</p>\u20ac<p>\u00e9</p>", new String(bytes.toByteArray(), "UTF-8"));
+	}
+
+	/**
+	 * Pre-encoded text is written as text once the writer is in use
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void writePreEncodedAfterWriter() throws IOException
+	{
+		HttpServletResponse httpServletResponse = mock(HttpServletResponse.class);
+		when(httpServletResponse.getCharacterEncoding()).thenReturn("UTF-8");
+		StringWriter writer = new StringWriter();
+		when(httpServletResponse.getWriter()).thenReturn(new PrintWriter(writer));
+
+		ServletWebResponse webResponse = new ServletWebResponse(mock(ServletWebRequest.class),
+			httpServletResponse);
+		webResponse.write("a");
+		webResponse.writePreEncoded(new PreEncodedText("b"));
+
+		verify(httpServletResponse, never()).getOutputStream();
+		assertEquals("ab", writer.toString());
+	}
+
+	private static File createFile(int length) throws IOException
+	{
+		File file = File.createTempFile("response", ".bin");
+		FileOutputStream out = new FileOutputStream(file);
+		for (int i = 0; i < length; i++)
+		{
+			out.write(i);
+		}
+		out.close();
+		return file;
+	}
+
+	/**
+	 * File regions are transferred to output streams which are channels
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void writeFileChannel() throws IOException
+	{
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		HttpServletResponse httpServletResponse = mock(HttpServletResponse.class);
+		when(httpServletResponse.getOutputStream()).thenReturn(new ChannelOutputStream(bytes));
+
+		File file = createFile(1000);
+		FileInputStream in = new FileInputStream(file);
+		try
+		{
+			ServletWebResponse webResponse = new ServletWebResponse(
+				mock(ServletWebRequest.class), httpServletResponse);
+			webResponse.write(in.getChannel(), 100, 300);
+		}
+		finally
+		{
+			in.close();
+			file.delete();
+		}
+
+		byte[] written = bytes.toByteArray();
+		assertEquals(300, written.length);
+		assertEquals((byte)100, written[0]);
+		assertEquals((byte)399, written[299]);
+	}
+
+	/**
+	 * Once a channel takes no bytes the rest of the region is copied instead of retried
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void writeFileChannelStalled() throws IOException
+	{
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		HttpServletResponse httpServletResponse = mock(HttpServletResponse.class);
+		when(httpServletResponse.getOutputStream()).thenReturn(new StalledOutputStream(bytes));
+
+		File file = createFile(1000);
+		FileInputStream in = new FileInputStream(file);
+		try
+		{
+			ServletWebResponse webResponse = new ServletWebResponse(
+				mock(ServletWebRequest.class), httpServletResponse);
+			webResponse.write(in.getChannel(), 100, 300);
+		}
+		finally
+		{
+			in.close();
+			file.delete();
+		}
+
+		byte[] written = bytes.toByteArray();
+		assertEquals(300, written.length);
+		assertEquals((byte)100, written[0]);
+		assertEquals((byte)399, written[299]);
+	}
+
+	/**
+	 * File regions are copied to other output streams
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void writeFile() throws IOException
+	{
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		HttpServletResponse httpServletResponse = mock(HttpServletResponse.class);
+		when(httpServletResponse.getOutputStream()).thenReturn(new ServletOutputStream()
+		{
+			@Override
+			public void write(int b) throws IOException
+			{
+				bytes.write(b);
+			}
+		});
+
+		File file = createFile(200 * 1024);
+		FileInputStream in = new FileInputStream(file);
+		try
+		{
+			ServletWebResponse webResponse = new ServletWebResponse(
+				mock(ServletWebRequest.class), httpServletResponse);
+			webResponse.write(in.getChannel(), 1, 150 * 1024);
+			assertEquals(150 * 1024, bytes.size());
+
+			try
+			{
+				webResponse.write(in.getChannel(), 200 * 1024 - 10, 20);
+				fail();
+			}
+			catch (IOException expected)
+			{
+				// the file is too short
+			}
+		}
+		finally
+		{
+			in.close();
+			file.delete();
+		}
+
+		byte[] written = bytes.toByteArray();
+		assertEquals((byte)1, written[0]);
+		assertEquals((byte)(150 * 1024), written[150 * 1024 - 1]);
+	}
+
+	/**
+	 * An output stream of a container which is a channel too
+	 */
+	private static class ChannelOutputStream extends ServletOutputStream
+		implements
+			WritableByteChannel
+	{
+		private final ByteArrayOutputStream bytes;
+
+		private ChannelOutputStream(ByteArrayOutputStream bytes)
+		{
+			this.bytes = bytes;
+		}
+
+		@Override
+		public void write(int b) throws IOException
+		{
+			throw new AssertionError("The file is transferred to the channel");
+		}
+
+		public int write(ByteBuffer src) throws IOException
+		{
+			int count = src.remaining();
+			while (src.hasRemaining())
+			{
+				bytes.write(src.get());
+			}
+			return count;
+		}
+
+		public boolean isOpen()
+		{
+			return true;
+		}
+	}
+
+	/**
+	 * An output stream of a container which is a non-blocking channel, taking a few bytes only
+	 * once
+	 */
+	private static class StalledOutputStream extends ServletOutputStream
+		implements
+			WritableByteChannel
+	{
+		private final ByteArrayOutputStream bytes;
+
+		private boolean stalled;
+
+		private StalledOutputStream(ByteArrayOutputStream bytes)
+		{
+			this.bytes = bytes;
+		}
+
+		@Override
+		public void write(int b) throws IOException
+		{
+			bytes.write(b);
+		}
+
+		public int write(ByteBuffer src) throws IOException
+		{
+			if (stalled)
+			{
+				return 0;
+			}
+			stalled = true;
+			for (int i = 0; i < 10; i++)
+			{
+				bytes.write(src.get());
+			}
+			return 10;
+		}
+
+		public boolean isOpen()
+		{
+			return true;
+		}
+	}
+}
@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.request.resource;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.wicket.WicketTestCase;
+import org.apache.wicket.util.io.IOUtils;
+import org.apache.wicket.util.lang.Bytes;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for compressing resources with gzip
+ * 
+ * @see org.apache.wicket.settings.IResourceSettings#setCompressResources(boolean)
+ */
+public class CompressedResourceTest extends WicketTestCase
+{
+	private static final byte[] TEXT = new String(new char[100]).replace("\0", "compressible ")
+		.getBytes();
+
+	/**
+	 * Enables the compression
+	 */
+	@Before
+	public void before()
+	{
+		tester.getApplication().getResourceSettings().setCompressResources(true);
+	}
+
+	private static byte[] gunzip(byte[] data) throws IOException
+	{
+		return IOUtils.toByteArray(new GZIPInputStream(new ByteArrayInputStream(data)));
+	}
+
+	/**
+	 * Dynamic resources are compressed if the client accepts gzip
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void compressed() throws Exception
+	{
+		tester.getRequest().addHeader("Accept-Encoding", "deflate, gzip;q=0.5");
+		tester.startResource(new ByteArrayResource("text/plain", TEXT));
+
+		assertEquals("gzip", tester.getLastResponse().getHeader("Content-Encoding"));
+		assertEquals("Accept-Encoding", tester.getLastResponse().getHeader("Vary"));
+		byte[] data = tester.getLastResponse().getBinaryContent();
+		assertTrue(data.length < TEXT.length);
+		assertEquals(String.valueOf(data.length),
+			tester.getLastResponse().getHeader("Content-Length"));
+		assertArrayEquals(TEXT, gunzip(data));
+	}
+
+	/**
+	 * Nothing is compressed if the client does not accept gzip, the setting is disabled or the data
+	 * is not compressible
+	 */
+	@Test
+	public void notCompressed()
+	{
+		tester.startResource(new ByteArrayResource("text/plain", TEXT));
+		assertNull(tester.getLastResponse().getHeader("Content-Encoding"));
+		assertEquals("Accept-Encoding", tester.getLastResponse().getHeader("Vary"));
+		assertArrayEquals(TEXT, tester.getLastResponse().getBinaryContent());
+
+		tester.getRequest().addHeader("Accept-Encoding", "gzip;q=0, *");
+		tester.startResource(new ByteArrayResource("text/plain", TEXT));
+		assertNull(tester.getLastResponse().getHeader("Content-Encoding"));
+
+		tester.getRequest().addHeader("Accept-Encoding", "gzip");
+		tester.startResource(new ByteArrayResource("image/png", TEXT));
+		assertNull(tester.getLastResponse().getHeader("Content-Encoding"));
+		assertNull(tester.getLastResponse().getHeader("Vary"));
+
+		tester.getApplication().getResourceSettings().setCompressResources(false);
+		tester.getRequest().addHeader("Accept-Encoding", "gzip");
+		tester.startResource(new ByteArrayResource("text/plain", TEXT));
+		assertNull(tester.getLastResponse().getHeader("Content-Encoding"));
+		assertArrayEquals(TEXT, tester.getLastResponse().getBinaryContent());
+	}
+
+	/**
+	 * Static resources are compressed once, although a new instance serves every request
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void compressedOnce() throws Exception
+	{
+		CountingResource.lookups = 0;
+		byte[] text = IOUtils.toByteArray(getClass().getResourceAsStream("compressible.txt"));
+
+		for (int i = 0; i < 2; i++)
+		{
+			tester.getRequest().addHeader("Accept-Encoding", "gzip");
+			tester.startResource(new CountingResource("compressible.txt"));
+			assertEquals("gzip", tester.getLastResponse().getHeader("Content-Encoding"));
+			assertArrayEquals(text, gunzip(tester.getLastResponse().getBinaryContent()));
+		}
+		assertEquals(1, CountingResource.lookups);
+		assertEquals(1, tester.getApplication()
+			.getResourceSettings()
+			.getCompressedResourceCache()
+			.getCount());
+
+		// without the cache every request compresses the data
+		tester.getApplication().getResourceSettings().setCompressedResourceCacheMaxSize(
+			Bytes.bytes(0));
+		tester.getRequest().addHeader("Accept-Encoding", "gzip");
+		tester.startResource(new CountingResource("compressible.txt"));
+		assertArrayEquals(text, gunzip(tester.getLastResponse().getBinaryContent()));
+		assertEquals(2, CountingResource.lookups);
+	}
+
+	/**
+	 * A file with the extension <code>.gz</code> next to a package resource is sent instead of
+	 * compressing the resource
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void precompressed() throws Exception
+	{
+		// the compressed file must not be older than the resource
+		File file = new File(getClass().getResource("compressible.txt.gz").toURI());
+		file.setLastModified(System.currentTimeMillis());
+
+		tester.getRequest().addHeader("Accept-Encoding", "gzip");
+		tester.startResource(new PackageResource(CompressedResourceTest.class,
+			"compressible.txt", null, null, null)
+		{
+			private static final long serialVersionUID = 1L;
+		});
+
+		assertEquals("gzip", tester.getLastResponse().getHeader("Content-Encoding"));
+		assertEquals("Precompressed content of compressible.txt\n", new String(
+			gunzip(tester.getLastResponse().getBinaryContent())));
+	}
+
+	private static class CountingResource extends PackageResource
+	{
+		private static final long serialVersionUID = 1L;
+
+		private static int lookups;
+
+		private CountingResource(String name)
+		{
+			super(CompressedResourceTest.class, name, null, null, null);
+		}
+
+		@Override
+		protected byte[] getPrecompressedData(ResourceResponse data, Attributes attributes)
+		{
+			lookups++;
+			return null;
+		}
+	}
+}
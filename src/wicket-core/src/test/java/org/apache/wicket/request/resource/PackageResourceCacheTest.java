@@ -0,0 +1,187 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.request.resource;
+
+import java.util.Locale;
+import java.util.Set;
+
+import org.apache.wicket.WicketTestCase;
+import org.apache.wicket.request.resource.PackageResourceCache.Data;
+import org.apache.wicket.util.io.IOUtils;
+import org.apache.wicket.util.lang.Bytes;
+import org.apache.wicket.util.time.Duration;
+import org.apache.wicket.util.time.Time;
+import org.apache.wicket.util.watch.IModifiable;
+import org.junit.Test;
+
+/**
+ * Tests for {@link PackageResourceCache}
+ */
+public class PackageResourceCacheTest extends WicketTestCase
+{
+	private PackageResourceCache enableCache(Bytes maxSize)
+	{
+		tester.getApplication().getResourceSettings().setPackageResourceCacheMaxSize(maxSize);
+		return tester.getApplication().getResourceSettings().getPackageResourceCache();
+	}
+
+	/**
+	 * The processed data is read once
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void cached() throws Exception
+	{
+		PackageResourceCache cache = enableCache(Bytes.kilobytes(100));
+		CountingResource resource = new CountingResource("compressible.txt");
+		byte[] text = IOUtils.toByteArray(getClass().getResourceAsStream("compressible.txt"));
+
+		for (int i = 0; i < 3; i++)
+		{
+			tester.startResource(resource);
+			assertArrayEquals(text, tester.getLastResponse().getBinaryContent());
+			assertEquals("text/plain", tester.getLastResponse().getContentType());
+		}
+
+		assertEquals(1, resource.processed);
+		assertEquals(1, cache.getCount());
+		assertEquals(2, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+		assertTrue(cache.getSize().bytes() >= text.length);
+
+		// another instance of the same resource finds the data too
+		CountingResource other = new CountingResource("compressible.txt");
+		tester.startResource(other);
+		assertEquals(0, other.processed);
+		assertArrayEquals(text, tester.getLastResponse().getBinaryContent());
+	}
+
+	/**
+	 * Nothing is cached by default
+	 */
+	@Test
+	public void disabled()
+	{
+		assertNull(tester.getApplication().getResourceSettings().getPackageResourceCache());
+
+		CountingResource resource = new CountingResource("compressible.txt");
+		tester.startResource(resource);
+		tester.startResource(resource);
+		assertEquals(2, resource.processed);
+	}
+
+	/**
+	 * The cache is bounded by the size of the data
+	 */
+	@Test
+	public void bounded()
+	{
+		PackageResourceCache cache = enableCache(Bytes.bytes(2000));
+		tester.startResource(new CountingResource("compressible.txt"));
+		tester.startResource(new CountingResource("resource.txt"));
+		assertEquals(2, cache.getCount());
+
+		// another key for the same data
+		tester.startResource(new CountingResource("compressible.txt", Locale.GERMAN));
+		assertTrue(cache.getEvictionCount() > 0);
+		assertTrue(cache.getSize().bytes() <= 2000);
+	}
+
+	/**
+	 * The resources are watched for changes, if the resource watcher is running
+	 */
+	@Test
+	public void watched()
+	{
+		tester.getApplication().getResourceSettings().setResourcePollFrequency(
+			Duration.ONE_HOUR);
+		enableCache(Bytes.kilobytes(100));
+
+		tester.startResource(new CountingResource("compressible.txt"));
+		assertEquals(1, tester.getApplication()
+			.getResourceSettings()
+			.getResourceWatcher(false)
+			.getEntries()
+			.size());
+	}
+
+	/**
+	 * Each cached resource is watched once, and only as long as its data is cached
+	 */
+	@Test
+	public void watchedOnce()
+	{
+		tester.getApplication().getResourceSettings().setResourcePollFrequency(
+			Duration.ONE_HOUR);
+		PackageResourceCache cache = enableCache(Bytes.bytes(1000));
+		Set<IModifiable> entries = tester.getApplication()
+			.getResourceSettings()
+			.getResourceWatcher(true)
+			.getEntries();
+
+		// another stream of the same resource replaces the watch
+		Data data = new Data(new byte[10], Time.now(), "text/plain");
+		cache.put("key", data, new Modifiable());
+		cache.put("key", data, new Modifiable());
+		assertEquals(1, entries.size());
+		assertEquals(1, cache.getWatchCount());
+
+		// the watch of evicted data is cancelled
+		cache.put("big", new Data(new byte[800], Time.now(), "text/plain"),
+			new Modifiable());
+		assertNull(cache.get("key"));
+		assertEquals(1, cache.getWatchCount());
+		assertEquals(1, entries.size());
+
+		cache.clear();
+		assertEquals(0, cache.getWatchCount());
+		assertEquals(0, entries.size());
+	}
+
+	private static class Modifiable implements IModifiable
+	{
+		public Time lastModifiedTime()
+		{
+			return Time.valueOf(0);
+		}
+	}
+
+	private static class CountingResource extends PackageResource
+	{
+		private static final long serialVersionUID = 1L;
+
+		private int processed;
+
+		private CountingResource(String name)
+		{
+			this(name, null);
+		}
+
+		private CountingResource(String name, Locale locale)
+		{
+			super(PackageResourceCacheTest.class, name, locale, null, null);
+		}
+
+		@Override
+		protected byte[] processResponse(Attributes attributes, byte[] original)
+		{
+			processed++;
+			return super.processResponse(attributes, original);
+		}
+	}
+}
@@ -0,0 +1,307 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.request.resource;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Calendar;
+import java.util.List;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.wicket.WicketTestCase;
+import org.apache.wicket.protocol.http.mock.MockHttpServletResponse;
+import org.apache.wicket.request.resource.AbstractResource.ByteRange;
+import org.apache.wicket.util.resource.FileResourceStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the byte range requests served by {@link AbstractResource}
+ */
+public class RangeResourceTest extends WicketTestCase
+{
+	private static final int LENGTH = 1000;
+
+	private File file;
+
+	private long lastModified;
+
+	/**
+	 * Creates the file to serve
+	 * 
+	 * @throws IOException
+	 */
+	@Before
+	public void before() throws IOException
+	{
+		file = File.createTempFile("range", ".bin");
+		FileOutputStream out = new FileOutputStream(file);
+		try
+		{
+			out.write(data(0, LENGTH));
+		}
+		finally
+		{
+			out.close();
+		}
+
+		// the mock request keeps the date of date headers only
+		Calendar calendar = Calendar.getInstance();
+		calendar.clear();
+		calendar.set(2012, Calendar.JANUARY, 2);
+		lastModified = calendar.getTimeInMillis();
+		file.setLastModified(lastModified);
+	}
+
+	/**
+	 * Deletes the file
+	 */
+	@After
+	public void after()
+	{
+		file.delete();
+	}
+
+	private static byte[] data(int offset, int length)
+	{
+		byte[] data = new byte[length];
+		for (int i = 0; i < length; i++)
+		{
+			data[i] = (byte)(offset + i);
+		}
+		return data;
+	}
+
+	private MockHttpServletResponse request(String range)
+	{
+		if (range != null)
+		{
+			tester.getRequest().addHeader("Range", range);
+		}
+		tester.startResource(new ResourceStreamResource(new FileResourceStream(file)));
+		return tester.getLastResponse();
+	}
+
+	/**
+	 * A single range is sent with status 206
+	 */
+	@Test
+	public void singleRange()
+	{
+		MockHttpServletResponse response = request("bytes=10-19");
+		assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, response.getStatus());
+		assertEquals("bytes", response.getHeader("Accept-Ranges"));
+		assertEquals("bytes 10-19/1000", response.getHeader("Content-Range"));
+		assertEquals("10", response.getHeader("Content-Length"));
+		assertArrayEquals(data(10, 10), response.getBinaryContent());
+
+		response = request("bytes=-100");
+		assertEquals("bytes 900-999/1000", response.getHeader("Content-Range"));
+		assertArrayEquals(data(900, 100), response.getBinaryContent());
+
+		response = request("bytes=990-");
+		assertEquals("bytes 990-999/1000", response.getHeader("Content-Range"));
+		assertArrayEquals(data(990, 10), response.getBinaryContent());
+	}
+
+	/**
+	 * Several ranges are sent as multipart/byteranges
+	 */
+	@Test
+	public void multipleRanges()
+	{
+		MockHttpServletResponse response = request("bytes=500-501, 0-2");
+		assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, response.getStatus());
+		assertTrue(response.getContentType().startsWith("multipart/byteranges; boundary="));
+		String boundary = response.getContentType().substring(
+			"multipart/byteranges; boundary=".length());
+
+		byte[] content = response.getBinaryContent();
+		assertEquals(String.valueOf(content.length), response.getHeader("Content-Length"));
+		String text = new String(content);
+		assertTrue(text.startsWith("\r\n--" + boundary + "\r\n"));
+		assertTrue(text.contains("Content-Range: bytes 500-501/1000\r\n\r\n"));
+		assertTrue(text.indexOf("bytes 0-2/1000") > text.indexOf("bytes 500-501/1000"));
+		assertTrue(text.endsWith("\r\n--" + boundary + "--\r\n"));
+	}
+
+	/**
+	 * Ranges beyond the data are not satisfiable, invalid headers are ignored
+	 */
+	@Test
+	public void invalidRanges()
+	{
+		MockHttpServletResponse response = request("bytes=1000-");
+		assertEquals(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE, response.getStatus());
+		assertEquals("bytes */1000", response.getHeader("Content-Range"));
+
+		response = request("bytes=20-10");
+		assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+		assertEquals(LENGTH, response.getBinaryContent().length);
+
+		response = request(null);
+		assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+		assertEquals("bytes", response.getHeader("Accept-Ranges"));
+		assertArrayEquals(data(0, LENGTH), response.getBinaryContent());
+	}
+
+	/**
+	 * Ranges are sent only if the <code>If-Range</code> header matches the last modification time
+	 */
+	@Test
+	public void ifRange()
+	{
+		tester.getRequest().addDateHeader("If-Range", lastModified);
+		assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, request("bytes=0-9").getStatus());
+
+		tester.getRequest().addDateHeader("If-Range", lastModified - 24 * 60 * 60 * 1000);
+		assertEquals(HttpServletResponse.SC_OK, request("bytes=0-9").getStatus());
+
+		tester.getRequest().addHeader("If-Range", "\"etag\"");
+		assertEquals(HttpServletResponse.SC_OK, request("bytes=0-9").getStatus());
+	}
+
+	/**
+	 * Data written by a write callback without support for ranges is cut to the range
+	 */
+	@Test
+	public void defaultWriteRange()
+	{
+		tester.getRequest().addHeader("Range", "bytes=5-14");
+		tester.startResource(new AbstractResource()
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected ResourceResponse newResourceResponse(Attributes attributes)
+			{
+				ResourceResponse data = new ResourceResponse();
+				data.setContentLength(20);
+				data.setAcceptRanges(true);
+				data.setWriteCallback(new WriteCallback()
+				{
+					@Override
+					public void writeData(Attributes attributes)
+					{
+						attributes.getResponse().write(data(0, 8));
+						attributes.getResponse().write(data(8, 12));
+					}
+				});
+				return data;
+			}
+		});
+
+		assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, tester.getLastResponse().getStatus());
+		assertArrayEquals(data(5, 10), tester.getLastResponse().getBinaryContent());
+	}
+
+	private static AbstractResource textResource(final String text, final String encoding,
+		final boolean acceptRanges) throws IOException
+	{
+		final int length = text.getBytes(encoding).length;
+		return new AbstractResource()
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected ResourceResponse newResourceResponse(Attributes attributes)
+			{
+				ResourceResponse data = new ResourceResponse();
+				data.setContentType("text/plain");
+				data.setTextEncoding(encoding);
+				data.setContentLength(length);
+				data.setAcceptRanges(acceptRanges);
+				data.setWriteCallback(new WriteCallback()
+				{
+					@Override
+					public void writeData(Attributes attributes)
+					{
+						attributes.getResponse().write(text);
+					}
+				});
+				return data;
+			}
+		};
+	}
+
+	/**
+	 * Text written by a write callback is cut like the bytes it is encoded to
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void textWriteRange() throws IOException
+	{
+		// the mock response encodes text with UTF-8
+		tester.getRequest().addHeader("Range", "bytes=1-2");
+		tester.startResource(textResource("\u00e4bc", "UTF-8", true));
+		assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, tester.getLastResponse().getStatus());
+		assertArrayEquals(new byte[] { (byte)0xa4, 'b' }, tester.getLastResponse()
+			.getBinaryContent());
+
+		// the parts of several ranges are encoded with the text encoding of the resource
+		tester.getRequest().addHeader("Range", "bytes=0-1, 4-5");
+		tester.startResource(textResource("abcdef", "UTF-16BE", true));
+		String text = new String(tester.getLastResponse().getBinaryContent(), "ISO-8859-1");
+		assertTrue(text.contains("Content-Range: bytes 0-1/12\r\n\r\n\u0000a\r\n"));
+		assertTrue(text.contains("Content-Range: bytes 4-5/12\r\n\r\n\u0000c\r\n"));
+	}
+
+	/**
+	 * Data which accepts ranges is not compressed, so a range can resume a download
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void rangesNotCompressed() throws IOException
+	{
+		tester.getApplication().getResourceSettings().setCompressResources(true);
+		String text = new String(new char[1000]).replace("\0", "a");
+
+		tester.getRequest().addHeader("Accept-Encoding", "gzip");
+		tester.startResource(textResource(text, "UTF-8", false));
+		assertEquals("gzip", tester.getLastResponse().getHeader("Content-Encoding"));
+
+		tester.getRequest().addHeader("Accept-Encoding", "gzip");
+		tester.startResource(textResource(text, "UTF-8", true));
+		assertNull(tester.getLastResponse().getHeader("Content-Encoding"));
+		assertEquals("bytes", tester.getLastResponse().getHeader("Accept-Ranges"));
+		assertEquals(text, tester.getLastResponse().getDocument());
+	}
+
+	/**
+	 * Parsing the <code>Range</code> header
+	 */
+	@Test
+	public void parseRanges()
+	{
+		List<ByteRange> ranges = AbstractResource.parseRanges("bytes=0-0,-1, 5-", 10);
+		assertEquals(3, ranges.size());
+		assertEquals(0, ranges.get(0).last);
+		assertEquals(9, ranges.get(1).first);
+		assertEquals(5, ranges.get(2).first);
+		assertEquals(9, ranges.get(2).last);
+
+		assertTrue(AbstractResource.parseRanges("bytes=10-", 10).isEmpty());
+		assertNull(AbstractResource.parseRanges("bytes=a-b", 10));
+		assertNull(AbstractResource.parseRanges("items=0-1", 10));
+		assertNull(AbstractResource.parseRanges("bytes=", 10));
+	}
+}
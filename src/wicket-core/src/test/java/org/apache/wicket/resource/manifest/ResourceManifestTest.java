@@ -0,0 +1,227 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.resource.manifest;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Properties;
+
+import org.apache.wicket.WicketTestCase;
+import org.apache.wicket.markup.html.WebPage;
+import org.apache.wicket.markup.html.internal.HeaderResponse;
+import org.apache.wicket.request.Response;
+import org.apache.wicket.request.resource.CssResourceReference;
+import org.apache.wicket.request.resource.JavaScriptResourceReference;
+import org.apache.wicket.request.resource.PackageResource;
+import org.apache.wicket.request.resource.caching.version.ManifestResourceVersion;
+import org.apache.wicket.request.resource.caching.version.StaticResourceVersion;
+import org.apache.wicket.response.StringResponse;
+import org.apache.wicket.util.file.Files;
+import org.apache.wicket.util.io.IOUtils;
+import org.apache.wicket.util.string.Strings;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ResourceManifestBuilder}, {@link ResourceManifest},
+ * {@link ManifestResourceVersion} and {@link ResourceBundleHeaderResponse}
+ */
+public class ResourceManifestTest extends WicketTestCase
+{
+	/**
+	 * The builder writes the bundles and the versions of all resources
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void build() throws Exception
+	{
+		File directory = File.createTempFile("wicket-manifest", "");
+		directory.delete();
+		try
+		{
+			write(new File(directory, "org/example/a.js"), "var a = b");
+			write(new File(directory, "org/example/b.js"), "(function() {})();");
+			write(new File(directory, "org/example/Page.class"), "class");
+
+			ResourceManifestBuilder builder = new ResourceManifestBuilder(directory);
+			builder.addBundle("org.example.Page/all.js",
+				Arrays.asList("org.example.Page/a.js", "org.example.Page/b.js"));
+			builder.build();
+
+			File bundle = new File(directory, "org/example/all.js");
+			assertEquals("var a = b;\n(function() {})();;\n", read(bundle));
+
+			Properties versions = load(new File(directory, ResourceManifest.VERSIONS));
+			assertEquals(3, versions.size());
+			assertEquals(md5("var a = b"), versions.getProperty("org/example/a.js"));
+			assertEquals(md5("var a = b;\n(function() {})();;\n"), versions.getProperty("org/example/all.js"));
+			assertNull(versions.getProperty("org/example/Page.class"));
+
+			ResourceManifest manifest = new ResourceManifest(versions, load(new File(directory,
+				ResourceManifest.BUNDLES)));
+			assertEquals("org.example.Page/all.js", manifest.getBundle("org.example.Page/b.js"));
+			assertEquals(Arrays.asList("org.example.Page/a.js", "org.example.Page/b.js"),
+				manifest.getMembers("org.example.Page/all.js"));
+		}
+		finally
+		{
+			Files.removeFolder(directory);
+		}
+	}
+
+	/**
+	 * A member which does not exist fails the build
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void missingMember() throws Exception
+	{
+		File directory = File.createTempFile("wicket-manifest", "");
+		directory.delete();
+		directory.mkdirs();
+		try
+		{
+			ResourceManifestBuilder builder = new ResourceManifestBuilder(directory);
+			builder.addBundle("org.example.Page/all.js", Arrays.asList("org.example.Page/a.js"));
+			builder.build();
+			fail();
+		}
+		catch (IOException expected)
+		{
+			// expected
+		}
+		finally
+		{
+			Files.removeFolder(directory);
+		}
+	}
+
+	/**
+	 * The versions of package resources are found by the location of their streams
+	 */
+	@Test
+	public void version()
+	{
+		Properties versions = new Properties();
+		versions.setProperty("org/apache/wicket/markup/html/packaged3.js", "manifest");
+		ResourceManifest manifest = new ResourceManifest(versions, new Properties());
+		ManifestResourceVersion version = new ManifestResourceVersion(manifest,
+			new StaticResourceVersion("fallback"));
+
+		assertEquals("manifest", version.getVersion(resource("packaged3.js")));
+		assertEquals("fallback", version.getVersion(resource("packaged4.js")));
+	}
+
+	/**
+	 * The bundle is rendered once in place of its members
+	 */
+	@Test
+	public void renderBundle()
+	{
+		Properties bundles = new Properties();
+		bundles.setProperty(ResourceManifest.getReference(WebPage.class, "bundle.js"),
+			ResourceManifest.getReference(WebPage.class, "packaged3.js") + ", " +
+				ResourceManifest.getReference(WebPage.class, "packaged4.js"));
+		ResourceManifest manifest = new ResourceManifest(new Properties(), bundles);
+
+		final StringResponse response = new StringResponse();
+		ResourceBundleHeaderResponse headerResponse = new ResourceBundleHeaderResponse(
+			new HeaderResponse()
+			{
+				@Override
+				protected Response getRealResponse()
+				{
+					return response;
+				}
+			}, manifest);
+
+		headerResponse.renderJavaScriptReference(new JavaScriptResourceReference(WebPage.class,
+			"packaged3.js"));
+		headerResponse.renderJavaScriptReference(new JavaScriptResourceReference(WebPage.class,
+			"packaged4.js"), null, null, true);
+		headerResponse.renderCSSReference(new CssResourceReference(WebPage.class, "unbundled.css"));
+
+		String output = response.toString();
+		assertEquals(1, countOf(output, "bundle.js"));
+		assertFalse(output.contains("packaged3.js"));
+		assertFalse(output.contains("packaged4.js"));
+		assertTrue(output.contains("unbundled.css"));
+	}
+
+	private static int countOf(String string, String part)
+	{
+		int count = 0;
+		int index = string.indexOf(part);
+		while (index != -1)
+		{
+			count++;
+			index = string.indexOf(part, index + 1);
+		}
+		return count;
+	}
+
+	private static PackageResource resource(String name)
+	{
+		return (PackageResource)new JavaScriptResourceReference(WebPage.class, name).getResource();
+	}
+
+	private static void write(File file, String content) throws IOException
+	{
+		file.getParentFile().mkdirs();
+		Files.writeTo(file, new ByteArrayInputStream(content.getBytes("UTF-8")));
+	}
+
+	private static String read(File file) throws IOException
+	{
+		InputStream in = new FileInputStream(file);
+		try
+		{
+			return IOUtils.toString(in, "UTF-8");
+		}
+		finally
+		{
+			IOUtils.close(in);
+		}
+	}
+
+	private static Properties load(File file) throws IOException
+	{
+		Properties properties = new Properties();
+		InputStream in = new FileInputStream(file);
+		try
+		{
+			properties.load(in);
+		}
+		finally
+		{
+			IOUtils.close(in);
+		}
+		return properties;
+	}
+
+	private static String md5(String content) throws Exception
+	{
+		return Strings.toHexString(MessageDigest.getInstance("MD5").digest(
+			content.getBytes("UTF-8")));
+	}
+}
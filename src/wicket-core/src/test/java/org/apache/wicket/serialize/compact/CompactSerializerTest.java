@@ -0,0 +1,297 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.serialize.compact;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.wicket.MockPageWithForm;
+import org.apache.wicket.Page;
+import org.apache.wicket.WicketTestCase;
+import org.apache.wicket.markup.html.form.DropDownChoice;
+import org.apache.wicket.serialize.java.JavaSerializer;
+import org.junit.Test;
+
+/**
+ * Tests for {@link CompactSerializer}
+ */
+public class CompactSerializerTest extends WicketTestCase
+{
+	private CompactSerializer newSerializer()
+	{
+		return new CompactSerializer(tester.getApplication().getApplicationKey());
+	}
+
+	/**
+	 * A graph with shared references, cycles and the natively supported types
+	 */
+	@Test
+	public void graph()
+	{
+		Node root = new Node("root");
+		Node child = new Node("child é€");
+		root.children.add(child);
+		root.children.add(child);
+		child.parent = root;
+		root.attributes.put("date", new Date(1234567890L));
+		root.attributes.put("ints", new int[] { -1, 0, Integer.MAX_VALUE });
+		root.attributes.put("matrix", new long[][] { { 1L }, { Long.MIN_VALUE, 2L } });
+		TreeMap<String, Integer> sorted = new TreeMap<String, Integer>();
+		sorted.put("b", 2);
+		sorted.put("a", 1);
+		root.attributes.put("sorted", sorted);
+		root.attributes.put("set", new LinkedHashSet<Object>(Arrays.<Object>asList(
+			Color.RED, Color.GREEN, 'x', (byte)1, (short)-2, 3.5f, 4.5d, -5L, Boolean.TRUE)));
+		root.attributes.put("class", DropDownChoice.class);
+		root.attributes.put("self", root);
+		root.color = Color.GREEN;
+		root.weight = -0.25d;
+		root.flag = true;
+
+		CompactSerializer serializer = newSerializer();
+		byte[] data = serializer.serialize(root);
+		assertTrue(CompactInput.isCompactFormat(data));
+
+		Node copy = (Node)serializer.deserialize(data);
+		assertNotSame(root, copy);
+		assertEquals("root", copy.name);
+		assertEquals(Color.GREEN, copy.color);
+		assertEquals(-0.25d, copy.weight, 0);
+		assertTrue(copy.flag);
+		assertEquals(0, copy.transientValue);
+		assertEquals(2, copy.children.size());
+		assertSame(copy.children.get(0), copy.children.get(1));
+		assertSame(copy, copy.children.get(0).parent);
+		assertEquals("child é€", copy.children.get(0).name);
+		assertSame(copy, copy.attributes.get("self"));
+		assertEquals(new Date(1234567890L), copy.attributes.get("date"));
+		assertArrayEquals(new int[] { -1, 0, Integer.MAX_VALUE },
+			(int[])copy.attributes.get("ints"));
+		assertEquals(Long.MIN_VALUE, ((long[][])copy.attributes.get("matrix"))[1][0]);
+		assertEquals(sorted, copy.attributes.get("sorted"));
+		assertTrue(copy.attributes.get("sorted") instanceof TreeMap);
+		assertEquals(root.attributes.get("set"), copy.attributes.get("set"));
+		assertSame(DropDownChoice.class, copy.attributes.get("class"));
+	}
+
+	/**
+	 * writeReplace() and readResolve() are honored
+	 */
+	@Test
+	public void replaceAndResolve()
+	{
+		Holder holder = new Holder();
+		holder.first = new Replaced("value");
+		holder.second = holder.first;
+
+		CompactSerializer serializer = newSerializer();
+		Holder copy = (Holder)serializer.deserialize(serializer.serialize(holder));
+
+		assertTrue(copy.first instanceof Replaced);
+		assertEquals("value", ((Replaced)copy.first).value);
+		assertSame(copy.first, copy.second);
+	}
+
+	/**
+	 * Graphs with classes with custom serialization are serialized by the fallback serializer
+	 */
+	@Test
+	public void fallback()
+	{
+		Node root = new Node("root");
+		root.attributes.put("custom", new CustomSerialization());
+		root.attributes.put("locale", Locale.GERMANY);
+
+		CompactSerializer serializer = newSerializer();
+		byte[] data = serializer.serialize(root);
+		assertFalse(CompactInput.isCompactFormat(data));
+
+		Node copy = (Node)serializer.deserialize(data);
+		assertEquals(Locale.GERMANY, copy.attributes.get("locale"));
+		assertTrue(((CustomSerialization)copy.attributes.get("custom")).written);
+	}
+
+	/**
+	 * Data written by {@link JavaSerializer} can be read
+	 */
+	@Test
+	public void readJavaSerialization()
+	{
+		String applicationKey = tester.getApplication().getApplicationKey();
+		byte[] data = new JavaSerializer(applicationKey).serialize(new Node("java"));
+
+		Node copy = (Node)newSerializer().deserialize(data);
+		assertEquals("java", copy.name);
+	}
+
+	/**
+	 * A rendered page can be serialized and is smaller than with java serialization
+	 */
+	@Test
+	public void page()
+	{
+		tester.startPage(MockPageWithForm.class);
+		Page page = tester.getLastRenderedPage();
+
+		CompactSerializer serializer = newSerializer();
+		serializer.register(MockPageWithForm.class);
+		byte[] data = serializer.serialize(page);
+		assertTrue(CompactInput.isCompactFormat(data));
+
+		String applicationKey = tester.getApplication().getApplicationKey();
+		byte[] javaData = new JavaSerializer(applicationKey).serialize(page);
+		assertTrue(data.length < javaData.length);
+
+		Page copy = (Page)serializer.deserialize(data);
+		assertEquals(page.getPageId(), copy.getPageId());
+		assertEquals(page.getPageReference(), copy.getPageReference());
+		assertNotNull(copy.get("form:dropdown"));
+		assertSame(copy, copy.get("form:dropdown").getPage());
+		assertEquals(((DropDownChoice<?>)page.get("form:dropdown")).getChoices(),
+			((DropDownChoice<?>)copy.get("form:dropdown")).getChoices());
+	}
+
+	/**
+	 * The registered classes are part of the format
+	 */
+	@Test
+	public void registryMismatch()
+	{
+		CompactSerializer serializer = newSerializer();
+		serializer.register(Node.class);
+		byte[] data = serializer.serialize(new Node("root"));
+
+		try
+		{
+			newSerializer().deserialize(data);
+			fail();
+		}
+		catch (RuntimeException expected)
+		{
+			// expected
+		}
+	}
+
+	private static enum Color {
+		RED, GREEN {
+			@Override
+			public String toString()
+			{
+				return "green";
+			}
+		}
+	}
+
+	private static class Node implements Serializable
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final String name;
+
+		private final List<Node> children = new ArrayList<Node>();
+
+		private final Map<String, Object> attributes = new HashMap<String, Object>();
+
+		private Node parent;
+
+		private Color color;
+
+		private double weight;
+
+		private boolean flag;
+
+		private transient int transientValue = 42;
+
+		private Node(String name)
+		{
+			this.name = name;
+		}
+	}
+
+	private static class Holder implements Serializable
+	{
+		private static final long serialVersionUID = 1L;
+
+		private Object first;
+
+		private Object second;
+	}
+
+	private static class Replaced implements Serializable
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final String value;
+
+		private Replaced(String value)
+		{
+			this.value = value;
+		}
+
+		private Object writeReplace()
+		{
+			return new Replacement(value);
+		}
+	}
+
+	private static class Replacement implements Serializable
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final String value;
+
+		private Replacement(String value)
+		{
+			this.value = value;
+		}
+
+		private Object readResolve()
+		{
+			return new Replaced(value);
+		}
+	}
+
+	private static class CustomSerialization implements Serializable
+	{
+		private static final long serialVersionUID = 1L;
+
+		private transient boolean written;
+
+		private void writeObject(ObjectOutputStream out) throws IOException
+		{
+			out.defaultWriteObject();
+			out.writeBoolean(true);
+		}
+
+		private void readObject(java.io.ObjectInputStream in) throws IOException,
+			ClassNotFoundException
+		{
+			in.defaultReadObject();
+			written = in.readBoolean();
+		}
+	}
+}
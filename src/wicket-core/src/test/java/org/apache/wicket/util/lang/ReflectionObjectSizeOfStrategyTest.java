@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.util.lang;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.wicket.MockPageWithForm;
+import org.apache.wicket.WicketTestCase;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ReflectionObjectSizeOfStrategy}
+ */
+public class ReflectionObjectSizeOfStrategyTest extends WicketTestCase
+{
+	private final ReflectionObjectSizeOfStrategy strategy = new ReflectionObjectSizeOfStrategy();
+
+	/**
+	 * Arrays are counted with their content, objects with their fields
+	 */
+	@Test
+	public void arraysAndFields()
+	{
+		assertEquals(0, strategy.sizeOf(null));
+
+		long array = strategy.sizeOf(new byte[1000]);
+		assertTrue(array >= 1000);
+		assertTrue(array < 1100);
+		assertEquals(0, array % 8);
+
+		Node node = new Node();
+		long empty = strategy.sizeOf(node);
+		assertTrue(empty > 0);
+
+		node.data = new byte[1000];
+		assertEquals(empty + array, strategy.sizeOf(node));
+
+		// transient fields are followed too
+		node.cache = new byte[1000];
+		assertEquals(empty + 2 * array, strategy.sizeOf(node));
+	}
+
+	/**
+	 * Shared objects are counted once, cycles terminate
+	 */
+	@Test
+	public void sharedAndCyclic()
+	{
+		Node first = new Node();
+		first.data = new byte[1000];
+		Node second = new Node();
+		second.data = first.data;
+		second.next = first;
+		first.next = second;
+
+		long single = strategy.sizeOf(new byte[1000]);
+		long node = strategy.sizeOf(new Node());
+		assertEquals(2 * node + single, strategy.sizeOf(first));
+	}
+
+	/**
+	 * The content of JDK collections and maps is counted
+	 */
+	@Test
+	public void collections()
+	{
+		long array = strategy.sizeOf(new byte[1000]);
+
+		List<byte[]> list = new ArrayList<byte[]>();
+		Map<String, byte[]> map = new HashMap<String, byte[]>();
+		for (int i = 0; i < 10; i++)
+		{
+			list.add(new byte[1000]);
+			map.put("key" + i, new byte[1000]);
+		}
+		assertTrue(strategy.sizeOf((Serializable)list) > 10 * array);
+		assertTrue(strategy.sizeOf((Serializable)map) > 10 * array);
+		assertTrue(strategy.sizeOf("a string") > 0);
+	}
+
+	/**
+	 * Collections outside of the JDK are walked through their fields, without iterating them
+	 */
+	@Test
+	public void customCollections()
+	{
+		long array = strategy.sizeOf(new byte[1000]);
+
+		LazyList list = new LazyList();
+		assertTrue(strategy.sizeOf(list) > array);
+		assertEquals(0, list.loads);
+	}
+
+	/**
+	 * A page is smaller in memory than serialized, but not empty
+	 */
+	@Test
+	public void page()
+	{
+		tester.startPage(MockPageWithForm.class);
+		long size = strategy.sizeOf(tester.getLastRenderedPage());
+		assertTrue(size > 500);
+	}
+
+	private static class Node implements Serializable
+	{
+		private static final long serialVersionUID = 1L;
+
+		private byte[] data;
+
+		private Node next;
+
+		private transient byte[] cache;
+	}
+
+	private static class LazyList extends AbstractList<byte[]> implements Serializable
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final byte[] data = new byte[1000];
+
+		private int loads;
+
+		@Override
+		public byte[] get(int index)
+		{
+			loads++;
+			return data;
+		}
+
+		@Override
+		public int size()
+		{
+			loads++;
+			return 1;
+		}
+	}
+}
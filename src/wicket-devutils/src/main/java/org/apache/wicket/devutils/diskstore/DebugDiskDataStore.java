@@ -22,6 +22,7 @@ import java.util.List;
 
 import org.apache.wicket.Application;
 import org.apache.wicket.pageStore.DiskDataStore;
+import org.apache.wicket.pageStore.IPageWindowManager;
 import org.apache.wicket.pageStore.PageWindowManager;
 import org.apache.wicket.pageStore.PageWindowManager.PageWindow;
 import org.apache.wicket.protocol.http.WebApplication;
@@ -71,7 +72,7 @@ public class DebugDiskDataStore extends DiskDataStore
 		SessionEntry sessionEntry = getSessionEntry(sessionId, false);
 		if (sessionEntry != null)
 		{
-			PageWindowManager windowManager = sessionEntry.getManager();
+			IPageWindowManager windowManager = sessionEntry.getManager();
 			pageWindows.addAll(windowManager.getLastPageWindows(count));
 		}
 		return pageWindows;
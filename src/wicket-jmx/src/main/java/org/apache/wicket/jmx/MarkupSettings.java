@@ -16,6 +16,9 @@
  */
 package org.apache.wicket.jmx;
 
+import org.apache.wicket.markup.IMarkupCache;
+import org.apache.wicket.markup.MarkupCache;
+import org.apache.wicket.markup.MarkupFactory;
 
 /**
  * Exposes Application related functionality for JMX.
@@ -76,6 +79,59 @@ public class MarkupSettings implements MarkupSettingsMBean
 		return application.getMarkupSettings().getDefaultMarkupEncoding();
 	}
 
+	/**
+	 * @see org.apache.wicket.jmx.MarkupSettingsMBean#getMarkupCacheHitCount()
+	 */
+	public long getMarkupCacheHitCount()
+	{
+		MarkupCache cache = getMarkupCache();
+		return cache != null ? cache.getHitCount() : 0;
+	}
+
+	/**
+	 * @see org.apache.wicket.jmx.MarkupSettingsMBean#getMarkupCacheMissCount()
+	 */
+	public long getMarkupCacheMissCount()
+	{
+		MarkupCache cache = getMarkupCache();
+		return cache != null ? cache.getMissCount() : 0;
+	}
+
+	/**
+	 * @see org.apache.wicket.jmx.MarkupSettingsMBean#getMarkupCacheEvictionCount()
+	 */
+	public long getMarkupCacheEvictionCount()
+	{
+		MarkupCache cache = getMarkupCache();
+		return cache != null ? cache.getEvictionCount() : 0;
+	}
+
+	/**
+	 * @see org.apache.wicket.jmx.MarkupSettingsMBean#getMarkupCacheLoadCount()
+	 */
+	public long getMarkupCacheLoadCount()
+	{
+		MarkupCache cache = getMarkupCache();
+		return cache != null ? cache.getLoadCount() : 0;
+	}
+
+	/**
+	 * @see org.apache.wicket.jmx.MarkupSettingsMBean#getMarkupCacheLoadTime()
+	 */
+	public long getMarkupCacheLoadTime()
+	{
+		MarkupCache cache = getMarkupCache();
+		return cache != null ? cache.getLoadTime().getMilliseconds() : 0;
+	}
+
+	/**
+	 * @see org.apache.wicket.jmx.MarkupSettingsMBean#getMarkupCacheMaxSize()
+	 */
+	public long getMarkupCacheMaxSize()
+	{
+		return application.getMarkupSettings().getMarkupCacheMaxSize().bytes();
+	}
+
 	/**
 	 * @see org.apache.wicket.jmx.MarkupSettingsMBean#getStripComments()
 	 */
@@ -147,4 +203,24 @@ public class MarkupSettings implements MarkupSettingsMBean
 	{
 		application.getMarkupSettings().setStripWicketTags(stripWicketTags);
 	}
+
+	/**
+	 * The markup cache is created lazily by a request of the application, so it is not created
+	 * here.
+	 * 
+	 * @return the markup cache or null if it has not been created yet
+	 */
+	private MarkupCache getMarkupCache()
+	{
+		MarkupFactory factory = application.getMarkupSettings().getMarkupFactory();
+		if (factory.hasMarkupCache())
+		{
+			IMarkupCache cache = factory.getMarkupCache();
+			if (cache instanceof MarkupCache)
+			{
+				return (MarkupCache)cache;
+			}
+		}
+		return null;
+	}
 }
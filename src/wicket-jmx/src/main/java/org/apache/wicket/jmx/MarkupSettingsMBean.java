@@ -57,6 +57,38 @@ public interface MarkupSettingsMBean
 	 */
 	String getDefaultMarkupEncoding();
 
+	/**
+	 * @return the number of markup lookups which found the markup in the cache
+	 */
+	long getMarkupCacheHitCount();
+
+	/**
+	 * @return the number of markup lookups which did not find the markup in the cache
+	 */
+	long getMarkupCacheMissCount();
+
+	/**
+	 * @return the number of markup cache entries which have been evicted
+	 * @see IMarkupSettings#setMarkupCacheMaxSize(org.apache.wicket.util.lang.Bytes)
+	 */
+	long getMarkupCacheEvictionCount();
+
+	/**
+	 * @return the number of markup files which have been loaded
+	 */
+	long getMarkupCacheLoadCount();
+
+	/**
+	 * @return the total time spent loading markup files in milliseconds
+	 */
+	long getMarkupCacheLoadTime();
+
+	/**
+	 * @return the maximum estimated size of each of the markup caches in bytes
+	 * @see IMarkupSettings#setMarkupCacheMaxSize(org.apache.wicket.util.lang.Bytes)
+	 */
+	long getMarkupCacheMaxSize();
+
 	/**
 	 * @return Returns the stripComments.
 	 * @see IMarkupSettings#setStripComments(boolean)
@@ -20,6 +20,7 @@ import java.io.IOException;
 import java.io.OutputStream;
 
 import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.string.PreEncodedText;
 
 /**
  * Abstract base class for different implementations of response writing.
@@ -74,6 +75,20 @@ public abstract class Response
 		write(towrite);
 	}
 
+	/**
+	 * Writes a text which never changes, e.g. static markup. Responses which encode the text they
+	 * write themselves may write the cached encoded form of the text instead. By default the text
+	 * is written with {@link #write(CharSequence)}.
+	 * 
+	 * @param text
+	 * @throws IllegalStateException
+	 *             if {@link #write(byte[])} has already been called on this instance
+	 */
+	public void writePreEncoded(PreEncodedText text)
+	{
+		write(text.toString());
+	}
+
 	/**
 	 * Closes the response
 	 */
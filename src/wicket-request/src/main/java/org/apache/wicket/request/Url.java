@@ -89,25 +89,6 @@ public class Url implements Serializable
 		FULL;
 	}
 
-	/**
-	 * 
-	 * @param qp
-	 * @param charset
-	 * @return query parameters
-	 */
-	private static QueryParameter parseQueryParameter(final String qp, final Charset charset)
-	{
-		if (qp.indexOf('=') == -1)
-		{
-			// name => empty value
-			return new QueryParameter(decodeParameter(qp, charset), "");
-		}
-
-		String parts[] = Strings.split(qp, '=');
-		return new QueryParameter(decodeParameter(parts[0], charset), decodeParameter(parts[1],
-			charset));
-	}
-
 	/**
 	 * Parses the given URL string.
 	 * 
@@ -128,7 +109,7 @@ public class Url implements Serializable
 	 * @param charset
 	 * @return Url object
 	 */
-	public static Url parse(String url, Charset charset)
+	public static Url parse(final String url, Charset charset)
 	{
 		Args.notNull(url, "url");
 
@@ -137,116 +118,121 @@ public class Url implements Serializable
 		// the url object resolved the charset, use that
 		charset = result.getCharset();
 
-		// extract query string part
-		final String queryString;
-		final String absoluteUrl;
-
+		// the url is scanned once, only the segments and parameters themselves are extracted
+		final int length = url.length();
 		final int queryAt = url.indexOf('?');
+		final int pathEnd = queryAt == -1 ? length : queryAt;
 
-		if (queryAt == -1)
-		{
-			queryString = "";
-			absoluteUrl = url;
-		}
-		else
-		{
-			absoluteUrl = url.substring(0, queryAt);
-			queryString = url.substring(queryAt + 1);
-		}
-
-		// get absolute / relative part of url
-		String relativeUrl;
+		int pathStart = 0;
 
 		// absolute urls contain a scheme://
-		final int idxOfFirstSlash = absoluteUrl.indexOf('/');
-		final int protocolAt = absoluteUrl.indexOf("://");
+		final int protocolAt = url.indexOf("://");
 
-		if (protocolAt > -1 && (protocolAt < idxOfFirstSlash))
+		if (protocolAt > -1 && protocolAt + 3 <= pathEnd && protocolAt < url.indexOf('/'))
 		{
-			result.protocol = absoluteUrl.substring(0, protocolAt).toLowerCase(Locale.US);
-
-			final String afterProto = absoluteUrl.substring(protocolAt + 3);
-			final String hostAndPort;
-
-			final int relativeAt = afterProto.indexOf('/');
+			result.protocol = url.substring(0, protocolAt).toLowerCase(Locale.US);
 
-			if (relativeAt == -1)
+			final int hostAt = protocolAt + 3;
+			int relativeAt = url.indexOf('/', hostAt);
+			if (relativeAt >= pathEnd)
 			{
-				relativeUrl = "";
-				hostAndPort = afterProto;
-			}
-			else
-			{
-				relativeUrl = afterProto.substring(relativeAt);
-				hostAndPort = afterProto.substring(0, relativeAt);
+				relativeAt = -1;
 			}
+			final int hostEnd = relativeAt == -1 ? pathEnd : relativeAt;
 
-			final int portAt = hostAndPort.lastIndexOf(':');
+			final int portAt = url.lastIndexOf(':', hostEnd - 1);
 
-			if (portAt == -1)
+			if (portAt < hostAt)
 			{
-				result.host = hostAndPort;
+				result.host = url.substring(hostAt, hostEnd);
 				result.port = getDefaultPortForProtocol(result.protocol);
 			}
 			else
 			{
-				result.host = hostAndPort.substring(0, portAt);
-				result.port = Integer.parseInt(hostAndPort.substring(portAt + 1));
+				result.host = url.substring(hostAt, portAt);
+				result.port = Integer.parseInt(url.substring(portAt + 1, hostEnd));
 			}
 
 			if (relativeAt < 0)
 			{
-				relativeUrl = "/";
+				// just the host, the url is "/"
+				result.segments.add("");
+				result.segments.add("");
+				pathStart = pathEnd;
 			}
-		}
-		else
-		{
-			relativeUrl = absoluteUrl;
-		}
-
-		if (relativeUrl.length() > 0)
-		{
-			boolean removeLast = false;
-			if (relativeUrl.endsWith("/"))
-			{
-				// we need to append something and remove it after splitting
-				// because otherwise the
-				// trailing slashes will be lost
-				relativeUrl += "/x";
-				removeLast = true;
-			}
-
-			String segmentArray[] = Strings.split(relativeUrl, '/');
-
-			if (removeLast)
+			else
 			{
-				segmentArray[segmentArray.length - 1] = null;
+				pathStart = relativeAt;
 			}
+		}
 
-			for (String s : segmentArray)
+		if (pathStart < pathEnd)
+		{
+			int segmentStart = pathStart;
+			while (true)
 			{
-				if (s != null)
+				int segmentEnd = url.indexOf('/', segmentStart);
+				if (segmentEnd == -1 || segmentEnd > pathEnd)
 				{
-					result.segments.add(decodeSegment(s, charset));
+					segmentEnd = pathEnd;
 				}
+				result.segments.add(decodeSegment(url.substring(segmentStart, segmentEnd), charset));
+				if (segmentEnd == pathEnd)
+				{
+					break;
+				}
+				segmentStart = segmentEnd + 1;
 			}
 		}
 
-		if (queryString.length() > 0)
+		int parameterStart = pathEnd + 1;
+		while (parameterStart < length)
 		{
-			String queryArray[] = Strings.split(queryString, '&');
-			for (String s : queryArray)
+			int parameterEnd = url.indexOf('&', parameterStart);
+			if (parameterEnd == -1)
 			{
-				if (Strings.isEmpty(s) == false)
-				{
-					result.parameters.add(parseQueryParameter(s, charset));
-				}
+				parameterEnd = length;
+			}
+			if (parameterEnd > parameterStart)
+			{
+				result.parameters.add(parseQueryParameter(url, parameterStart, parameterEnd,
+					charset));
 			}
+			parameterStart = parameterEnd + 1;
 		}
 
 		return result;
 	}
 
+	/**
+	 * Parses the query parameter between <code>start</code> and <code>end</code>. A parameter
+	 * without <code>=</code> has an empty value, the value ends at a second <code>=</code>.
+	 * 
+	 * @param url
+	 * @param start
+	 * @param end
+	 * @param charset
+	 * @return query parameter
+	 */
+	private static QueryParameter parseQueryParameter(final String url, final int start,
+		final int end, final Charset charset)
+	{
+		int equalsAt = url.indexOf('=', start);
+		if (equalsAt == -1 || equalsAt >= end)
+		{
+			// name => empty value
+			return new QueryParameter(decodeParameter(url.substring(start, end), charset), "");
+		}
+
+		int valueEnd = url.indexOf('=', equalsAt + 1);
+		if (valueEnd == -1 || valueEnd > end)
+		{
+			valueEnd = end;
+		}
+		return new QueryParameter(decodeParameter(url.substring(start, equalsAt), charset),
+			decodeParameter(url.substring(equalsAt + 1, valueEnd), charset));
+	}
+
 	/**
 	 * get default port number for protocol
 	 * 
@@ -556,17 +542,6 @@ public class Url implements Serializable
 		return Objects.hashCode(getSegments(), getQueryParameters());
 	}
 
-	/**
-	 * 
-	 * @param string
-	 * @param charset
-	 * @return encoded segment
-	 */
-	private static String encodeSegment(final String string, final Charset charset)
-	{
-		return UrlEncoder.PATH_INSTANCE.encode(string, charset);
-	}
-
 	/**
 	 * 
 	 * @param string
@@ -578,17 +553,6 @@ public class Url implements Serializable
 		return UrlDecoder.PATH_INSTANCE.decode(string, charset);
 	}
 
-	/**
-	 * 
-	 * @param string
-	 * @param charset
-	 * @return encoded parameter
-	 */
-	private static String encodeParameter(final String string, final Charset charset)
-	{
-		return UrlEncoder.QUERY_INSTANCE.encode(string, charset);
-	}
-
 	/**
 	 * 
 	 * @param string
@@ -673,8 +637,27 @@ public class Url implements Serializable
 	 */
 	public String toString(StringMode mode, Charset charset)
 	{
-		StringBuilder result = new StringBuilder();
-		final String path = getPath(charset);
+		return appendTo(new StringBuilder(64), mode, charset).toString();
+	}
+
+	/**
+	 * Appends this url to the buffer, the result is the same as of
+	 * {@link #toString(StringMode, Charset)} but the segments and query parameters are encoded
+	 * right into the buffer.
+	 * 
+	 * @param buffer
+	 *            the buffer to append the url to
+	 * @param mode
+	 *            {@link StringMode} that determins how to stringize the url
+	 * @param charset
+	 *            charset
+	 * @return the buffer
+	 */
+	public StringBuilder appendTo(final StringBuilder buffer, final StringMode mode,
+		final Charset charset)
+	{
+		Args.notNull(buffer, "buffer");
+		Args.notNull(charset, "charset");
 
 		if (StringMode.FULL == mode)
 		{
@@ -691,33 +674,75 @@ public class Url implements Serializable
 			}
 
 			// output scheme://host:port if specified
-			result.append(protocol);
-			result.append("://");
-			result.append(host);
+			buffer.append(protocol);
+			buffer.append("://");
+			buffer.append(host);
 
 			if (port != null && port.equals(getDefaultPortForProtocol(protocol)) == false)
 			{
-				result.append(':');
-				result.append(port);
+				buffer.append(':');
+				buffer.append(port);
 			}
 
-			if (path.contains(".."))
+			final List<String> segments = getSegments();
+			if (segments.isEmpty() || segments.get(0).length() > 0)
+			{
+				buffer.append('/');
+			}
+
+			final int pathStart = buffer.length();
+			appendPath(buffer, segments, charset);
+
+			if (buffer.indexOf("..", pathStart) != -1)
 			{
 				throw new IllegalStateException("Cannot render this url in " +
 					StringMode.FULL.name() + " mode because it has a `..` segment: " + toString());
 			}
+		}
+		else
+		{
+			appendPath(buffer, getSegments(), charset);
+		}
+
+		appendQueryString(buffer, getQueryParameters(), charset);
+		return buffer;
+	}
 
-			if (!path.startsWith("/"))
+	/**
+	 * Appends the encoded segments separated by slashes
+	 * 
+	 * @param buffer
+	 * @param segments
+	 * @param charset
+	 */
+	static void appendPath(final StringBuilder buffer, final List<String> segments,
+		final Charset charset)
+	{
+		for (int i = 0, size = segments.size(); i < size; i++)
+		{
+			if (i > 0)
 			{
-				result.append("/");
+				buffer.append('/');
 			}
-
+			UrlEncoder.PATH_INSTANCE.encode(segments.get(i), charset, buffer);
 		}
+	}
 
-
-		result.append(path);
-		result.append(getQueryString(charset));
-		return result.toString();
+	/**
+	 * Appends the encoded query string including the leading question mark
+	 * 
+	 * @param buffer
+	 * @param parameters
+	 * @param charset
+	 */
+	static void appendQueryString(final StringBuilder buffer,
+		final List<QueryParameter> parameters, final Charset charset)
+	{
+		for (int i = 0, size = parameters.size(); i < size; i++)
+		{
+			buffer.append(i == 0 ? '?' : '&');
+			parameters.get(i).appendTo(buffer, charset);
+		}
 	}
 
 	/**
@@ -937,14 +962,25 @@ public class Url implements Serializable
 		 */
 		public String toString(final Charset charset)
 		{
-			StringBuilder result = new StringBuilder();
-			result.append(encodeParameter(getName(), charset));
+			return appendTo(new StringBuilder(), charset).toString();
+		}
+
+		/**
+		 * Appends the encoded parameter to the buffer
+		 * 
+		 * @param buffer
+		 * @param charset
+		 * @return the buffer
+		 */
+		private StringBuilder appendTo(final StringBuilder buffer, final Charset charset)
+		{
+			UrlEncoder.QUERY_INSTANCE.encode(getName(), charset, buffer);
 			if (!Strings.isEmpty(getValue()))
 			{
-				result.append('=');
-				result.append(encodeParameter(getValue(), charset));
+				buffer.append('=');
+				UrlEncoder.QUERY_INSTANCE.encode(getValue(), charset, buffer);
 			}
-			return result.toString();
+			return buffer;
 		}
 	}
 
@@ -1093,17 +1129,7 @@ public class Url implements Serializable
 		Args.notNull(charset, "charset");
 
 		StringBuilder path = new StringBuilder();
-		boolean slash = false;
-
-		for (String segment : getSegments())
-		{
-			if (slash)
-			{
-				path.append('/');
-			}
-			path.append(encodeSegment(segment, charset));
-			slash = true;
-		}
+		appendPath(path, getSegments(), charset);
 		return path.toString();
 	}
 
@@ -1130,12 +1156,7 @@ public class Url implements Serializable
 		Args.notNull(charset, "charset");
 
 		StringBuilder query = new StringBuilder();
-
-		for (QueryParameter parameter : getQueryParameters())
-		{
-			query.append(query.length() == 0 ? '?' : '&');
-			query.append(parameter.toString(charset));
-		}
+		appendQueryString(query, getQueryParameters(), charset);
 		return query.toString();
 	}
 
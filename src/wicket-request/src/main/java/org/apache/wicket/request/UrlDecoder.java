@@ -17,7 +17,10 @@
 package org.apache.wicket.request;
 
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.UnsupportedCharsetException;
 
 /**
  * Adapted from java.net.URLDecoder, but defines instances for query string decoding versus URL path
@@ -69,9 +72,38 @@ public class UrlDecoder
 	 * @return decoded string
 	 * @see java.net.URLDecoder#decode(String, String)
 	 */
-	public String decode(final String s, final Charset enc)
+	public String decode(final String s, final String enc)
 	{
-		return decode(s, enc.name());
+		if (s == null)
+		{
+			return null;
+		}
+
+		if (enc.length() == 0)
+		{
+			throw new RuntimeException(new UnsupportedEncodingException(
+				"URLDecoder: empty string enc parameter"));
+		}
+
+		if (needsDecoding(s) == false)
+		{
+			return s;
+		}
+
+		Charset charset;
+		try
+		{
+			charset = Charset.forName(enc);
+		}
+		catch (IllegalCharsetNameException e)
+		{
+			throw new RuntimeException(new UnsupportedEncodingException(enc));
+		}
+		catch (UnsupportedCharsetException e)
+		{
+			throw new RuntimeException(new UnsupportedEncodingException(enc));
+		}
+		return decode(s, charset);
 	}
 
 	/**
@@ -79,27 +111,25 @@ public class UrlDecoder
 	 *            string to decode
 	 * @param enc
 	 *            encoding to decode with
-	 * @return decoded string
+	 * @return decoded string, <code>s</code> itself if it does not contain any escaped characters
 	 * @see java.net.URLDecoder#decode(String, String)
 	 */
-	public String decode(final String s, final String enc)
+	public String decode(final String s, final Charset enc)
 	{
 		if (s == null)
 		{
 			return null;
 		}
 
-		boolean needToChange = false;
+		if (needsDecoding(s) == false)
+		{
+			return s;
+		}
+
 		int numChars = s.length();
 		StringBuilder sb = new StringBuilder(numChars > 500 ? numChars / 2 : numChars);
 		int i = 0;
 
-		if (enc.length() == 0)
-		{
-			throw new RuntimeException(new UnsupportedEncodingException(
-				"URLDecoder: empty string enc parameter"));
-		}
-
 		char c;
 		byte[] bytes = null;
 		while (i < numChars)
@@ -110,7 +140,6 @@ public class UrlDecoder
 				case '+' :
 					sb.append(decodePlus ? ' ' : '+');
 					i++;
-					needToChange = true;
 					break;
 
 				case '%' :
@@ -120,50 +149,42 @@ public class UrlDecoder
 					 * obtained this way to whatever character(s) they represent in the provided
 					 * encoding.
 					 */
-					try
-					{
-						// (numChars-i)/3 is an upper bound for the number
-						// of remaining bytes
-						if (bytes == null)
-						{
-							bytes = new byte[(numChars - i) / 3];
-						}
-						int pos = 0;
 
-						while (((i + 2) < numChars) && (c == '%'))
-						{
-							bytes[pos++] = (byte)Integer.parseInt(s.substring(i + 1, i + 3), 16);
-							i += 3;
-							if (i < numChars)
-							{
-								c = s.charAt(i);
-							}
-						}
+					// (numChars-i)/3 is an upper bound for the number
+					// of remaining bytes
+					if (bytes == null)
+					{
+						bytes = new byte[(numChars - i) / 3];
+					}
+					int pos = 0;
 
-						// A trailing, incomplete byte encoding such as
-						// "%x" will cause an exception to be thrown
-						if ((i < numChars) && (c == '%'))
+					while (((i + 2) < numChars) && (c == '%'))
+					{
+						int high = Character.digit(s.charAt(i + 1), 16);
+						int low = Character.digit(s.charAt(i + 2), 16);
+						if ((high == -1) || (low == -1))
 						{
 							throw new IllegalArgumentException(
-								"URLDecoder: Incomplete trailing escape (%) pattern");
+								"URLDecoder: Illegal hex characters in escape (%) pattern - " +
+									s.substring(i + 1, i + 3));
 						}
-
-						try
+						bytes[pos++] = (byte)((high << 4) + low);
+						i += 3;
+						if (i < numChars)
 						{
-							sb.append(new String(bytes, 0, pos, enc));
-						}
-						catch (UnsupportedEncodingException e)
-						{
-							throw new RuntimeException(e);
+							c = s.charAt(i);
 						}
 					}
-					catch (NumberFormatException e)
+
+					// A trailing, incomplete byte encoding such as
+					// "%x" will cause an exception to be thrown
+					if ((i < numChars) && (c == '%'))
 					{
 						throw new IllegalArgumentException(
-							"URLDecoder: Illegal hex characters in escape (%) pattern - " +
-								e.getMessage());
+							"URLDecoder: Incomplete trailing escape (%) pattern");
 					}
-					needToChange = true;
+
+					sb.append(enc.decode(ByteBuffer.wrap(bytes, 0, pos)));
 					break;
 
 				default :
@@ -173,6 +194,15 @@ public class UrlDecoder
 			}
 		}
 
-		return (needToChange ? sb.toString() : s);
+		return sb.toString();
+	}
+
+	/**
+	 * @param s
+	 * @return <code>true</code> if the decoded string differs from <code>s</code>
+	 */
+	private boolean needsDecoding(final String s)
+	{
+		return (s.indexOf('%') != -1) || (decodePlus && (s.indexOf('+') != -1));
 	}
 }
\ No newline at end of file
@@ -16,8 +16,9 @@
  */
 package org.apache.wicket.request;
 
-import java.io.CharArrayWriter;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.IllegalCharsetNameException;
 import java.nio.charset.UnsupportedCharsetException;
@@ -66,6 +67,8 @@ public class UrlEncoder
 	// used in decoding
 	protected static final int caseDiff = ('a' - 'A');
 
+	private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
 	/**
 	 * Encoder used to encode name or value components of a query string.<br/>
 	 * <br/>
@@ -246,7 +249,15 @@ public class UrlEncoder
 	 */
 	public String encode(final String s, final Charset charset)
 	{
-		return encode(s, charset.name());
+		Args.notNull(charset, "charset");
+
+		if (needsEncoding(s) == false)
+		{
+			return s;
+		}
+		StringBuilder out = new StringBuilder(s.length() + 16);
+		encode(s, charset, out);
+		return out.toString();
 	}
 
 	/**
@@ -259,13 +270,9 @@ public class UrlEncoder
 	 */
 	public String encode(final String s, final String charsetName)
 	{
-		boolean needToChange = false;
-		StringBuilder out = new StringBuilder(s.length());
-		Charset charset;
-		CharArrayWriter charArrayWriter = new CharArrayWriter();
-
 		Args.notNull(charsetName, "charsetName");
 
+		Charset charset;
 		try
 		{
 			charset = Charset.forName(charsetName);
@@ -279,8 +286,34 @@ public class UrlEncoder
 			throw new RuntimeException(new UnsupportedEncodingException(charsetName));
 		}
 
+		return encode(s, charset);
+	}
+
+	/**
+	 * Encodes the character sequence and appends it to the buffer. Unlike
+	 * {@link #encode(String, Charset)} no intermediate strings are created, sequences which do not
+	 * need encoding are appended as they are.
+	 * 
+	 * @param s
+	 *            character sequence to encode
+	 * @param charset
+	 *            charset to use for encoding
+	 * @param out
+	 *            the buffer to append the encoded sequence to
+	 */
+	public void encode(final CharSequence s, final Charset charset, final StringBuilder out)
+	{
+		Args.notNull(charset, "charset");
+
+		if (needsEncoding(s) == false)
+		{
+			out.append(s);
+			return;
+		}
+
 		boolean stopEncoding = false;
-		for (int i = 0; i < s.length();)
+		final int length = s.length();
+		for (int i = 0; i < length;)
 		{
 			int c = s.charAt(i);
 
@@ -289,90 +322,72 @@ public class UrlEncoder
 				stopEncoding = true;
 			}
 
-			// System.out.println("Examining character: " + c);
 			if ((stopEncoding == true) || dontNeedEncoding.get(c))
 			{
-				if (c == ' ')
-				{
-					c = '+';
-					needToChange = true;
-				}
-				// System.out.println("Storing: " + c);
-				out.append((char)c);
+				out.append(c == ' ' ? '+' : (char)c);
 				i++;
 			}
 			else
 			{
-				// convert to external encoding before hex conversion
+				// convert the run of characters to external encoding before hex conversion
+				final int start = i;
 				do
 				{
-					charArrayWriter.write(c);
 					/*
 					 * If this character represents the start of a Unicode surrogate pair, then pass
 					 * in two characters. It's not clear what should be done if a bytes reserved in
 					 * the surrogate pairs range occurs outside of a legal surrogate pair. For now,
 					 * just treat it as if it were any other character.
 					 */
-					if ((c >= 0xD800) && (c <= 0xDBFF))
+					if ((c >= 0xD800) && (c <= 0xDBFF) && ((i + 1) < length))
 					{
-						/*
-						 * System.out.println(Integer.toHexString(c) + " is high surrogate");
-						 */
-						if ((i + 1) < s.length())
+						int d = s.charAt(i + 1);
+						if ((d >= 0xDC00) && (d <= 0xDFFF))
 						{
-							int d = s.charAt(i + 1);
-							/*
-							 * System.out.println("\tExamining " + Integer.toHexString(d));
-							 */
-							if ((d >= 0xDC00) && (d <= 0xDFFF))
-							{
-								/*
-								 * System.out.println("\t" + Integer.toHexString(d) + " is low
-								 * surrogate");
-								 */
-								charArrayWriter.write(d);
-								i++;
-							}
+							i++;
 						}
 					}
 					i++;
 				}
-				while ((i < s.length()) && !dontNeedEncoding.get((c = s.charAt(i))));
+				while ((i < length) && !dontNeedEncoding.get((c = s.charAt(i))));
 
-				charArrayWriter.flush();
-				String str = new String(charArrayWriter.toCharArray());
-				byte[] ba;
-				try
-				{
-					ba = str.getBytes(charset.name());
-				}
-				catch (UnsupportedEncodingException e)
-				{
-					throw new RuntimeException(e);
-				}
-				for (byte b : ba)
+				ByteBuffer bytes = charset.encode(CharBuffer.wrap(s, start, i));
+				while (bytes.hasRemaining())
 				{
+					int b = bytes.get();
 					out.append('%');
-					char ch = Character.forDigit((b >> 4) & 0xF, 16);
-					// converting to use uppercase letter as part of
-					// the hex value if ch is a letter.
-					if (Character.isLetter(ch))
-					{
-						ch -= caseDiff;
-					}
-					out.append(ch);
-					ch = Character.forDigit(b & 0xF, 16);
-					if (Character.isLetter(ch))
-					{
-						ch -= caseDiff;
-					}
-					out.append(ch);
+					out.append(HEX_DIGITS[(b >> 4) & 0xF]);
+					out.append(HEX_DIGITS[b & 0xF]);
 				}
-				charArrayWriter.reset();
-				needToChange = true;
 			}
 		}
+	}
+
+	/**
+	 * @param s
+	 * @return <code>true</code> if the encoded sequence differs from <code>s</code>
+	 */
+	private boolean needsEncoding(final CharSequence s)
+	{
+		boolean stopEncoding = false;
+		for (int i = 0, length = s.length(); i < length; i++)
+		{
+			int c = s.charAt(i);
+
+			if ((stopEncoding == false) && (c == stopChar))
+			{
+				stopEncoding = true;
+			}
 
-		return (needToChange ? out.toString() : s);
+			if ((stopEncoding == false) && !dontNeedEncoding.get(c))
+			{
+				return true;
+			}
+			if (c == ' ')
+			{
+				return true;
+			}
+		}
+		return false;
 	}
 }
\ No newline at end of file
@@ -16,7 +16,7 @@
  */
 package org.apache.wicket.request;
 
-import java.util.ArrayList;
+import java.nio.charset.Charset;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -44,6 +44,9 @@ public class UrlRenderer
 		PROTO_TO_PORT.put("https", 443);
 	}
 
+	/** relative urls are rendered with the default charset of {@link Url} */
+	private static final Charset DEFAULT_CHARSET = Charset.forName("UTF-8");
+
 	private final Request request;
 	private Url baseUrl;
 
@@ -211,61 +214,64 @@ public class UrlRenderer
 		}
 		else
 		{
-			List<String> baseUrlSegments = getBaseUrl().getSegments();
-			List<String> urlSegments = new ArrayList<String>(url.getSegments());
-
-			List<String> newSegments = new ArrayList<String>();
+			final List<String> baseUrlSegments = getBaseUrl().getSegments();
+			final List<String> urlSegments = url.getSegments();
+			final int baseUrlSize = baseUrlSegments.size();
+			final int urlSize = urlSegments.size();
 
 			int common = 0;
-
-			String last = null;
-
-			for (String s : baseUrlSegments)
+			while ((common < baseUrlSize) && (common < urlSize) &&
+				baseUrlSegments.get(common).equals(urlSegments.get(common)))
 			{
-				if (!urlSegments.isEmpty() && s.equals(urlSegments.get(0)))
-				{
-					++common;
-					last = urlSegments.remove(0);
-				}
-				else
-				{
-					break;
-				}
+				++common;
 			}
 
 			// we want the new URL to have at least one segment (other than possible ../)
-			if ((last != null) && (urlSegments.isEmpty() || (baseUrlSegments.size() == common)))
+			if ((common > 0) && ((common == urlSize) || (baseUrlSize == common)))
 			{
 				--common;
-				urlSegments.add(0, last);
 			}
 
-			int baseUrlSize = baseUrlSegments.size();
-			if (common + 1 == baseUrlSize && urlSegments.isEmpty())
+			// WICKET-4260: prefix with "./" unless the url starts with ".."
+			final StringBuilder render = new StringBuilder(64);
+			render.append("./");
+
+			boolean slash = false;
+			if ((common + 1 == baseUrlSize) && (common == urlSize))
 			{
-				newSegments.add(".");
+				render.append('.');
+				slash = true;
 			}
 			else
 			{
 				for (int i = common + 1; i < baseUrlSize; ++i)
 				{
-					newSegments.add("..");
+					if (slash)
+					{
+						render.append('/');
+					}
+					render.append("..");
+					slash = true;
 				}
 			}
-			newSegments.addAll(urlSegments);
+			if (slash && (common < urlSize))
+			{
+				render.append('/');
+			}
+			Url.appendPath(render, urlSegments.subList(common, urlSize), DEFAULT_CHARSET);
+			Url.appendQueryString(render, url.getQueryParameters(), DEFAULT_CHARSET);
 
-			String renderedUrl = new Url(newSegments, url.getQueryParameters()).toString();
-			if (!renderedUrl.startsWith(".."))
+			if ((render.length() >= 4) && (render.charAt(2) == '.') && (render.charAt(3) == '.'))
 			{
-				// WICKET-4260
-				renderedUrl = "./" + renderedUrl;
+				render.delete(0, 2);
 			}
-			if (renderedUrl.endsWith(".."))
+			final int length = render.length();
+			if ((render.charAt(length - 1) == '.') && (render.charAt(length - 2) == '.'))
 			{
 				// WICKET-4401
-				renderedUrl = renderedUrl + '/';
+				render.append('/');
 			}
-			return renderedUrl;
+			return render.toString();
 		}
 	}
 
@@ -16,7 +16,12 @@
  */
 package org.apache.wicket.request.http;
 
+import java.io.EOFException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import javax.servlet.http.Cookie;
 
@@ -33,6 +38,15 @@ import org.apache.wicket.util.time.Time;
  */
 public abstract class WebResponse extends Response
 {
+	/** the size of the buffers to copy file regions with */
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/** the maximum number of pooled buffers */
+	private static final int MAX_POOLED_BUFFERS = 16;
+
+	/** buffers to copy file regions with, reused to not allocate them for every file */
+	private static final Queue<byte[]> BUFFERS = new ConcurrentLinkedQueue<byte[]>();
+
 	/** Recommended value for cache duration */
 	// one year, maximum recommended cache duration in RFC-2616
 	public static final Duration MAX_CACHE_DURATION = Duration.days(365);
@@ -181,6 +195,57 @@ public abstract class WebResponse extends Response
 	 */
 	public abstract void flush();
 
+	/**
+	 * Writes a region of a file. Implementations which can pass the data of the file to the
+	 * container directly, e.g. with {@link FileChannel#transferTo(long, long,
+	 * java.nio.channels.WritableByteChannel)}, should override this method. By default the region
+	 * is copied with {@link #write(byte[], int, int)} through a pooled buffer, so implementations
+	 * of that method must not keep the array.
+	 * 
+	 * @param channel
+	 *            the channel of the file, which is not closed
+	 * @param position
+	 *            the position of the first byte of the region
+	 * @param count
+	 *            the number of bytes to write
+	 * @throws IOException
+	 *             if the file cannot be read or ends before the region
+	 */
+	public void write(final FileChannel channel, final long position, final long count)
+		throws IOException
+	{
+		byte[] buffer = BUFFERS.poll();
+		if (buffer == null)
+		{
+			buffer = new byte[BUFFER_SIZE];
+		}
+		try
+		{
+			ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+			long offset = position;
+			long end = position + count;
+			while (offset < end)
+			{
+				byteBuffer.clear();
+				byteBuffer.limit((int)Math.min(buffer.length, end - offset));
+				int read = channel.read(byteBuffer, offset);
+				if (read == -1)
+				{
+					throw new EOFException("The file ends before " + end);
+				}
+				write(buffer, 0, read);
+				offset += read;
+			}
+		}
+		finally
+		{
+			if (BUFFERS.size() < MAX_POOLED_BUFFERS)
+			{
+				BUFFERS.offer(buffer);
+			}
+		}
+	}
+
 	/**
 	 * Make this response non-cacheable
 	 */
@@ -18,6 +18,7 @@ package org.apache.wicket.request.mapper;
 
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
@@ -34,6 +35,10 @@ import org.apache.wicket.request.Url;
  * Thread safe compound {@link IRequestMapper}. The mappers are searched depending on their
  * compatibility score and the orders they were registered. If two or more {@link IRequestMapper}s
  * have the same compatibility score, the last registered mapper has highest priority.
+ * <p>
+ * The {@link IIndexableRequestMapper}s are indexed by their mount paths and by the keys of the
+ * handlers they map, so only the mappers which can map a request or a handler are scored and
+ * asked. The other mappers are asked for every request and every handler.
  * 
  * @author igor.vaynberg
  * @author Matej Knopp
@@ -77,6 +82,12 @@ public class CompoundRequestMapper implements ICompoundRequestMapper
 
 	private final List<IRequestMapper> mappers = new CopyOnWriteArrayList<IRequestMapper>();
 
+	/** the index of the mappers, <code>null</code> when it has to be rebuilt */
+	private volatile RequestMapperIndex index;
+
+	/** guards the modifications of the mappers and the rebuilding of the index */
+	private final Object indexLock = new Object();
+
 	/**
 	 * Construct.
 	 */
@@ -89,7 +100,11 @@ public class CompoundRequestMapper implements ICompoundRequestMapper
 	 */
 	public CompoundRequestMapper add(final IRequestMapper mapper)
 	{
-		mappers.add(0, mapper);
+		synchronized (indexLock)
+		{
+			mappers.add(0, mapper);
+			index = null;
+		}
 		return this;
 	}
 
@@ -98,7 +113,11 @@ public class CompoundRequestMapper implements ICompoundRequestMapper
 	 */
 	public CompoundRequestMapper remove(final IRequestMapper mapper)
 	{
-		mappers.remove(mapper);
+		synchronized (indexLock)
+		{
+			mappers.remove(mapper);
+			index = null;
+		}
 		return this;
 	}
 
@@ -108,7 +127,8 @@ public class CompoundRequestMapper implements ICompoundRequestMapper
 	 * mappers are asked to map the request in order depending on the provided compatibility
 	 * score.
 	 * <p>
-	 * The mapper with highest compatibility score which can map the request is returned.
+	 * The mapper with highest compatibility score which can map the request is returned. The
+	 * indexed mappers whose mount path does not match the url are skipped.
 	 * 
 	 * @param request
 	 * @return RequestHandler for the request or <code>null</code> if no mapper for the request is
@@ -116,10 +136,14 @@ public class CompoundRequestMapper implements ICompoundRequestMapper
 	 */
 	public IRequestHandler mapRequest(final Request request)
 	{
-		List<MapperWithScore> list = new ArrayList<MapperWithScore>(mappers.size());
+		RequestMapperIndex currentIndex = getIndex();
+		List<IRequestMapper> indexedMappers = currentIndex.getMappers();
+		BitSet candidates = currentIndex.getCandidates(request.getUrl());
+		List<MapperWithScore> list = new ArrayList<MapperWithScore>(candidates.cardinality());
 
-		for (IRequestMapper mapper : mappers)
+		for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1))
 		{
+			IRequestMapper mapper = indexedMappers.get(i);
 			int score = mapper.getCompatibilityScore(request);
 			list.add(new MapperWithScore(mapper, score));
 		}
@@ -146,24 +170,57 @@ public class CompoundRequestMapper implements ICompoundRequestMapper
 	 * no more mappers are left.
 	 * <p>
 	 * The mappers are searched in reverse order as they have been registered. More recently
-	 * registered mappers have bigger priority.
+	 * registered mappers have bigger priority. The indexed mappers for other handler keys are
+	 * skipped.
 	 * 
 	 * @param handler
 	 * @return Url for the handler or <code>null</code> if no mapper for the handler is found.
 	 */
 	public Url mapHandler(final IRequestHandler handler)
 	{
-		for (IRequestMapper mapper : mappers)
+		RequestMapperIndex currentIndex = getIndex();
+		List<IRequestMapper> indexedMappers = currentIndex.getMappers();
+		Object handlerKey = getHandlerKey(handler);
+		if (handlerKey == null)
 		{
-			Url url = mapper.mapHandler(handler);
-			if (url != null)
+			for (IRequestMapper mapper : indexedMappers)
 			{
-				return url;
+				Url url = mapper.mapHandler(handler);
+				if (url != null)
+				{
+					return url;
+				}
+			}
+		}
+		else
+		{
+			BitSet candidates = currentIndex.getCandidates(handlerKey);
+			for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1))
+			{
+				Url url = indexedMappers.get(i).mapHandler(handler);
+				if (url != null)
+				{
+					return url;
+				}
 			}
 		}
 		return null;
 	}
 
+	/**
+	 * Returns the key of the handler which is compared with
+	 * {@link IIndexableRequestMapper#getHandlerKey()} to find the mappers which may map it. The
+	 * compound mapper does not know any handlers, so it returns <code>null</code> and all mappers
+	 * are asked. Subclasses which know the handlers of the registered mappers can override this.
+	 * 
+	 * @param handler
+	 * @return the key of the handler or <code>null</code> if all mappers have to be asked
+	 */
+	protected Object getHandlerKey(final IRequestHandler handler)
+	{
+		return null;
+	}
+
 	/**
 	 * The scope of the compound mapper is the highest score of the registered mappers.
 	 * 
@@ -171,14 +228,44 @@ public class CompoundRequestMapper implements ICompoundRequestMapper
 	 */
 	public int getCompatibilityScore(final Request request)
 	{
+		RequestMapperIndex currentIndex = getIndex();
+		List<IRequestMapper> indexedMappers = currentIndex.getMappers();
+		BitSet candidates = currentIndex.getCandidates(request.getUrl());
+
 		int score = Integer.MIN_VALUE;
-		for (IRequestMapper mapper : mappers)
+		for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1))
 		{
-			score = Math.max(score, mapper.getCompatibilityScore(request));
+			score = Math.max(score, indexedMappers.get(i).getCompatibilityScore(request));
+		}
+		if (candidates.cardinality() < indexedMappers.size())
+		{
+			// the skipped mappers score 0
+			score = Math.max(score, 0);
 		}
 		return score;
 	}
 
+	/**
+	 * @return the index of the current mappers
+	 */
+	private RequestMapperIndex getIndex()
+	{
+		RequestMapperIndex current = index;
+		if (current == null)
+		{
+			synchronized (indexLock)
+			{
+				current = index;
+				if (current == null)
+				{
+					current = new RequestMapperIndex(new ArrayList<IRequestMapper>(mappers));
+					index = current;
+				}
+			}
+		}
+		return current;
+	}
+
 	public Iterator<IRequestMapper> iterator()
 	{
 		return mappers.iterator();
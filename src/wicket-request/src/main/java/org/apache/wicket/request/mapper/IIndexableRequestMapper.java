@@ -0,0 +1,58 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.request.mapper;
+
+import org.apache.wicket.request.IRequestHandler;
+import org.apache.wicket.request.IRequestMapper;
+import org.apache.wicket.request.Request;
+
+/**
+ * A {@link IRequestMapper} which {@link CompoundRequestMapper} can index by its mount path and by
+ * the handlers it maps, so it is neither scored nor asked to map requests and handlers which it
+ * cannot map anyway. This matters for applications with many mounted pages and resources.
+ * 
+ * @see CompoundRequestMapper
+ */
+public interface IIndexableRequestMapper extends IRequestMapper
+{
+	/**
+	 * Returns the segments of the mount path. A segment is either a fixed segment, a placeholder
+	 * <code>${name}</code> which matches any segment or an optional placeholder
+	 * <code>#{name}</code> which matches any or no segment.
+	 * <p>
+	 * The mapper promises that {@link #mapRequest(Request)} returns <code>null</code> and
+	 * {@link #getCompatibilityScore(Request)} returns <code>0</code> for any request whose
+	 * url has segments which do not start with the mount path. Requests whose url has no segments
+	 * are not indexed. The segments must not change while the mapper is registered.
+	 * 
+	 * @return the segments of the mount path or <code>null</code> if the mapper cannot be indexed
+	 *         by url, e.g. because a subclass maps other urls
+	 */
+	String[] getMountPathSegments();
+
+	/**
+	 * Returns the key of the handlers this mapper maps. The mapper promises that
+	 * {@link #mapHandler(IRequestHandler)} returns <code>null</code> for any handler whose key, as
+	 * determined by the compound mapper, is different. The key must not change while the mapper is
+	 * registered.
+	 * 
+	 * @return the key of the handlers or <code>null</code> if the mapper cannot be indexed by
+	 *         handler
+	 * @see CompoundRequestMapper#getHandlerKey(IRequestHandler)
+	 */
+	Object getHandlerKey();
+}
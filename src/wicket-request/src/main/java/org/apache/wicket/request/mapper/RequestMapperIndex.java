@@ -0,0 +1,240 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.request.mapper;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.wicket.request.IRequestMapper;
+import org.apache.wicket.request.Url;
+
+/**
+ * Immutable index of the mappers of a {@link CompoundRequestMapper}: a trie over the mount path
+ * segments of the {@link IIndexableRequestMapper}s and a map from handler keys to mappers. The
+ * lookups return the positions of the candidate mappers in the list the index has been built
+ * from. The mappers which cannot be indexed are candidates for every lookup.
+ * 
+ * @see IIndexableRequestMapper
+ */
+class RequestMapperIndex
+{
+	private final List<IRequestMapper> mappers;
+
+	private final Node root = new Node();
+
+	/** the mappers which are not indexed by url */
+	private final BitSet notIndexedByUrl = new BitSet();
+
+	/** the mappers which are not indexed by handler key */
+	private final BitSet notIndexedByHandler = new BitSet();
+
+	private final Map<Object, BitSet> byHandlerKey = new HashMap<Object, BitSet>();
+
+	/**
+	 * Construct.
+	 * 
+	 * @param mappers
+	 *            the mappers to index, must not be modified afterwards
+	 */
+	RequestMapperIndex(final List<IRequestMapper> mappers)
+	{
+		this.mappers = mappers;
+
+		for (int position = 0; position < mappers.size(); position++)
+		{
+			IRequestMapper mapper = mappers.get(position);
+			String[] segments = null;
+			Object handlerKey = null;
+			if (mapper instanceof IIndexableRequestMapper)
+			{
+				IIndexableRequestMapper indexable = (IIndexableRequestMapper)mapper;
+				segments = indexable.getMountPathSegments();
+				handlerKey = indexable.getHandlerKey();
+			}
+
+			if (segments != null)
+			{
+				root.add(segments, 0, position);
+			}
+			else
+			{
+				notIndexedByUrl.set(position);
+			}
+
+			if (handlerKey != null)
+			{
+				BitSet positions = byHandlerKey.get(handlerKey);
+				if (positions == null)
+				{
+					positions = new BitSet();
+					byHandlerKey.put(handlerKey, positions);
+				}
+				positions.set(position);
+			}
+			else
+			{
+				notIndexedByHandler.set(position);
+			}
+		}
+	}
+
+	/**
+	 * @return the indexed mappers
+	 */
+	List<IRequestMapper> getMappers()
+	{
+		return mappers;
+	}
+
+	/**
+	 * @param url
+	 * @return the positions of the mappers which may map a request to the url
+	 */
+	BitSet getCandidates(final Url url)
+	{
+		BitSet candidates;
+		if (url == null || url.getSegments().isEmpty())
+		{
+			candidates = new BitSet();
+			candidates.set(0, mappers.size());
+		}
+		else
+		{
+			candidates = (BitSet)notIndexedByUrl.clone();
+			root.collect(url.getSegments(), 0, candidates);
+		}
+		return candidates;
+	}
+
+	/**
+	 * @param handlerKey
+	 * @return the positions of the mappers which may map a handler with the key
+	 */
+	BitSet getCandidates(final Object handlerKey)
+	{
+		BitSet candidates = (BitSet)notIndexedByHandler.clone();
+		BitSet indexed = byHandlerKey.get(handlerKey);
+		if (indexed != null)
+		{
+			candidates.or(indexed);
+		}
+		return candidates;
+	}
+
+	private static boolean isPlaceholder(final String segment, final char startChar)
+	{
+		return segment.length() >= 4 && segment.charAt(0) == startChar &&
+			segment.charAt(1) == '{' && segment.charAt(segment.length() - 1) == '}';
+	}
+
+	/**
+	 * A node of the trie. The mappers whose mount path ends at the node are candidates for all urls
+	 * which reach it, as the remaining segments of the url may be parameters.
+	 */
+	private static class Node
+	{
+		private Map<String, Node> fixed;
+
+		private Node placeholder;
+
+		private Node optionalPlaceholder;
+
+		private BitSet mappers;
+
+		private void add(final String[] segments, final int index, final int position)
+		{
+			if (index == segments.length)
+			{
+				if (mappers == null)
+				{
+					mappers = new BitSet();
+				}
+				mappers.set(position);
+				return;
+			}
+
+			String segment = segments[index];
+			Node child;
+			if (isPlaceholder(segment, '$'))
+			{
+				if (placeholder == null)
+				{
+					placeholder = new Node();
+				}
+				child = placeholder;
+			}
+			else if (isPlaceholder(segment, '#'))
+			{
+				if (optionalPlaceholder == null)
+				{
+					optionalPlaceholder = new Node();
+				}
+				child = optionalPlaceholder;
+			}
+			else
+			{
+				if (fixed == null)
+				{
+					fixed = new HashMap<String, Node>();
+				}
+				child = fixed.get(segment);
+				if (child == null)
+				{
+					child = new Node();
+					fixed.put(segment, child);
+				}
+			}
+			child.add(segments, index + 1, position);
+		}
+
+		private void collect(final List<String> segments, final int index, final BitSet result)
+		{
+			if (mappers != null)
+			{
+				result.or(mappers);
+			}
+
+			if (optionalPlaceholder != null)
+			{
+				// the optional placeholder matches no segment
+				optionalPlaceholder.collect(segments, index, result);
+			}
+
+			if (index < segments.size())
+			{
+				if (fixed != null)
+				{
+					Node child = fixed.get(segments.get(index));
+					if (child != null)
+					{
+						child.collect(segments, index + 1, result);
+					}
+				}
+				if (placeholder != null)
+				{
+					placeholder.collect(segments, index + 1, result);
+				}
+				if (optionalPlaceholder != null)
+				{
+					optionalPlaceholder.collect(segments, index + 1, result);
+				}
+			}
+		}
+	}
+}
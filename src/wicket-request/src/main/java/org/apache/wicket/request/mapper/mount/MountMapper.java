@@ -21,6 +21,7 @@ import org.apache.wicket.request.IRequestMapper;
 import org.apache.wicket.request.Request;
 import org.apache.wicket.request.Url;
 import org.apache.wicket.request.mapper.AbstractMapper;
+import org.apache.wicket.request.mapper.IIndexableRequestMapper;
 import org.apache.wicket.util.lang.Args;
 import org.apache.wicket.util.lang.Checks;
 import org.apache.wicket.util.string.StringValue;
@@ -30,7 +31,7 @@ import org.apache.wicket.util.string.StringValue;
  * 
  * @author igor.vaynberg
  */
-public class MountMapper extends AbstractMapper
+public class MountMapper extends AbstractMapper implements IIndexableRequestMapper
 {
 	private final String[] mountSegments;
 	private final IMountedRequestMapper mapper;
@@ -95,6 +96,24 @@ public class MountMapper extends AbstractMapper
 		}
 	}
 
+	/**
+	 * @see org.apache.wicket.request.mapper.IIndexableRequestMapper#getMountPathSegments()
+	 */
+	public String[] getMountPathSegments()
+	{
+		return mountSegments.clone();
+	}
+
+	/**
+	 * The handlers are mapped by the mounted mapper, so they are not indexed.
+	 * 
+	 * @see org.apache.wicket.request.mapper.IIndexableRequestMapper#getHandlerKey()
+	 */
+	public Object getHandlerKey()
+	{
+		return null;
+	}
+
 	/**
 	 * 
 	 * @param request
@@ -16,6 +16,8 @@
  */
 package org.apache.wicket.request;
 
+import java.nio.charset.Charset;
+
 import org.apache.wicket.util.crypt.CharEncoding;
 import org.junit.Assert;
 import org.junit.Test;
@@ -49,4 +51,32 @@ public class UrlEncoderTest extends Assert
 		String encoded = UrlEncoder.PATH_INSTANCE.encode("path;jsessionid=1234567890", CharEncoding.UTF_8);
 		assertEquals("path;jsessionid=1234567890", encoded);
 	}
+
+	/**
+	 * Encoding into a buffer gives the same result as encoding into a string
+	 */
+	@Test
+	public void encodeIntoBuffer()
+	{
+		String[] values = { "plain", "a b+c&d=e", "\u00e9\u20ac\ud834\udd1e", "a/b?c d", "" };
+		for (String value : values)
+		{
+			for (UrlEncoder encoder : new UrlEncoder[] { UrlEncoder.QUERY_INSTANCE,
+					UrlEncoder.PATH_INSTANCE, UrlEncoder.FULL_PATH_INSTANCE })
+			{
+				StringBuilder buffer = new StringBuilder("x");
+				encoder.encode(value, Charset.forName(CharEncoding.UTF_8), buffer);
+				assertEquals("x" + encoder.encode(value, CharEncoding.UTF_8), buffer.toString());
+			}
+		}
+
+		assertEquals("%C3%A9%E2%82%AC%F0%9D%84%9E",
+			UrlEncoder.PATH_INSTANCE.encode("\u00e9\u20ac\ud834\udd1e", CharEncoding.UTF_8));
+		assertEquals("a/b%20c?d+e",
+			UrlEncoder.FULL_PATH_INSTANCE.encode("a/b c?d e", CharEncoding.UTF_8));
+
+		String plain = "no-encoding_needed.html";
+		assertSame(plain, UrlEncoder.QUERY_INSTANCE.encode(plain, CharEncoding.UTF_8));
+		assertSame(plain, UrlDecoder.QUERY_INSTANCE.decode(plain, CharEncoding.UTF_8));
+	}
 }
@@ -763,4 +763,58 @@ public class UrlTest extends Assert
 		assertEquals(Integer.valueOf(9090), url.getPort());
 
 	}
+
+	/**
+	 * Segments and parameters which do not need decoding are taken from the parsed string as they
+	 * are, '://' and slashes in the query string do not affect the path
+	 */
+	@Test
+	public void parseSinglePass()
+	{
+		Url url = Url.parse("a/b%20c/d+e/?x=1=2&&y&z=a://b/c&%C3%A9=%E2%82%AC+");
+		checkSegments(url, "a", "b c", "d+e", "");
+		checkQueryParams(url, "x", "1", "y", "", "z", "a://b/c", "\u00e9", "\u20ac ");
+
+		url = Url.parse("https://host:8443?a=b");
+		assertEquals("https", url.getProtocol());
+		assertEquals("host", url.getHost());
+		assertEquals(Integer.valueOf(8443), url.getPort());
+		checkSegments(url, "", "");
+		checkQueryParams(url, "a", "b");
+
+		url = Url.parse("http://host/a?b=://");
+		assertEquals(Integer.valueOf(80), url.getPort());
+		checkSegments(url, "", "a");
+		checkQueryParams(url, "b", "://");
+	}
+
+	/**
+	 * {@link Url#appendTo(StringBuilder, StringMode, Charset)} appends the same as toString()
+	 */
+	@Test
+	public void appendTo()
+	{
+		Url url = Url.parse("http://host:8080/a/b c/\u00e9?x=1&y=a b&z");
+		StringBuilder buffer = new StringBuilder("<a href=\"");
+
+		url.appendTo(buffer, StringMode.LOCAL, url.getCharset());
+		assertEquals("<a href=\"/a/b%20c/%C3%A9?x=1&y=a+b&z", buffer.toString());
+		assertEquals(url.toString(), buffer.substring(9));
+
+		buffer.setLength(0);
+		url.appendTo(buffer, StringMode.FULL, url.getCharset());
+		assertEquals("http://host:8080/a/b%20c/%C3%A9?x=1&y=a+b&z", buffer.toString());
+
+		url = Url.parse("a/../b");
+		url.setHost("host");
+		try
+		{
+			url.appendTo(new StringBuilder(), StringMode.FULL, url.getCharset());
+			fail();
+		}
+		catch (IllegalStateException expected)
+		{
+			// expected
+		}
+	}
 }
@@ -16,6 +16,14 @@
  */
 package org.apache.wicket.request.mapper;
 
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import org.apache.wicket.request.IRequestCycle;
+import org.apache.wicket.request.IRequestHandler;
+import org.apache.wicket.request.IRequestMapper;
+import org.apache.wicket.request.Request;
 import org.apache.wicket.request.Url;
 import org.apache.wicket.request.handler.EmptyRequestHandler;
 import org.apache.wicket.request.mapper.CompoundRequestMapper.MapperWithScore;
@@ -82,4 +90,208 @@ public class CompoundRequestMapperTest extends Assert
 	{
 		return new MapperWithScore(null, score);
 	}
+
+	/**
+	 * Only the indexed mappers whose mount path matches the url are scored and asked
+	 */
+	@Test
+	public void mapRequestWithIndex()
+	{
+		CompoundRequestMapper compound = new CompoundRequestMapper();
+		CountingMapper placeholder = new CountingMapper("a/${x}", null);
+		CountingMapper fixed = new CountingMapper("a/b", null);
+		CountingMapper other = new CountingMapper("c", null);
+		CountingMapper notIndexed = new CountingMapper("a/b", null)
+		{
+			@Override
+			public String[] getMountPathSegments()
+			{
+				return null;
+			}
+		};
+		compound.add(notIndexed);
+		compound.add(placeholder);
+		compound.add(fixed);
+		compound.add(other);
+
+		IRequestHandler handler = compound.mapRequest(compound.createRequest(Url.parse("a/b/d")));
+		assertSame(fixed.handler, handler);
+		assertEquals(0, other.scored);
+		assertEquals(0, other.requests);
+		assertEquals(1, notIndexed.scored);
+		assertEquals(1, placeholder.scored);
+
+		handler = compound.mapRequest(compound.createRequest(Url.parse("a/e")));
+		assertSame(placeholder.handler, handler);
+		assertEquals(1, fixed.scored);
+		assertEquals(0, other.scored);
+
+		// a url without segments is not indexed
+		assertNull(compound.mapRequest(compound.createRequest(Url.parse(""))));
+		assertEquals(1, other.scored);
+
+		assertEquals(1, compound.getCompatibilityScore(compound.createRequest(Url.parse("c/d"))));
+		assertEquals(0, compound.getCompatibilityScore(compound.createRequest(Url.parse("x"))));
+
+		// the index is rebuilt after a modification
+		compound.remove(fixed);
+		handler = compound.mapRequest(compound.createRequest(Url.parse("a/b")));
+		assertSame(placeholder.handler, handler);
+	}
+
+	/**
+	 * Only the indexed mappers for the key of the handler are asked
+	 */
+	@Test
+	public void mapHandlerWithIndex()
+	{
+		CompoundRequestMapper compound = new CompoundRequestMapper()
+		{
+			@Override
+			protected Object getHandlerKey(IRequestHandler handler)
+			{
+				return handler instanceof KeyedHandler ? ((KeyedHandler)handler).key : null;
+			}
+		};
+		CountingMapper first = new CountingMapper("first", "1");
+		CountingMapper second = new CountingMapper("second", "2");
+		CountingMapper notIndexed = new CountingMapper("third", null);
+		compound.add(notIndexed);
+		compound.add(first);
+		compound.add(second);
+
+		assertEquals("first", compound.mapHandler(first.handler).toString());
+		assertEquals(0, second.handlers);
+		assertEquals(1, first.handlers);
+
+		// handlers without key are offered to all mappers
+		assertEquals("third", compound.mapHandler(notIndexed.handler).toString());
+		assertEquals(1, second.handlers);
+		assertEquals(2, first.handlers);
+		assertEquals(1, notIndexed.handlers);
+	}
+
+	/**
+	 * The trie matches fixed segments, placeholders and optional placeholders
+	 */
+	@Test
+	public void trie()
+	{
+		List<IRequestMapper> mappers = new ArrayList<IRequestMapper>();
+		mappers.add(new CountingMapper("a/#{o}/b", null));
+		mappers.add(new CountingMapper("a/${p}/c", null));
+		mappers.add(new CountingMapper("${p}", null));
+		mappers.add(new CountingMapper("/", null));
+		RequestMapperIndex index = new RequestMapperIndex(mappers);
+
+		assertEquals(bits(0, 2, 3), index.getCandidates(Url.parse("a/b")));
+		assertEquals(bits(0, 2, 3), index.getCandidates(Url.parse("a/x/b/y")));
+		assertEquals(bits(1, 2, 3), index.getCandidates(Url.parse("a/x/c")));
+		assertEquals(bits(2, 3), index.getCandidates(Url.parse("a/x/y")));
+		assertEquals(bits(0, 1, 2, 3), index.getCandidates(Url.parse("")));
+	}
+
+	private static BitSet bits(int... positions)
+	{
+		BitSet bits = new BitSet();
+		for (int position : positions)
+		{
+			bits.set(position);
+		}
+		return bits;
+	}
+
+	private static class KeyedHandler implements IRequestHandler
+	{
+		private final Object key;
+
+		private KeyedHandler(Object key)
+		{
+			this.key = key;
+		}
+
+		public void respond(IRequestCycle requestCycle)
+		{
+		}
+
+		public void detach(IRequestCycle requestCycle)
+		{
+		}
+	}
+
+	/**
+	 * Maps the urls starting with the mount path, where placeholders match any segment, and its
+	 * handler to the mount path
+	 */
+	private static class CountingMapper implements IIndexableRequestMapper
+	{
+		private final String mountPath;
+
+		private final String[] segments;
+
+		private final Object key;
+
+		private final IRequestHandler handler;
+
+		private int scored;
+
+		private int requests;
+
+		private int handlers;
+
+		private CountingMapper(String mountPath, Object key)
+		{
+			this.mountPath = mountPath;
+			segments = Url.parse(mountPath.startsWith("/") ? mountPath.substring(1) : mountPath)
+				.getSegments()
+				.toArray(new String[0]);
+			this.key = key;
+			handler = key != null ? new KeyedHandler(key) : new EmptyRequestHandler();
+		}
+
+		private boolean matches(Request request)
+		{
+			List<String> urlSegments = request.getUrl().getSegments();
+			if (urlSegments.size() < segments.length)
+			{
+				return false;
+			}
+			for (int i = 0; i < segments.length; i++)
+			{
+				if (!segments[i].startsWith("${") && !segments[i].equals(urlSegments.get(i)))
+				{
+					return false;
+				}
+			}
+			return true;
+		}
+
+		public IRequestHandler mapRequest(Request request)
+		{
+			requests++;
+			return matches(request) ? handler : null;
+		}
+
+		public int getCompatibilityScore(Request request)
+		{
+			scored++;
+			return matches(request) ? segments.length : 0;
+		}
+
+		public Url mapHandler(IRequestHandler requestHandler)
+		{
+			handlers++;
+			return requestHandler == handler ? Url.parse(mountPath) : null;
+		}
+
+		public String[] getMountPathSegments()
+		{
+			return segments;
+		}
+
+		public Object getHandlerKey()
+		{
+			return key;
+		}
+	}
 }
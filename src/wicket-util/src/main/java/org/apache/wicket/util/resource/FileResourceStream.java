@@ -20,7 +20,11 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URLConnection;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 
 import org.apache.wicket.util.file.File;
 import org.apache.wicket.util.lang.Bytes;
@@ -37,7 +41,8 @@ import org.apache.wicket.util.time.Time;
 // TODO Wicket 1.6 - make #file mandatory. Args.notNull(file).
 public class FileResourceStream extends AbstractResourceStream
 	implements
-		IFixedLocationResourceStream
+		IFixedLocationResourceStream,
+		ISeekableResourceStream
 {
 	private static final long serialVersionUID = 1L;
 
@@ -126,6 +131,67 @@ public class FileResourceStream extends AbstractResourceStream
 		return inputStream;
 	}
 
+	/**
+	 * Writes the range with {@link FileChannel#transferTo(long, long, WritableByteChannel)}, so the
+	 * bytes before the range are not read. Once nothing is transferred the rest of the range is
+	 * copied through a buffer.
+	 * 
+	 * @see org.apache.wicket.util.resource.ISeekableResourceStream#writeRange(java.io.OutputStream,
+	 *      long, long)
+	 */
+	public void writeRange(final OutputStream out, final long offset, final long length)
+		throws IOException, ResourceStreamNotFoundException
+	{
+		final FileInputStream in;
+		try
+		{
+			in = new FileInputStream(file);
+		}
+		catch (FileNotFoundException e)
+		{
+			throw new ResourceStreamNotFoundException("Resource " + file + " could not be found",
+				e);
+		}
+
+		try
+		{
+			FileChannel channel = in.getChannel();
+			WritableByteChannel target = Channels.newChannel(out);
+			long position = offset;
+			long end = offset + length;
+			while (position < end)
+			{
+				long transferred = channel.transferTo(position, end - position, target);
+				if (transferred <= 0)
+				{
+					// retrying might spin, the copy blocks or reports the end of the file
+					break;
+				}
+				position += transferred;
+			}
+
+			if (position < end)
+			{
+				channel.position(position);
+				byte[] buffer = new byte[(int)Math.min(4096, end - position)];
+				while (position < end)
+				{
+					int read = in.read(buffer, 0, (int)Math.min(buffer.length, end - position));
+					if (read == -1)
+					{
+						throw new IOException("Resource " + file + " ends before " + end);
+					}
+					out.write(buffer, 0, read);
+					position += read;
+				}
+			}
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+
 	/**
 	 * @see org.apache.wicket.util.watch.IModifiable#lastModifiedTime()
 	 * @return The last time this resource was modified
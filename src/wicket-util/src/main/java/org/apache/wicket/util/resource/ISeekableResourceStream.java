@@ -0,0 +1,46 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.util.resource;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A resource stream whose data can be read from any position, without reading the bytes before it.
+ * Such resource streams can serve parts of their data efficiently, e.g. for HTTP range requests.
+ * 
+ * @see FileResourceStream
+ */
+public interface ISeekableResourceStream extends IResourceStream
+{
+	/**
+	 * Writes a range of the data of the resource. The range is independent of the input stream
+	 * returned by {@link #getInputStream()}, so several ranges can be written in any order.
+	 * 
+	 * @param out
+	 *            the stream to write to
+	 * @param offset
+	 *            the position of the first byte of the range
+	 * @param length
+	 *            the number of bytes to write
+	 * @throws IOException
+	 *             if the data cannot be read or written, or the resource ends before the range
+	 * @throws ResourceStreamNotFoundException
+	 */
+	void writeRange(OutputStream out, long offset, long length) throws IOException,
+		ResourceStreamNotFoundException;
+}
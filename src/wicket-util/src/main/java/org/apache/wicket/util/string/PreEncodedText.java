@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.util.string;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+
+import org.apache.wicket.util.lang.Args;
+
+/**
+ * A text which never changes and which keeps its encoded form, so it has to be encoded only once
+ * instead of every time it is written, e.g. the static parts of a markup template.
+ * <p>
+ * The encoded form is kept for the last charset it has been asked for only, since all responses of
+ * an application are usually written in the same charset.
+ */
+public final class PreEncodedText implements CharSequence
+{
+	private final String text;
+
+	private volatile Encoded encoded;
+
+	/**
+	 * Construct.
+	 * 
+	 * @param text
+	 */
+	public PreEncodedText(final CharSequence text)
+	{
+		Args.notNull(text, "text");
+		this.text = text.toString();
+	}
+
+	/**
+	 * Gets the text encoded with the given charset. The returned array is shared and must not be
+	 * modified.
+	 * 
+	 * @param charset
+	 * @return the encoded text
+	 */
+	public byte[] getBytes(final Charset charset)
+	{
+		Args.notNull(charset, "charset");
+
+		Encoded current = encoded;
+		if (current == null || current.charset.equals(charset) == false)
+		{
+			ByteBuffer buffer = charset.encode(CharBuffer.wrap(text));
+			byte[] bytes = new byte[buffer.remaining()];
+			buffer.get(bytes);
+			current = new Encoded(charset, bytes);
+			encoded = current;
+		}
+		return current.bytes;
+	}
+
+	/**
+	 * @see java.lang.CharSequence#length()
+	 */
+	public int length()
+	{
+		return text.length();
+	}
+
+	/**
+	 * @see java.lang.CharSequence#charAt(int)
+	 */
+	public char charAt(final int index)
+	{
+		return text.charAt(index);
+	}
+
+	/**
+	 * @see java.lang.CharSequence#subSequence(int, int)
+	 */
+	public CharSequence subSequence(final int start, final int end)
+	{
+		return text.subSequence(start, end);
+	}
+
+	/**
+	 * @see java.lang.Object#equals(java.lang.Object)
+	 */
+	@Override
+	public boolean equals(final Object obj)
+	{
+		if (obj instanceof PreEncodedText)
+		{
+			return text.equals(((PreEncodedText)obj).text);
+		}
+		return false;
+	}
+
+	/**
+	 * @see java.lang.Object#hashCode()
+	 */
+	@Override
+	public int hashCode()
+	{
+		return text.hashCode();
+	}
+
+	/**
+	 * @return the text
+	 */
+	@Override
+	public String toString()
+	{
+		return text;
+	}
+
+	/**
+	 * The encoded text along with its charset, so both can be replaced at once
+	 */
+	private static final class Encoded
+	{
+		private final Charset charset;
+
+		private final byte[] bytes;
+
+		private Encoded(final Charset charset, final byte[] bytes)
+		{
+			this.charset = charset;
+			this.bytes = bytes;
+		}
+	}
+}
@@ -0,0 +1,726 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.util.value;
+
+import java.io.Serializable;
+import java.lang.reflect.Array;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.lang.Objects;
+import org.apache.wicket.util.string.StringValue;
+import org.apache.wicket.util.string.StringValueConversionException;
+import org.apache.wicket.util.time.Duration;
+import org.apache.wicket.util.time.Time;
+
+
+/**
+ * An immutable <code>IValueMap</code> which keeps its keys and values in two parallel arrays.
+ * <p>
+ * It is meant for small maps which are kept for a long time, like the attributes of the tags of
+ * cached markup: it needs a fraction of the memory of a <code>ValueMap</code> and a lookup is a
+ * linear scan, which for a few entries is as fast as hashing. The keys are interned, so the same
+ * attribute names used by many tags are shared. The values are not, as they may be arbitrary and
+ * interned strings are never collected on older JVMs.
+ * <p>
+ * The order of the entries is the iteration order of the copied <code>Map</code>. Attempts to
+ * change the map result in an <code>UnsupportedOperationException</code>; use
+ * <code>new ValueMap(map)</code> for a mutable copy.
+ * 
+ * @see ValueMap
+ */
+public final class CompactValueMap extends AbstractMap<String, Object>
+	implements
+		IValueMap,
+		Serializable
+{
+	private static final long serialVersionUID = 1L;
+
+	private final String[] keys;
+
+	private final Object[] values;
+
+	/** lazily created view of the entries */
+	private transient Set<Map.Entry<String, Object>> entrySet;
+
+	/**
+	 * Copy constructor.
+	 * 
+	 * @param map
+	 *            the <code>Map</code> to be copied
+	 */
+	public CompactValueMap(final Map<? extends String, ?> map)
+	{
+		Args.notNull(map, "map");
+
+		keys = new String[map.size()];
+		values = new Object[keys.length];
+		int index = 0;
+		for (Map.Entry<? extends String, ?> entry : map.entrySet())
+		{
+			String key = entry.getKey();
+			keys[index] = key != null ? key.intern() : null;
+
+			Object value = entry.getValue();
+			if (value instanceof CharSequence)
+			{
+				value = value.toString();
+			}
+			values[index] = value;
+			index++;
+		}
+	}
+
+	/**
+	 * Gets the index of a key.
+	 * 
+	 * @param key
+	 * @return the index of the key or -1 if there is no entry with that key
+	 */
+	private int indexOf(final Object key)
+	{
+		// the keys are interned, so comparing the references usually finds them
+		for (int i = 0; i < keys.length; i++)
+		{
+			if (keys[i] == key)
+			{
+				return i;
+			}
+		}
+		if (key != null)
+		{
+			for (int i = 0; i < keys.length; i++)
+			{
+				if (key.equals(keys[i]))
+				{
+					return i;
+				}
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @see java.util.Map#size()
+	 */
+	@Override
+	public int size()
+	{
+		return keys.length;
+	}
+
+	/**
+	 * @see java.util.Map#containsKey(java.lang.Object)
+	 */
+	@Override
+	public boolean containsKey(final Object key)
+	{
+		return indexOf(key) != -1;
+	}
+
+	/**
+	 * @see java.util.Map#get(java.lang.Object)
+	 */
+	@Override
+	public Object get(final Object key)
+	{
+		int index = indexOf(key);
+		return index != -1 ? values[index] : null;
+	}
+
+	/**
+	 * @see java.util.Map#entrySet()
+	 */
+	@Override
+	public Set<Map.Entry<String, Object>> entrySet()
+	{
+		if (entrySet == null)
+		{
+			entrySet = new AbstractSet<Map.Entry<String, Object>>()
+			{
+				@Override
+				public Iterator<Map.Entry<String, Object>> iterator()
+				{
+					return new EntryIterator();
+				}
+
+				@Override
+				public int size()
+				{
+					return keys.length;
+				}
+			};
+		}
+		return entrySet;
+	}
+
+	/**
+	 * @see java.util.Map#put(Object, Object)
+	 */
+	@Override
+	public Object put(final String key, final Object value)
+	{
+		throw new UnsupportedOperationException("Map is immutable");
+	}
+
+	/**
+	 * @see java.util.Map#putAll(java.util.Map)
+	 */
+	@Override
+	public void putAll(final Map<? extends String, ?> map)
+	{
+		throw new UnsupportedOperationException("Map is immutable");
+	}
+
+	/**
+	 * @see java.util.Map#remove(java.lang.Object)
+	 */
+	@Override
+	public Object remove(final Object key)
+	{
+		throw new UnsupportedOperationException("Map is immutable");
+	}
+
+	/**
+	 * @see java.util.Map#clear()
+	 */
+	@Override
+	public void clear()
+	{
+		throw new UnsupportedOperationException("Map is immutable");
+	}
+
+	/**
+	 * @see IValueMap#isImmutable()
+	 */
+	public boolean isImmutable()
+	{
+		return true;
+	}
+
+	/**
+	 * @see IValueMap#makeImmutable()
+	 */
+	public IValueMap makeImmutable()
+	{
+		return this;
+	}
+
+	/**
+	 * @see IValueMap#getBoolean(String)
+	 */
+	public boolean getBoolean(final String key) throws StringValueConversionException
+	{
+		return getStringValue(key).toBoolean();
+	}
+
+	/**
+	 * @see IValueMap#getDouble(String)
+	 */
+	public double getDouble(final String key) throws StringValueConversionException
+	{
+		return getStringValue(key).toDouble();
+	}
+
+	/**
+	 * @see IValueMap#getDouble(String, double)
+	 */
+	public double getDouble(final String key, final double defaultValue)
+	{
+		return getStringValue(key).toDouble(defaultValue);
+	}
+
+	/**
+	 * @see IValueMap#getDuration(String)
+	 */
+	public Duration getDuration(final String key) throws StringValueConversionException
+	{
+		return getStringValue(key).toDuration();
+	}
+
+	/**
+	 * @see IValueMap#getInt(String)
+	 */
+	public int getInt(final String key) throws StringValueConversionException
+	{
+		return getStringValue(key).toInt();
+	}
+
+	/**
+	 * @see IValueMap#getInt(String, int)
+	 */
+	public int getInt(final String key, final int defaultValue)
+	{
+		return getStringValue(key).toInt(defaultValue);
+	}
+
+	/**
+	 * @see IValueMap#getLong(String)
+	 */
+	public long getLong(final String key) throws StringValueConversionException
+	{
+		return getStringValue(key).toLong();
+	}
+
+	/**
+	 * @see IValueMap#getLong(String, long)
+	 */
+	public long getLong(final String key, final long defaultValue)
+	{
+		return getStringValue(key).toLong(defaultValue);
+	}
+
+	/**
+	 * @see IValueMap#getString(String, String)
+	 */
+	public String getString(final String key, final String defaultValue)
+	{
+		final String value = getString(key);
+		return value != null ? value : defaultValue;
+	}
+
+	/**
+	 * @see IValueMap#getString(String)
+	 */
+	public String getString(final String key)
+	{
+		final CharSequence value = getCharSequence(key);
+		return value != null ? value.toString() : null;
+	}
+
+	/**
+	 * @see IValueMap#getCharSequence(String)
+	 */
+	public CharSequence getCharSequence(final String key)
+	{
+		Object o = get(key);
+		if ((o != null) && o.getClass().isArray() && (Array.getLength(o) > 0))
+		{
+			// if it is an array just get the first value
+			o = Array.get(o, 0);
+		}
+		if (o == null)
+		{
+			return null;
+		}
+		else if (o instanceof CharSequence)
+		{
+			return (CharSequence)o;
+		}
+		return o.toString();
+	}
+
+	/**
+	 * @see IValueMap#getStringArray(String)
+	 */
+	public String[] getStringArray(final String key)
+	{
+		final Object o = get(key);
+		if (o == null)
+		{
+			return null;
+		}
+		else if (o.getClass().isArray())
+		{
+			int length = Array.getLength(o);
+			String[] array = new String[length];
+			for (int i = 0; i < length; i++)
+			{
+				final Object arrayValue = Array.get(o, i);
+				if (arrayValue != null)
+				{
+					array[i] = arrayValue.toString();
+				}
+			}
+			return array;
+		}
+		return new String[] { o.toString() };
+	}
+
+	/**
+	 * @see IValueMap#getStringValue(String)
+	 */
+	public StringValue getStringValue(final String key)
+	{
+		return StringValue.valueOf(getString(key));
+	}
+
+	/**
+	 * @see IValueMap#getTime(String)
+	 */
+	public Time getTime(final String key) throws StringValueConversionException
+	{
+		return getStringValue(key).toTime();
+	}
+
+	/**
+	 * @see IValueMap#getKey(String)
+	 */
+	public String getKey(final String key)
+	{
+		for (String other : keys)
+		{
+			if ((other != null) && other.equalsIgnoreCase(key))
+			{
+				return other;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @see IValueMap#getAsBoolean(String)
+	 */
+	public Boolean getAsBoolean(final String key)
+	{
+		if (!containsKey(key))
+		{
+			return null;
+		}
+
+		try
+		{
+			return getBoolean(key);
+		}
+		catch (StringValueConversionException ignored)
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * @see IValueMap#getAsBoolean(String, boolean)
+	 */
+	public boolean getAsBoolean(final String key, final boolean defaultValue)
+	{
+		Boolean value = getAsBoolean(key);
+		return value != null ? value : defaultValue;
+	}
+
+	/**
+	 * @see IValueMap#getAsInteger(String)
+	 */
+	public Integer getAsInteger(final String key)
+	{
+		if (!containsKey(key))
+		{
+			return null;
+		}
+
+		try
+		{
+			return getInt(key);
+		}
+		catch (StringValueConversionException ignored)
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * @see IValueMap#getAsInteger(String, int)
+	 */
+	public int getAsInteger(final String key, final int defaultValue)
+	{
+		return getInt(key, defaultValue);
+	}
+
+	/**
+	 * @see IValueMap#getAsLong(String)
+	 */
+	public Long getAsLong(final String key)
+	{
+		if (!containsKey(key))
+		{
+			return null;
+		}
+
+		try
+		{
+			return getLong(key);
+		}
+		catch (StringValueConversionException ignored)
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * @see IValueMap#getAsLong(String, long)
+	 */
+	public long getAsLong(final String key, final long defaultValue)
+	{
+		return getLong(key, defaultValue);
+	}
+
+	/**
+	 * @see IValueMap#getAsDouble(String)
+	 */
+	public Double getAsDouble(final String key)
+	{
+		if (!containsKey(key))
+		{
+			return null;
+		}
+
+		try
+		{
+			return getDouble(key);
+		}
+		catch (StringValueConversionException ignored)
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * @see IValueMap#getAsDouble(String, double)
+	 */
+	public double getAsDouble(final String key, final double defaultValue)
+	{
+		return getDouble(key, defaultValue);
+	}
+
+	/**
+	 * @see IValueMap#getAsDuration(String)
+	 */
+	public Duration getAsDuration(final String key)
+	{
+		return getAsDuration(key, null);
+	}
+
+	/**
+	 * @see IValueMap#getAsDuration(String, Duration)
+	 */
+	public Duration getAsDuration(final String key, final Duration defaultValue)
+	{
+		if (!containsKey(key))
+		{
+			return defaultValue;
+		}
+
+		try
+		{
+			return getDuration(key);
+		}
+		catch (StringValueConversionException ignored)
+		{
+			return defaultValue;
+		}
+	}
+
+	/**
+	 * @see IValueMap#getAsTime(String)
+	 */
+	public Time getAsTime(final String key)
+	{
+		return getAsTime(key, null);
+	}
+
+	/**
+	 * @see IValueMap#getAsTime(String, Time)
+	 */
+	public Time getAsTime(final String key, final Time defaultValue)
+	{
+		if (!containsKey(key))
+		{
+			return defaultValue;
+		}
+
+		try
+		{
+			return getTime(key);
+		}
+		catch (StringValueConversionException ignored)
+		{
+			return defaultValue;
+		}
+	}
+
+	/**
+	 * @see IValueMap#getAsEnum(String, Class)
+	 */
+	public <T extends Enum<T>> T getAsEnum(final String key, final Class<T> eClass)
+	{
+		return getAsEnum(key, eClass, null);
+	}
+
+	/**
+	 * @see IValueMap#getAsEnum(String, Enum)
+	 */
+	public <T extends Enum<T>> T getAsEnum(final String key, final T defaultValue)
+	{
+		if (defaultValue == null)
+		{
+			throw new IllegalArgumentException("Default value cannot be null");
+		}
+
+		return getAsEnum(key, defaultValue.getDeclaringClass(), defaultValue);
+	}
+
+	/**
+	 * @see IValueMap#getAsEnum(String, Class, Enum)
+	 */
+	public <T extends Enum<T>> T getAsEnum(final String key, final Class<T> eClass,
+		final T defaultValue)
+	{
+		if (eClass == null)
+		{
+			throw new IllegalArgumentException("eClass value cannot be null");
+		}
+
+		String value = getString(key);
+		if (value == null)
+		{
+			return defaultValue;
+		}
+
+		try
+		{
+			return Enum.valueOf(eClass, value);
+		}
+		catch (IllegalArgumentException e)
+		{
+			// the enum doesn't define the value
+			return defaultValue;
+		}
+	}
+
+	/**
+	 * Generates a <code>String</code> representation of this object.
+	 * 
+	 * @return <code>String</code> representation of this <code>CompactValueMap</code> consistent
+	 *         with {@link ValueMap#toString()}
+	 */
+	@Override
+	public String toString()
+	{
+		final StringBuilder buffer = new StringBuilder();
+		for (int i = 0; i < keys.length; i++)
+		{
+			if (i > 0)
+			{
+				buffer.append(' ');
+			}
+
+			buffer.append(keys[i]);
+			buffer.append(" = \"");
+			final Object value = values[i];
+			if (value == null)
+			{
+				buffer.append("null");
+			}
+			else if (value.getClass().isArray())
+			{
+				buffer.append(Arrays.asList((Object[])value));
+			}
+			else
+			{
+				buffer.append(value);
+			}
+
+			buffer.append('\"');
+		}
+		return buffer.toString();
+	}
+
+	/**
+	 * Iterates the entries in the order of the arrays
+	 */
+	private final class EntryIterator implements Iterator<Map.Entry<String, Object>>
+	{
+		private int index;
+
+		public boolean hasNext()
+		{
+			return index < keys.length;
+		}
+
+		public Map.Entry<String, Object> next()
+		{
+			if (index >= keys.length)
+			{
+				throw new NoSuchElementException();
+			}
+			return new Entry(index++);
+		}
+
+		public void remove()
+		{
+			throw new UnsupportedOperationException("Map is immutable");
+		}
+	}
+
+	/**
+	 * An entry of the map
+	 */
+	private final class Entry implements Map.Entry<String, Object>
+	{
+		private final int index;
+
+		private Entry(final int index)
+		{
+			this.index = index;
+		}
+
+		public String getKey()
+		{
+			return keys[index];
+		}
+
+		public Object getValue()
+		{
+			return values[index];
+		}
+
+		public Object setValue(final Object value)
+		{
+			throw new UnsupportedOperationException("Map is immutable");
+		}
+
+		@Override
+		public boolean equals(final Object obj)
+		{
+			if (obj instanceof Map.Entry<?, ?>)
+			{
+				Map.Entry<?, ?> that = (Map.Entry<?, ?>)obj;
+				return Objects.equal(getKey(), that.getKey()) &&
+					Objects.equal(getValue(), that.getValue());
+			}
+			return false;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return (getKey() == null ? 0 : getKey().hashCode()) ^
+				(getValue() == null ? 0 : getValue().hashCode());
+		}
+
+		@Override
+		public String toString()
+		{
+			return getKey() + "=" + getValue();
+		}
+	}
+}
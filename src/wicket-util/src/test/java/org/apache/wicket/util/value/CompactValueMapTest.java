@@ -0,0 +1,165 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.util.value;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link CompactValueMap}
+ */
+public class CompactValueMapTest extends Assert
+{
+	private static enum Alignment {
+		LEFT, RIGHT
+	}
+
+	/**
+	 * The copy has the entries and the order of the copied map and equals it
+	 */
+	@Test
+	public void copy()
+	{
+		ValueMap map = new ValueMap("c=3,a=1,b=true");
+		map.put("d", null);
+		map.add("e", "x");
+		map.add("e", "y");
+		map.put("f", "builder");
+
+		CompactValueMap compact = new CompactValueMap(map);
+		assertEquals(6, compact.size());
+		assertEquals(Arrays.asList("c", "a", "b", "d", "e", "f"),
+			Arrays.asList(compact.keySet().toArray()));
+		assertEquals(map, compact);
+		assertEquals(compact, map);
+		assertEquals(map.hashCode(), compact.hashCode());
+		assertEquals(map.toString(), compact.toString());
+
+		assertTrue(compact.containsKey("d"));
+		assertFalse(compact.containsKey("z"));
+		assertNull(compact.get("z"));
+		assertEquals("builder", compact.get("f"));
+		assertEquals("x", compact.getString("e"));
+		assertArrayEquals(new String[] { "x", "y" }, compact.getStringArray("e"));
+		assertArrayEquals(new String[] { "3" }, compact.getStringArray("c"));
+	}
+
+	/**
+	 * Keys are interned, values are not
+	 */
+	@Test
+	public void interned()
+	{
+		ValueMap map = new ValueMap();
+		map.put(new String("class"), new String("panel"));
+		CompactValueMap compact = new CompactValueMap(map);
+
+		Map.Entry<String, Object> entry = compact.entrySet().iterator().next();
+		assertSame("class", entry.getKey());
+		assertNotSame("panel", entry.getValue());
+		assertEquals("panel", entry.getValue());
+		assertEquals("panel", compact.get(new String("class")));
+
+		// other char sequences are kept as strings
+		map.put("title", new StringBuilder("text"));
+		assertEquals("text", new CompactValueMap(map).get("title"));
+	}
+
+	/**
+	 * The conversions behave like the ones of {@link ValueMap}
+	 */
+	@Test
+	public void conversions()
+	{
+		ValueMap map = new ValueMap("int=42,long=-7,double=1.5,bool=true,align=RIGHT,text=abc");
+		CompactValueMap compact = new CompactValueMap(map);
+
+		assertEquals(42, compact.getInt("int"));
+		assertEquals(1, compact.getInt("missing", 1));
+		assertEquals(-7L, compact.getLong("long"));
+		assertEquals(1.5d, compact.getDouble("double"), 0);
+		assertTrue(compact.getBoolean("bool"));
+		assertEquals(Integer.valueOf(42), compact.getAsInteger("int"));
+		assertNull(compact.getAsInteger("text"));
+		assertNull(compact.getAsLong("missing"));
+		assertEquals(3, compact.getAsInteger("text", 3));
+		assertNull(compact.getAsBoolean("text"));
+		assertTrue(compact.getAsBoolean("missing", true));
+		assertEquals(Alignment.RIGHT, compact.getAsEnum("align", Alignment.class));
+		assertEquals(Alignment.LEFT, compact.getAsEnum("text", Alignment.LEFT));
+		assertEquals("default", compact.getString("missing", "default"));
+		assertEquals("text", compact.getKey("TEXT"));
+		assertNull(compact.getKey("other"));
+	}
+
+	/**
+	 * The map can not be changed
+	 */
+	@Test
+	public void immutable()
+	{
+		CompactValueMap compact = new CompactValueMap(new ValueMap("a=1"));
+		assertTrue(compact.isImmutable());
+		assertSame(compact, compact.makeImmutable());
+
+		try
+		{
+			compact.put("b", "2");
+			fail();
+		}
+		catch (UnsupportedOperationException expected)
+		{
+			// expected
+		}
+
+		try
+		{
+			compact.remove("a");
+			fail();
+		}
+		catch (UnsupportedOperationException expected)
+		{
+			// expected
+		}
+
+		Iterator<Map.Entry<String, Object>> iterator = compact.entrySet().iterator();
+		Map.Entry<String, Object> entry = iterator.next();
+		try
+		{
+			entry.setValue("2");
+			fail();
+		}
+		catch (UnsupportedOperationException expected)
+		{
+			// expected
+		}
+		try
+		{
+			iterator.remove();
+			fail();
+		}
+		catch (UnsupportedOperationException expected)
+		{
+			// expected
+		}
+		assertEquals("1", compact.get("a"));
+	}
+}